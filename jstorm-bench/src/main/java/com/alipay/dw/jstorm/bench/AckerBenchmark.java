@@ -0,0 +1,131 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Tuple;
+
+import com.alipay.dw.jstorm.task.acker.Acker;
+
+/**
+ * Acker.execute of one tuple tree, which has one spout init message
+ * and one bolt ack message
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AckerBenchmark {
+    private static final int TREE_NUM = 4096;
+
+    private Acker            acker;
+    private Tuple[]          inits;
+    private Tuple[]          acks;
+    private int              index;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchTopology topology = new BenchTopology();
+        TopologyContext spoutContext = topology
+                .makeContext(BenchTopology.SPOUT_TASK);
+        TopologyContext boltContext = topology
+                .makeContext(BenchTopology.BOLT_TASKS[0]);
+
+        acker = new Acker();
+        acker.prepare(topology.getConf(),
+                topology.makeContext(BenchTopology.ACKER_TASKS[0]),
+                new OutputCollector(new NullCollector()));
+
+        // the trees are completed in every invocation, so they can be reused
+        Random random = new Random(1);
+        inits = new Tuple[TREE_NUM];
+        acks = new Tuple[TREE_NUM];
+        for (int i = 0; i < TREE_NUM; i++) {
+            long root = random.nextLong();
+            long edge = random.nextLong();
+
+            List<Object> init = new ArrayList<Object>();
+            init.add(root);
+            init.add(edge);
+            init.add(BenchTopology.SPOUT_TASK);
+            inits[i] = new Tuple(spoutContext, init, BenchTopology.SPOUT_TASK,
+                    Acker.ACKER_INIT_STREAM_ID);
+
+            List<Object> ack = new ArrayList<Object>();
+            ack.add(root);
+            ack.add(edge);
+            acks[i] = new Tuple(boltContext, ack, BenchTopology.BOLT_TASKS[0],
+                    Acker.ACKER_ACK_STREAM_ID);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        acker.cleanup();
+    }
+
+    @Benchmark
+    public void initAndAck() {
+        index = (index + 1) & (TREE_NUM - 1);
+        acker.execute(inits[index]);
+        acker.execute(acks[index]);
+    }
+
+    /**
+     * bolt's ack message arrives before spout's init message
+     */
+    @Benchmark
+    public void ackAndInit() {
+        index = (index + 1) & (TREE_NUM - 1);
+        acker.execute(acks[index]);
+        acker.execute(inits[index]);
+    }
+
+    static class NullCollector implements IOutputCollector {
+        @Override
+        public List<Integer> emit(String streamId, Collection<Tuple> anchors,
+                List<Object> tuple) {
+            return null;
+        }
+
+        @Override
+        public void emitDirect(int taskId, String streamId,
+                Collection<Tuple> anchors, List<Object> tuple) {
+        }
+
+        @Override
+        public void ack(Tuple input) {
+        }
+
+        @Override
+        public void fail(Tuple input) {
+        }
+
+        @Override
+        public void reportError(Throwable error) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import backtype.storm.Config;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.spout.SpoutOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.TopologyBuilder;
+import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.topology.base.BaseRichSpout;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.utils.Utils;
+
+import com.alipay.dw.jstorm.cluster.Common;
+import com.alipay.dw.jstorm.task.acker.Acker;
+
+/**
+ * The topology used by all benchmarks, it is never submitted
+ *
+ * spout(task 1) --> bolt(task 2~5) --> acker(task 6~7)
+ *
+ * Current worker runs task 1, 2, 3, 6, 7, so local_or_shuffle
+ * has both local and remote bolt tasks
+ *
+ * @author longda
+ *
+ */
+public class BenchTopology {
+    public static final String  TOPOLOGY_ID  = "bench-1-1";
+    public static final String  SPOUT_ID     = "spout";
+    public static final String  BOLT_ID      = "bolt";
+    public static final String  STREAM_ID    = Utils.DEFAULT_STREAM_ID;
+    public static final Fields  OUT_FIELDS   = new Fields("word", "count");
+
+    public static final int     SPOUT_TASK   = 1;
+    public static final int[]   BOLT_TASKS   = { 2, 3, 4, 5 };
+    public static final int[]   ACKER_TASKS  = { 6, 7 };
+    public static final int     WORKER_PORT  = 6800;
+
+    private final Map<Object, Object>   conf;
+    private final StormTopology         sysTopology;
+    private final Map<Integer, String>  taskToComponent;
+    private final List<Integer>         workerTasks;
+
+    public BenchTopology() throws Exception {
+        this(new HashMap<Object, Object>());
+    }
+
+    /**
+     * @param extraConf
+     *            overrides the default configuration
+     */
+    @SuppressWarnings("unchecked")
+    public BenchTopology(Map<Object, Object> extraConf) throws Exception {
+        conf = new HashMap<Object, Object>();
+        conf.putAll(Utils.readDefaultConfig());
+        conf.put(Config.TOPOLOGY_ACKERS, ACKER_TASKS.length);
+        conf.putAll(extraConf);
+
+        TopologyBuilder builder = new TopologyBuilder();
+        builder.setSpout(SPOUT_ID, new BenchSpout(), 1);
+        builder.setBolt(BOLT_ID, new BenchBolt(), BOLT_TASKS.length)
+                .fieldsGrouping(SPOUT_ID, new Fields("word"));
+        sysTopology = Common.system_topology(conf, builder.createTopology());
+
+        taskToComponent = new HashMap<Integer, String>();
+        taskToComponent.put(SPOUT_TASK, SPOUT_ID);
+        for (int task : BOLT_TASKS) {
+            taskToComponent.put(task, BOLT_ID);
+        }
+        for (int task : ACKER_TASKS) {
+            taskToComponent.put(task, Acker.ACKER_COMPONENT_ID);
+        }
+
+        workerTasks = new ArrayList<Integer>();
+        workerTasks.add(SPOUT_TASK);
+        workerTasks.add(BOLT_TASKS[0]);
+        workerTasks.add(BOLT_TASKS[1]);
+        for (int task : ACKER_TASKS) {
+            workerTasks.add(task);
+        }
+    }
+
+    public Map<Object, Object> getConf() {
+        return conf;
+    }
+
+    public TopologyContext makeContext(Integer taskId) {
+        return new TopologyContext(sysTopology, conf, taskToComponent,
+                TOPOLOGY_ID, null, null, taskId, WORKER_PORT, workerTasks);
+    }
+
+    public static List<Integer> boltTasks() {
+        List<Integer> ret = new ArrayList<Integer>();
+        for (int task : BOLT_TASKS) {
+            ret.add(task);
+        }
+        return ret;
+    }
+
+    public static List<Integer> ackerTasks() {
+        List<Integer> ret = new ArrayList<Integer>();
+        for (int task : ACKER_TASKS) {
+            ret.add(task);
+        }
+        return ret;
+    }
+
+    /**
+     * typical word count values
+     */
+    public static List<Object> mkValues(int i) {
+        List<Object> values = new ArrayList<Object>();
+        values.add("word-" + (i % 1024));
+        values.add(Long.valueOf(i));
+        return values;
+    }
+
+    public static class BenchSpout extends BaseRichSpout {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void open(Map conf, TopologyContext context,
+                SpoutOutputCollector collector) {
+        }
+
+        @Override
+        public void nextTuple() {
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+            declarer.declare(OUT_FIELDS);
+        }
+    }
+
+    public static class BenchBolt extends BaseRichBolt {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void prepare(Map stormConf, TopologyContext context,
+                OutputCollector collector) {
+        }
+
+        @Override
+        public void execute(Tuple input) {
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        }
+    }
+}
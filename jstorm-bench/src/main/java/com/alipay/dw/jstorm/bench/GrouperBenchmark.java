@@ -0,0 +1,149 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.generated.Grouping;
+import backtype.storm.generated.JavaObject;
+import backtype.storm.generated.JavaObjectArg;
+import backtype.storm.generated.NullStruct;
+import backtype.storm.grouping.CustomStreamGrouping;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.utils.Utils;
+
+import com.alipay.dw.jstorm.task.acker.Acker;
+import com.alipay.dw.jstorm.task.group.GrouperType;
+import com.alipay.dw.jstorm.task.group.MkGrouper;
+
+/**
+ * MkGrouper.grouper of every GrouperType
+ *
+ * direct is chosen by the collector, its grouper does nothing
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrouperBenchmark {
+    private static final int VALUES_NUM = 1024;
+
+    @Param({ "global", "fields", "all", "shuffle", "none", "custom_obj",
+            "custom_serialized", "direct", "local_or_shuffle", "acker" })
+    public String              type;
+
+    private MkGrouper          grouper;
+    private List<List<Object>> values;
+    private int                index;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchTopology topology = new BenchTopology();
+        TopologyContext context = topology
+                .makeContext(BenchTopology.SPOUT_TASK);
+
+        GrouperType grouperType = GrouperType.valueOf(type);
+        values = new ArrayList<List<Object>>();
+        if (grouperType == GrouperType.acker) {
+            Random random = new Random(1);
+            for (int i = 0; i < VALUES_NUM; i++) {
+                List<Object> v = new ArrayList<Object>();
+                v.add(random.nextLong());
+                v.add(random.nextLong());
+                v.add(BenchTopology.SPOUT_TASK);
+                values.add(v);
+            }
+            grouper = new MkGrouper(context, new Fields("id", "init-val",
+                    "spout-task"), Grouping.fields(Arrays.asList("id")),
+                    Acker.ACKER_COMPONENT_ID, BenchTopology.ackerTasks());
+        } else {
+            for (int i = 0; i < VALUES_NUM; i++) {
+                values.add(BenchTopology.mkValues(i));
+            }
+            grouper = new MkGrouper(context, BenchTopology.OUT_FIELDS,
+                    mkGrouping(grouperType), BenchTopology.BOLT_ID,
+                    BenchTopology.boltTasks());
+        }
+
+        if (grouper.gettype() != grouperType) {
+            throw new IllegalStateException("Expect " + grouperType
+                    + ", but get " + grouper.gettype());
+        }
+    }
+
+    private static Grouping mkGrouping(GrouperType grouperType) {
+        switch (grouperType) {
+        case global:
+            return Grouping.fields(new ArrayList<String>());
+        case fields:
+            return Grouping.fields(Arrays.asList("word"));
+        case all:
+            return Grouping.all(new NullStruct());
+        case shuffle:
+            return Grouping.shuffle(new NullStruct());
+        case none:
+            return Grouping.none(new NullStruct());
+        case custom_obj:
+            return Grouping.custom_object(new JavaObject(
+                    BenchGrouping.class.getName(),
+                    new ArrayList<JavaObjectArg>()));
+        case custom_serialized:
+            return Grouping.custom_serialized(Utils
+                    .serialize(new BenchGrouping()));
+        case direct:
+            return Grouping.direct(new NullStruct());
+        case local_or_shuffle:
+            return Grouping.local_or_shuffle(new NullStruct());
+        default:
+            throw new IllegalArgumentException("Unknown type " + grouperType);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> grouper() {
+        index = (index + 1) & (VALUES_NUM - 1);
+        return grouper.grouper(values.get(index));
+    }
+
+    public static class BenchGrouping implements CustomStreamGrouping {
+        private static final long serialVersionUID = 1L;
+
+        private List<List<Integer>> targets;
+
+        @Override
+        public void prepare(TopologyContext context, Fields outFields,
+                List<Integer> targetTasks) {
+            targets = new ArrayList<List<Integer>>();
+            for (Integer task : targetTasks) {
+                targets.add(Collections.singletonList(task));
+            }
+        }
+
+        @Override
+        public List<Integer> chooseTasks(List<Object> values) {
+            int hash = values.get(0).hashCode() & Integer.MAX_VALUE;
+            return targets.get(hash % targets.size());
+        }
+    }
+}
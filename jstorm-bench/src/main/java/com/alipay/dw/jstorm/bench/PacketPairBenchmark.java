@@ -0,0 +1,63 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alipay.dw.jstorm.zeroMq.PacketPair;
+
+/**
+ * PacketPair framing of one message
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketPairBenchmark {
+    @Param({ "64", "1024" })
+    public int    messageSize;
+
+    private byte[] message;
+    private byte[] packet;
+
+    @Setup
+    public void setup() {
+        message = new byte[messageSize];
+        packet = PacketPair.mk_packet(100, message);
+    }
+
+    @Benchmark
+    public byte[] mkPacket() {
+        return PacketPair.mk_packet(100, message);
+    }
+
+    @Benchmark
+    public int parsePort() {
+        return PacketPair.parse_port(packet);
+    }
+
+    @Benchmark
+    public byte[] parseMessage() {
+        return PacketPair.parse_message(packet);
+    }
+
+    @Benchmark
+    public PacketPair parsePacket() {
+        return PacketPair.parse_packet(packet);
+    }
+}
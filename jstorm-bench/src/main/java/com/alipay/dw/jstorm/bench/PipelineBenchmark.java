@@ -0,0 +1,285 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.serialization.KryoTupleDeserializer;
+import backtype.storm.serialization.KryoTupleSerializer;
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.MessageId;
+import backtype.storm.tuple.Tuple;
+
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.task.acker.Acker;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+import com.alipay.dw.jstorm.zeroMq.PacketPair;
+import com.alipay.dw.jstorm.zeroMq.QueueConnection;
+
+/**
+ * In-process spout --> bolt --> acker pipeline over QueueConnection
+ *
+ * The benchmark thread is the spout, it emits one anchored tuple and
+ * the init message, and waits for the acker's completion messages when
+ * maxPending trees are in flight. The bolt and the acker run in their
+ * own threads like the task executors. One operation is one tuple tree.
+ *
+ * transfer "serialized" sends every message through Kryo like
+ * the tuples between workers, "local" passes the spout's Tuple object
+ * like the tuples between the tasks of one worker.
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final int    VALUES_NUM = 1024;
+
+    @Param({ "1", "1024" })
+    public int                  maxPending;
+
+    @Param({ "serialized", "local" })
+    public String               transfer;
+
+    private boolean             local;
+    private int                 pending;
+    private int                 index;
+    private Random              random;
+    private List<List<Object>>  values;
+
+    private TopologyContext     spoutContext;
+    private KryoTupleSerializer spoutSerializer;
+    private KryoTupleDeserializer spoutDeserializer;
+
+    private QueueConnection     spoutQueue;
+    private QueueConnection     boltQueue;
+    private QueueConnection     ackerQueue;
+
+    private Acker               acker;
+    private Thread              boltThread;
+    private Thread              ackerThread;
+
+    @Setup
+    public void setup() throws Exception {
+        local = "local".equals(transfer);
+        random = new Random(1);
+        values = new ArrayList<List<Object>>();
+        for (int i = 0; i < VALUES_NUM; i++) {
+            values.add(BenchTopology.mkValues(i));
+        }
+
+        final BenchTopology topology = new BenchTopology();
+        spoutContext = topology.makeContext(BenchTopology.SPOUT_TASK);
+        spoutSerializer = new KryoTupleSerializer(topology.getConf(),
+                spoutContext);
+        spoutDeserializer = new KryoTupleDeserializer(topology.getConf(),
+                spoutContext);
+
+        spoutQueue = mkQueue(topology);
+        boltQueue = mkQueue(topology);
+        ackerQueue = mkQueue(topology);
+
+        final TopologyContext ackerContext = topology
+                .makeContext(BenchTopology.ACKER_TASKS[0]);
+        final KryoTupleSerializer ackerSerializer = new KryoTupleSerializer(
+                topology.getConf(), ackerContext);
+        acker = new Acker();
+        acker.prepare(topology.getConf(), ackerContext, new OutputCollector(
+                new SpoutNotifier(ackerContext, ackerSerializer)));
+
+        boltThread = new Thread(new BoltRunnable(topology));
+        boltThread.setName("BenchBolt");
+        boltThread.setDaemon(true);
+        boltThread.start();
+
+        ackerThread = new Thread(new AckerRunnable(new KryoTupleDeserializer(
+                topology.getConf(), ackerContext)));
+        ackerThread.setName("BenchAcker");
+        ackerThread.setDaemon(true);
+        ackerThread.start();
+    }
+
+    private static QueueConnection mkQueue(BenchTopology topology) {
+        DisruptorQueue<Object> queue = DisruptorQueue.mkInstance(
+                topology.getConf(),
+                ConfigExtension.TOPOLOGY_RECEIVE_BUFFER_SIZE,
+                ConfigExtension.DEFAULT_RECEIVE_BUFFER_SIZE, true);
+        return new QueueConnection(queue);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        boltQueue.close();
+        ackerQueue.close();
+        spoutQueue.close();
+        boltThread.join();
+        ackerThread.join();
+        acker.cleanup();
+    }
+
+    private void send(QueueConnection queue, int taskId,
+            KryoTupleSerializer serializer, Tuple tuple) {
+        if (local) {
+            queue.sendObject(tuple);
+        } else {
+            queue.send(PacketPair.mk_packet(taskId,
+                    serializer.serialize(tuple)));
+        }
+    }
+
+    private static Tuple toTuple(Object msg,
+            KryoTupleDeserializer deserializer) {
+        if (msg instanceof Tuple) {
+            return (Tuple) msg;
+        }
+        return deserializer.deserialize((byte[]) msg);
+    }
+
+    @Benchmark
+    public int emit() {
+        index = (index + 1) & (VALUES_NUM - 1);
+        long root = random.nextLong();
+        long edge = random.nextLong();
+
+        Tuple tuple = new Tuple(spoutContext, values.get(index),
+                BenchTopology.SPOUT_TASK, BenchTopology.STREAM_ID,
+                MessageId.makeRootId(root, edge));
+        send(boltQueue, BenchTopology.BOLT_TASKS[0], spoutSerializer, tuple);
+
+        List<Object> init = new ArrayList<Object>();
+        init.add(root);
+        init.add(edge);
+        init.add(BenchTopology.SPOUT_TASK);
+        send(ackerQueue, BenchTopology.ACKER_TASKS[0], spoutSerializer,
+                new Tuple(spoutContext, init, BenchTopology.SPOUT_TASK,
+                        Acker.ACKER_INIT_STREAM_ID));
+
+        pending++;
+        while (pending >= maxPending) {
+            Object msg = spoutQueue.recvObject();
+            if (msg == null) {
+                break;
+            }
+            toTuple(msg, spoutDeserializer);
+            pending--;
+        }
+        return pending;
+    }
+
+    /**
+     * acks every tuple without emitting, like BoltCollector.ack
+     */
+    class BoltRunnable implements Runnable {
+        private final TopologyContext       context;
+        private final KryoTupleSerializer   serializer;
+        private final KryoTupleDeserializer deserializer;
+
+        BoltRunnable(BenchTopology topology) {
+            context = topology.makeContext(BenchTopology.BOLT_TASKS[0]);
+            serializer = new KryoTupleSerializer(topology.getConf(), context);
+            deserializer = new KryoTupleDeserializer(topology.getConf(),
+                    context);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Object msg = boltQueue.recvObject();
+                if (msg == null) {
+                    return;
+                }
+                Tuple input = toTuple(msg, deserializer);
+
+                MessageId msgId = input.getMessageId();
+                for (int i = 0; i < msgId.size(); i++) {
+                    List<Object> ack = new ArrayList<Object>();
+                    ack.add(msgId.getAnchor(i));
+                    ack.add(msgId.getId(i));
+                    send(ackerQueue, BenchTopology.ACKER_TASKS[0], serializer,
+                            new Tuple(context, ack,
+                                    BenchTopology.BOLT_TASKS[0],
+                                    Acker.ACKER_ACK_STREAM_ID));
+                }
+            }
+        }
+    }
+
+    class AckerRunnable implements Runnable {
+        private final KryoTupleDeserializer deserializer;
+
+        AckerRunnable(KryoTupleDeserializer deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Object msg = ackerQueue.recvObject();
+                if (msg == null) {
+                    return;
+                }
+                acker.execute(toTuple(msg, deserializer));
+            }
+        }
+    }
+
+    /**
+     * sends acker's completion messages to the spout
+     */
+    class SpoutNotifier implements IOutputCollector {
+        private final TopologyContext     context;
+        private final KryoTupleSerializer serializer;
+
+        SpoutNotifier(TopologyContext context, KryoTupleSerializer serializer) {
+            this.context = context;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public List<Integer> emit(String streamId, Collection<Tuple> anchors,
+                List<Object> tuple) {
+            return null;
+        }
+
+        @Override
+        public void emitDirect(int taskId, String streamId,
+                Collection<Tuple> anchors, List<Object> tuple) {
+            send(spoutQueue, taskId, serializer, new Tuple(context, tuple,
+                    context.getThisTaskId(), streamId));
+        }
+
+        @Override
+        public void ack(Tuple input) {
+        }
+
+        @Override
+        public void fail(Tuple input) {
+        }
+
+        @Override
+        public void reportError(Throwable error) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.KryoTupleDeserializer;
+import backtype.storm.serialization.KryoTupleSerializer;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.MessageId;
+import backtype.storm.tuple.Tuple;
+
+import com.alipay.dw.jstorm.zeroMq.PacketPair;
+
+/**
+ * KryoTupleSerializer/KryoTupleDeserializer of one anchored tuple
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private KryoTupleSerializer   serializer;
+    private KryoTupleDeserializer deserializer;
+    private KryoTupleDeserializer lazyDeserializer;
+    private Tuple                 tuple;
+    private byte[]                packet;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchTopology topology = new BenchTopology();
+        TopologyContext spoutContext = topology
+                .makeContext(BenchTopology.SPOUT_TASK);
+        TopologyContext boltContext = topology
+                .makeContext(BenchTopology.BOLT_TASKS[0]);
+
+        serializer = new KryoTupleSerializer(topology.getConf(), spoutContext);
+        deserializer = new KryoTupleDeserializer(topology.getConf(),
+                boltContext);
+
+        Map<Object, Object> lazyConf = new HashMap<Object, Object>();
+        lazyConf.putAll(topology.getConf());
+        lazyConf.put(Config.TOPOLOGY_TUPLE_LAZY_DESERIALIZE, true);
+        lazyDeserializer = new KryoTupleDeserializer(lazyConf, boltContext);
+
+        tuple = new Tuple(spoutContext, BenchTopology.mkValues(1),
+                BenchTopology.SPOUT_TASK, BenchTopology.STREAM_ID,
+                MessageId.makeRootId(MessageId.generateId(),
+                        MessageId.generateId()));
+        packet = PacketPair.mk_packet(BenchTopology.BOLT_TASKS[0],
+                serializer.serialize(tuple));
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(tuple);
+    }
+
+    @Benchmark
+    public Tuple deserialize() {
+        return deserializer.deserialize(packet);
+    }
+
+    /**
+     * lazy tuple whose values are never read, e.g. it is only acked
+     */
+    @Benchmark
+    public Tuple deserializeLazy() {
+        return lazyDeserializer.deserialize(packet);
+    }
+
+    @Benchmark
+    public Object deserializeLazyAndRead() {
+        return lazyDeserializer.deserialize(packet).getValue(0);
+    }
+
+    @Benchmark
+    public Tuple roundTrip() {
+        byte[] message = serializer.serialize(tuple);
+        return deserializer.deserialize(PacketPair.mk_packet(
+                BenchTopology.BOLT_TASKS[0], message));
+    }
+}
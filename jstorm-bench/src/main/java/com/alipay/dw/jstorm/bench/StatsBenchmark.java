@@ -0,0 +1,66 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alipay.dw.jstorm.stats.CommonStatsRolling;
+
+/**
+ * CommonStatsRolling updates done for every tuple
+ *
+ * rate is the sampling rate, 20 is topology.stats.sample.rate 0.05
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsBenchmark {
+    @Param({ "1", "20" })
+    public int                 rate;
+
+    private CommonStatsRolling stats;
+    private long               startTime;
+
+    @Setup
+    public void setup() {
+        stats = new CommonStatsRolling(rate);
+        startTime = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public void sendTuple() {
+        stats.send_tuple(BenchTopology.STREAM_ID, 1);
+    }
+
+    @Benchmark
+    public void recvTuple() {
+        stats.recv_tuple(BenchTopology.SPOUT_ID, BenchTopology.STREAM_ID);
+    }
+
+    @Benchmark
+    public void boltAckedTuple() {
+        stats.bolt_acked_tuple(BenchTopology.SPOUT_ID,
+                BenchTopology.STREAM_ID, 1L);
+    }
+
+    @Benchmark
+    public void spoutAckedTuple() {
+        stats.spout_acked_tuple(BenchTopology.STREAM_ID, startTime);
+    }
+}
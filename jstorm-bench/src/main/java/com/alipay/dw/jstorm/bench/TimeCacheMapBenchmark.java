@@ -0,0 +1,85 @@
+package com.alipay.dw.jstorm.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.utils.TimeCacheMap;
+
+import com.alipay.dw.jstorm.utils.TimeoutMap;
+
+/**
+ * put/get/remove of the pending map, TimeCacheMap is compared with
+ * TimeoutMap which replaces it in the executors
+ *
+ * PENDING entries are kept in the map, like max spout pending
+ *
+ * @author longda
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeCacheMapBenchmark {
+    private static final int          PENDING = 4096;
+    private static final int          TIMEOUT_SECS = 30;
+
+    private TimeCacheMap<Long, Long> timeCacheMap;
+    private TimeoutMap<Long, Long>   timeoutMap;
+    private long                     next;
+
+    @Setup
+    public void setup() {
+        timeCacheMap = new TimeCacheMap<Long, Long>(TIMEOUT_SECS);
+        timeoutMap = new TimeoutMap<Long, Long>(TIMEOUT_SECS);
+        for (next = 0; next < PENDING; next++) {
+            timeCacheMap.put(next, next);
+            timeoutMap.put(next, next);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timeoutMap.close();
+    }
+
+    /**
+     * one pending tuple is acked and a new one is emitted
+     */
+    @Benchmark
+    public Object timeCacheMapPutRemove() {
+        long key = next++;
+        timeCacheMap.put(key, key);
+        return timeCacheMap.remove(key - PENDING);
+    }
+
+    @Benchmark
+    public Object timeoutMapPutRemove() {
+        long key = next++;
+        timeoutMap.put(key, key);
+        return timeoutMap.remove(key - PENDING);
+    }
+
+    @Benchmark
+    public boolean timeCacheMapContainsKey() {
+        return timeCacheMap.containsKey(next - 1);
+    }
+
+    @Benchmark
+    public boolean timeoutMapContainsKey() {
+        return timeoutMap.containsKey(next - 1);
+    }
+}
@@ -10,7 +10,8 @@ public class ConfigExtension {
     public static final String TOPOLOGY_DEBUG_RECV_TUPLE = "topology.debug.recv.tuple";
     
     /**
-     * delay spout to run nextTuple 
+     * spout waits at most so many seconds for its downstream tasks to be
+     * ready before running nextTuple
      */
     public static final String SPOUT_DELAY_RUN = "spout.delay.run";
     
@@ -22,5 +23,217 @@ public class ConfigExtension {
     
     public static final int   DEFAULT_ZMQ_MAX_QUEUE_MSG = 100000;
     
+    /**
+     * if this configure has been set, the worker serializes tuples into 
+     * per-NodePort batch buffers, and the drainer sends a whole batch 
+     * in one message instead of one message per tuple
+     */
+    public static final String TOPOLOGY_TRANSFER_BATCH = "topology.transfer.batch";
+    
+    /**
+     * one batch will be flushed when its serialized size reach this bytes
+     */
+    public static final String TRANSFER_BATCH_SIZE = "transfer.batch.size";
+    
+    public static final int   DEFAULT_TRANSFER_BATCH_SIZE = 64 * 1024;
+    
+    /**
+     * one batch will be flushed when it has been kept more than 
+     * this milliseconds, even if it is not full
+     */
+    public static final String TRANSFER_BATCH_FLUSH_MS = "transfer.batch.flush.ms";
+    
+    public static final int   DEFAULT_TRANSFER_BATCH_FLUSH_MS = 5;
+    
+    /**
+     * wait strategy of the bounded queues inside worker,
+     * it can be "blocking", "yielding", "sleeping" or "busyspin"
+     * 
+     * "blocking" use less cpu, "yielding"/"busyspin" get lower latency
+     */
+    public static final String TOPOLOGY_QUEUE_WAIT_STRATEGY = "topology.queue.wait.strategy";
+    
+    /**
+     * size of task's receive queue and spout's ack/fail event queue, 
+     * it will be rounded up to power of 2
+     * 
+     * when the queue is full, the sender will be blocked
+     */
+    public static final String TOPOLOGY_RECEIVE_BUFFER_SIZE = "topology.receive.buffer.size";
+    
+    public static final int   DEFAULT_RECEIVE_BUFFER_SIZE = 16384;
+    
+    /**
+     * size of worker's sending queue, it will be rounded up to power of 2
+     */
+    public static final String TOPOLOGY_TRANSFER_BUFFER_SIZE = "topology.transfer.buffer.size";
+    
+    public static final int   DEFAULT_TRANSFER_BUFFER_SIZE = 16384;
+    
+    /**
+     * transport between workers, "zmq" (default) or "nio",
+     * "nio" is a pure java transport which doesn't need native jzmq,
+     * zmq.max.queue.msg is its high-water mark of every connection
+     */
+    public static final String STORM_MESSAGING_TRANSPORT = "storm.messaging.transport";
+    
+    /**
+     * TCP send/receive buffer size of nio transport
+     */
+    public static final String NIO_SOCKET_BUFFER_SIZE = "storm.messaging.nio.socket.buffer.size";
+    
+    public static final int   DEFAULT_NIO_SOCKET_BUFFER_SIZE = 256 * 1024;
+    
+    /**
+     * size of nio transport's pooled direct buffer, the sender writes
+     * as many queued messages as this buffer can hold in one write
+     */
+    public static final String NIO_BATCH_SIZE = "storm.messaging.nio.batch.size";
+    
+    public static final int   DEFAULT_NIO_BATCH_SIZE = 64 * 1024;
+    
+    /**
+     * max message size the nio receiver accepts, the connection which
+     * sends a bigger or negative frame length is closed
+     */
+    public static final String NIO_MAX_FRAME_SIZE = "storm.messaging.nio.max.frame.size";
+    
+    public static final int   DEFAULT_NIO_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    
+    /**
+     * if this configure is true, the tuples between the tasks of 
+     * the same worker are put into the target task's queue directly 
+     * without serialization, so don't modify the values after emitting,
+     * it is false by default
+     * 
+     * it doesn't work when storm.local.mode.zmq is true
+     */
+    public static final String TOPOLOGY_LOCAL_TRANSFER = "topology.local.transfer";
+    
+    /**
+     * how often the task writes its stats to ZK, the heartbeat
+     * (task.heartbeat.frequency.secs) only tells nimbus it is alive,
+     * the stats are only written when they have changed
+     */
+    public static final String TASK_STATS_FREQUENCY_SECS = "task.stats.frequency.secs";
+    
+    public static final int   DEFAULT_TASK_STATS_FREQUENCY_SECS = 30;
+    
+    /**
+     * class name of nimbus's task scheduler, it must implement
+     * com.alipay.dw.jstorm.schedule.ITopologyScheduler
+     */
+    public static final String NIMBUS_TOPOLOGY_SCHEDULER = "nimbus.topology.scheduler";
+    
+    /**
+     * relative cpu and memory weight of one task of the component,
+     * set them by the component's configuration or the topology's,
+     * the scheduler balances the sum of the weights among the workers
+     */
+    public static final String COMPONENT_CPU_WEIGHT = "component.cpu.weight";
+    
+    public static final String COMPONENT_MEMORY_WEIGHT = "component.memory.weight";
+    
+    public static final double DEFAULT_COMPONENT_WEIGHT = 1.0d;
+    
+    /**
+     * number of idle worker JVMs which every supervisor keeps started,
+     * jstorm classes and transport are loaded in them, a new worker
+     * is handed to one of them instead of starting a new JVM
+     * 
+     * a warm JVM is only used when the topology's worker childopts are
+     * the same as the supervisor's worker.childopts, 0 means disable,
+     * the JVM's system class loader must be a URLClassLoader (java 6-8)
+     */
+    public static final String SUPERVISOR_WARM_WORKERS = "supervisor.warm.workers";
+    
+    public static final int   DEFAULT_SUPERVISOR_WARM_WORKERS = 0;
+    
+    /**
+     * supervisors serve their cached topology jars to each other on this
+     * port, it must be the same on all supervisors, 0 means disable and
+     * the jars are only downloaded from nimbus
+     */
+    public static final String SUPERVISOR_JAR_SERVER_PORT = "supervisor.jar.server.port";
+    
+    public static final int    DEFAULT_SUPERVISOR_JAR_SERVER_PORT = 0;
+    
+    /**
+     * number of topology jars kept in the supervisor's jar cache
+     */
+    public static final String SUPERVISOR_JAR_CACHE_NUM = "supervisor.jar.cache.num";
+    
+    public static final int    DEFAULT_SUPERVISOR_JAR_CACHE_NUM = 16;
+    
+    /**
+     * a jar is fetched from so many other supervisors at the same time
+     */
+    public static final String SUPERVISOR_JAR_DOWNLOAD_THREADS = "supervisor.jar.download.threads";
+    
+    public static final int    DEFAULT_SUPERVISOR_JAR_DOWNLOAD_THREADS = 4;
+    
+    /**
+     * max number of tuples handed to IBatchExecuteBolt.execute(List) at once
+     */
+    public static final String TOPOLOGY_BOLT_BATCH_SIZE = "topology.bolt.batch.size";
+    
+    public static final int    DEFAULT_TOPOLOGY_BOLT_BATCH_SIZE = 100;
+    
+    /**
+     * after the first tuple of a batch arrives, IBatchExecuteBolt waits at
+     * most so many microseconds for the others
+     */
+    public static final String TOPOLOGY_BOLT_BATCH_TIMEOUT_US = "topology.bolt.batch.timeout.us";
+    
+    public static final int    DEFAULT_TOPOLOGY_BOLT_BATCH_TIMEOUT_US = 1000;
+    
+    /**
+     * a bolt task coalesces the acks and fails of at most so many root ids
+     * into one tuple per acker task, 1 means send every ack and fail alone
+     */
+    public static final String TOPOLOGY_ACKER_BATCH_SIZE = "topology.acker.batch.size";
+    
+    public static final int    DEFAULT_TOPOLOGY_ACKER_BATCH_SIZE = 100;
+    
+    /**
+     * the coalesced acks and fails are sent when the bolt is idle, or the
+     * oldest one has waited so many milliseconds
+     */
+    public static final String TOPOLOGY_ACKER_BATCH_WINDOW_MS = "topology.acker.batch.window.ms";
+    
+    public static final int    DEFAULT_TOPOLOGY_ACKER_BATCH_WINDOW_MS = 10;
+    
+    /**
+     * if this configure has been set, the spout tunes its effective max
+     * pending by the complete latency and the worker's sending queues,
+     * topology.max.spout.pending is the upper bound
+     */
+    public static final String TOPOLOGY_SPOUT_ADAPTIVE_PENDING = "topology.spout.adaptive.pending";
+    
+    /**
+     * the complete latency the adaptive spout keeps under, 0 means twice
+     * the min complete latency
+     */
+    public static final String TOPOLOGY_SPOUT_TARGET_LATENCY_MS = "topology.spout.target.latency.ms";
+    
+    public static final int    DEFAULT_TOPOLOGY_SPOUT_TARGET_LATENCY_MS = 0;
+    
+    /**
+     * if this configure has been set, a bolt task whose receiving queue is
+     * above the high watermark throttles the upstream spouts, they pause
+     * nextTuple until the queue drains below the low watermark
+     */
+    public static final String TOPOLOGY_BACKPRESSURE_ENABLE = "topology.backpressure.enable";
+    
+    /**
+     * fill ratio of the receiving queue, 0 to 1
+     */
+    public static final String TOPOLOGY_BACKPRESSURE_HIGH_WATERMARK = "topology.backpressure.high.watermark";
+    
+    public static final double DEFAULT_TOPOLOGY_BACKPRESSURE_HIGH_WATERMARK = 0.8;
+    
+    public static final String TOPOLOGY_BACKPRESSURE_LOW_WATERMARK = "topology.backpressure.low.watermark";
+    
+    public static final double DEFAULT_TOPOLOGY_BACKPRESSURE_LOW_WATERMARK = 0.3;
     
 }
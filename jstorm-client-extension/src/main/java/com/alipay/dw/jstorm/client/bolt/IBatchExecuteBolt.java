@@ -0,0 +1,25 @@
+package com.alipay.dw.jstorm.client.bolt;
+
+import java.util.List;
+
+import backtype.storm.task.IBolt;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * A bolt which executes tuples in batches
+ * 
+ * The executor drains at most topology.bolt.batch.size tuples, or the
+ * tuples arrived in topology.bolt.batch.timeout.us, from the receive
+ * queue and calls execute(List) instead of execute(Tuple).
+ * 
+ * The acks and fails of the batch's tuples done in execute(List) are
+ * sent together after it returns.
+ * 
+ * Every call gets a new list, the bolt may keep it, e.g. hand it to an
+ * asynchronous writer, after execute(List) returns.
+ * 
+ * @author longda
+ */
+public interface IBatchExecuteBolt extends IBolt {
+    void execute(List<Tuple> tuples);
+}
@@ -452,6 +452,20 @@ public class JStormUtils {
         }
     }
     
+    public static double parseDouble(Object o, double defaultValue) {
+        if (o == null) {
+            return defaultValue;
+        }
+
+        if (o instanceof String) {
+            return Double.parseDouble((String)o);
+        }else if (o instanceof Number) {
+            return ((Number)o).doubleValue();
+        }else {
+            return defaultValue;
+        }
+    }
+
     public static <V> Set<V> listToSet(List<V> list) {
         if (list == null) {
             return null;
@@ -0,0 +1,186 @@
+package com.alipay.dw.jstorm.common.stats;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Log-linear latency histogram, the values are microseconds
+ *
+ * Values below SUB_BUCKETS have their own bucket, every power of 2 above
+ * is split into SUB_BUCKETS linear buckets, so the relative error is
+ * at most 1/SUB_BUCKETS and the number of buckets is fixed. Two
+ * histograms are merged by adding their buckets.
+ *
+ * It is carried in thrift as list<i64> of (bucket index, count) pairs,
+ * see toList() and fromList()
+ *
+ * @author longda
+ *
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 3306617246219872571L;
+
+    public static final int   SUB_BUCKET_BITS  = 4;
+    public static final int   SUB_BUCKETS      = 1 << SUB_BUCKET_BITS;
+    // values >= 2^MAX_VALUE_BITS us (about 12 days) go to the last bucket
+    public static final int   MAX_VALUE_BITS   = 40;
+    public static final int   BUCKET_NUM       = (MAX_VALUE_BITS
+                                                       - SUB_BUCKET_BITS + 1)
+                                                       * SUB_BUCKETS;
+
+    // trimmed after the last non-zero bucket
+    private long[]            counts;
+    private long              total;
+
+    public LatencyHistogram() {
+        this.counts = new long[0];
+        this.total = 0;
+    }
+
+    public static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value >= (1L << MAX_VALUE_BITS)) {
+            return BUCKET_NUM - 1;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * the lowest value of the bucket
+     */
+    public static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exp = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub)) << (exp - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * the highest value of the bucket
+     */
+    public static long upperBound(int index) {
+        if (index >= BUCKET_NUM - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowerBound(index + 1) - 1;
+    }
+
+    private void ensure(int index) {
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, index + 1);
+        }
+    }
+
+    public void add(int index, long count) {
+        if (count == 0) {
+            return;
+        }
+        ensure(index);
+        counts[index] += count;
+        total += count;
+    }
+
+    public void record(long value) {
+        add(index(value), 1);
+    }
+
+    public void merge(LatencyHistogram other) {
+        if (other == null) {
+            return;
+        }
+        ensure(other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @param percent
+     *            such as 99.9
+     * @return the highest value of the bucket in which the percentile is,
+     *         0 if the histogram is empty
+     */
+    public long percentile(double percent) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(percent, 100d) / 100d);
+        rank = Math.max(rank, 1);
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    /**
+     * @return percentile in milliseconds
+     */
+    public double percentileMs(double percent) {
+        return percentile(percent) / 1000d;
+    }
+
+    /**
+     * @return (bucket index, count) pairs of the non-zero buckets
+     */
+    public List<Long> toList() {
+        List<Long> ret = new ArrayList<Long>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                ret.add(Long.valueOf(i));
+                ret.add(counts[i]);
+            }
+        }
+        return ret;
+    }
+
+    public static LatencyHistogram fromList(List<Long> list) {
+        LatencyHistogram ret = new LatencyHistogram();
+        if (list == null) {
+            return ret;
+        }
+        for (int i = 0; i + 1 < list.size(); i += 2) {
+            int index = (int) Math.min(list.get(i), BUCKET_NUM - 1);
+            ret.add(index, list.get(i + 1));
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof LatencyHistogram == false) {
+            return false;
+        }
+        LatencyHistogram other = (LatencyHistogram) obj;
+        return total == other.total && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + total + ", p50=" + percentile(50) + "us, p99="
+                + percentile(99) + "us, p999=" + percentile(99.9) + "us";
+    }
+}
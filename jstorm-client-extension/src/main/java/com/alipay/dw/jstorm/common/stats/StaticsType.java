@@ -7,5 +7,8 @@ public enum StaticsType {
     acked,
     failed,
     transferred,
-    process_latencies;
+    process_latencies,
+    // LatencyHistogram of ack(spout: complete) latency and bolt execute time
+    process_histograms,
+    execute_histograms;
 }
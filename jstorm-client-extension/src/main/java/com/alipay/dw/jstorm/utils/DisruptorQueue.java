@@ -2,24 +2,55 @@ package com.alipay.dw.jstorm.utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.mutable.MutableObject;
+import org.apache.log4j.Logger;
 
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
 import com.lmax.disruptor.Sequencer;
+import com.lmax.disruptor.SleepingWaitStrategy;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkProcessor;
+import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.util.Util;
 
+/**
+ * Bounded queue based on disruptor RingBuffer
+ * 
+ * There are two ways to consume the queue
+ * 1. register WorkHandlers and start the work processors
+ * 2. one consumer thread call poll/take, this is the default way
+ * 
+ * offer will block when the queue is full, 
+ * so the producer will be slowed down by the consumer 
+ * 
+ * @author longda
+ *
+ * @param <T>
+ */
 public class DisruptorQueue<T> {
+    private static final Logger             LOG     = Logger.getLogger(DisruptorQueue.class);
+    
+    public static final String              WAIT_STRATEGY_BLOCKING = "blocking";
+    public static final String              WAIT_STRATEGY_YIELDING = "yielding";
+    public static final String              WAIT_STRATEGY_SLEEPING = "sleeping";
+    public static final String              WAIT_STRATEGY_BUSYSPIN = "busyspin";
+    
     private final RingBuffer<MutableObject> ringBuffer;
     private final SequenceBarrier           sequenceBarrier;
     private final ExceptionHandler          exceptionHandler;
@@ -27,6 +58,9 @@ public class DisruptorQueue<T> {
     private final Sequence                  workSequence;
     private final AtomicBoolean             started = new AtomicBoolean(false);
     
+    // the sequence which has been consumed by poll/take
+    private final Sequence                  consumeSequence;
+    
     public DisruptorQueue(boolean isMultiProducer, int bufferSize,
             WaitStrategy waitStrategy) {
         if (isMultiProducer) {
@@ -41,9 +75,67 @@ public class DisruptorQueue<T> {
         exceptionHandler = new FatalExceptionHandler();
         workProcessors = new ArrayList<WorkProcessor>();
         workSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        
+        consumeSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        ringBuffer.addGatingSequences(consumeSequence);
+    }
+    
+    /**
+     * Create one queue according to the topology configuration
+     * 
+     * @param conf
+     * @param sizeKey
+     *            the configuration key of queue size
+     * @param defaultSize
+     * @param isMultiProducer
+     * @return
+     */
+    public static <T> DisruptorQueue<T> mkInstance(Map conf, String sizeKey,
+            int defaultSize, boolean isMultiProducer) {
+        int size = JStormUtils.parseInt(conf.get(sizeKey), defaultSize);
+        String waitStrategy = (String) conf
+                .get(ConfigExtension.TOPOLOGY_QUEUE_WAIT_STRATEGY);
+        
+        return new DisruptorQueue<T>(isMultiProducer, ceilingPowerOfTwo(size),
+                mkWaitStrategy(waitStrategy));
+    }
+    
+    public static WaitStrategy mkWaitStrategy(String name) {
+        if (WAIT_STRATEGY_YIELDING.equals(name)) {
+            return new YieldingWaitStrategy();
+        } else if (WAIT_STRATEGY_SLEEPING.equals(name)) {
+            return new SleepingWaitStrategy();
+        } else if (WAIT_STRATEGY_BUSYSPIN.equals(name)) {
+            return new BusySpinWaitStrategy();
+        } else {
+            if (name != null && WAIT_STRATEGY_BLOCKING.equals(name) == false) {
+                LOG.warn("Unknow wait strategy " + name + ", use "
+                        + WAIT_STRATEGY_BLOCKING);
+            }
+            return new BlockingWaitStrategy();
+        }
+    }
+    
+    /**
+     * RingBuffer's size must be power of 2
+     */
+    public static int ceilingPowerOfTwo(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        int ret = Integer.highestOneBit(size);
+        if (ret < size) {
+            ret <<= 1;
+        }
+        return ret;
     }
     
+    /**
+     * After registering WorkHandler, poll/take can't be used any more
+     */
     public void register(WorkHandler<T> handler) {
+        ringBuffer.removeGatingSequence(consumeSequence);
+        
         WorkProcessor workProcessor = new WorkProcessor(ringBuffer,
                 sequenceBarrier, new HandleWraper(handler), exceptionHandler,
                 workSequence);
@@ -121,12 +213,102 @@ public class DisruptorQueue<T> {
         started.set(false);
     }
     
+    /**
+     * Publish one object, it will block when the queue is full
+     */
     public void offer(T o) {
         long sequence = ringBuffer.next();
         ringBuffer.get(sequence).setValue(o);
         ringBuffer.publish(sequence);
     }
     
+    /**
+     * Publish one object without blocking
+     * 
+     * @return false if the queue is full
+     */
+    public boolean tryOffer(T o) {
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return false;
+        }
+        ringBuffer.get(sequence).setValue(o);
+        ringBuffer.publish(sequence);
+        return true;
+    }
+    
+    /**
+     * Non-blocking, only one thread can consume the queue
+     * 
+     * @return null if the queue is empty
+     */
+    public T poll() {
+        long next = consumeSequence.get() + 1;
+        if (ringBuffer.getCursor() < next) {
+            return null;
+        }
+        
+        if (ringBuffer.isPublished(next) == false) {
+            // the slot has been claimed but not published
+            return null;
+        }
+        
+        return consume(next);
+    }
+    
+    /**
+     * Wait with the WaitStrategy until one object is available,
+     * only one thread can consume the queue
+     * 
+     * @return null if the queue has been halted and is empty,
+     *         or the thread is interrupted
+     */
+    public T take() {
+        long next = consumeSequence.get() + 1;
+        try {
+            while (sequenceBarrier.waitFor(next) < next) {
+                // multi producer, wait the slot to be published
+            }
+        } catch (AlertException e) {
+            // halted, return the objects published before halting
+            return poll();
+        } catch (InterruptedException e) {
+            return null;
+        } catch (Exception e) {
+            LOG.warn("Failed to wait sequence " + next, e);
+            return null;
+        }
+        
+        return consume(next);
+    }
+    
+    private T consume(long sequence) {
+        MutableObject slot = ringBuffer.get(sequence);
+        T o = (T) slot.getValue();
+        // release the reference as soon as possible
+        slot.setValue(null);
+        consumeSequence.set(sequence);
+        return o;
+    }
+    
+    /**
+     * Wake up the thread blocking in take, 
+     * take will return null from now on
+     */
+    public void haltWithInterrupt() {
+        sequenceBarrier.alert();
+    }
+    
+    public long size() {
+        return ringBuffer.getCursor() - consumeSequence.get();
+    }
+    
+    public int capacity() {
+        return ringBuffer.getBufferSize();
+    }
+    
     public static class ObjectEventFactory implements
             EventFactory<MutableObject> {
         
@@ -1,48 +1,52 @@
 package com.alipay.dw.jstorm.utils;
 
-import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * Shuffle the Range,
  * This class is used in shuffle grouping, it is better than random,
  * which can't make sure balance.
  * 
+ * The range is kept in one int array and reshuffled in place when
+ * it has been used up, so nothing is allocated per call
+ * 
  * @author yannian
  * 
  */
 public class RandomRange {
-    private ArrayList<Integer> rr;
-    private Integer            amt;
+    private final int[]  rr;
+    private final Random random = new Random();
+    private int          pos;
     
     public RandomRange(int amt) {
-        this.amt = amt;
-        this.rr = rotating_random_range(amt);
+        this.rr = new int[amt];
+        for (int i = 0; i < amt; i++) {
+            rr[i] = i;
+        }
+        rotating_random_range();
     }
     
-    public Integer nextInt() {
+    public int nextInt() {
         return this.acquire_random_range_id();
     }
     
-    private ArrayList<Integer> rotating_random_range(int amt) {
-        
-        ArrayList<Integer> range = new ArrayList<Integer>();
-        for (int i = 0; i < amt; i++) {
-            range.add(i);
+    /**
+     * Fisher-Yates shuffle
+     */
+    private void rotating_random_range() {
+        for (int i = rr.length - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int tmp = rr[i];
+            rr[i] = rr[index];
+            rr[index] = tmp;
         }
-        
-        ArrayList<Integer> rtn = new ArrayList<Integer>();
-        for (int i = 0; i < amt; i++) {
-            int index = (int) (Math.random() * range.size());
-            rtn.add(range.remove(index));
-        }
-        
-        return rtn;
+        pos = 0;
     }
     
     private synchronized int acquire_random_range_id() {
-        int ret = this.rr.remove(0);
-        if (this.rr.size() == 0) {
-            this.rr.addAll(rotating_random_range(this.amt));
+        int ret = this.rr[pos++];
+        if (pos == rr.length) {
+            rotating_random_range();
         }
         return ret;
     }
@@ -0,0 +1,247 @@
+package com.alipay.dw.jstorm.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Expires keys that have not been updated in the configured number of seconds,
+ * replacement of TimeCacheMap/RotatingMap in the task executors
+ *
+ * The map is split into lock-striped segments. Every segment keeps its
+ * entries in a timing wheel: the entry is linked into the slot of its
+ * deadline, so get/put/remove/containsKey take O(1) time to run, and
+ * one tick only walks the slots which have passed.
+ *
+ * All entries of one map share the same timeout, so one wheel level
+ * covers the whole horizon. The wheel is driven by the worker's
+ * TimeoutTicker, no thread is started per map, call close() when the
+ * map is no longer used. The ExpiredCallback runs in the ticker thread,
+ * it must not block.
+ *
+ * An entry expires between expirationSecs and
+ * expirationSecs + max(expirationSecs / WHEEL_SLOTS, TICK_MS)
+ *
+ * @author longda
+ *
+ */
+public class TimeoutMap<K, V> implements TimeoutTicker.Tickable {
+    public static final int DEFAULT_SEGMENT_NUM = 16;
+
+    private static final int WHEEL_SLOTS        = 32;
+
+    public static interface ExpiredCallback<K, V> {
+        public void expire(K key, V val);
+    }
+
+    private final Segment<K, V>[]   segments;
+    private final int               segmentMask;
+    private final long              slotMs;
+    private final long              timeoutSlots;
+    private final ExpiredCallback   callback;
+
+    public TimeoutMap(int expirationSecs, int segmentNum,
+            ExpiredCallback<K, V> callback) {
+        if (expirationSecs <= 0) {
+            throw new IllegalArgumentException("expirationSecs must be > 0");
+        }
+
+        long timeoutMs = expirationSecs * 1000L;
+        this.slotMs = Math.max(TimeoutTicker.TICK_MS, timeoutMs / WHEEL_SLOTS);
+        this.timeoutSlots = (timeoutMs + slotMs - 1) / slotMs;
+
+        int ringSize = 1;
+        while (ringSize < timeoutSlots + 2) {
+            ringSize <<= 1;
+        }
+
+        int num = 1;
+        while (num < segmentNum) {
+            num <<= 1;
+        }
+        long currentSlot = System.currentTimeMillis() / slotMs;
+        this.segments = new Segment[num];
+        for (int i = 0; i < num; i++) {
+            segments[i] = new Segment<K, V>(ringSize, currentSlot);
+        }
+        this.segmentMask = num - 1;
+        this.callback = callback;
+
+        TimeoutTicker.getInstance().register(this);
+    }
+
+    public TimeoutMap(int expirationSecs, ExpiredCallback<K, V> callback) {
+        this(expirationSecs, DEFAULT_SEGMENT_NUM, callback);
+    }
+
+    public TimeoutMap(int expirationSecs) {
+        this(expirationSecs, DEFAULT_SEGMENT_NUM, null);
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & segmentMask];
+    }
+
+    public boolean containsKey(K key) {
+        return segmentFor(key).get(key) != null;
+    }
+
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * put or refresh the entry, its timeout starts from now
+     */
+    public void put(K key, V value) {
+        long deadline = System.currentTimeMillis() / slotMs + timeoutSlots;
+        segmentFor(key).put(key, value, deadline);
+    }
+
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void tick(long nowMs) {
+        long currentSlot = nowMs / slotMs;
+        for (Segment<K, V> segment : segments) {
+            List<Node<K, V>> dead = segment.expire(currentSlot);
+            if (dead == null || callback == null) {
+                continue;
+            }
+            for (Node<K, V> node : dead) {
+                callback.expire(node.key, node.value);
+            }
+        }
+    }
+
+    /**
+     * stop ticking this map, the entries won't expire any more
+     */
+    public void close() {
+        TimeoutTicker.getInstance().unregister(this);
+    }
+
+    static final class Node<K, V> {
+        K          key;
+        V          value;
+        long       slot;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node() {
+            prev = this;
+            next = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+
+        void linkBefore(Node<K, V> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+    }
+
+    static final class Segment<K, V> {
+        private final HashMap<K, Node<K, V>> entries = new HashMap<K, Node<K, V>>();
+        // sentinel of every wheel slot
+        private final Node<K, V>[]           wheel;
+        private final int                    wheelMask;
+        private long                         expiredSlot;
+
+        Segment(int ringSize, long currentSlot) {
+            wheel = new Node[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                wheel[i] = new Node<K, V>();
+            }
+            wheelMask = ringSize - 1;
+            expiredSlot = currentSlot;
+        }
+
+        synchronized V get(Object key) {
+            Node<K, V> node = entries.get(key);
+            return node == null ? null : node.value;
+        }
+
+        synchronized void put(K key, V value, long deadline) {
+            Node<K, V> node = entries.get(key);
+            if (node == null) {
+                node = new Node<K, V>();
+                node.key = key;
+                entries.put(key, node);
+            } else {
+                node.unlink();
+            }
+            node.value = value;
+            node.slot = deadline;
+            node.linkBefore(wheel[(int) (deadline & wheelMask)]);
+        }
+
+        synchronized V remove(Object key) {
+            Node<K, V> node = entries.remove(key);
+            if (node == null) {
+                return null;
+            }
+            node.unlink();
+            return node.value;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        /**
+         * @return the expired nodes, null if nothing expires
+         */
+        synchronized List<Node<K, V>> expire(long currentSlot) {
+            if (currentSlot <= expiredSlot) {
+                return null;
+            }
+
+            long from = expiredSlot + 1;
+            if (currentSlot - from > wheelMask) {
+                // walk every slot once
+                from = currentSlot - wheelMask;
+            }
+            expiredSlot = currentSlot;
+
+            List<Node<K, V>> dead = null;
+            for (long s = from; s <= currentSlot; s++) {
+                Node<K, V> head = wheel[(int) (s & wheelMask)];
+                Node<K, V> node = head.next;
+                while (node != head) {
+                    Node<K, V> next = node.next;
+                    if (node.slot <= currentSlot) {
+                        node.unlink();
+                        entries.remove(node.key);
+                        if (dead == null) {
+                            dead = new ArrayList<Node<K, V>>();
+                        }
+                        dead.add(node);
+                    }
+                    node = next;
+                }
+            }
+            return dead;
+        }
+    }
+}
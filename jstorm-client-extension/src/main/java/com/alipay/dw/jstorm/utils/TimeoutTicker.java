@@ -0,0 +1,81 @@
+package com.alipay.dw.jstorm.utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+import com.alipay.dw.jstorm.common.JStormUtils;
+
+/**
+ * The only expiry thread of one worker
+ *
+ * TimeCacheMap/RotatingMap start one cleaner thread per instance, instead
+ * every TimeoutMap registers itself here and one daemon thread ticks all
+ * of them every TICK_MS
+ *
+ * tick and the expired callbacks run in the ticker thread, they must
+ * never block, otherwise no map of the worker expires any more
+ *
+ * @author longda
+ *
+ */
+public class TimeoutTicker implements Runnable {
+    private static final Logger LOG     = Logger.getLogger(TimeoutTicker.class);
+
+    public static final long    TICK_MS = 100;
+
+    public static interface Tickable {
+        /**
+         * expire everything whose deadline is before nowMs, it must
+         * not block
+         */
+        public void tick(long nowMs);
+    }
+
+    private static TimeoutTicker                   instance;
+
+    private final CopyOnWriteArrayList<Tickable>   tickables = new CopyOnWriteArrayList<Tickable>();
+
+    public static synchronized TimeoutTicker getInstance() {
+        if (instance == null) {
+            instance = new TimeoutTicker();
+
+            Thread thread = new Thread(instance);
+            thread.setName("TimeoutTicker");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return instance;
+    }
+
+    private TimeoutTicker() {
+    }
+
+    public void register(Tickable tickable) {
+        tickables.add(tickable);
+    }
+
+    public void unregister(Tickable tickable) {
+        tickables.remove(tickable);
+    }
+
+    public int size() {
+        return tickables.size();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            JStormUtils.sleepMs(TICK_MS);
+
+            long now = System.currentTimeMillis();
+            for (Tickable tickable : tickables) {
+                try {
+                    tickable.tick(now);
+                } catch (Throwable e) {
+                    LOG.error("Failed to tick " + tickable, e);
+                }
+            }
+        }
+    }
+}
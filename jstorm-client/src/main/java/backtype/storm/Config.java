@@ -158,6 +158,19 @@ public class Config extends HashMap<String, Object> {
      * before nimbus considers it dead and drops the connection.
      */
     public static String NIMBUS_FILE_COPY_EXPIRATION_SECS = "nimbus.file.copy.expiration.secs";
+
+    /**
+     * Nimbus streams files on this port, clients upload the topology jar
+     * and supervisors download the topology code through it. 0 means
+     * disable, the files are copied by the Thrift interface in chunks.
+     */
+    public static String NIMBUS_FILE_SERVER_PORT = "nimbus.file.server.port";
+
+    /**
+     * Max bytes of one chunk when streaming files with nimbus, the client
+     * asks for its own value, and nimbus accepts at most its value.
+     */
+    public static String NIMBUS_FILE_CHUNK_SIZE = "nimbus.file.chunk.size";
     
     /**
      * This parameter is used to add additional classpath options for
@@ -377,11 +390,23 @@ public class Config extends HashMap<String, Object> {
      */
     public static String TOPOLOGY_FALL_BACK_ON_JAVA_SERIALIZATION="topology.fall.back.on.java.serialization";
 
+    /**
+     * Whether or not to keep the values of a received tuple serialized until
+     * they are accessed for the first time.
+     */
+    public static String TOPOLOGY_TUPLE_LAZY_DESERIALIZE="topology.tuple.lazy.deserialize";
+
     /**
      * Topology-specific options for the worker child process. This is used in addition to WORKER_CHILDOPTS.
      */
     public static String TOPOLOGY_WORKER_CHILDOPTS="topology.worker.childopts";
 
+    /**
+     * Max number of messages sent to a multilang subprocess in one batch, it only
+     * works when the subprocess chooses the msgpack serializer.
+     */
+    public static String TOPOLOGY_MULTILANG_BATCH_SIZE="topology.multilang.batch.size";
+
     /**
      * This config is available for TransactionalSpouts, and contains the id ( a String) for
      * the transactional topology. This id is used to store the state of the transactional
@@ -5,11 +5,14 @@ import backtype.storm.generated.InvalidTopologyException;
 import backtype.storm.generated.Nimbus;
 import backtype.storm.generated.StormTopology;
 import backtype.storm.utils.BufferFileInputStream;
+import backtype.storm.utils.FileClient;
 import backtype.storm.utils.NimbusClient;
 import backtype.storm.utils.Utils;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.apache.thrift.TException;
 import org.json.simple.JSONValue;
@@ -80,7 +83,37 @@ public class StormSubmitter {
         }
     }
     
+    /**
+     * stream the jar to the file server of nimbus, nimbus checks its md5
+     */
+    private static String streamJar(Map conf, int port, String localJar) throws IOException {
+        String host = (String) conf.get(Config.NIMBUS_HOST);
+        int chunkSize = Utils.getInt(Utils.get(conf, Config.NIMBUS_FILE_CHUNK_SIZE, 8 * 1024 * 1024));
+        int timeoutMs = Utils.getInt(Utils.get(conf, Config.NIMBUS_FILE_COPY_EXPIRATION_SECS, 30)) * 1000;
+
+        long start = System.currentTimeMillis();
+        FileClient client = new FileClient(host, port, timeoutMs);
+        try {
+            LOG.info("Streaming topology jar " + localJar + " to nimbus " + host + ":" + port);
+            String uploadLocation = client.write("stormjar-" + UUID.randomUUID() + ".jar", localJar, chunkSize);
+            LOG.info("Successfully streamed topology jar to " + uploadLocation + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return uploadLocation;
+        } finally {
+            client.close();
+        }
+    }
+
     public static String submitJar(Map conf, String localJar) {
+        int port = Utils.getInt(Utils.get(conf, Config.NIMBUS_FILE_SERVER_PORT, 0));
+        if(port > 0) {
+            try {
+                return streamJar(conf, port, localJar);
+            } catch(IOException e) {
+                LOG.warn("Failed to stream topology jar to nimbus, uploading it by thrift", e);
+            }
+        }
+
         NimbusClient client = NimbusClient.getConfiguredClient(conf);
         try {
             String uploadLocation = client.getClient().beginFileUpload();
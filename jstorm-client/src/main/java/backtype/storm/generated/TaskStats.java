@@ -30,6 +30,8 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
   private static final org.apache.thrift.protocol.TField ACKED_FIELD_DESC = new org.apache.thrift.protocol.TField("acked", org.apache.thrift.protocol.TType.MAP, (short)4);
   private static final org.apache.thrift.protocol.TField FAILED_FIELD_DESC = new org.apache.thrift.protocol.TField("failed", org.apache.thrift.protocol.TType.MAP, (short)5);
   private static final org.apache.thrift.protocol.TField PROCESS_MS_AVG_FIELD_DESC = new org.apache.thrift.protocol.TField("process_ms_avg", org.apache.thrift.protocol.TType.MAP, (short)6);
+  private static final org.apache.thrift.protocol.TField PROCESS_HISTOGRAMS_FIELD_DESC = new org.apache.thrift.protocol.TField("process_histograms", org.apache.thrift.protocol.TType.MAP, (short)7);
+  private static final org.apache.thrift.protocol.TField EXECUTE_HISTOGRAMS_FIELD_DESC = new org.apache.thrift.protocol.TField("execute_histograms", org.apache.thrift.protocol.TType.MAP, (short)8);
 
   private Map<String,Map<String,Long>> emitted; // required
   private Map<String,Map<String,Double>> send_tps; // required
@@ -37,6 +39,8 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
   private Map<String,Map<GlobalStreamId,Long>> acked; // required
   private Map<String,Map<GlobalStreamId,Long>> failed; // required
   private Map<String,Map<GlobalStreamId,Double>> process_ms_avg; // required
+  private Map<String,Map<GlobalStreamId,List<Long>>> process_histograms; // optional
+  private Map<String,Map<GlobalStreamId,List<Long>>> execute_histograms; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -45,7 +49,9 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
     RECV_TPS((short)3, "recv_tps"),
     ACKED((short)4, "acked"),
     FAILED((short)5, "failed"),
-    PROCESS_MS_AVG((short)6, "process_ms_avg");
+    PROCESS_MS_AVG((short)6, "process_ms_avg"),
+    PROCESS_HISTOGRAMS((short)7, "process_histograms"),
+    EXECUTE_HISTOGRAMS((short)8, "execute_histograms");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -72,6 +78,10 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
           return FAILED;
         case 6: // PROCESS_MS_AVG
           return PROCESS_MS_AVG;
+        case 7: // PROCESS_HISTOGRAMS
+          return PROCESS_HISTOGRAMS;
+        case 8: // EXECUTE_HISTOGRAMS
+          return EXECUTE_HISTOGRAMS;
         default:
           return null;
       }
@@ -152,6 +162,20 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
             new org.apache.thrift.meta_data.MapMetaData(org.apache.thrift.protocol.TType.MAP, 
                 new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, GlobalStreamId.class), 
                 new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)))));
+    tmpMap.put(_Fields.PROCESS_HISTOGRAMS, new org.apache.thrift.meta_data.FieldMetaData("process_histograms", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.MapMetaData(org.apache.thrift.protocol.TType.MAP, 
+            new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING), 
+            new org.apache.thrift.meta_data.MapMetaData(org.apache.thrift.protocol.TType.MAP, 
+                new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, GlobalStreamId.class), 
+                new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+                    new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64))))));
+    tmpMap.put(_Fields.EXECUTE_HISTOGRAMS, new org.apache.thrift.meta_data.FieldMetaData("execute_histograms", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.MapMetaData(org.apache.thrift.protocol.TType.MAP, 
+            new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING), 
+            new org.apache.thrift.meta_data.MapMetaData(org.apache.thrift.protocol.TType.MAP, 
+                new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, GlobalStreamId.class), 
+                new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+                    new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64))))));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(TaskStats.class, metaDataMap);
   }
@@ -336,6 +360,64 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
       }
       this.process_ms_avg = __this__process_ms_avg;
     }
+    if (other.is_set_process_histograms()) {
+      Map<String,Map<GlobalStreamId,List<Long>>> __this__process_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>();
+      for (Map.Entry<String, Map<GlobalStreamId,List<Long>>> other_element : other.process_histograms.entrySet()) {
+
+        String other_element_key = other_element.getKey();
+        Map<GlobalStreamId,List<Long>> other_element_value = other_element.getValue();
+
+        String __this__process_histograms_copy_key = other_element_key;
+
+        Map<GlobalStreamId,List<Long>> __this__process_histograms_copy_value = new HashMap<GlobalStreamId,List<Long>>();
+        for (Map.Entry<GlobalStreamId, List<Long>> other_element_value_element : other_element_value.entrySet()) {
+
+          GlobalStreamId other_element_value_element_key = other_element_value_element.getKey();
+          List<Long> other_element_value_element_value = other_element_value_element.getValue();
+
+          GlobalStreamId __this__process_histograms_copy_value_copy_key = new GlobalStreamId(other_element_value_element_key);
+
+          List<Long> __this__process_histograms_copy_value_copy_value = new ArrayList<Long>();
+          for (Long other_element_value_element_value_element : other_element_value_element_value) {
+            __this__process_histograms_copy_value_copy_value.add(other_element_value_element_value_element);
+          }
+
+          __this__process_histograms_copy_value.put(__this__process_histograms_copy_value_copy_key, __this__process_histograms_copy_value_copy_value);
+        }
+
+        __this__process_histograms.put(__this__process_histograms_copy_key, __this__process_histograms_copy_value);
+      }
+      this.process_histograms = __this__process_histograms;
+    }
+    if (other.is_set_execute_histograms()) {
+      Map<String,Map<GlobalStreamId,List<Long>>> __this__execute_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>();
+      for (Map.Entry<String, Map<GlobalStreamId,List<Long>>> other_element : other.execute_histograms.entrySet()) {
+
+        String other_element_key = other_element.getKey();
+        Map<GlobalStreamId,List<Long>> other_element_value = other_element.getValue();
+
+        String __this__execute_histograms_copy_key = other_element_key;
+
+        Map<GlobalStreamId,List<Long>> __this__execute_histograms_copy_value = new HashMap<GlobalStreamId,List<Long>>();
+        for (Map.Entry<GlobalStreamId, List<Long>> other_element_value_element : other_element_value.entrySet()) {
+
+          GlobalStreamId other_element_value_element_key = other_element_value_element.getKey();
+          List<Long> other_element_value_element_value = other_element_value_element.getValue();
+
+          GlobalStreamId __this__execute_histograms_copy_value_copy_key = new GlobalStreamId(other_element_value_element_key);
+
+          List<Long> __this__execute_histograms_copy_value_copy_value = new ArrayList<Long>();
+          for (Long other_element_value_element_value_element : other_element_value_element_value) {
+            __this__execute_histograms_copy_value_copy_value.add(other_element_value_element_value_element);
+          }
+
+          __this__execute_histograms_copy_value.put(__this__execute_histograms_copy_value_copy_key, __this__execute_histograms_copy_value_copy_value);
+        }
+
+        __this__execute_histograms.put(__this__execute_histograms_copy_key, __this__execute_histograms_copy_value);
+      }
+      this.execute_histograms = __this__execute_histograms;
+    }
   }
 
   public TaskStats deepCopy() {
@@ -350,6 +432,8 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
     this.acked = null;
     this.failed = null;
     this.process_ms_avg = null;
+    this.process_histograms = null;
+    this.execute_histograms = null;
   }
 
   public int get_emitted_size() {
@@ -556,6 +640,74 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
     }
   }
 
+  public int get_process_histograms_size() {
+    return (this.process_histograms == null) ? 0 : this.process_histograms.size();
+  }
+
+  public void put_to_process_histograms(String key, Map<GlobalStreamId,List<Long>> val) {
+    if (this.process_histograms == null) {
+      this.process_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>();
+    }
+    this.process_histograms.put(key, val);
+  }
+
+  public Map<String,Map<GlobalStreamId,List<Long>>> get_process_histograms() {
+    return this.process_histograms;
+  }
+
+  public void set_process_histograms(Map<String,Map<GlobalStreamId,List<Long>>> process_histograms) {
+    this.process_histograms = process_histograms;
+  }
+
+  public void unset_process_histograms() {
+    this.process_histograms = null;
+  }
+
+  /** Returns true if field process_histograms is set (has been assigned a value) and false otherwise */
+  public boolean is_set_process_histograms() {
+    return this.process_histograms != null;
+  }
+
+  public void set_process_histograms_isSet(boolean value) {
+    if (!value) {
+      this.process_histograms = null;
+    }
+  }
+
+  public int get_execute_histograms_size() {
+    return (this.execute_histograms == null) ? 0 : this.execute_histograms.size();
+  }
+
+  public void put_to_execute_histograms(String key, Map<GlobalStreamId,List<Long>> val) {
+    if (this.execute_histograms == null) {
+      this.execute_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>();
+    }
+    this.execute_histograms.put(key, val);
+  }
+
+  public Map<String,Map<GlobalStreamId,List<Long>>> get_execute_histograms() {
+    return this.execute_histograms;
+  }
+
+  public void set_execute_histograms(Map<String,Map<GlobalStreamId,List<Long>>> execute_histograms) {
+    this.execute_histograms = execute_histograms;
+  }
+
+  public void unset_execute_histograms() {
+    this.execute_histograms = null;
+  }
+
+  /** Returns true if field execute_histograms is set (has been assigned a value) and false otherwise */
+  public boolean is_set_execute_histograms() {
+    return this.execute_histograms != null;
+  }
+
+  public void set_execute_histograms_isSet(boolean value) {
+    if (!value) {
+      this.execute_histograms = null;
+    }
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case EMITTED:
@@ -606,6 +758,22 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
       }
       break;
 
+    case PROCESS_HISTOGRAMS:
+      if (value == null) {
+        unset_process_histograms();
+      } else {
+        set_process_histograms((Map<String,Map<GlobalStreamId,List<Long>>>)value);
+      }
+      break;
+
+    case EXECUTE_HISTOGRAMS:
+      if (value == null) {
+        unset_execute_histograms();
+      } else {
+        set_execute_histograms((Map<String,Map<GlobalStreamId,List<Long>>>)value);
+      }
+      break;
+
     }
   }
 
@@ -629,6 +797,12 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
     case PROCESS_MS_AVG:
       return get_process_ms_avg();
 
+    case PROCESS_HISTOGRAMS:
+      return get_process_histograms();
+
+    case EXECUTE_HISTOGRAMS:
+      return get_execute_histograms();
+
     }
     throw new IllegalStateException();
   }
@@ -652,6 +826,10 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
       return is_set_failed();
     case PROCESS_MS_AVG:
       return is_set_process_ms_avg();
+    case PROCESS_HISTOGRAMS:
+      return is_set_process_histograms();
+    case EXECUTE_HISTOGRAMS:
+      return is_set_execute_histograms();
     }
     throw new IllegalStateException();
   }
@@ -723,6 +901,24 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
         return false;
     }
 
+    boolean this_present_process_histograms = true && this.is_set_process_histograms();
+    boolean that_present_process_histograms = true && that.is_set_process_histograms();
+    if (this_present_process_histograms || that_present_process_histograms) {
+      if (!(this_present_process_histograms && that_present_process_histograms))
+        return false;
+      if (!this.process_histograms.equals(that.process_histograms))
+        return false;
+    }
+
+    boolean this_present_execute_histograms = true && this.is_set_execute_histograms();
+    boolean that_present_execute_histograms = true && that.is_set_execute_histograms();
+    if (this_present_execute_histograms || that_present_execute_histograms) {
+      if (!(this_present_execute_histograms && that_present_execute_histograms))
+        return false;
+      if (!this.execute_histograms.equals(that.execute_histograms))
+        return false;
+    }
+
     return true;
   }
 
@@ -760,6 +956,16 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
     if (present_process_ms_avg)
       builder.append(process_ms_avg);
 
+    boolean present_process_histograms = true && (is_set_process_histograms());
+    builder.append(present_process_histograms);
+    if (present_process_histograms)
+      builder.append(process_histograms);
+
+    boolean present_execute_histograms = true && (is_set_execute_histograms());
+    builder.append(present_execute_histograms);
+    if (present_execute_histograms)
+      builder.append(execute_histograms);
+
     return builder.toHashCode();
   }
 
@@ -831,6 +1037,26 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(is_set_process_histograms()).compareTo(typedOther.is_set_process_histograms());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (is_set_process_histograms()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.process_histograms, typedOther.process_histograms);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(is_set_execute_histograms()).compareTo(typedOther.is_set_execute_histograms());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (is_set_execute_histograms()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.execute_histograms, typedOther.execute_histograms);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -1038,6 +1264,90 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
           }
           break;
+        case 7: // PROCESS_HISTOGRAMS
+          if (field.type == org.apache.thrift.protocol.TType.MAP) {
+            {
+              org.apache.thrift.protocol.TMap _map200 = iprot.readMapBegin();
+              this.process_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>(2*_map200.size);
+              for (int _i201 = 0; _i201 < _map200.size; ++_i201)
+              {
+                String _key202; // required
+                Map<GlobalStreamId,List<Long>> _val203; // required
+                _key202 = iprot.readString();
+                {
+                  org.apache.thrift.protocol.TMap _map204 = iprot.readMapBegin();
+                  _val203 = new HashMap<GlobalStreamId,List<Long>>(2*_map204.size);
+                  for (int _i205 = 0; _i205 < _map204.size; ++_i205)
+                  {
+                    GlobalStreamId _key206; // required
+                    List<Long> _val207; // required
+                    _key206 = new GlobalStreamId();
+                    _key206.read(iprot);
+                    {
+                      org.apache.thrift.protocol.TList _list208 = iprot.readListBegin();
+                      _val207 = new ArrayList<Long>(_list208.size);
+                      for (int _i209 = 0; _i209 < _list208.size; ++_i209)
+                      {
+                        long _elem210; // required
+                        _elem210 = iprot.readI64();
+                        _val207.add(_elem210);
+                      }
+                      iprot.readListEnd();
+                    }
+                    _val203.put(_key206, _val207);
+                  }
+                  iprot.readMapEnd();
+                }
+                this.process_histograms.put(_key202, _val203);
+              }
+              iprot.readMapEnd();
+            }
+          } else { 
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+          }
+          break;
+        case 8: // EXECUTE_HISTOGRAMS
+          if (field.type == org.apache.thrift.protocol.TType.MAP) {
+            {
+              org.apache.thrift.protocol.TMap _map211 = iprot.readMapBegin();
+              this.execute_histograms = new HashMap<String,Map<GlobalStreamId,List<Long>>>(2*_map211.size);
+              for (int _i212 = 0; _i212 < _map211.size; ++_i212)
+              {
+                String _key213; // required
+                Map<GlobalStreamId,List<Long>> _val214; // required
+                _key213 = iprot.readString();
+                {
+                  org.apache.thrift.protocol.TMap _map215 = iprot.readMapBegin();
+                  _val214 = new HashMap<GlobalStreamId,List<Long>>(2*_map215.size);
+                  for (int _i216 = 0; _i216 < _map215.size; ++_i216)
+                  {
+                    GlobalStreamId _key217; // required
+                    List<Long> _val218; // required
+                    _key217 = new GlobalStreamId();
+                    _key217.read(iprot);
+                    {
+                      org.apache.thrift.protocol.TList _list219 = iprot.readListBegin();
+                      _val218 = new ArrayList<Long>(_list219.size);
+                      for (int _i220 = 0; _i220 < _list219.size; ++_i220)
+                      {
+                        long _elem221; // required
+                        _elem221 = iprot.readI64();
+                        _val218.add(_elem221);
+                      }
+                      iprot.readListEnd();
+                    }
+                    _val214.put(_key217, _val218);
+                  }
+                  iprot.readMapEnd();
+                }
+                this.execute_histograms.put(_key213, _val214);
+              }
+              iprot.readMapEnd();
+            }
+          } else { 
+            org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
+          }
+          break;
         default:
           org.apache.thrift.protocol.TProtocolUtil.skip(iprot, field.type);
       }
@@ -1177,6 +1487,66 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
       }
       oprot.writeFieldEnd();
     }
+    if (this.process_histograms != null) {
+      if (is_set_process_histograms()) {
+        oprot.writeFieldBegin(PROCESS_HISTOGRAMS_FIELD_DESC);
+        {
+          oprot.writeMapBegin(new org.apache.thrift.protocol.TMap(org.apache.thrift.protocol.TType.STRING, org.apache.thrift.protocol.TType.MAP, this.process_histograms.size()));
+          for (Map.Entry<String, Map<GlobalStreamId,List<Long>>> _iter222 : this.process_histograms.entrySet())
+          {
+            oprot.writeString(_iter222.getKey());
+            {
+              oprot.writeMapBegin(new org.apache.thrift.protocol.TMap(org.apache.thrift.protocol.TType.STRUCT, org.apache.thrift.protocol.TType.LIST, _iter222.getValue().size()));
+              for (Map.Entry<GlobalStreamId, List<Long>> _iter223 : _iter222.getValue().entrySet())
+              {
+                _iter223.getKey().write(oprot);
+                {
+                  oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.I64, _iter223.getValue().size()));
+                  for (long _iter224 : _iter223.getValue())
+                  {
+                    oprot.writeI64(_iter224);
+                  }
+                  oprot.writeListEnd();
+                }
+              }
+              oprot.writeMapEnd();
+            }
+          }
+          oprot.writeMapEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+    }
+    if (this.execute_histograms != null) {
+      if (is_set_execute_histograms()) {
+        oprot.writeFieldBegin(EXECUTE_HISTOGRAMS_FIELD_DESC);
+        {
+          oprot.writeMapBegin(new org.apache.thrift.protocol.TMap(org.apache.thrift.protocol.TType.STRING, org.apache.thrift.protocol.TType.MAP, this.execute_histograms.size()));
+          for (Map.Entry<String, Map<GlobalStreamId,List<Long>>> _iter225 : this.execute_histograms.entrySet())
+          {
+            oprot.writeString(_iter225.getKey());
+            {
+              oprot.writeMapBegin(new org.apache.thrift.protocol.TMap(org.apache.thrift.protocol.TType.STRUCT, org.apache.thrift.protocol.TType.LIST, _iter225.getValue().size()));
+              for (Map.Entry<GlobalStreamId, List<Long>> _iter226 : _iter225.getValue().entrySet())
+              {
+                _iter226.getKey().write(oprot);
+                {
+                  oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.I64, _iter226.getValue().size()));
+                  for (long _iter227 : _iter226.getValue())
+                  {
+                    oprot.writeI64(_iter227);
+                  }
+                  oprot.writeListEnd();
+                }
+              }
+              oprot.writeMapEnd();
+            }
+          }
+          oprot.writeMapEnd();
+        }
+        oprot.writeFieldEnd();
+      }
+    }
     oprot.writeFieldStop();
     oprot.writeStructEnd();
   }
@@ -1233,6 +1603,26 @@ public class TaskStats implements org.apache.thrift.TBase<TaskStats, TaskStats._
       sb.append(this.process_ms_avg);
     }
     first = false;
+    if (is_set_process_histograms()) {
+      if (!first) sb.append(", ");
+      sb.append("process_histograms:");
+      if (this.process_histograms == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.process_histograms);
+      }
+      first = false;
+    }
+    if (is_set_execute_histograms()) {
+      if (!first) sb.append(", ");
+      sb.append("execute_histograms:");
+      if (this.execute_histograms == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.execute_histograms);
+      }
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
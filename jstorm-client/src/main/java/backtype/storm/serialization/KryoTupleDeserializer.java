@@ -1,9 +1,11 @@
 package backtype.storm.serialization;
 
+import backtype.storm.Config;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.MessageId;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.utils.ThreadResourceManager;
+import backtype.storm.utils.Utils;
 import backtype.storm.utils.WritableUtils;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
@@ -15,14 +17,16 @@ public class KryoTupleDeserializer implements ITupleDeserializer {
     public static final boolean USE_RAW_PACKET = true;
     
     ThreadResourceManager<Worker> _manager;
+    boolean _lazy;
     
     public KryoTupleDeserializer(final Map conf, final TopologyContext context) {
         _manager = new ThreadResourceManager<Worker>(new ThreadResourceManager.ResourceFactory<Worker>() {
             @Override
             public Worker makeResource() {
-                return new Worker(conf, context);
+                return new Worker(conf, context, KryoTupleDeserializer.this);
             }           
         });
+        _lazy = (Boolean) Utils.get(conf, Config.TOPOLOGY_TUPLE_LAZY_DESERIALIZE, Boolean.FALSE);
     }
     
     @Override
@@ -35,33 +39,99 @@ public class KryoTupleDeserializer implements ITupleDeserializer {
         }
     }
     
+    /**
+     * decode the tuple values which start at offset, used by LazyTuple
+     */
+    public List<Object> deserializeValues(byte[] ser, int offset) {
+        Worker worker = _manager.acquire();        
+        try {
+            return worker.deserializeValues(ser, offset);
+        } finally {
+            _manager.release(worker);
+        }
+    }
+    
+    /**
+     * ByteArrayInputStream which can be pointed to another packet,
+     * so one Worker reads all packets through the same streams
+     */
+    static class PacketInputStream extends ByteArrayInputStream {
+        private static final byte[] EMPTY = new byte[0];
+        
+        public PacketInputStream() {
+            super(EMPTY);
+        }
+        
+        public void reset(byte[] buf, int offset) {
+            this.buf = buf;
+            this.pos = offset;
+            this.count = buf.length;
+            this.mark = offset;
+        }
+        
+        public int position() {
+            return pos;
+        }
+        
+        public void clear() {
+            reset(EMPTY, 0);
+        }
+    }
+    
     public static class Worker implements ITupleDeserializer {
         TopologyContext _context;
         KryoValuesDeserializer _kryo;
         SerializationFactory.IdDictionary _ids;
+        KryoTupleDeserializer _parent;
+        PacketInputStream _bin;
+        DataInputStream _in;
     
         public Worker(Map conf, TopologyContext context) {
+            this(conf, context, null);
+        }
+        
+        public Worker(Map conf, TopologyContext context, KryoTupleDeserializer parent) {
             _kryo = new KryoValuesDeserializer(conf);
             _context = context;
             _ids = new SerializationFactory.IdDictionary(context.getRawTopology());
+            _parent = parent;
+            _bin = new PacketInputStream();
+            _in = new DataInputStream(_bin);
         }
 
         public Tuple deserialize(byte[] ser) {
             try {
-                ByteArrayInputStream bin = new ByteArrayInputStream(ser);
-                DataInputStream in = new DataInputStream(bin);
+                _bin.reset(ser, 0);
                 if (USE_RAW_PACKET == true) {
-                    int targetTaskId = in.readInt();
+                    int targetTaskId = _in.readInt();
                 }
-                int taskId = WritableUtils.readVInt(in);
-                int streamId = WritableUtils.readVInt(in);
+                int taskId = WritableUtils.readVInt(_in);
+                int streamId = WritableUtils.readVInt(_in);
                 String componentName = _context.getComponentId(taskId);
                 String streamName = _ids.getStreamName(componentName, streamId);
-                MessageId id = MessageId.deserialize(in);
-                List<Object> values = _kryo.deserializeFrom(bin);
+                MessageId id = MessageId.deserialize(_in);
+                if (_parent != null && _parent._lazy == true) {
+                    return new LazyTuple(_context, _parent, ser, _bin.position(), 
+                            taskId, streamName, id);
+                }
+                List<Object> values = _kryo.deserializeFrom(_bin);
                 return new Tuple(_context, values, taskId, streamName, id);
             } catch(IOException e) {
                 throw new RuntimeException(e);
+            } finally {
+                // don't hold the packet after the tuple is decoded
+                _bin.clear();
+            }
+        }
+        
+        public List<Object> deserializeValues(byte[] ser, int offset) {
+            try {
+                _bin.reset(ser, offset);
+                return _kryo.deserializeFrom(_bin);
+            } catch(IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                _bin.clear();
             }
         }
     }
@@ -32,6 +32,19 @@ public class KryoTupleSerializer implements ITupleSerializer {
         }
     }
 
+    /**
+     * Serialize the tuple directly into the caller's stream, 
+     * no intermediate byte array is created
+     */
+    public void serializeInto(Tuple tuple, DataOutputStream out) {
+        Worker worker = _manager.acquire();        
+        try {
+            worker.serializeInto(tuple, out);
+        } finally {
+            _manager.release(worker);
+        }
+    }
+
     @Override
     public long crc32(Tuple tuple) {
         Worker worker = _manager.acquire();        
@@ -57,13 +70,17 @@ public class KryoTupleSerializer implements ITupleSerializer {
         }
 
         public byte[] serialize(Tuple tuple) {
+            _outputter.reset();
+            serializeInto(tuple, _dataOutputter);
+            return _outputter.toByteArray();
+        }
+
+        public void serializeInto(Tuple tuple, DataOutputStream out) {
             try {
-                _outputter.reset();
-                WritableUtils.writeVInt(_dataOutputter, tuple.getSourceTask());
-                WritableUtils.writeVInt(_dataOutputter, _ids.getStreamId(tuple.getSourceComponent(), tuple.getSourceStreamId()));
-                tuple.getMessageId().serialize(_dataOutputter);
-                _kryo.serializeInto(tuple.getValues(), _outputter);
-                return _outputter.toByteArray();
+                WritableUtils.writeVInt(out, tuple.getSourceTask());
+                WritableUtils.writeVInt(out, _ids.getStreamId(tuple.getSourceComponent(), tuple.getSourceStreamId()));
+                tuple.getMessageId().serialize(out);
+                _kryo.serializeInto(tuple.getValues(), out);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -0,0 +1,48 @@
+package backtype.storm.serialization;
+
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.MessageId;
+import backtype.storm.tuple.Tuple;
+import java.util.List;
+
+/**
+ * Tuple whose values stay serialized in the received packet
+ * until they are touched for the first time.
+ * 
+ * Tuples which are only acked, counted or dropped never pay for
+ * the Kryo decoding of their values.
+ */
+class LazyTuple extends Tuple {
+    private final TopologyContext _context;
+    private final KryoTupleDeserializer _deserializer;
+    private byte[] _ser;
+    private final int _offset;
+    private volatile List<Object> _values;
+    
+    LazyTuple(TopologyContext context, KryoTupleDeserializer deserializer, 
+            byte[] ser, int offset, int taskId, String streamId, MessageId id) {
+        super(context, taskId, streamId, id);
+        _context = context;
+        _deserializer = deserializer;
+        _ser = ser;
+        _offset = offset;
+    }
+    
+    @Override
+    public List<Object> getValues() {
+        List<Object> values = _values;
+        if (values != null) {
+            return values;
+        }
+        
+        synchronized (this) {
+            if (_values == null) {
+                values = _deserializer.deserializeValues(_ser, _offset);
+                checkFields(_context, values, getSourceTask(), getSourceStreamId());
+                _values = values;
+                _ser = null;
+            }
+            return _values;
+        }
+    }
+}
@@ -1,22 +1,32 @@
 package backtype.storm.spout;
 
+import backtype.storm.Config;
 import backtype.storm.generated.ShellComponent;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.utils.ShellProcess;
 import backtype.storm.utils.Utils;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
 import java.io.IOException;
 import org.apache.log4j.Logger;
 import org.json.simple.JSONObject;
 
-
+/**
+ * A spout that shells out to another process, see ShellBolt.
+ *
+ * If the subprocess chooses the msgpack serializer, the acks and fails are
+ * kept and sent together with the next "next" command in one frame, the
+ * subprocess answers the whole frame with one "sync".
+ */
 public class ShellSpout implements ISpout {
     public static Logger LOG = Logger.getLogger(ShellSpout.class);
 
     private SpoutOutputCollector _collector;
     private String[] _command;
     private ShellProcess _process;
+    private int _batchSize;
+    private List<Object> _pendingCommands = new ArrayList<Object>();
 
     public ShellSpout(ShellComponent component) {
         this(component.get_execution_command(), component.get_script());
@@ -30,6 +40,7 @@ public class ShellSpout implements ISpout {
                      SpoutOutputCollector collector) {
         _process = new ShellProcess(_command);
         _collector = collector;
+        _batchSize = Utils.getInt(Utils.get(stormConf, Config.TOPOLOGY_MULTILANG_BATCH_SIZE, 100));
 
         try {
             Number subpid = _process.launch(stormConf, context);
@@ -50,11 +61,41 @@ public class ShellSpout implements ISpout {
             _next.put("command", "next");
         }
 
-        querySubprocess(_next);
+        if (_process.isBatched()) {
+            _pendingCommands.add(_next);
+            flushCommands();
+        } else {
+            querySubprocess(_next);
+        }
+    }
+
+    private void batchCommand(String command, Object msgId) {
+        JSONObject obj = new JSONObject();
+        obj.put("command", command);
+        obj.put("id", msgId);
+        _pendingCommands.add(obj);
+        if (_pendingCommands.size() >= _batchSize) {
+            flushCommands();
+        }
+    }
+
+    private void flushCommands() {
+        try {
+            _process.writeMessages(_pendingCommands);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            _pendingCommands.clear();
+        }
+        waitSync();
     }
 
     private JSONObject _ack;
     public void ack(Object msgId) {
+        if (_process.isBatched()) {
+            batchCommand("ack", msgId);
+            return;
+        }
         if (_ack == null) {
             _ack = new JSONObject();
             _ack.put("command", "ack");
@@ -66,6 +107,10 @@ public class ShellSpout implements ISpout {
 
     private JSONObject _fail;
     public void fail(Object msgId) {
+        if (_process.isBatched()) {
+            batchCommand("fail", msgId);
+            return;
+        }
         if (_fail == null) {
             _fail = new JSONObject();
             _fail.put("command", "fail");
@@ -78,7 +123,14 @@ public class ShellSpout implements ISpout {
     private void querySubprocess(Object query) {
         try {
             _process.writeMessage(query);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        waitSync();
+    }
 
+    private void waitSync() {
+        try {
             while (true) {
                 JSONObject action = _process.readMessage();
                 String command = (String) action.get("command");
@@ -95,7 +147,9 @@ public class ShellSpout implements ISpout {
                     Object messageId = (Object) action.get("id");
                     if (task == null) {
                         List<Integer> outtasks = _collector.emit(stream, tuple, messageId);
-                        _process.writeMessage(outtasks);
+                        if (!Boolean.FALSE.equals(action.get("need_task_ids"))) {
+                            _process.writeMessage(outtasks);
+                        }
                     } else {
                         _collector.emitDirect((int)task.longValue(), stream, tuple, messageId);
                     }
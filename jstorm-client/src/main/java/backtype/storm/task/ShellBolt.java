@@ -1,5 +1,6 @@
 package backtype.storm.task;
 
+import backtype.storm.Config;
 import backtype.storm.generated.ShellComponent;
 import backtype.storm.tuple.MessageId;
 import backtype.storm.tuple.Tuple;
@@ -22,6 +23,11 @@ import org.json.simple.JSONObject;
  * line library is required to implement that protocol, and adapter libraries
  * currently exist for Ruby and Python.
  *
+ * <p>If the subprocess chooses the msgpack serializer (see {@link ShellProcess}),
+ * the pending tuples are sent to it in batches of at most topology.multilang.batch.size,
+ * and it can send its emits and acks in batches too. An emit with "need_task_ids"
+ * false isn't answered with the task ids.</p>
+ *
  * <p>To run a ShellBolt on a cluster, the scripts that are shelled out to must be
  * in the resources directory within the jar submitted to the master.
  * During development/testing on a local machine, that resources directory just
@@ -56,6 +62,7 @@ public class ShellBolt implements IBolt {
     
     private Thread _readerThread;
     private Thread _writerThread;
+    private int _batchSize;
 
     public ShellBolt(ShellComponent component) {
         this(component.get_execution_command(), component.get_script());
@@ -69,6 +76,7 @@ public class ShellBolt implements IBolt {
                         final OutputCollector collector) {
         _process = new ShellProcess(_command);
         _collector = collector;
+        _batchSize = Utils.getInt(Utils.get(stormConf, Config.TOPOLOGY_MULTILANG_BATCH_SIZE, 100));
 
         try {
             //subprocesses must send their pid first thing
@@ -111,12 +119,22 @@ public class ShellBolt implements IBolt {
 
         _writerThread = new Thread(new Runnable() {
             public void run() {
+                List<Object> batch = new ArrayList<Object>();
                 while (_running) {
                     try {
                         Object write = _pendingWrites.poll(1, SECONDS);
-                        if (write != null) {
+                        if (write == null) {
+                            continue;
+                        }
+                        if (!_process.isBatched()) {
                             _process.writeMessage(write);
+                            continue;
                         }
+                        // send all the pending tuples in one frame
+                        batch.clear();
+                        batch.add(write);
+                        _pendingWrites.drainTo(batch, _batchSize - 1);
+                        _process.writeMessages(batch);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     } catch (InterruptedException e) {
@@ -190,7 +208,9 @@ public class ShellBolt implements IBolt {
         }
         if(task==null) {
             List<Integer> outtasks = _collector.emit(stream, anchors, tuple);
-            _pendingWrites.put(outtasks);
+            if(!Boolean.FALSE.equals(action.get("need_task_ids"))) {
+                _pendingWrites.put(outtasks);
+            }
         } else {
             _collector.emitDirect((int)task.longValue(), stream, anchors, tuple);
         }
@@ -10,48 +10,156 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+/**
+ * The anchors (root ids) of a tuple and the xor-ed edge ids of every anchor
+ *
+ * The pairs are kept in two primitive long arrays sorted by anchor,
+ * the common single-anchor case doesn't allocate any array.
+ * Use size/getAnchor/getId to walk the pairs without boxing,
+ * getAnchorsToIds is only kept for compatibility.
+ */
 public class MessageId {
-    private Map<Long, Long> _anchorsToIds;
-    
+    private static final long[]    EMPTY      = new long[0];
+    private static final MessageId UNANCHORED = new MessageId(EMPTY, EMPTY, 0);
+
+    private final int    _size;
+    // single anchor fast path
+    private final long   _anchor;
+    private final long   _id;
+    // used when _size > 1, sorted by anchor
+    private final long[] _anchors;
+    private final long[] _ids;
+
     public static long generateId() {
         return Utils.randomLong();
     }
 
     public static MessageId makeUnanchored() {
-        return makeId(new HashMap<Long, Long>());
+        return UNANCHORED;
     }
-        
+
     public static MessageId makeId(Map<Long, Long> anchorsToIds) {
-        return new MessageId(anchorsToIds);
+        Builder builder = new Builder(anchorsToIds.size());
+        for(Entry<Long, Long> anchorToId: anchorsToIds.entrySet()) {
+            builder.xor(anchorToId.getKey(), anchorToId.getValue());
+        }
+        return builder.build();
     }
-        
+
     public static MessageId makeRootId(long id, long val) {
-        Map<Long, Long> anchorsToIds = new HashMap<Long, Long>();
-        anchorsToIds.put(id, val);
-        return new MessageId(anchorsToIds);
+        return new MessageId(id, val);
+    }
+
+    private MessageId(long anchor, long id) {
+        _size = 1;
+        _anchor = anchor;
+        _id = id;
+        _anchors = null;
+        _ids = null;
+    }
+
+    /**
+     * anchors must be distinct, they are sorted in place
+     */
+    private MessageId(long[] anchors, long[] ids, int size) {
+        sort(anchors, ids, size);
+        _size = size;
+        _anchor = 0;
+        _id = 0;
+        _anchors = anchors;
+        _ids = ids;
+    }
+
+    private static void sort(long[] anchors, long[] ids, int size) {
+        // insertion sort, there are only a few anchors
+        for(int i=1; i<size; i++) {
+            long anchor = anchors[i];
+            long id = ids[i];
+            int j = i - 1;
+            while(j >= 0 && anchors[j] > anchor) {
+                anchors[j + 1] = anchors[j];
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            anchors[j + 1] = anchor;
+            ids[j + 1] = id;
+        }
+    }
+
+    /**
+     * Returns the number of anchors
+     */
+    public int size() {
+        return _size;
     }
-    
-    protected MessageId(Map<Long, Long> anchorsToIds) {
-        _anchorsToIds = anchorsToIds;
+
+    public long getAnchor(int i) {
+        if(_anchors == null) {
+            if(i != 0 || _size == 0) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+            }
+            return _anchor;
+        }
+        if(i >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+        }
+        return _anchors[i];
+    }
+
+    public long getId(int i) {
+        if(_anchors == null) {
+            if(i != 0 || _size == 0) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+            }
+            return _id;
+        }
+        if(i >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + _size);
+        }
+        return _ids[i];
     }
 
+    /**
+     * Boxes every pair, use size/getAnchor/getId in the hot path
+     */
     public Map<Long, Long> getAnchorsToIds() {
-        return _anchorsToIds;
+        Map<Long, Long> anchorsToIds = new HashMap<Long, Long>();
+        for(int i=0; i<_size; i++) {
+            anchorsToIds.put(getAnchor(i), getId(i));
+        }
+        return anchorsToIds;
     }
 
     public Set<Long> getAnchors() {
-        return _anchorsToIds.keySet();
-    }    
-    
+        return getAnchorsToIds().keySet();
+    }
+
     @Override
     public int hashCode() {
-        return _anchorsToIds.hashCode();
+        int hash = _size;
+        for(int i=0; i<_size; i++) {
+            long anchor = getAnchor(i);
+            long id = getId(i);
+            hash = 31 * hash + (int) (anchor ^ (anchor >>> 32));
+            hash = 31 * hash + (int) (id ^ (id >>> 32));
+        }
+        return hash;
     }
 
     @Override
     public boolean equals(Object other) {
         if(other instanceof MessageId) {
-            return _anchorsToIds.equals(((MessageId) other)._anchorsToIds);
+            MessageId o = (MessageId) other;
+            if(_size != o._size) {
+                return false;
+            }
+            // both sides are sorted by anchor
+            for(int i=0; i<_size; i++) {
+                if(getAnchor(i) != o.getAnchor(i) || getId(i) != o.getId(i)) {
+                    return false;
+                }
+            }
+            return true;
         } else {
             return false;
         }
@@ -59,23 +167,152 @@ public class MessageId {
 
     @Override
     public String toString() {
-        return _anchorsToIds.toString();
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for(int i=0; i<_size; i++) {
+            if(i > 0) {
+                sb.append(", ");
+            }
+            sb.append(getAnchor(i)).append('=').append(getId(i));
+        }
+        sb.append('}');
+        return sb.toString();
     }
 
     public void serialize(DataOutputStream out) throws IOException {
-        WritableUtils.writeVInt(out, _anchorsToIds.size());
-        for(Entry<Long, Long> anchorToId: _anchorsToIds.entrySet()) {
-            out.writeLong(anchorToId.getKey());
-            out.writeLong(anchorToId.getValue());
+        WritableUtils.writeVInt(out, _size);
+        for(int i=0; i<_size; i++) {
+            out.writeLong(getAnchor(i));
+            out.writeLong(getId(i));
         }
     }
 
     public static MessageId deserialize(DataInputStream in) throws IOException {
         int numAnchors = WritableUtils.readVInt(in);
-        Map<Long, Long> anchorsToIds = new HashMap<Long, Long>();
+        if(numAnchors == 0) {
+            return UNANCHORED;
+        } else if(numAnchors == 1) {
+            return new MessageId(in.readLong(), in.readLong());
+        }
+        long[] anchors = new long[numAnchors];
+        long[] ids = new long[numAnchors];
         for(int i=0; i<numAnchors; i++) {
-            anchorsToIds.put(in.readLong(), in.readLong());
+            anchors[i] = in.readLong();
+            ids[i] = in.readLong();
+        }
+        return new MessageId(anchors, ids, numAnchors);
+    }
+
+    /**
+     * Primitive open-addressing anchor -> id table used to merge the
+     * anchors of several tuples, the same anchor's ids are xor-ed.
+     *
+     * It can be cleared and reused, it is not thread safe.
+     */
+    public static class Builder {
+        private long[]    _keys;
+        private long[]    _vals;
+        private boolean[] _used;
+        // slots in insertion order, for clear and build
+        private int[]     _slots;
+        private int       _size;
+
+        public Builder() {
+            this(4);
+        }
+
+        public Builder(int expected) {
+            int capacity = 8;
+            while(capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            alloc(capacity);
+        }
+
+        private void alloc(int capacity) {
+            _keys = new long[capacity];
+            _vals = new long[capacity];
+            _used = new boolean[capacity];
+            _slots = new int[capacity / 2];
+            _size = 0;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        public Builder xor(long anchor, long id) {
+            int mask = _keys.length - 1;
+            int slot = hash(anchor) & mask;
+            while(_used[slot]) {
+                if(_keys[slot] == anchor) {
+                    _vals[slot] ^= id;
+                    return this;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if(_size == _slots.length) {
+                rehash();
+                return xor(anchor, id);
+            }
+
+            _used[slot] = true;
+            _keys[slot] = anchor;
+            _vals[slot] = id;
+            _slots[_size++] = slot;
+            return this;
+        }
+
+        /**
+         * xor id to every anchor of the messageId
+         */
+        public Builder xorAll(MessageId messageId, long id) {
+            for(int i=0; i<messageId.size(); i++) {
+                xor(messageId.getAnchor(i), id);
+            }
+            return this;
+        }
+
+        private void rehash() {
+            long[] keys = _keys;
+            long[] vals = _vals;
+            int[] slots = _slots;
+            int size = _size;
+
+            alloc(keys.length * 2);
+            for(int i=0; i<size; i++) {
+                xor(keys[slots[i]], vals[slots[i]]);
+            }
+        }
+
+        public int size() {
+            return _size;
+        }
+
+        public void clear() {
+            for(int i=0; i<_size; i++) {
+                _used[_slots[i]] = false;
+            }
+            _size = 0;
+        }
+
+        public MessageId build() {
+            if(_size == 0) {
+                return UNANCHORED;
+            } else if(_size == 1) {
+                int slot = _slots[0];
+                return new MessageId(_keys[slot], _vals[slot]);
+            }
+
+            long[] anchors = new long[_size];
+            long[] ids = new long[_size];
+            for(int i=0; i<_size; i++) {
+                anchors[i] = _keys[_slots[i]];
+                ids[i] = _vals[_slots[i]];
+            }
+            return new MessageId(anchors, ids, _size);
         }
-        return new MessageId(anchorsToIds);
     }
-}
\ No newline at end of file
+}
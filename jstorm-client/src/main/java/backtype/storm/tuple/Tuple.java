@@ -47,6 +47,22 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
         this.id = id;
         this.context = context;
         
+        checkFields(context, values, taskId, streamId);
+    }
+
+    /**
+     * Create a tuple whose values are decoded later, the subclass should
+     * override getValues and call checkFields once the values are decoded
+     */
+    protected Tuple(TopologyContext context, int taskId, String streamId, MessageId id) {
+        super();
+        this.taskId = taskId;
+        this.streamId = streamId;
+        this.id = id;
+        this.context = context;
+    }
+
+    protected static void checkFields(TopologyContext context, List<Object> values, int taskId, String streamId) {
         String componentId = context.getComponentId(taskId);
         Fields schema = context.getComponentOutputFields(componentId, streamId);
         if(values.size()!=schema.size()) {
@@ -65,7 +81,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * Returns the number of fields in this tuple.
      */
     public int size() {
-        return values.size();
+        return getValues().size();
     }
     
     public int fieldIndex(String field) {
@@ -76,7 +92,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * Gets the field at position i in the tuple. Returns object since tuples are dynamically typed.
      */
     public Object getValue(int i) {
-        return values.get(i);
+        return getValues().get(i);
     }
 
     /**
@@ -84,7 +100,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public String getString(int i) {
-        return (String) values.get(i);
+        return (String) getValues().get(i);
     }
 
     /**
@@ -92,7 +108,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Integer getInteger(int i) {
-        return (Integer) values.get(i);
+        return (Integer) getValues().get(i);
     }
 
     /**
@@ -100,7 +116,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Long getLong(int i) {
-        return (Long) values.get(i);
+        return (Long) getValues().get(i);
     }
 
     /**
@@ -108,7 +124,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Boolean getBoolean(int i) {
-        return (Boolean) values.get(i);
+        return (Boolean) getValues().get(i);
     }
 
     /**
@@ -116,7 +132,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Short getShort(int i) {
-        return (Short) values.get(i);
+        return (Short) getValues().get(i);
     }
 
     /**
@@ -124,7 +140,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Byte getByte(int i) {
-        return (Byte) values.get(i);
+        return (Byte) getValues().get(i);
     }
 
     /**
@@ -132,7 +148,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Double getDouble(int i) {
-        return (Double) values.get(i);
+        return (Double) getValues().get(i);
     }
 
     /**
@@ -140,7 +156,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public Float getFloat(int i) {
-        return (Float) values.get(i);
+        return (Float) getValues().get(i);
     }
 
     /**
@@ -148,53 +164,53 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * you will get a runtime error.
      */
     public byte[] getBinary(int i) {
-        return (byte[]) values.get(i);
+        return (byte[]) getValues().get(i);
     }
     
     
     public Object getValueByField(String field) {
-        return values.get(fieldIndex(field));
+        return getValues().get(fieldIndex(field));
     }
 
     public String getStringByField(String field) {
-        return (String) values.get(fieldIndex(field));
+        return (String) getValues().get(fieldIndex(field));
     }
 
     public Integer getIntegerByField(String field) {
-        return (Integer) values.get(fieldIndex(field));
+        return (Integer) getValues().get(fieldIndex(field));
     }
 
     public Long getLongByField(String field) {
-        return (Long) values.get(fieldIndex(field));
+        return (Long) getValues().get(fieldIndex(field));
     }
 
     public Boolean getBooleanByField(String field) {
-        return (Boolean) values.get(fieldIndex(field));
+        return (Boolean) getValues().get(fieldIndex(field));
     }
 
     public Short getShortByField(String field) {
-        return (Short) values.get(fieldIndex(field));
+        return (Short) getValues().get(fieldIndex(field));
     }
 
     public Byte getByteByField(String field) {
-        return (Byte) values.get(fieldIndex(field));
+        return (Byte) getValues().get(fieldIndex(field));
     }
 
     public Double getDoubleByField(String field) {
-        return (Double) values.get(fieldIndex(field));
+        return (Double) getValues().get(fieldIndex(field));
     }
 
     public Float getFloatByField(String field) {
-        return (Float) values.get(fieldIndex(field));
+        return (Float) getValues().get(fieldIndex(field));
     }
 
     public byte[] getBinaryByField(String field) {
-        return (byte[]) values.get(fieldIndex(field));
+        return (byte[]) getValues().get(fieldIndex(field));
     }
     
     @Deprecated
     public List<Object> getTuple() {
-        return values;
+        return getValues();
     }
 
     /**
@@ -215,7 +231,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
      * Returns a subset of the tuple based on the fields selector.
      */
     public List<Object> select(Fields selector) {
-        return getFields().select(selector, values);
+        return getFields().select(selector, getValues());
     }
     
     
@@ -253,7 +269,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
     
     @Override
     public String toString() {
-        return "source: " + getSourceComponent() + ":" + taskId + ", stream: " + streamId + ", id: "+ id.toString() + ", " + values.toString();
+        return "source: " + getSourceComponent() + ":" + taskId + ", stream: " + streamId + ", id: "+ id.toString() + ", " + getValues().toString();
     }
     
     @Override
@@ -288,6 +304,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
 
     /* Seqable */
     public ISeq seq() {
+        List<Object> values = getValues();
         if(values.size() > 0) {
             return new Seq(getFields().toList(), values, 0);
         }
@@ -338,6 +355,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
 
     /* Indexed */
     public Object nth(int i) {
+        List<Object> values = getValues();
         if(i < values.size()) {
             return values.get(i);
         } else {
@@ -353,7 +371,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
 
     /* Counted */
     public int count() {
-        return values.size();
+        return getValues().size();
     }
     
     /* IMeta */
@@ -368,6 +386,7 @@ public class Tuple extends IndifferentAccessMap implements Seqable, Indexed, IMe
     }
 
     private PersistentArrayMap toMap() {
+        List<Object> values = getValues();
         Object array[] = new Object[values.size()*2];
         List<String> fields = getFields().toList();
         for(int i=0; i < values.size(); i++) {
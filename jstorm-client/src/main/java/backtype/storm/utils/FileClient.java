@@ -0,0 +1,135 @@
+package backtype.storm.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client of one file server of nimbus or supervisor, it isn't thread safe
+ *
+ * read  : [byte OP_READ][UTF name][long offset][long length]
+ *         -> [long file size, -1 if there is no such file]
+ *            [bytes from offset, at most length]
+ *
+ * write : [byte OP_WRITE][UTF name][long length][int chunk size]
+ *         -> [int accepted chunk size, 0 if the server rejects it]
+ *         [bytes][UTF md5]
+ *         -> [boolean ok][UTF path of the file on the server or error]
+ *
+ * The file bytes are sent with FileChannel.transferTo, one chunk at a time.
+ */
+public class FileClient {
+    public static final byte OP_READ = 1;
+    public static final byte OP_WRITE = 2;
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    public FileClient(String host, int port, int timeoutMs) throws IOException {
+        channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), timeoutMs);
+            channel.socket().setSoTimeout(timeoutMs);
+            in = new DataInputStream(channel.socket().getInputStream());
+            out = new DataOutputStream(channel.socket().getOutputStream());
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * read [offset, offset + length) of the file into dest at offset
+     *
+     * @return size of the file, -1 if the server hasn't it
+     */
+    public long read(String name, long offset, long length, FileChannel dest) throws IOException {
+        out.writeByte(OP_READ);
+        out.writeUTF(name);
+        out.writeLong(offset);
+        out.writeLong(length);
+        out.flush();
+
+        long size = in.readLong();
+        if(size < 0) {
+            return size;
+        }
+
+        long end = (length < size - offset) ? offset + length : size;
+        while(offset < end) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, end - offset));
+            if(n < 0) {
+                throw new IOException("Connection is closed at " + offset + " of " + name);
+            }
+            ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+            while(bb.hasRemaining()) {
+                offset += dest.write(bb, offset);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return size of the file, -1 if the server hasn't it
+     */
+    public long size(String name) throws IOException {
+        return read(name, 0, 0, null);
+    }
+
+    /**
+     * upload the local file, the server checks its md5
+     *
+     * @return path of the file on the server
+     */
+    public String write(String name, String localFile, int chunkSize) throws IOException {
+        String md5 = Utils.md5Hex(localFile);
+
+        FileInputStream fis = new FileInputStream(localFile);
+        try {
+            FileChannel fc = fis.getChannel();
+            long size = fc.size();
+
+            out.writeByte(OP_WRITE);
+            out.writeUTF(name);
+            out.writeLong(size);
+            out.writeInt(chunkSize);
+            out.flush();
+
+            int accepted = in.readInt();
+            if(accepted <= 0) {
+                throw new IOException("Server rejects to write " + name);
+            }
+
+            long offset = 0;
+            while(offset < size) {
+                offset += fc.transferTo(offset, Math.min(accepted, size - offset), channel);
+            }
+            out.writeUTF(md5);
+            out.flush();
+        } finally {
+            fis.close();
+        }
+
+        boolean ok = in.readBoolean();
+        String result = in.readUTF();
+        if(!ok) {
+            throw new IOException("Failed to write " + name + ", " + result);
+        }
+        return result;
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch(IOException e) {
+            // ignore
+        }
+    }
+}
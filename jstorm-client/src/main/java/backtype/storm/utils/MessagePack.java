@@ -0,0 +1,184 @@
+package backtype.storm.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.json.simple.JSONObject;
+
+/**
+ * Encode and decode the MessagePack format, only the types used by the
+ * multilang protocol are supported: nil, bool, int, float, str, bin,
+ * array and map.
+ *
+ * Maps are decoded into JSONObject, integers into Long and floats into
+ * Double, which are the types the json protocol returns. The objects of
+ * other classes are encoded as their toString, like json-simple does.
+ */
+public class MessagePack {
+
+    public static void write(DataOutputStream out, Object o) throws IOException {
+        if(o == null) {
+            out.writeByte(0xc0);
+        } else if(o instanceof Boolean) {
+            out.writeByte(((Boolean) o) ? 0xc3 : 0xc2);
+        } else if(o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+            writeLong(out, ((Number) o).longValue());
+        } else if(o instanceof Double || o instanceof Float) {
+            out.writeByte(0xcb);
+            out.writeDouble(((Number) o).doubleValue());
+        } else if(o instanceof String) {
+            writeString(out, (String) o);
+        } else if(o instanceof byte[]) {
+            byte[] bytes = (byte[]) o;
+            writeHeader(out, bytes.length, -1, 0xc4, 0xc5, 0xc6);
+            out.write(bytes);
+        } else if(o instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) o;
+            writeHeader(out, map.size(), 0x80, -1, 0xde, 0xdf);
+            for(Map.Entry<?, ?> entry: map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else if(o instanceof Collection) {
+            Collection<?> list = (Collection<?>) o;
+            writeHeader(out, list.size(), 0x90, -1, 0xdc, 0xdd);
+            for(Object e: list) {
+                write(out, e);
+            }
+        } else if(o instanceof Object[]) {
+            Object[] array = (Object[]) o;
+            writeHeader(out, array.length, 0x90, -1, 0xdc, 0xdd);
+            for(Object e: array) {
+                write(out, e);
+            }
+        } else {
+            writeString(out, o.toString());
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, long v) throws IOException {
+        if(v >= -32 && v <= 127) {
+            out.writeByte((int) v);
+        } else if(v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            out.writeByte(0xd0);
+            out.writeByte((int) v);
+        } else if(v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            out.writeByte(0xd1);
+            out.writeShort((int) v);
+        } else if(v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+            out.writeByte(0xd2);
+            out.writeInt((int) v);
+        } else {
+            out.writeByte(0xd3);
+            out.writeLong(v);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        writeHeader(out, bytes.length, 0xa0, 0xd9, 0xda, 0xdb);
+        out.write(bytes);
+    }
+
+    /**
+     * @param fix the fix type which holds less than 32 or 16 elements, -1 if none
+     * @param type8 -1 if none
+     */
+    private static void writeHeader(DataOutputStream out, int size, int fix, int type8,
+            int type16, int type32) throws IOException {
+        int fixMax = (fix == 0xa0) ? 32 : 16;
+        if(fix >= 0 && size < fixMax) {
+            out.writeByte(fix | size);
+        } else if(type8 >= 0 && size < 0x100) {
+            out.writeByte(type8);
+            out.writeByte(size);
+        } else if(size < 0x10000) {
+            out.writeByte(type16);
+            out.writeShort(size);
+        } else {
+            out.writeByte(type32);
+            out.writeInt(size);
+        }
+    }
+
+    public static Object read(DataInputStream in) throws IOException {
+        int b = in.readUnsignedByte();
+
+        if(b <= 0x7f) {
+            return (long) b;
+        } else if(b >= 0xe0) {
+            return (long) (byte) b;
+        } else if((b & 0xf0) == 0x80) {
+            return readMap(in, b & 0x0f);
+        } else if((b & 0xf0) == 0x90) {
+            return readArray(in, b & 0x0f);
+        } else if((b & 0xe0) == 0xa0) {
+            return readString(in, b & 0x1f);
+        }
+
+        switch(b) {
+        case 0xc0: return null;
+        case 0xc2: return false;
+        case 0xc3: return true;
+        case 0xc4: return readBytes(in, in.readUnsignedByte());
+        case 0xc5: return readBytes(in, in.readUnsignedShort());
+        case 0xc6: return readBytes(in, in.readInt());
+        case 0xca: return (double) in.readFloat();
+        case 0xcb: return in.readDouble();
+        case 0xcc: return (long) in.readUnsignedByte();
+        case 0xcd: return (long) in.readUnsignedShort();
+        case 0xce: return in.readInt() & 0xffffffffL;
+        case 0xcf:
+            long v = in.readLong();
+            if(v >= 0) {
+                return v;
+            }
+            return new BigInteger(Long.toHexString(v), 16);
+        case 0xd0: return (long) in.readByte();
+        case 0xd1: return (long) in.readShort();
+        case 0xd2: return (long) in.readInt();
+        case 0xd3: return in.readLong();
+        case 0xd9: return readString(in, in.readUnsignedByte());
+        case 0xda: return readString(in, in.readUnsignedShort());
+        case 0xdb: return readString(in, in.readInt());
+        case 0xdc: return readArray(in, in.readUnsignedShort());
+        case 0xdd: return readArray(in, in.readInt());
+        case 0xde: return readMap(in, in.readUnsignedShort());
+        case 0xdf: return readMap(in, in.readInt());
+        default:
+            throw new IOException("Unsupported MessagePack type 0x" + Integer.toHexString(b));
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(DataInputStream in, int size) throws IOException {
+        return new String(readBytes(in, size), "UTF-8");
+    }
+
+    private static List<Object> readArray(DataInputStream in, int size) throws IOException {
+        List<Object> list = new ArrayList<Object>(size);
+        for(int i = 0; i < size; i++) {
+            list.add(read(in));
+        }
+        return list;
+    }
+
+    private static JSONObject readMap(DataInputStream in, int size) throws IOException {
+        JSONObject map = new JSONObject();
+        for(int i = 0; i < size; i++) {
+            Object key = read(in);
+            map.put(key, read(in));
+        }
+        return map;
+    }
+}
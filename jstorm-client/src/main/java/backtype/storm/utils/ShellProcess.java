@@ -1,21 +1,50 @@
 package backtype.storm.utils;
 
 import backtype.storm.task.TopologyContext;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.List;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
+/**
+ * The subprocess of a multilang component
+ *
+ * The setup message and the pid reply are always json. The setup message
+ * offers the serializers in "serializers", if the subprocess answers
+ * "serializer": "msgpack" with its pid, all the following messages are
+ * [int length][MessagePack] frames, otherwise they are json ended by
+ * "\nend\n".
+ *
+ * With msgpack, every frame written to the subprocess is an array of
+ * messages, and the subprocess may write a map or an array of maps in one
+ * frame, so tuples, emits and acks are sent in batches.
+ */
 public class ShellProcess {
+    public static final String SERIALIZER_JSON = "json";
+    public static final String SERIALIZER_MSGPACK = "msgpack";
+
     private DataOutputStream processIn;
-    private BufferedReader processOut;
+    private DataInputStream processOut;
     private Process _subprocess;
     private String[] command;
+    private boolean msgpack = false;
+
+    // the messages of the last batch which haven't been read
+    private LinkedList<JSONObject> pendingReads = new LinkedList<JSONObject>();
+    private ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    private DataOutputStream frameOut = new DataOutputStream(frame);
+    private ByteArrayOutputStream line = new ByteArrayOutputStream();
 
     public ShellProcess(String[] command) {
         this.command = command;
@@ -26,16 +55,26 @@ public class ShellProcess {
         builder.directory(new File(context.getCodeDir()));
         _subprocess = builder.start();
 
-        processIn = new DataOutputStream(_subprocess.getOutputStream());
-        processOut = new BufferedReader(new InputStreamReader(_subprocess.getInputStream()));
+        processIn = new DataOutputStream(new BufferedOutputStream(_subprocess.getOutputStream()));
+        processOut = new DataInputStream(new BufferedInputStream(_subprocess.getInputStream()));
 
         JSONObject setupInfo = new JSONObject();
         setupInfo.put("pidDir", context.getPIDDir());
         setupInfo.put("conf", conf);
         setupInfo.put("context", context);
+        setupInfo.put("serializers", Arrays.asList(SERIALIZER_MSGPACK, SERIALIZER_JSON));
         writeMessage(setupInfo);
 
-        return (Number)readMessage().get("pid");
+        JSONObject reply = readMessage();
+        msgpack = SERIALIZER_MSGPACK.equals(reply.get("serializer"));
+        return (Number)reply.get("pid");
+    }
+
+    /**
+     * @return whether the messages can be sent in batches
+     */
+    public boolean isBatched() {
+        return msgpack;
     }
 
     public void destroy() {
@@ -43,17 +82,49 @@ public class ShellProcess {
     }
 
     public void writeMessage(Object msg) throws IOException {
-        writeString(JSONValue.toJSONString(msg));
+        if(msgpack) {
+            writeFrame(Arrays.asList(msg));
+        } else {
+            writeString(JSONValue.toJSONString(msg));
+        }
+        processIn.flush();
+    }
+
+    /**
+     * write all messages and flush once, they are one frame with msgpack
+     */
+    public void writeMessages(List msgs) throws IOException {
+        if(msgpack) {
+            writeFrame(msgs);
+        } else {
+            for(Object msg: msgs) {
+                writeString(JSONValue.toJSONString(msg));
+            }
+        }
+        processIn.flush();
+    }
+
+    private void writeFrame(List msgs) throws IOException {
+        frame.reset();
+        MessagePack.write(frameOut, msgs);
+        processIn.writeInt(frame.size());
+        frame.writeTo(processIn);
     }
 
     private void writeString(String str) throws IOException {
         byte[] strBytes = str.getBytes("UTF-8");
         processIn.write(strBytes, 0, strBytes.length);
         processIn.writeBytes("\nend\n");
-        processIn.flush();
     }
 
     public JSONObject readMessage() throws IOException {
+        if(!pendingReads.isEmpty()) {
+            return pendingReads.poll();
+        }
+        if(msgpack) {
+            return readFrame();
+        }
+
         String string = readString();
         JSONObject msg = (JSONObject)JSONValue.parse(string);
         if (msg != null) {
@@ -63,24 +134,74 @@ public class ShellProcess {
         }
     }
 
-    private String readString() throws IOException {
-        StringBuilder line = new StringBuilder();
-
-        //synchronized (processOut) {
-            while (true) {
-                String subline = processOut.readLine();
-                if(subline==null)
-                    throw new RuntimeException("Pipe to subprocess seems to be broken!");
-                if(subline.equals("end")) {
-                    break;
-                }
-                if(line.length()!=0) {
-                    line.append("\n");
+    private JSONObject readFrame() throws IOException {
+        int length;
+        try {
+            length = processOut.readInt();
+        } catch(EOFException e) {
+            throw new RuntimeException("Pipe to subprocess seems to be broken!");
+        }
+        byte[] bytes = new byte[length];
+        processOut.readFully(bytes);
+
+        Object msg = MessagePack.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        if(msg instanceof JSONObject) {
+            return (JSONObject) msg;
+        }
+        if(msg instanceof List && !((List) msg).isEmpty()) {
+            for(Object o: (List) msg) {
+                if(!(o instanceof JSONObject)) {
+                    throw new IOException("unable to parse batch: " + msg);
                 }
-                line.append(subline);
+                pendingReads.add((JSONObject) o);
             }
-            //}
+            return pendingReads.poll();
+        }
+        throw new IOException("unable to parse: " + msg);
+    }
+
+    private String readString() throws IOException {
+        StringBuilder sb = new StringBuilder();
 
-        return line.toString();
+        while (true) {
+            String subline = readLine();
+            if(subline==null)
+                throw new RuntimeException("Pipe to subprocess seems to be broken!");
+            if(subline.equals("end")) {
+                break;
+            }
+            if(sb.length()!=0) {
+                sb.append("\n");
+            }
+            sb.append(subline);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * processOut is shared by both serializers, so it isn't read by a
+     * BufferedReader which reads ahead
+     */
+    private String readLine() throws IOException {
+        line.reset();
+        while(true) {
+            int b = processOut.read();
+            if(b == -1) {
+                if(line.size() == 0) {
+                    return null;
+                }
+                break;
+            }
+            if(b == '\n') {
+                break;
+            }
+            line.write(b);
+        }
+        String str = line.toString("UTF-8");
+        if(str.endsWith("\r")) {
+            str = str.substring(0, str.length() - 1);
+        }
+        return str;
     }
 }
@@ -11,12 +11,17 @@ import com.netflix.curator.framework.CuratorFrameworkFactory;
 import com.netflix.curator.retry.RetryNTimes;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
@@ -29,11 +34,14 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
 import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 import org.apache.thrift.TException;
 import org.json.simple.JSONValue;
 import org.yaml.snakeyaml.Yaml;
 
 public class Utils {
+    private static final Logger LOG = Logger.getLogger(Utils.class);
+
     public static final String DEFAULT_STREAM_ID = "default";
 
     public static byte[] serialize(Object obj) {
@@ -206,17 +214,81 @@ public class Utils {
     }
 
     public static void downloadFromMaster(Map conf, String file, String localFile) throws IOException, TException {
+        int port = getInt(get(conf, Config.NIMBUS_FILE_SERVER_PORT, 0));
+        if(port > 0) {
+            try {
+                streamFromMaster(conf, port, file, localFile);
+                return;
+            } catch(IOException e) {
+                LOG.warn("Failed to stream " + file + " from nimbus, downloading it by thrift", e);
+            }
+        }
+
         NimbusClient client = NimbusClient.getConfiguredClient(conf);
-        String id = client.getClient().beginFileDownload(file);
-        WritableByteChannel out = Channels.newChannel(new FileOutputStream(localFile));
-        while(true) {
-            ByteBuffer chunk = client.getClient().downloadChunk(id);
-            int written = out.write(chunk);
-            if(written==0) break;
+        try {
+            String id = client.getClient().beginFileDownload(file);
+            WritableByteChannel out = Channels.newChannel(new FileOutputStream(localFile));
+            try {
+                while(true) {
+                    ByteBuffer chunk = client.getClient().downloadChunk(id);
+                    int written = out.write(chunk);
+                    if(written==0) break;
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            client.close();
         }
-        out.close();
     }
     
+    private static void streamFromMaster(Map conf, int port, String file, String localFile) throws IOException {
+        String host = (String) conf.get(Config.NIMBUS_HOST);
+        int timeoutMs = getInt(get(conf, Config.NIMBUS_FILE_COPY_EXPIRATION_SECS, 30)) * 1000;
+        FileClient client = new FileClient(host, port, timeoutMs);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(localFile, "rw");
+            try {
+                raf.setLength(0);
+                long size = client.read(file, 0, Long.MAX_VALUE, raf.getChannel());
+                if(size < 0) {
+                    throw new FileNotFoundException(file + " isn't on nimbus");
+                }
+                if(raf.length() != size) {
+                    throw new IOException("Received " + raf.length() + " of " + size + " bytes of " + file);
+                }
+            } finally {
+                raf.close();
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    public static String md5Hex(String file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch(NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder sb = new StringBuilder();
+        for(byte b: md.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
     public static IFn loadClojureFn(String namespace, String name) {
         try {
           clojure.lang.Compiler.eval(RT.readString("(require '" + namespace + ")"));
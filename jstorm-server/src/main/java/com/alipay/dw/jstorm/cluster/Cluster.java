@@ -37,6 +37,7 @@ public class Cluster {
     public static final String SUPERVISORS_ROOT = "supervisors";
     public static final String TASKBEATS_ROOT   = "taskbeats";
     public static final String TASKERRORS_ROOT  = "taskerrors";
+    public static final String BACKPRESSURE_ROOT = "backpressure";
     
     public static final String ASSIGNMENTS_SUBTREE;
     public static final String TASKS_SUBTREE;
@@ -44,6 +45,7 @@ public class Cluster {
     public static final String SUPERVISORS_SUBTREE;
     public static final String TASKBEATS_SUBTREE;
     public static final String TASKERRORS_SUBTREE;
+    public static final String BACKPRESSURE_SUBTREE;
     static {
         ASSIGNMENTS_SUBTREE = ZK_SEPERATOR + ASSIGNMENTS_ROOT;
         TASKS_SUBTREE = ZK_SEPERATOR + TASKS_ROOT;
@@ -51,6 +53,7 @@ public class Cluster {
         SUPERVISORS_SUBTREE = ZK_SEPERATOR + SUPERVISORS_ROOT;
         TASKBEATS_SUBTREE = ZK_SEPERATOR + TASKBEATS_ROOT;
         TASKERRORS_SUBTREE = ZK_SEPERATOR + TASKERRORS_ROOT;
+        BACKPRESSURE_SUBTREE = ZK_SEPERATOR + BACKPRESSURE_ROOT;
     }
     
     public static String supervisor_path(String id) {
@@ -81,6 +84,39 @@ public class Cluster {
         return taskbeat_storm_root(storm_id) + ZK_SEPERATOR + task_id;
     }
     
+    /**
+     * the heartbeats of all tasks in one worker, it is in the same dir of
+     * the old per-task heartbeat nodes, whose name is task id
+     */
+    public static String workerbeat_path(String storm_id, String supervisor_id,
+            int port) {
+        return taskbeat_storm_root(storm_id) + ZK_SEPERATOR + supervisor_id
+                + "-" + port;
+    }
+    
+    /**
+     * the stats of all tasks in one worker is the child of its heartbeat
+     * node, so they are removed together
+     */
+    public static String workerstats_path(String storm_id,
+            String supervisor_id, int port) {
+        return workerbeat_path(storm_id, supervisor_id, port) + ZK_SEPERATOR
+                + "stats";
+    }
+    
+    public static String backpressure_storm_root(String storm_id) {
+        return BACKPRESSURE_SUBTREE + ZK_SEPERATOR + storm_id;
+    }
+    
+    /**
+     * the throttled tasks of one worker, it is an ephemeral node
+     */
+    public static String backpressure_path(String storm_id,
+            String supervisor_id, int port) {
+        return backpressure_storm_root(storm_id) + ZK_SEPERATOR
+                + supervisor_id + "-" + port;
+    }
+    
     public static String taskerror_storm_root(String storm_id) {
         return TASKERRORS_SUBTREE + ZK_SEPERATOR + storm_id;
     }
@@ -107,6 +143,16 @@ public class Cluster {
         return new StormZkClusterState(cluster_state_spec);
     }
     
+    /**
+     * the cluster state whose assignments, topologies, supervisors and
+     * task infos are cached in memory and refreshed by ZK watches
+     */
+    @SuppressWarnings("rawtypes")
+    public static StormClusterState mk_cached_storm_cluster_state(
+            Map cluster_state_spec) throws Exception {
+        return new StormZkClusterState(cluster_state_spec, true);
+    }
+    
     @SuppressWarnings("rawtypes")
     public static ClusterState mk_distributed_cluster_state(Map _conf)
             throws Exception {
@@ -125,17 +171,11 @@ public class Cluster {
             StormClusterState zkCluster, String topologyid) throws Exception {
         HashMap<Integer, String> rtn = new HashMap<Integer, String>();
         
-        List<Integer> taks_ids = zkCluster.task_ids(topologyid);
+        Map<Integer, TaskInfo> infos = zkCluster.task_infos(topologyid);
         
-        for (Integer task : taks_ids) {
-            TaskInfo info = zkCluster.task_info(topologyid, task);
-            if (info == null) {
-                LOG.error("Failed to get TaskInfo of " + topologyid
-                        + ",taskid:" + task);
-                continue;
-            }
-            String componentId = info.getComponentId();
-            rtn.put(task, componentId);
+        for (Entry<Integer, TaskInfo> entry : infos.entrySet()) {
+            String componentId = entry.getValue().getComponentId();
+            rtn.put(entry.getKey(), componentId);
         }
         
         return rtn;
@@ -48,6 +48,7 @@ public class Common {
     public static final String ACKER_INIT_STREAM_ID = Acker.ACKER_INIT_STREAM_ID;
     public static final String ACKER_ACK_STREAM_ID  = Acker.ACKER_ACK_STREAM_ID;
     public static final String ACKER_FAIL_STREAM_ID = Acker.ACKER_FAIL_STREAM_ID;
+    public static final String ACKER_BATCH_STREAM_ID = Acker.ACKER_BATCH_STREAM_ID;
     
     public static final String SYSTEM_STREAM_ID     = "__system";
     
@@ -217,6 +218,7 @@ public class Common {
      * for spout <GlobalStreamId(spoutId, ACKER_INIT_STREAM_ID), ...> for bolt
      * <GlobalStreamId(boltId, ACKER_ACK_STREAM_ID), ...>
      * <GlobalStreamId(boltId, ACKER_FAIL_STREAM_ID), ...>
+     * <GlobalStreamId(boltId, ACKER_BATCH_STREAM_ID), directGrouping>
      * 
      * @param topology
      * @return
@@ -250,8 +252,12 @@ public class Common {
             Grouping groupFail = Thrift.mkFieldsGrouping(JStormUtils
                     .mk_list("id"));
             
+            GlobalStreamId streamBatch = new GlobalStreamId(id,
+                    ACKER_BATCH_STREAM_ID);
+            
             bolt_inputs.put(streamAck, groupAck);
             bolt_inputs.put(streamFail, groupFail);
+            bolt_inputs.put(streamBatch, Thrift.mkDirectGrouping());
         }
         
         Map<GlobalStreamId, Grouping> allInputs = new HashMap<GlobalStreamId, Grouping>();
@@ -284,8 +290,8 @@ public class Common {
         Bolt acker_bolt = Thrift.mkAckerBolt(inputs, ackerbolt, outputs,
                 ackerNum);
         
-        // add every bolt two output stream
-        // ACKER_ACK_STREAM_ID/ACKER_FAIL_STREAM_ID
+        // add every bolt three output stream
+        // ACKER_ACK_STREAM_ID/ACKER_FAIL_STREAM_ID/ACKER_BATCH_STREAM_ID
         for (Entry<String, Bolt> e : ret.get_bolts().entrySet()) {
             
             Bolt bolt = e.getValue();
@@ -301,6 +307,11 @@ public class Common {
             common.put_to_streams(ACKER_FAIL_STREAM_ID,
                     Thrift.outputFields(failList));
             
+            // the acker task is chosen by the bolt, see AckBatcher
+            List<String> batchList = JStormUtils.mk_list("batch");
+            common.put_to_streams(ACKER_BATCH_STREAM_ID,
+                    Thrift.directOutputFields(batchList));
+            
             bolt.set_common(common);
         }
         
@@ -513,7 +524,7 @@ public class Common {
                 // so we don't need send tuple to it
                 if (outTasks.size() > 0) {
                     MkGrouper grouper = new MkGrouper(topology_context, 
-                            out_fields, tgrouping,
+                            out_fields, tgrouping, component,
                             outTasks);
                     componentGrouper.put(component, grouper);
                 }
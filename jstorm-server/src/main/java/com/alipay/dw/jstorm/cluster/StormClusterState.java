@@ -1,6 +1,10 @@
 package com.alipay.dw.jstorm.cluster;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import backtype.storm.generated.TaskStats;
 
 import com.alipay.dw.jstorm.callback.RunnableCallback;
 import com.alipay.dw.jstorm.daemon.supervisor.SupervisorInfo;
@@ -43,6 +47,11 @@ public interface StormClusterState {
     
     public TaskInfo task_info(String storm_id, int task_id) throws Exception;
     
+    /**
+     * @return <taskId, TaskInfo> of all tasks of the topology
+     */
+    public Map<Integer, TaskInfo> task_infos(String storm_id) throws Exception;
+    
     public List<String> task_storms() throws Exception;
     
     public void setup_heartbeats(String storm_id) throws Exception;
@@ -53,14 +62,25 @@ public interface StormClusterState {
     
     public List<String> heartbeat_tasks(String storm_id) throws Exception;
     
-    public TaskHeartbeat task_heartbeat(String stormId, int taskId)
+    /**
+     * @return <taskId, heartbeat> of all tasks of the topology
+     */
+    public Map<Integer, TaskHeartbeat> task_heartbeats(String stormId)
             throws Exception;
     
-    public void task_heartbeat(String stormId, int taskId, TaskHeartbeat info)
-            throws Exception;
+    public void task_heartbeats(String stormId, String supervisorId, int port,
+            Map<Integer, TaskHeartbeat> beats) throws Exception;
     
-    public void remove_task_heartbeat(String storm_id, int task_id)
-            throws Exception;
+    /**
+     * @return <taskId, stats> of all tasks of the topology
+     */
+    public Map<Integer, TaskStats> task_stats(String stormId) throws Exception;
+    
+    public void task_stats(String stormId, String supervisorId, int port,
+            Map<Integer, TaskStats> stats) throws Exception;
+    
+    public void remove_task_heartbeats(String stormId, String supervisorId,
+            int port) throws Exception;
     
     public List<String> supervisors(RunnableCallback callback) throws Exception;
     
@@ -72,6 +92,25 @@ public interface StormClusterState {
     
     public void teardown_task_errors(String storm_id) throws Exception;
     
+    public void setup_backpressure(String storm_id) throws Exception;
+    
+    public void teardown_backpressure(String storm_id) throws Exception;
+    
+    /**
+     * set the throttled tasks of one worker, an empty set removes them
+     */
+    public void set_backpressure(String stormId, String supervisorId,
+            int port, Set<Integer> tasks) throws Exception;
+    
+    /**
+     * @param callback
+     *            if it isn't null, it is called once when the throttled
+     *            tasks of any worker change
+     * @return the throttled tasks of all workers of the topology
+     */
+    public Set<Integer> backpressure(String stormId, RunnableCallback callback)
+            throws Exception;
+    
     public List<String> task_error_storms() throws Exception;
     
     public void report_task_error(String storm_id, int task_id, Throwable error)
@@ -139,6 +139,24 @@ public class StormConfig {
         return ret;
     }
     
+    /**
+     * STORM-LOCAL-DIR/workers-warm, the idle pre-started worker JVMs
+     */
+    public static String worker_warm_root(Map conf) throws IOException {
+        String ret = String.valueOf(conf.get(Config.STORM_LOCAL_DIR))
+                + FILE_SEPERATEOR + "workers-warm";
+        FileUtils.forceMkdir(new File(ret));
+        return ret;
+    }
+    
+    /**
+     * it isn't created, the warm worker exits when it is removed
+     */
+    public static String worker_warm_path(Map conf, String warmId)
+            throws IOException {
+        return worker_warm_root(conf) + FILE_SEPERATEOR + warmId;
+    }
+    
     private static String supervisor_local_dir(Map conf) throws IOException {
         String ret = String.valueOf(conf.get(Config.STORM_LOCAL_DIR))
                 + FILE_SEPERATEOR + "supervisor";
@@ -146,6 +164,15 @@ public class StormConfig {
         return ret;
     }
     
+    /**
+     * STORM-LOCAL-DIR/supervisor/jarcache, topology jars named by md5
+     */
+    public static String supervisor_jarcache_root(Map conf) throws IOException {
+        String ret = supervisor_local_dir(conf) + FILE_SEPERATEOR + "jarcache";
+        FileUtils.forceMkdir(new File(ret));
+        return ret;
+    }
+    
     public static String supervisor_stormdist_root(Map conf) throws IOException {
         String ret = stormdist_path(supervisor_local_dir(conf));
         FileUtils.forceMkdir(new File(ret));
@@ -161,6 +188,10 @@ public class StormConfig {
         return stormroot + FILE_SEPERATEOR + "stormjar.jar";
     }
     
+    public static String stormjar_md5_path(String stormroot) {
+        return stormroot + FILE_SEPERATEOR + "stormjar.md5";
+    }
+    
     public static String stormcode_path(String stormroot) {
         return stormroot + FILE_SEPERATEOR + "stormcode.ser";
     }
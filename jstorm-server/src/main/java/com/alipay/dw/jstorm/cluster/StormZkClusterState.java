@@ -1,17 +1,28 @@
 package com.alipay.dw.jstorm.cluster;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.zookeeper.Watcher.Event.EventType;
 
+import backtype.storm.generated.TaskStats;
 import backtype.storm.utils.Utils;
 
 import com.alipay.dw.jstorm.callback.RunnableCallback;
@@ -27,18 +38,52 @@ import com.alipay.dw.jstorm.utils.TimeUtils;
 public class StormZkClusterState implements StormClusterState {
     private static Logger                               LOG = Logger.getLogger(StormZkClusterState.class);
     
+    private static final byte                           STATS_VERSION = 1;
+    
     private ClusterState                                cluster_state;
     
     private ConcurrentHashMap<String, RunnableCallback> assignment_info_callback;
     private AtomicReference<RunnableCallback>           supervisors_callback;
     private AtomicReference<RunnableCallback>           assignments_callback;
     private ConcurrentHashMap<String, RunnableCallback> storm_base_callback;
+    private ConcurrentHashMap<String, RunnableCallback> backpressure_callback;
     
     private UUID                                        state_id;
     
     private boolean                                     solo;
     
+    // local replica of the znodes which are read again and again,
+    // <path, data> and <path, children>, an entry is dropped when the
+    // watch of its path fires or when it is written by this client
+    private boolean                                     cached;
+    private ConcurrentHashMap<String, byte[]>           data_cache;
+    private ConcurrentHashMap<String, List<String>>     children_cache;
+    // increased by every invalidation, a value read before an
+    // invalidation is not cached
+    private AtomicLong                                  cache_version;
+    // the watches are lost when ZK session expires, so the whole cache
+    // is dropped every CACHE_EXPIRE_SECS anyway
+    private static final int                            CACHE_EXPIRE_SECS = 60;
+    private volatile int                                cache_time;
+    
     public StormZkClusterState(Object cluster_state_spec) throws Exception {
+        this(cluster_state_spec, false);
+    }
+    
+    /**
+     * @param cached
+     *            keep assignments, topologies, supervisors and task infos in
+     *            memory, they are refreshed by ZK watches. It is for nimbus
+     *            and supervisor, which read them in loops.
+     */
+    public StormZkClusterState(Object cluster_state_spec, boolean cached)
+            throws Exception {
+        
+        this.cached = cached;
+        data_cache = new ConcurrentHashMap<String, byte[]>();
+        children_cache = new ConcurrentHashMap<String, List<String>>();
+        cache_version = new AtomicLong(0);
+        cache_time = TimeUtils.current_time_secs();
         
         if (cluster_state_spec instanceof ClusterState) {
             solo = false;
@@ -54,10 +99,16 @@ public class StormZkClusterState implements StormClusterState {
         supervisors_callback = new AtomicReference<RunnableCallback>(null);
         assignments_callback = new AtomicReference<RunnableCallback>(null);
         storm_base_callback = new ConcurrentHashMap<String, RunnableCallback>();
+        backpressure_callback = new ConcurrentHashMap<String, RunnableCallback>();
         
         state_id = cluster_state.register(new ClusterStateCallback() {
             
             public <T> Object execute(T... args) {
+                if (args != null && args.length == 2
+                        && args[1] instanceof String) {
+                    invalidate((String) args[1]);
+                }
+                
                 if (args == null) {
                     LOG.warn("Input args is null");
                     return null;
@@ -87,10 +138,23 @@ public class StormZkClusterState implements StormClusterState {
                         }
                         
                     } else if (root.equals(Cluster.SUPERVISORS_ROOT)) {
-                        fn = supervisors_callback.getAndSet(null);
-                    } else if (root.equals(Cluster.STORMS_ROOT) && size > 1) {
-                        params = toks.get(1);
-                        fn = storm_base_callback.remove(params);
+                        // the data watch of supervisor is only for cache
+                        if (size == 1) {
+                            fn = supervisors_callback.getAndSet(null);
+                        }
+                    } else if (root.equals(Cluster.STORMS_ROOT)) {
+                        if (size > 1) {
+                            params = toks.get(1);
+                            fn = storm_base_callback.remove(params);
+                        }
+                    } else if (root.equals(Cluster.TASKS_ROOT)) {
+                        // only for cache
+                    } else if (root.equals(Cluster.BACKPRESSURE_ROOT)) {
+                        // the children of the topology or their data
+                        if (size > 1) {
+                            params = toks.get(1);
+                            fn = backpressure_callback.remove(params);
+                        }
                     } else {
                         JStormUtils.halt_process(30,
                                 "Unknown callback for subtree " + path);
@@ -111,13 +175,101 @@ public class StormZkClusterState implements StormClusterState {
         String[] pathlist = JStormUtils.mk_arr(Cluster.ASSIGNMENTS_SUBTREE,
                 Cluster.TASKS_SUBTREE, Cluster.STORMS_SUBTREE,
                 Cluster.SUPERVISORS_SUBTREE, Cluster.TASKBEATS_SUBTREE,
-                Cluster.TASKERRORS_SUBTREE);
+                Cluster.TASKERRORS_SUBTREE, Cluster.BACKPRESSURE_SUBTREE);
         for (String path : pathlist) {
             cluster_state.mkdirs(path);
         }
         
     }
     
+    private void check_expire() {
+        int now = TimeUtils.current_time_secs();
+        if (now - cache_time >= CACHE_EXPIRE_SECS) {
+            cache_time = now;
+            cache_version.incrementAndGet();
+            data_cache.clear();
+            children_cache.clear();
+        }
+    }
+    
+    private byte[] get_data(String path, boolean watch) throws Exception {
+        if (cached == false) {
+            return cluster_state.get_data(path, watch);
+        }
+        check_expire();
+        
+        byte[] data = data_cache.get(path);
+        if (data != null) {
+            return data;
+        }
+        
+        long version = cache_version.get();
+        // always watch, the watch will drop the entry
+        data = cluster_state.get_data(path, true);
+        if (data != null) {
+            data_cache.put(path, data);
+            if (cache_version.get() != version) {
+                data_cache.remove(path);
+            }
+        }
+        return data;
+    }
+    
+    private List<String> get_children(String path, boolean watch)
+            throws Exception {
+        if (cached == false) {
+            return cluster_state.get_children(path, watch);
+        }
+        check_expire();
+        
+        List<String> children = children_cache.get(path);
+        if (children != null) {
+            return new ArrayList<String>(children);
+        }
+        
+        long version = cache_version.get();
+        children = cluster_state.get_children(path, true);
+        if (children != null) {
+            children_cache.put(path, new ArrayList<String>(children));
+            if (cache_version.get() != version) {
+                children_cache.remove(path);
+            }
+        }
+        return children;
+    }
+    
+    private void invalidate(String path) {
+        if (cached == false) {
+            return;
+        }
+        cache_version.incrementAndGet();
+        data_cache.remove(path);
+        children_cache.remove(path);
+    }
+    
+    /**
+     * the path and all its children, the parent's children too
+     */
+    private void invalidate_tree(String path) {
+        if (cached == false) {
+            return;
+        }
+        cache_version.incrementAndGet();
+        
+        String prefix = path + Cluster.ZK_SEPERATOR;
+        for (String key : data_cache.keySet()) {
+            if (key.equals(path) || key.startsWith(prefix)) {
+                data_cache.remove(key);
+            }
+        }
+        for (String key : children_cache.keySet()) {
+            if (key.equals(path) || key.startsWith(prefix)) {
+                children_cache.remove(key);
+            }
+        }
+        children_cache.remove(PathUtils.parent_path(path));
+    }
+    
     @Override
     public Assignment assignment_info(String stormId, RunnableCallback callback)
             throws Exception {
@@ -127,8 +279,7 @@ public class StormZkClusterState implements StormClusterState {
         
         String assgnmentPath = Cluster.assignment_path(stormId);
         
-        byte[] znodeData = cluster_state.get_data(assgnmentPath,
-                callback != null);
+        byte[] znodeData = get_data(assgnmentPath, callback != null);
         
         Object data = Cluster.maybe_deserialize(znodeData);
         
@@ -143,8 +294,7 @@ public class StormZkClusterState implements StormClusterState {
         if (callback != null) {
             assignments_callback.set(callback);
         }
-        return cluster_state.get_children(Cluster.ASSIGNMENTS_SUBTREE,
-                callback != null);
+        return get_children(Cluster.ASSIGNMENTS_SUBTREE, callback != null);
     }
     
     @Override
@@ -152,6 +302,7 @@ public class StormZkClusterState implements StormClusterState {
             throws Exception {
         cluster_state.set_data(Cluster.assignment_path(stormId),
                 Utils.serialize(info));
+        invalidate_tree(Cluster.assignment_path(stormId));
     }
     
     @Override
@@ -162,11 +313,12 @@ public class StormZkClusterState implements StormClusterState {
         byte[] stormBaseData = Utils.serialize(stormBase);
         
         cluster_state.set_data(stormPath, stormBaseData);
+        invalidate_tree(stormPath);
     }
     
     @Override
     public List<String> active_storms() throws Exception {
-        return cluster_state.get_children(Cluster.STORMS_SUBTREE, false);
+        return get_children(Cluster.STORMS_SUBTREE, false);
     }
     
     @Override
@@ -184,23 +336,18 @@ public class StormZkClusterState implements StormClusterState {
     @Override
     public void remove_storm(String stormId) throws Exception {
         cluster_state.delete_node(Cluster.assignment_path(stormId));
+        invalidate_tree(Cluster.assignment_path(stormId));
         // wait 10 seconds, so supervisor will kill worker smoothly
         JStormUtils.sleepMs(10000);
         cluster_state.delete_node(Cluster.storm_task_root(stormId));
+        invalidate_tree(Cluster.storm_task_root(stormId));
         this.remove_storm_base(stormId);
     }
     
     @Override
     public void remove_storm_base(String stormId) throws Exception {
         cluster_state.delete_node(Cluster.storm_path(stormId));
-    }
-    
-    @Override
-    public void remove_task_heartbeat(String stormId, int taskId)
-            throws Exception {
-        String taskbeatPath = Cluster.taskbeat_path(stormId, taskId);
-        
-        cluster_state.delete_node(taskbeatPath);
+        invalidate_tree(Cluster.storm_path(stormId));
     }
     
     @Override
@@ -239,6 +386,7 @@ public class StormZkClusterState implements StormClusterState {
         byte[] taskData = Utils.serialize(info);
         
         cluster_state.set_data(taskPath, taskData);
+        invalidate_tree(taskPath);
     }
     
     @Override
@@ -254,7 +402,7 @@ public class StormZkClusterState implements StormClusterState {
         if (callback != null) {
             storm_base_callback.put(stormId, callback);
         }
-        Object data = Cluster.maybe_deserialize(cluster_state.get_data(
+        Object data = Cluster.maybe_deserialize(get_data(
                 Cluster.storm_path(stormId), callback != null));
         if (data == null) {
             return null;
@@ -271,13 +419,14 @@ public class StormZkClusterState implements StormClusterState {
         byte[] infoData = Utils.serialize(info);
         
         cluster_state.set_ephemeral_node(supervisorPath, infoData);
+        invalidate_tree(supervisorPath);
     }
     
     @Override
     public SupervisorInfo supervisor_info(String supervisorId) throws Exception {
         String supervisorPath = Cluster.supervisor_path(supervisorId);
         
-        byte[] znodeData = cluster_state.get_data(supervisorPath, false);
+        byte[] znodeData = get_data(supervisorPath, false);
         
         Object data = Cluster.maybe_deserialize(znodeData);
         if (data == null) {
@@ -292,8 +441,7 @@ public class StormZkClusterState implements StormClusterState {
         if (callback != null) {
             supervisors_callback.set(callback);
         }
-        return cluster_state.get_children(Cluster.SUPERVISORS_SUBTREE,
-                callback != null);
+        return get_children(Cluster.SUPERVISORS_SUBTREE, callback != null);
     }
     
     @Override
@@ -338,27 +486,189 @@ public class StormZkClusterState implements StormClusterState {
     }
     
     @Override
-    public TaskHeartbeat task_heartbeat(String stormId, int taskId)
+    public Map<Integer, TaskHeartbeat> task_heartbeats(String stormId)
             throws Exception {
-        String taskbeatPath = Cluster.taskbeat_path(stormId, taskId);
+        String taskbeatPath = Cluster.taskbeat_storm_root(stormId);
         
-        byte[] znodeData = cluster_state.get_data(taskbeatPath, false);
+        Map<Integer, TaskHeartbeat> ret = new HashMap<Integer, TaskHeartbeat>();
+        List<String> children = cluster_state.get_children(taskbeatPath, false);
+        if (children == null) {
+            return ret;
+        }
         
-        Object data = Cluster.maybe_deserialize(znodeData);
-        if (data == null) {
-            return null;
+        for (String child : children) {
+            byte[] znodeData = cluster_state.get_data(taskbeatPath
+                    + Cluster.ZK_SEPERATOR + child, false);
+            
+            if (isTaskNode(child)) {
+                // written by old version
+                TaskHeartbeat hb = TaskHeartbeat.deserialize(znodeData);
+                if (hb != null) {
+                    putLatest(ret, Integer.valueOf(child), hb);
+                }
+            } else {
+                for (Entry<Integer, TaskHeartbeat> entry : TaskHeartbeat
+                        .deserializeBatch(znodeData).entrySet()) {
+                    putLatest(ret, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * the node of the task's previous worker may be still there after
+     * reassignment, keep the latest heartbeat
+     */
+    private static void putLatest(Map<Integer, TaskHeartbeat> beats,
+            Integer taskId, TaskHeartbeat hb) {
+        TaskHeartbeat curr = beats.get(taskId);
+        if (curr == null || curr.getTimeSecs() < hb.getTimeSecs()) {
+            beats.put(taskId, hb);
         }
-        return (TaskHeartbeat) data;
     }
     
     @Override
-    public void task_heartbeat(String stormId, int taskId, TaskHeartbeat info)
-            throws Exception {
-        String taskPath = Cluster.taskbeat_path(stormId, taskId);
+    public void task_heartbeats(String stormId, String supervisorId, int port,
+            Map<Integer, TaskHeartbeat> beats) throws Exception {
+        String workerbeatPath = Cluster.workerbeat_path(stormId, supervisorId,
+                port);
         
-        byte[] taskData = Utils.serialize(info);
+        cluster_state.set_data(workerbeatPath, TaskHeartbeat.serialize(beats));
+    }
+    
+    @Override
+    public Map<Integer, TaskStats> task_stats(String stormId) throws Exception {
+        String taskbeatPath = Cluster.taskbeat_storm_root(stormId);
         
-        cluster_state.set_data(taskPath, taskData);
+        Map<Integer, TaskStats> ret = new HashMap<Integer, TaskStats>();
+        List<String> children = cluster_state.get_children(taskbeatPath, false);
+        if (children == null) {
+            return ret;
+        }
+        
+        // the node of the task's previous worker may be still there after
+        // reassignment, take the stats of the worker with the latest
+        // heartbeat of the task, like task_heartbeats
+        Map<Integer, Integer> latestSecs = new HashMap<Integer, Integer>();
+        for (String child : children) {
+            if (isTaskNode(child)) {
+                // the old per-task node has no stats
+                continue;
+            }
+            
+            String workerbeatPath = taskbeatPath + Cluster.ZK_SEPERATOR
+                    + child;
+            Map<Integer, TaskStats> stats = deserializeStats(cluster_state
+                    .get_data(workerbeatPath + Cluster.ZK_SEPERATOR + "stats",
+                            false));
+            if (stats.isEmpty()) {
+                continue;
+            }
+            Map<Integer, TaskHeartbeat> beats = TaskHeartbeat
+                    .deserializeBatch(cluster_state.get_data(workerbeatPath,
+                            false));
+            
+            for (Entry<Integer, TaskStats> entry : stats.entrySet()) {
+                TaskHeartbeat hb = beats.get(entry.getKey());
+                int timeSecs = (hb == null) ? -1 : hb.getTimeSecs();
+                Integer curr = latestSecs.get(entry.getKey());
+                if (curr == null || curr < timeSecs) {
+                    ret.put(entry.getKey(), entry.getValue());
+                    latestSecs.put(entry.getKey(), timeSecs);
+                }
+            }
+        }
+        return ret;
+    }
+    
+    @Override
+    public void task_stats(String stormId, String supervisorId, int port,
+            Map<Integer, TaskStats> stats) throws Exception {
+        String statsPath = Cluster.workerstats_path(stormId, supervisorId,
+                port);
+        
+        cluster_state.set_data(statsPath, serializeStats(stats));
+    }
+    
+    @Override
+    public void remove_task_heartbeats(String stormId, String supervisorId,
+            int port) throws Exception {
+        String workerbeatPath = Cluster.workerbeat_path(stormId, supervisorId,
+                port);
+        
+        cluster_state.delete_node(workerbeatPath);
+    }
+    
+    /**
+     * STATS_VERSION, task number, then taskId, length and TaskStats in
+     * thrift compact protocol of every task, new fields of TaskStats can
+     * be added as optional
+     */
+    private static byte[] serializeStats(Map<Integer, TaskStats> stats)
+            throws TException {
+        TSerializer serializer = new TSerializer(new TCompactProtocol.Factory());
+        
+        List<Integer> taskIds = new ArrayList<Integer>();
+        List<byte[]> encoded = new ArrayList<byte[]>();
+        int size = 5;
+        for (Entry<Integer, TaskStats> entry : stats.entrySet()) {
+            byte[] data = serializer.serialize(entry.getValue());
+            taskIds.add(entry.getKey());
+            encoded.add(data);
+            size += 8 + data.length;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(STATS_VERSION);
+        buffer.putInt(taskIds.size());
+        for (int i = 0; i < taskIds.size(); i++) {
+            buffer.putInt(taskIds.get(i));
+            buffer.putInt(encoded.get(i).length);
+            buffer.put(encoded.get(i));
+        }
+        return buffer.array();
+    }
+    
+    /**
+     * the old per-task heartbeat node is named by task id
+     */
+    private static boolean isTaskNode(String child) {
+        if (child.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < child.length(); i++) {
+            if (Character.isDigit(child.charAt(i)) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static Map<Integer, TaskStats> deserializeStats(byte[] znodeData)
+            throws TException {
+        Map<Integer, TaskStats> ret = new HashMap<Integer, TaskStats>();
+        if (znodeData == null || znodeData.length < 5
+                || znodeData[0] != STATS_VERSION) {
+            return ret;
+        }
+        
+        TDeserializer deserializer = new TDeserializer(
+                new TCompactProtocol.Factory());
+        
+        ByteBuffer buffer = ByteBuffer.wrap(znodeData);
+        buffer.get();
+        int num = buffer.getInt();
+        for (int i = 0; i < num; i++) {
+            int taskId = buffer.getInt();
+            byte[] data = new byte[buffer.getInt()];
+            buffer.get(data);
+            
+            TaskStats taskStats = new TaskStats();
+            deserializer.deserialize(taskStats, data);
+            ret.put(taskId, taskStats);
+        }
+        return ret;
     }
     
     @Override
@@ -366,7 +676,7 @@ public class StormZkClusterState implements StormClusterState {
         
         String stormTaskPath = Cluster.storm_task_root(stromId);
         
-        List<String> list = cluster_state.get_children(stormTaskPath, false);
+        List<String> list = get_children(stormTaskPath, false);
         
         List<Integer> rtn = new ArrayList<Integer>();
         for (String str : list) {
@@ -380,7 +690,7 @@ public class StormZkClusterState implements StormClusterState {
         
         String taskPath = Cluster.task_path(stormId, taskId);
         
-        byte[] znodeData = cluster_state.get_data(taskPath, false);
+        byte[] znodeData = get_data(taskPath, false);
         
         Object data = Cluster.maybe_deserialize(znodeData);
         if (data == null) {
@@ -389,6 +699,19 @@ public class StormZkClusterState implements StormClusterState {
         return (TaskInfo) data;
     }
     
+    @Override
+    public Map<Integer, TaskInfo> task_infos(String stormId) throws Exception {
+        Map<Integer, TaskInfo> rtn = new HashMap<Integer, TaskInfo>();
+        
+        for (Integer taskId : task_ids(stormId)) {
+            TaskInfo info = task_info(stormId, taskId);
+            if (info != null) {
+                rtn.put(taskId, info);
+            }
+        }
+        return rtn;
+    }
+    
     @Override
     public List<String> task_storms() throws Exception {
         return cluster_state.get_children(Cluster.TASKS_SUBTREE, false);
@@ -416,6 +739,58 @@ public class StormZkClusterState implements StormClusterState {
         }
     }
     
+    @Override
+    public void setup_backpressure(String stormId) throws Exception {
+        cluster_state.mkdirs(Cluster.backpressure_storm_root(stormId));
+    }
+    
+    @Override
+    public void teardown_backpressure(String stormId) {
+        try {
+            cluster_state.delete_node(Cluster.backpressure_storm_root(stormId));
+        } catch (Exception e) {
+            LOG.error("Could not teardown backpressure for " + stormId, e);
+        }
+    }
+    
+    @Override
+    public void set_backpressure(String stormId, String supervisorId,
+            int port, Set<Integer> tasks) throws Exception {
+        String path = Cluster.backpressure_path(stormId, supervisorId, port);
+        if (tasks.isEmpty()) {
+            cluster_state.delete_node(path);
+        } else {
+            // it is removed with the worker's session
+            cluster_state.set_ephemeral_node(path,
+                    Utils.serialize(new HashSet<Integer>(tasks)));
+        }
+    }
+    
+    @Override
+    public Set<Integer> backpressure(String stormId, RunnableCallback callback)
+            throws Exception {
+        String root = Cluster.backpressure_storm_root(stormId);
+        boolean watch = (callback != null);
+        if (watch) {
+            backpressure_callback.put(stormId, callback);
+        }
+        
+        Set<Integer> ret = new HashSet<Integer>();
+        List<String> children = cluster_state.get_children(root, watch);
+        if (children == null) {
+            return ret;
+        }
+        for (String child : children) {
+            byte[] data = cluster_state.get_data(root + Cluster.ZK_SEPERATOR
+                    + child, watch);
+            Object tasks = Cluster.maybe_deserialize(data);
+            if (tasks != null) {
+                ret.addAll((Set<Integer>) tasks);
+            }
+        }
+        return ret;
+    }
+    
     @Override
     public void update_storm(String stormId, StormStatus newElems)
             throws Exception {
@@ -431,6 +806,7 @@ public class StormZkClusterState implements StormClusterState {
             base.setStatus(newElems);
             cluster_state.set_data(Cluster.storm_path(stormId),
                     Utils.serialize(base));
+            invalidate_tree(Cluster.storm_path(stormId));
         }
         
     }
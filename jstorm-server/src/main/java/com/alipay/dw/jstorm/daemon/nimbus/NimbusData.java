@@ -61,7 +61,7 @@ public class NimbusData {
         
         this.submittedCount = new AtomicInteger(0);
         
-        this.stormClusterState = Cluster.mk_storm_cluster_state(conf);
+        this.stormClusterState = Cluster.mk_cached_storm_cluster_state(conf);
         
         this.taskHeartbeatsCache = new ConcurrentHashMap<String, Map<Integer, TkHbCacheTime>>();
         
@@ -24,6 +24,7 @@ import com.alipay.dw.jstorm.cluster.StormConfig;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.schedule.CleanRunnable;
 import com.alipay.dw.jstorm.schedule.MonitorRunnable;
+import com.alipay.dw.jstorm.utils.FileServer;
 
 /**
  * 
@@ -56,6 +57,8 @@ public class NimbusServer {
     
     private THsHaServer         thriftServer;
     
+    private FileServer          fileServer;
+    
     public static void main(String[] args) throws Exception {
         // read configuration files
         @SuppressWarnings("rawtypes")
@@ -90,6 +93,8 @@ public class NimbusServer {
         
         serviceHandler = new ServiceHandler(data);
         
+        initFileServer(conf);
+        
         initThrift(conf);
         
     }
@@ -198,6 +203,30 @@ public class NimbusServer {
         LOG.info("Successfully init " + dir_location + " cleaner");
     }
     
+    /**
+     * stream the uploaded jars into /LOCAL-DIR/nimbus/inbox, and the files
+     * under /LOCAL-DIR/nimbus to the supervisors
+     * 
+     * @param conf
+     * @throws IOException
+     */
+    @SuppressWarnings("rawtypes")
+    private void initFileServer(Map conf) throws IOException {
+        int port = JStormUtils.parseInt(
+                conf.get(Config.NIMBUS_FILE_SERVER_PORT), 0);
+        if (port <= 0) {
+            return;
+        }
+        int chunkSize = JStormUtils.parseInt(
+                conf.get(Config.NIMBUS_FILE_CHUNK_SIZE), 8 * 1024 * 1024);
+        
+        fileServer = new FileServer(StormConfig.masterLocalDir(conf),
+                StormConfig.masterInbox(conf), chunkSize, port);
+        fileServer.start();
+        
+        LOG.info("Successfully init file server on port " + port);
+    }
+    
     @SuppressWarnings("rawtypes")
     private void initThrift(Map conf) throws TTransportException {
         Integer thrift_port = (Integer) conf.get(Config.NIMBUS_THRIFT_PORT);
@@ -236,6 +265,10 @@ public class NimbusServer {
             data.cleanup();
         }
         
+        if (fileServer != null) {
+            fileServer.interrupt();
+        }
+        
         if (thriftServer != null) {
             thriftServer.stop();
         }
@@ -153,25 +153,47 @@ public class NimbusUtils {
         
     }
     
+    /**
+     * read the heartbeats of all tasks of the topology, one znode per
+     * worker
+     * 
+     * @return null if failed to read ZK
+     */
+    public static Map<Integer, TaskHeartbeat> readTaskHeartbeats(
+            NimbusData data, String topologyId) {
+        try {
+            return data.getStormClusterState().task_heartbeats(topologyId);
+        } catch (Exception e) {
+            LOG.error("Failed to get ZK task hearbeats of " + topologyId, e);
+            return null;
+        }
+    }
+    
     public static boolean isTaskDead(NimbusData data, String topologyId,
             Integer taskId) {
+        return isTaskDead(data, topologyId, taskId,
+                readTaskHeartbeats(data, topologyId));
+    }
+    
+    /**
+     * @param zkHeartbeats
+     *            result of readTaskHeartbeats
+     */
+    public static boolean isTaskDead(NimbusData data, String topologyId,
+            Integer taskId, Map<Integer, TaskHeartbeat> zkHeartbeats) {
         String idStr = " topology:" + topologyId + ",taskid:" + taskId;
         
         
         Integer zkReportTime = null;
         
-        StormClusterState stormClusterState = data.getStormClusterState();
-        TaskHeartbeat zkTaskHeartbeat = null;
-        try {
-            zkTaskHeartbeat = stormClusterState.task_heartbeat(topologyId,
-                    taskId);
-            if (zkTaskHeartbeat != null) {
-                zkReportTime = zkTaskHeartbeat.getTimeSecs();
-            }
-        } catch (Exception e) {
+        if (zkHeartbeats == null) {
             LOG.error("Failed to get ZK task hearbeat " + idStr);
             return true;
         }
+        TaskHeartbeat zkTaskHeartbeat = zkHeartbeats.get(taskId);
+        if (zkTaskHeartbeat != null) {
+            zkReportTime = zkTaskHeartbeat.getTimeSecs();
+        }
         
         Map<Integer, TkHbCacheTime> taskHBs = data.getTaskHeartbeatsCache()
                 .get(topologyId);
@@ -692,6 +692,13 @@ public class ServiceHandler implements Iface, Shutdownable, DaemonCommon {
             // get topology's map<taskId, componentId>
             HashMap<Integer, String> taskInfo = Cluster.topology_task_info(
                     stormClusterState, topologyId);
+            
+            // one znode per worker
+            Map<Integer, TaskHeartbeat> heartbeats = stormClusterState
+                    .task_heartbeats(topologyId);
+            Map<Integer, TaskStats> taskStats = stormClusterState
+                    .task_stats(topologyId);
+            
             for (Entry<Integer, String> entry : taskInfo.entrySet()) {
                 
                 Integer taskId = entry.getKey();
@@ -705,8 +712,7 @@ public class ServiceHandler implements Iface, Shutdownable, DaemonCommon {
                 }
                 
                 // get heartbeat
-                TaskHeartbeat heartbeat = stormClusterState.task_heartbeat(
-                        topologyId, taskId);
+                TaskHeartbeat heartbeat = heartbeats.get(taskId);
                 if (heartbeat == null) {
                     LOG.warn("Topology " + topologyId + " task " + taskId
                             + " no heartbeat");
@@ -733,8 +739,11 @@ public class ServiceHandler implements Iface, Shutdownable, DaemonCommon {
                 TaskSummary taskSummary = new TaskSummary(taskId, componentId,
                         host, np.getPort(), uptimeSecs, newErrors);
                 
-                CommonStatsData status = (CommonStatsData) heartbeat.getStats();
-                TaskStats tkStatus = status.getTaskStats();
+                // stats are written in lower frequency than heartbeat
+                TaskStats tkStatus = taskStats.get(taskId);
+                if (tkStatus == null) {
+                    tkStatus = new CommonStatsData().getTaskStats();
+                }
                 taskSummary.set_stats(tkStatus);
                 
                 taskSummarys.add(taskSummary);
@@ -917,6 +926,11 @@ public class ServiceHandler implements Iface, Shutdownable, DaemonCommon {
         String path = StormConfig.stormjar_path(stormroot);
         File destFile = new File(path);
         FileUtils.copyFile(srcFile, destFile);
+        
+        // supervisors cache the jar by its md5
+        FileUtils.writeStringToFile(
+                new File(StormConfig.stormjar_md5_path(stormroot)),
+                Utils.md5Hex(path));
     }
     
     /**
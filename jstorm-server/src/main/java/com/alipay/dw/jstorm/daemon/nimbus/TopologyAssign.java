@@ -12,7 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.log4j.Logger;
@@ -21,6 +21,7 @@ import backtype.storm.Config;
 import backtype.storm.utils.TimeCacheMap;
 
 import com.alipay.dw.jstorm.callback.RunnableCallback;
+import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.cluster.Cluster;
 import com.alipay.dw.jstorm.cluster.StormBase;
 import com.alipay.dw.jstorm.cluster.StormClusterState;
@@ -29,7 +30,11 @@ import com.alipay.dw.jstorm.cluster.StormStatus;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.common.NodePort;
 import com.alipay.dw.jstorm.daemon.supervisor.SupervisorInfo;
+import com.alipay.dw.jstorm.schedule.DefaultTopologyScheduler;
+import com.alipay.dw.jstorm.schedule.ITopologyScheduler;
+import com.alipay.dw.jstorm.schedule.TopologyAssignContext;
 import com.alipay.dw.jstorm.task.Assignment;
+import com.alipay.dw.jstorm.task.heartbeat.TaskHeartbeat;
 import com.alipay.dw.jstorm.utils.PathUtils;
 import com.alipay.dw.jstorm.utils.TimeUtils;
 import com.esotericsoftware.minlog.Log;
@@ -76,11 +81,41 @@ public class TopologyAssign implements Runnable {
     
     protected NimbusData                                nimbusData;
     
+    protected ITopologyScheduler                        scheduler;
+    
     public void init(NimbusData nimbusData) {
         this.nimbusData = nimbusData;
+        this.scheduler = mkScheduler(nimbusData.getConf());
         new Thread(this).start();
     }
     
+    /**
+     * create the scheduler of nimbus.topology.scheduler, 
+     * use the default one if it isn't set or can't be created
+     */
+    public static ITopologyScheduler mkScheduler(Map conf) {
+        ITopologyScheduler scheduler = null;
+        
+        String className = (String) conf
+                .get(ConfigExtension.NIMBUS_TOPOLOGY_SCHEDULER);
+        if (className != null) {
+            try {
+                scheduler = (ITopologyScheduler) Class.forName(className)
+                        .newInstance();
+            } catch (Exception e) {
+                LOG.error("Failed to create scheduler " + className
+                        + ", use the default one", e);
+            }
+        }
+        if (scheduler == null) {
+            scheduler = new DefaultTopologyScheduler();
+        }
+        
+        scheduler.prepare(conf);
+        LOG.info("Nimbus uses scheduler " + scheduler.getClass().getName());
+        return scheduler;
+    }
+    
     public void cleanup() {
         runFlag = false;
     }
@@ -170,6 +205,7 @@ public class TopologyAssign implements Runnable {
             // /taskerror/topologyId
             clusterState.teardown_heartbeats(topologyId);
             clusterState.teardown_task_errors(topologyId);
+            clusterState.teardown_backpressure(topologyId);
             
             //
             nimbusData.getTaskHeartbeatsCache().remove(topologyId);
@@ -319,6 +355,18 @@ public class TopologyAssign implements Runnable {
         Assignment assignment = new Assignment(codeDir, taskNodePort, nodeHost,
                 startTimes);
         
+        if (assignment.equals(existingAssignment)) {
+            // don't wake up all supervisors and workers
+            LOG.info("Assignment of " + topologyId + " isn't changed");
+            return existingAssignment;
+        }
+        
+        if (existingAssignment != null) {
+            LOG.info("For " + topologyId + " moved tasks "
+                    + getAssignmentDiff(existingAssignment.getTaskToNodeport(),
+                            taskNodePort));
+        }
+        
         stormClusterState.set_assignment(topologyId, assignment);
         
         // update task heartbeat's start time
@@ -330,6 +378,30 @@ public class TopologyAssign implements Runnable {
         return assignment;
     }
     
+    /**
+     * get the tasks whose NodePort is changed
+     * 
+     * @param oldTaskToNodePort
+     * @param newTaskToNodePort
+     * @return Map<Integer, String> taskid -> "old NodePort -> new NodePort"
+     */
+    public static Map<Integer, String> getAssignmentDiff(
+            Map<Integer, NodePort> oldTaskToNodePort,
+            Map<Integer, NodePort> newTaskToNodePort) {
+        Map<Integer, String> rtn = new TreeMap<Integer, String>();
+        if (oldTaskToNodePort == null) {
+            oldTaskToNodePort = new HashMap<Integer, NodePort>();
+        }
+        
+        for (Entry<Integer, NodePort> entry : newTaskToNodePort.entrySet()) {
+            NodePort old = oldTaskToNodePort.get(entry.getKey());
+            if (entry.getValue().equals(old) == false) {
+                rtn.put(entry.getKey(), old + " -> " + entry.getValue());
+            }
+        }
+        return rtn;
+    }
+    
     /**
      * 
      * @param existingAssignment
@@ -379,8 +451,9 @@ public class TopologyAssign implements Runnable {
         // map<supervisorId, hostname>
         Map<String, String> allNodeHost = new HashMap<String, String>();
         
-        if (existingAssignment != null) {
-            allNodeHost = existingAssignment.getNodeHost();
+        if (existingAssignment != null
+                && existingAssignment.getNodeHost() != null) {
+            allNodeHost.putAll(existingAssignment.getNodeHost());
         }
         
         // get alive supervisorMap Map<supervisorId, hostname>
@@ -550,29 +623,38 @@ public class TopologyAssign implements Runnable {
             throw new InvalidParameterException(errMsg);
         }
         
+        Set<Integer> deadTasks = new HashSet<Integer>();
+        deadTasks.addAll(allTaskIds);
+        for (Entry<NodePort, List<Integer>> entry : aliveAssigned.entrySet()) {
+            deadTasks.removeAll(entry.getValue());
+        }
+        
+        // incremental reassign, every alive task is pinned, only the dead
+        // tasks are moved, so the other workers needn't be restarted or
+        // reconnected. It needs one slot for the dead tasks, a free one,
+        // or else an old one on a supervisor which is still alive
+        Set<NodePort> incrementalSlots = new HashSet<NodePort>();
+        boolean isIncremental = false;
         if (isScratch == true) {
             // the left aliveAssigned slot won't be kept
-        } else {
-            Set<Integer> deadTasks = new HashSet<Integer>();
-            
-            deadTasks.addAll(allTaskIds);
-            
-            for (Entry<NodePort, List<Integer>> entry : aliveAssigned
-                    .entrySet()) {
-                List<Integer> aliveTasks = entry.getValue();
-                
-                deadTasks.removeAll(aliveTasks);
-            }
-            
-            if (freeSlots.size() >= deadTasks.size()) {
-                // free slots is bigger than dead tasks
-                
-                if ((workerNum - unstopped.size()) > aliveAssigned.size()) {
-                    
-                    // dead task will only used freeslot
-                    keepAssigned.putAll(aliveAssigned);
-                }
+        } else if (deadTasks.isEmpty()) {
+            isIncremental = true;
+        } else if (workerNum > aliveAssigned.size()) {
+            incrementalSlots.addAll(freeSlots);
+            if (incrementalSlots.isEmpty()) {
+                incrementalSlots.addAll(getDeadSlots(existingAssignment,
+                        deadTasks, supInfos));
             }
+            incrementalSlots.removeAll(aliveAssigned.keySet());
+            incrementalSlots.removeAll(unstopped.keySet());
+            isIncremental = (incrementalSlots.isEmpty() == false);
+        }
+        
+        if (isIncremental == true) {
+            keepAssigned.putAll(aliveAssigned);
+        } else if (isScratch == false) {
+            LOG.warn("For " + topologyId + " no slot is left for dead tasks "
+                    + deadTasks + ", reassign all tasks");
         }
         
         Map<Integer, NodePort> stayAssignment = new HashMap<Integer, NodePort>();
@@ -586,29 +668,41 @@ public class TopologyAssign implements Runnable {
         }
         LOG.info("For " + topologyId + " keep slots " + stayAssignment);
         
-        // Step 2 : get to know which slot will be used and sort them
-        Set<NodePort> availableSlots = new TreeSet<NodePort>();
-        availableSlots.addAll(freeSlots);
-        availableSlots.addAll(aliveAssigned.keySet());
+        // Step 2 : the scheduler chooses the slots and puts the other tasks
+        Set<NodePort> availableSlots = new HashSet<NodePort>();
+        if (isIncremental == true) {
+            availableSlots.addAll(incrementalSlots);
+        } else {
+            availableSlots.addAll(freeSlots);
+            availableSlots.addAll(aliveAssigned.keySet());
+        }
         availableSlots.removeAll(keepAssigned.keySet());
         
-        // sort them, workerNum is definitely bigger than keepAssigned.size 
-        List<NodePort> sortedAvailableSlots = sortSlots(availableSlots,
-                (workerNum - keepAssigned.size()));
-        
-        TreeSet<Integer> needAssigneds = new TreeSet<Integer>();
-        needAssigneds.addAll(allTaskIds);
-        needAssigneds.removeAll(stayAssignment.keySet());
-        
-        Map<Integer, NodePort> newAssginment = new HashMap<Integer, NodePort>();
-        
-        int slotPos = 0;
-        for (Integer newTask : needAssigneds) {
-            newAssginment.put(newTask, sortedAvailableSlots.get(slotPos++));
-            if (slotPos == sortedAvailableSlots.size()) {
-                slotPos = 0;
-            }
-        }
+        Map<String, Integer> nodeFreeSlots = new HashMap<String, Integer>();
+        for (NodePort np : freeSlots) {
+            Integer num = nodeFreeSlots.get(np.getNode());
+            nodeFreeSlots.put(np.getNode(), num == null ? 1 : num + 1);
+        }
+        
+        TopologyAssignContext context = new TopologyAssignContext();
+        context.setTopologyId(topologyId);
+        context.setStormConf((Map<Object, Object>) topology_conf);
+        context.setRawTopology(StormConfig.read_nimbus_topology_code(
+                nimbusData.getConf(), topologyId));
+        context.setTaskToComponent(Cluster.topology_task_info(
+                stormClusterState, topologyId));
+        if (existingAssignment != null
+                && existingAssignment.getTaskToNodeport() != null) {
+            context.setOldAssignment(existingAssignment.getTaskToNodeport());
+        }
+        context.setKeepAssignment(stayAssignment);
+        context.setAvailableSlots(availableSlots);
+        // workerNum is definitely bigger than keepAssigned.size 
+        context.setNeedSlotNum(workerNum - keepAssigned.size());
+        context.setNodeFreeSlots(nodeFreeSlots);
+        context.setScratch(isScratch);
+        
+        Map<Integer, NodePort> newAssginment = scheduler.assignTasks(context);
         LOG.info("For " + topologyId + " new assign slots " + newAssginment);
         
         Map<Integer, NodePort> assignment = new HashMap<Integer, NodePort>();
@@ -756,6 +850,31 @@ public class TopologyAssign implements Runnable {
         
     }
     
+    /**
+     * Get the old slots of dead tasks, whose supervisor is still alive
+     * 
+     * @param existingAssignment
+     * @param deadTasks
+     * @param supInfos
+     * @return
+     */
+    public static Set<NodePort> getDeadSlots(Assignment existingAssignment,
+            Set<Integer> deadTasks, Map<String, SupervisorInfo> supInfos) {
+        Set<NodePort> rtn = new HashSet<NodePort>();
+        if (existingAssignment == null
+                || existingAssignment.getTaskToNodeport() == null) {
+            return rtn;
+        }
+        
+        for (Integer taskId : deadTasks) {
+            NodePort np = existingAssignment.getTaskToNodeport().get(taskId);
+            if (np != null && supInfos.containsKey(np.getNode())) {
+                rtn.add(np);
+            }
+        }
+        return rtn;
+    }
+    
     /**
      * find all ports which can be assigned
      * 
@@ -827,11 +946,14 @@ public class TopologyAssign implements Runnable {
         
         Set<Integer> aliveTasks = new HashSet<Integer>();
         
+        Map<Integer, TaskHeartbeat> zkHeartbeats = NimbusUtils
+                .readTaskHeartbeats(nimbusData, topologyId);
+        
         // taskIds is the list from ZK /ZK-DIR/tasks/topologyId
         for (int taskId : taskIds) {
             
             boolean isDead = NimbusUtils.isTaskDead(nimbusData, topologyId,
-                    taskId);
+                    taskId, zkHeartbeats);
             if (isDead == false) {
                 aliveTasks.add(taskId);
             }
@@ -0,0 +1,266 @@
+package com.alipay.dw.jstorm.daemon.supervisor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.thrift.TException;
+
+import backtype.storm.utils.FileClient;
+import backtype.storm.utils.Utils;
+
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.cluster.StormConfig;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.utils.FileServer;
+
+/**
+ * Topology jars of the supervisor, named by md5
+ * STORM-LOCAL-DIR/supervisor/jarcache/md5.jar
+ *
+ * A jar which isn't in the cache is fetched from the other supervisors
+ * of the topology first, the jar is split into chunks, every peer which
+ * has the jar downloads chunks in its own thread, the chunk of a failed
+ * peer is downloaded again by the others. If no peer has the jar, it is
+ * downloaded from nimbus.
+ *
+ * The cache dir is served to the other supervisors by one FileServer.
+ *
+ * @author longda
+ */
+class JarCache {
+    private static Logger LOG        = Logger.getLogger(JarCache.class);
+
+    private static final long CHUNK_SIZE = 4 * 1024 * 1024L;
+    private static final int  TIMEOUT_MS = 30 * 1000;
+    private static final long POLL_MS    = 100;
+
+    private Map           conf;
+    private int           port;
+    private int           maxNum;
+    private int           threadNum;
+
+    public JarCache(Map conf) {
+        this.conf = conf;
+        this.port = JStormUtils.parseInt(
+                conf.get(ConfigExtension.SUPERVISOR_JAR_SERVER_PORT),
+                ConfigExtension.DEFAULT_SUPERVISOR_JAR_SERVER_PORT);
+        this.maxNum = JStormUtils.parseInt(
+                conf.get(ConfigExtension.SUPERVISOR_JAR_CACHE_NUM),
+                ConfigExtension.DEFAULT_SUPERVISOR_JAR_CACHE_NUM);
+        this.threadNum = JStormUtils.parseInt(
+                conf.get(ConfigExtension.SUPERVISOR_JAR_DOWNLOAD_THREADS),
+                ConfigExtension.DEFAULT_SUPERVISOR_JAR_DOWNLOAD_THREADS);
+    }
+
+    /**
+     * @return the server of the cache dir, null if it is disabled
+     */
+    public FileServer mkServer() throws IOException {
+        if (port <= 0) {
+            return null;
+        }
+        FileServer server = new FileServer(
+                StormConfig.supervisor_jarcache_root(conf), port);
+        server.start();
+        return server;
+    }
+
+    private static String name(String md5) {
+        return md5 + ".jar";
+    }
+
+    /**
+     * copy the jar of md5 to localFile, fetch it if it isn't cached
+     *
+     * @param peers hosts of the other supervisors of the topology
+     */
+    public void get(String md5, String masterFile, List<String> peers,
+            String localFile) throws IOException, TException {
+        String root = StormConfig.supervisor_jarcache_root(conf);
+        File cached = new File(root, name(md5));
+
+        if (cached.exists()) {
+            LOG.info("Hit jar cache " + md5);
+        } else {
+            // only complete jars are renamed into the cache dir
+            File part = new File(StormConfig.supervisorTmpDir(conf),
+                    name(md5) + ".part");
+
+            boolean fetched = false;
+            if (port > 0 && peers.isEmpty() == false) {
+                fetched = fetchFromPeers(md5, peers, part);
+            }
+            if (fetched == false) {
+                LOG.info("Downloading jar " + md5 + " from nimbus");
+                Utils.downloadFromMaster(conf, masterFile, part.getPath());
+                if (md5.equals(Utils.md5Hex(part.getPath())) == false) {
+                    part.delete();
+                    throw new IOException("md5 of " + masterFile
+                            + " downloaded from nimbus isn't " + md5);
+                }
+            }
+
+            if (part.renameTo(cached) == false) {
+                throw new IOException("Failed to move " + part + " to "
+                        + cached);
+            }
+        }
+
+        // the recently used jars are kept when cleaning
+        cached.setLastModified(System.currentTimeMillis());
+        FileUtils.copyFile(cached, new File(localFile));
+    }
+
+    private boolean fetchFromPeers(String md5, List<String> peers, File part) {
+        final String name = name(md5);
+
+        // connect the peers which have the jar
+        long size = -1;
+        List<FileClient> clients = new ArrayList<FileClient>();
+        for (String peer : peers) {
+            if (clients.size() >= threadNum) {
+                break;
+            }
+            FileClient client = null;
+            try {
+                client = new FileClient(peer, port, TIMEOUT_MS);
+                long peerSize = client.size(name);
+                if (peerSize >= 0) {
+                    size = peerSize;
+                    clients.add(client);
+                    continue;
+                }
+            } catch (IOException e) {
+                LOG.info("Failed to connect supervisor " + peer + ":" + port
+                        + ", " + e.getMessage());
+            }
+            if (client != null) {
+                client.close();
+            }
+        }
+        if (clients.isEmpty()) {
+            LOG.info("No other supervisor has jar " + md5);
+            return false;
+        }
+
+        final LinkedBlockingQueue<Long> chunks = new LinkedBlockingQueue<Long>();
+        for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+            chunks.add(offset);
+        }
+        final AtomicInteger doneNum = new AtomicInteger(0);
+        final int chunkNum = chunks.size();
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(part, "rw");
+            raf.setLength(size);
+            final FileChannel dest = raf.getChannel();
+
+            List<Thread> threads = new ArrayList<Thread>();
+            for (final FileClient client : clients) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // keep running until all chunks are done, a
+                        // failed fetcher gives its chunk back to the
+                        // others, so only quit when this peer fails
+                        while (doneNum.get() < chunkNum) {
+                            Long offset;
+                            try {
+                                offset = chunks.poll(POLL_MS,
+                                        TimeUnit.MILLISECONDS);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            if (offset == null) {
+                                continue;
+                            }
+                            try {
+                                client.read(name, offset, CHUNK_SIZE, dest);
+                                doneNum.incrementAndGet();
+                            } catch (IOException e) {
+                                LOG.info("Failed to fetch chunk " + offset
+                                        + " of " + name + ", "
+                                        + e.getMessage());
+                                chunks.add(offset);
+                                return;
+                            }
+                        }
+                    }
+                });
+                thread.setName("JarFetcher-" + md5);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to fetch jar " + md5 + " from supervisors", e);
+        } finally {
+            for (FileClient client : clients) {
+                client.close();
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close " + part, e);
+                }
+            }
+        }
+
+        try {
+            if (doneNum.get() == chunkNum
+                    && md5.equals(Utils.md5Hex(part.getPath()))) {
+                LOG.info("Fetched jar " + md5 + " from " + clients.size()
+                        + " supervisors");
+                return true;
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to check md5 of " + part, e);
+        }
+        LOG.warn("Failed to fetch jar " + md5 + " from supervisors");
+        part.delete();
+        return false;
+    }
+
+    /**
+     * remove the least recently used jars
+     */
+    public void clean() {
+        try {
+            File[] jars = new File(StormConfig.supervisor_jarcache_root(conf))
+                    .listFiles();
+            if (jars == null || jars.length <= maxNum) {
+                return;
+            }
+            Arrays.sort(jars, new Comparator<File>() {
+                @Override
+                public int compare(File o1, File o2) {
+                    long diff = o2.lastModified() - o1.lastModified();
+                    return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
+                }
+            });
+            for (int i = maxNum; i < jars.length; i++) {
+                LOG.info("Remove " + jars[i].getName() + " from jar cache");
+                jars[i].delete();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to clean jar cache", e);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.event.EventManager;
 import com.alipay.dw.jstorm.event.EventManagerImp;
 import com.alipay.dw.jstorm.event.EventManagerPusher;
+import com.alipay.dw.jstorm.utils.FileServer;
 import com.alipay.dw.jstorm.utils.NetWorkUtils;
 import com.alipay.dw.jstorm.utils.SmartThread;
 import com.alipay.dw.jstorm.utils.TimeUtils;
@@ -84,7 +85,7 @@ public class Supervisor {
          */
         
         StormClusterState stormClusterState = Cluster
-                .mk_storm_cluster_state(conf);
+                .mk_cached_storm_cluster_state(conf);
         
         /*
          * Step 3, create LocalStat
@@ -121,10 +122,17 @@ public class Supervisor {
         SyncProcessEvent syncProcessEvent = new SyncProcessEvent(supervisorId,
                 conf, localState, workerThreadPids, sharedContext);
         
+        // serve the cached jars to the other supervisors
+        JarCache jarCache = new JarCache(conf);
+        FileServer jarServer = jarCache.mkServer();
+        if (jarServer != null) {
+            threads.add(jarServer);
+        }
+        
         EventManager syncSupEventManager = new EventManagerImp(false);
         SyncSupervisorEvent syncSupervisorEvent = new SyncSupervisorEvent(
                 supervisorId, conf, processEventManager, syncSupEventManager,
-                stormClusterState, localState, syncProcessEvent);
+                stormClusterState, localState, syncProcessEvent, jarCache);
         
         int syncFrequence = (Integer) conf
                 .get(Config.SUPERVISOR_MONITOR_FREQUENCY_SECS);
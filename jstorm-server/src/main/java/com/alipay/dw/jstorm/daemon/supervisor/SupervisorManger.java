@@ -117,6 +117,8 @@ class SupervisorManger extends ShutdownWork implements Shutdownable,
                 
             }
         }
+        
+        WarmWorkerPool.shutdownAll(conf);
     }
     
     @Override
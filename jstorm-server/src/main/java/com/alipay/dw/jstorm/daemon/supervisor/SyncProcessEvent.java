@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -17,6 +18,7 @@ import backtype.storm.Config;
 import backtype.storm.utils.LocalState;
 import backtype.storm.utils.Time;
 
+import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.cluster.Common;
 import com.alipay.dw.jstorm.cluster.StormConfig;
 import com.alipay.dw.jstorm.daemon.worker.ProcessSimulator;
@@ -48,6 +50,9 @@ class SyncProcessEvent extends ShutdownWork {
     
     private MQContext                         sharedContext;
     
+    // null if no warm worker is kept
+    private WarmWorkerPool                    warmPool;
+    
     // private Supervisor supervisor;
     
     /**
@@ -74,6 +79,15 @@ class SyncProcessEvent extends ShutdownWork {
         
         // right now, sharedContext is null
         this.sharedContext = sharedContext;
+        
+        int warmNum = JStormUtils.parseInt(
+                conf.get(ConfigExtension.SUPERVISOR_WARM_WORKERS),
+                ConfigExtension.DEFAULT_SUPERVISOR_WARM_WORKERS);
+        if (warmNum > 0
+                && StormConfig.cluster_mode(conf).equals("distributed")) {
+            this.warmPool = new WarmWorkerPool(conf, warmNum);
+            LOG.info("Keep " + warmNum + " warm workers");
+        }
     }
     
     /**
@@ -131,6 +145,9 @@ class SyncProcessEvent extends ShutdownWork {
             // start new workers
             startNewWorkers(keepPorts, localAssignments);
             
+            // replace the warm workers which have been used
+            refillWarmWorkers();
+            
         } catch (Exception e) {
             LOG.error("Failed Sync Process", e);
             // throw e
@@ -141,6 +158,9 @@ class SyncProcessEvent extends ShutdownWork {
     /**
      * wait for all workers of the supervisor launch
      * 
+     * all workers are checked in every round, so the time is the slowest
+     * worker's, not the sum
+     * 
      * @param conf
      * @param workerIds
      * @throws InterruptedException
@@ -151,50 +171,29 @@ class SyncProcessEvent extends ShutdownWork {
             throws IOException, InterruptedException {
         
         int startTime = TimeUtils.current_time_secs();
+        int timeout = (Integer) conf
+                .get(Config.SUPERVISOR_WORKER_START_TIMEOUT_SECS);
         
-        for (String workerId : workerIds) {
-            
-            waitForWorkerLaunch(conf, workerId, startTime);
-        }
-    }
-    
-    /**
-     * wait for worker launch if the time is not > *
-     * SUPERVISOR_WORKER_START_TIMEOUT_SECS, otherwise info failed
-     * 
-     * @param conf
-     * @param workerId
-     * @param startTime
-     * @throws IOException
-     * @throws InterruptedException
-     * @pdOid f0a6ab43-8cd3-44e1-8fd3-015a2ec51c6a
-     */
-    public void waitForWorkerLaunch(Map conf, String workerId, int startTime)
-            throws IOException, InterruptedException {
-        
-        LocalState ls = StormConfig.worker_state(conf, workerId);
-        
+        Set<String> waitings = new HashSet<String>(workerIds);
         while (true) {
+            for (Iterator<String> it = waitings.iterator(); it.hasNext();) {
+                String workerId = it.next();
+                if (readWorkerHeartbeat(conf, workerId) != null) {
+                    LOG.info("Successfully start worker " + workerId);
+                    it.remove();
+                }
+            }
             
-            WorkerHeartbeat whb = (WorkerHeartbeat) ls
-                    .get(Common.LS_WORKER_HEARTBEAT);
-            if (whb == null
-                    && ((TimeUtils.current_time_secs() - startTime) < (Integer) conf
-                            .get(Config.SUPERVISOR_WORKER_START_TIMEOUT_SECS))) {
-                LOG.info(workerId + "still hasn't started");
-                Time.sleep(500);
-            } else {
-                // whb is valid or timeout
+            if (waitings.isEmpty()) {
                 break;
             }
-        }
-        
-        WorkerHeartbeat whb = (WorkerHeartbeat) ls
-                .get(Common.LS_WORKER_HEARTBEAT);
-        if (whb == null) {
-            LOG.error("Failed to start Worker " + workerId);
-        } else {
-            LOG.info("Successfully start worker " + workerId);
+            if (TimeUtils.current_time_secs() - startTime >= timeout) {
+                LOG.error("Failed to start Worker " + waitings);
+                break;
+            }
+            
+            LOG.info(waitings + " still hasn't started");
+            Time.sleep(500);
         }
     }
     
@@ -413,9 +412,15 @@ class SyncProcessEvent extends ShutdownWork {
         }
         
         StringBuilder sb = new StringBuilder();
-        sb.append(stormjar);
+        if (stormjar != null) {
+            // the warm worker adds it later
+            sb.append(stormjar);
+        }
         for (String jar : classSet) {
-            sb.append(":" + jar);
+            if (sb.length() > 0) {
+                sb.append(":");
+            }
+            sb.append(jar);
         }
         
         return sb.toString();
@@ -457,21 +462,69 @@ class SyncProcessEvent extends ShutdownWork {
         
         // get child process parameter
         
-        String childopts = "";
-        if (conf.get(Config.WORKER_CHILDOPTS) != null) {
-            childopts += conf.get(Config.WORKER_CHILDOPTS);
-        } else if (stormConf.get(Config.TOPOLOGY_WORKER_CHILDOPTS) != null) {
-            childopts += " " + stormConf.get(Config.TOPOLOGY_WORKER_CHILDOPTS);
+        String childopts = getChildOpts(stormConf);
+        
+        if (warmPool != null && childopts.equals(getChildOpts(null))
+                && childopts.contains("%ID%") == false) {
+            String warmId = warmPool.take();
+            if (warmId != null) {
+                LOG.info("Hand worker " + workerId + " to warm worker "
+                        + warmId);
+                warmPool.handoff(warmId, topologyId, supervisorId, port,
+                        workerId);
+                return;
+            }
         }
+        
         // @@@ some hack logic in the old storm, reserve it here
         childopts = childopts.replace("%ID%", port.toString());
         
         String logFileName = topologyId + "-worker-" + port + ".log";
         
-        Map<String, String> environment = new HashMap<String, String>();
-        environment.put("LD_LIBRARY_PATH",
-                (String) conf.get(Config.JAVA_LIBRARY_PATH));
+        StringBuilder commandSB = mkWorkerCommand(childopts, logFileName,
+                stormjar);
+        
+        commandSB.append(" com.alipay.dw.jstorm.daemon.worker.Worker ");
+        commandSB.append(topologyId);
+        
+        commandSB.append(" ");
+        commandSB.append(supervisorId);
         
+        commandSB.append(" ");
+        commandSB.append(port);
+        
+        commandSB.append(" ");
+        commandSB.append(workerId);
+        
+        launch(commandSB.toString());
+    }
+    
+    /**
+     * the topology's worker childopts is used only when
+     * the supervisor's isn't set
+     * 
+     * @param stormConf
+     *            null means the supervisor's
+     */
+    private String getChildOpts(Map stormConf) {
+        String childopts = "";
+        if (conf.get(Config.WORKER_CHILDOPTS) != null) {
+            childopts += conf.get(Config.WORKER_CHILDOPTS);
+        } else if (stormConf != null
+                && stormConf.get(Config.TOPOLOGY_WORKER_CHILDOPTS) != null) {
+            childopts += " " + stormConf.get(Config.TOPOLOGY_WORKER_CHILDOPTS);
+        }
+        return childopts;
+    }
+    
+    /**
+     * java command of the worker, without main class
+     * 
+     * @param stormjar
+     *            null for the warm worker
+     */
+    private StringBuilder mkWorkerCommand(String childopts,
+            String logFileName, String stormjar) {
         StringBuilder commandSB = new StringBuilder();
         
         commandSB.append("java -server ");
@@ -501,24 +554,37 @@ class SyncProcessEvent extends ShutdownWork {
         commandSB.append(workerClassPath + ":");
         commandSB.append(classpath);
         
-        commandSB.append(" com.alipay.dw.jstorm.daemon.worker.Worker ");
-        commandSB.append(topologyId);
-        
-        commandSB.append(" ");
-        commandSB.append(supervisorId);
-        
-        commandSB.append(" ");
-        commandSB.append(port);
-        
-        commandSB.append(" ");
-        commandSB.append(workerId);
+        return commandSB;
+    }
+    
+    private void launch(String command) throws IOException {
+        Map<String, String> environment = new HashMap<String, String>();
+        environment.put("LD_LIBRARY_PATH",
+                (String) conf.get(Config.JAVA_LIBRARY_PATH));
         
-        LOG.info("Launching worker with command: " + commandSB);
+        LOG.info("Launching worker with command: " + command);
         LOG.info("Environment:" + environment.toString());
         
+        JStormUtils.launch_process(command, environment);
+    }
+    
+    /**
+     * start the warm workers, they wait for the worker in the background
+     */
+    private void refillWarmWorkers() throws IOException {
+        if (warmPool == null) {
+            return;
+        }
         
-        
-        JStormUtils.launch_process(commandSB.toString(), environment);
+        for (String warmId : warmPool.refill()) {
+            StringBuilder commandSB = mkWorkerCommand(getChildOpts(null),
+                    "warm-worker.log", null);
+            
+            commandSB.append(" com.alipay.dw.jstorm.daemon.worker.WarmWorker ");
+            commandSB.append(warmId);
+            
+            launch(commandSB.toString());
+        }
     }
     
     private Set<Integer> killUselessWorkers(
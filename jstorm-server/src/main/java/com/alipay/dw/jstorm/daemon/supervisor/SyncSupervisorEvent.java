@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -60,6 +61,8 @@ class SyncSupervisorEvent extends RunnableCallback {
     
     private SyncProcessEvent    syncProcesses;
     
+    private JarCache            jarCache;
+    
     /**
      * @param conf
      * @param processEventManager
@@ -68,11 +71,12 @@ class SyncSupervisorEvent extends RunnableCallback {
      * @param supervisorId
      * @param localState
      * @param syncProcesses
+     * @param jarCache
      */
     public SyncSupervisorEvent(String supervisorId, Map conf,
             EventManager processEventManager, EventManager syncSupEventManager,
             StormClusterState stormClusterState, LocalState localState,
-            SyncProcessEvent syncProcesses) {
+            SyncProcessEvent syncProcesses, JarCache jarCache) {
         
         this.syncProcesses = syncProcesses;
         this.processEventManager = processEventManager;
@@ -81,6 +85,7 @@ class SyncSupervisorEvent extends RunnableCallback {
         this.conf = conf;
         this.supervisorId = supervisorId;
         this.localState = localState;
+        this.jarCache = jarCache;
         
     }
     
@@ -133,12 +138,13 @@ class SyncSupervisorEvent extends RunnableCallback {
             
             Map<String, String> topologyCodes = getTopologyCodeLocations(assignments);
             
-            downloadTopology(topologyCodes, downloadedTopologyIds);
+            downloadTopology(topologyCodes, downloadedTopologyIds, assignments);
             
             /**
              * Step 6: remove any downloaded useless topology
              */
             removeUselessTopology(topologyCodes, downloadedTopologyIds);
+            jarCache.clean();
             
             /**
              * Step 7: push syncProcesses Event
@@ -158,15 +164,16 @@ class SyncSupervisorEvent extends RunnableCallback {
      * @param conf
      * @param stormId
      * @param masterCodeDir
-     * @param clusterMode
+     * @param peers
      * @throws IOException
      */
     private void downloadStormCode(Map conf, String stormId,
-            String masterCodeDir) throws IOException, TException {
+            String masterCodeDir, List<String> peers) throws IOException,
+            TException {
         String clusterMode = StormConfig.cluster_mode(conf);
         
         if (clusterMode.endsWith("distributed")) {
-            downloadDistributeStormCode(conf, stormId, masterCodeDir);
+            downloadDistributeStormCode(conf, stormId, masterCodeDir, peers);
         } else if (clusterMode.endsWith("local")) {
             downloadLocalStormCode(conf, stormId, masterCodeDir);
             
@@ -216,11 +223,13 @@ class SyncSupervisorEvent extends RunnableCallback {
      * @param conf
      * @param stormId
      * @param masterCodeDir
+     * @param peers hosts of the other supervisors of the topology
      * @throws IOException
      * @throws TException
      */
     private void downloadDistributeStormCode(Map conf, String stormId,
-            String masterCodeDir) throws IOException, TException {
+            String masterCodeDir, List<String> peers) throws IOException,
+            TException {
         
         // STORM_LOCAL_DIR/supervisor/tmp/(UUID)
         String tmproot = StormConfig.supervisorTmpDir(conf) + "/"
@@ -234,9 +243,26 @@ class SyncSupervisorEvent extends RunnableCallback {
         String masterStormjarPath = StormConfig.stormjar_path(masterCodeDir);
         // tmproot/stormjar.jar
         String localFileJarTmp = StormConfig.stormjar_path(tmproot);
+        
+        // masterCodeDir/stormjar.md5, it doesn't exist for the topologies
+        // submitted to the old nimbus
+        String md5 = null;
+        String localFileMd5Tmp = StormConfig.stormjar_md5_path(tmproot);
+        try {
+            Utils.downloadFromMaster(conf,
+                    StormConfig.stormjar_md5_path(masterCodeDir),
+                    localFileMd5Tmp);
+            md5 = FileUtils.readFileToString(new File(localFileMd5Tmp)).trim();
+        } catch (TException e) {
+            LOG.info("No md5 of " + masterStormjarPath + ", " + e.getMessage());
+        }
+        
         // load stormjar.jar
-        Utils.downloadFromMaster(conf, masterStormjarPath, localFileJarTmp);// load
-        // storm.jar
+        if (md5 != null) {
+            jarCache.get(md5, masterStormjarPath, peers, localFileJarTmp);
+        } else {
+            Utils.downloadFromMaster(conf, masterStormjarPath, localFileJarTmp);
+        }
         
         // masterCodeDir/stormcode.ser
         String masterStormcodePath = StormConfig.stormcode_path(masterCodeDir);
@@ -421,7 +447,8 @@ class SyncSupervisorEvent extends RunnableCallback {
     }
     
     public void downloadTopology(Map<String, String> topologyCodes,
-            List<String> downloadedTopologyIds) throws Exception {
+            List<String> downloadedTopologyIds,
+            Map<String, Assignment> assignments) throws Exception {
         
         for (Entry<String, String> entry : topologyCodes.entrySet()) {
             
@@ -434,7 +461,8 @@ class SyncSupervisorEvent extends RunnableCallback {
                         + masterCodeDir);
                 
                 try {
-                    downloadStormCode(conf, stormId, masterCodeDir);
+                    downloadStormCode(conf, stormId, masterCodeDir,
+                            getPeers(assignments.get(stormId)));
                 } catch (IOException e) {
                     LOG.error(e + " downloadStormCode failed " + "stormId:"
                             + stormId + "masterCodeDir:" + masterCodeDir);
@@ -452,6 +480,26 @@ class SyncSupervisorEvent extends RunnableCallback {
         }
     }
     
+    /**
+     * @return hosts of the other supervisors of the topology, shuffled so
+     *         that the supervisors fetch the jar from different peers
+     */
+    private List<String> getPeers(Assignment assignment) {
+        Set<String> hosts = new HashSet<String>();
+        if (assignment == null || assignment.getNodeHost() == null) {
+            return new ArrayList<String>();
+        }
+        for (Entry<String, String> entry : assignment.getNodeHost()
+                .entrySet()) {
+            if (supervisorId.equals(entry.getKey()) == false) {
+                hosts.add(entry.getValue());
+            }
+        }
+        List<String> rtn = new ArrayList<String>(hosts);
+        Collections.shuffle(rtn);
+        return rtn;
+    }
+    
     public void removeUselessTopology(Map<String, String> topologyCodes,
             List<String> downloadedTopologyIds) {
         for (String topologyId : downloadedTopologyIds) {
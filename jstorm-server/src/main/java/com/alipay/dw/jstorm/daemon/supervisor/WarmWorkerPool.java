@@ -0,0 +1,153 @@
+package com.alipay.dw.jstorm.daemon.supervisor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import backtype.storm.Config;
+
+import com.alipay.dw.jstorm.cluster.StormConfig;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.daemon.worker.WarmWorker;
+import com.alipay.dw.jstorm.utils.PathUtils;
+
+/**
+ * Idle pre-started worker JVMs of the supervisor
+ *
+ * Every warm JVM has one dir STORM-LOCAL-DIR/workers-warm/warmId,
+ * the supervisor creates it before launching the JVM, the JVM writes
+ * pids/pid, then touches "ready" after loading the classes.
+ *
+ * The supervisor hands a worker to it by writing "assignment", the JVM
+ * removes its dir and starts the worker, it exits if its dir is removed
+ * before that.
+ *
+ * All state is on the disk, so a restarted supervisor can clean the
+ * JVMs of the last one.
+ *
+ * @author longda
+ */
+class WarmWorkerPool {
+    private static Logger       LOG        = Logger.getLogger(WarmWorkerPool.class);
+
+    private Map                 conf;
+    private int                 size;
+    private int                 startTimeoutSecs;
+
+    public WarmWorkerPool(Map conf, int size) {
+        this.conf = conf;
+        this.size = size;
+        this.startTimeoutSecs = JStormUtils.parseInt(
+                conf.get(Config.SUPERVISOR_WORKER_START_TIMEOUT_SECS), 120);
+
+        // the JVMs of the last supervisor may not match the new conf
+        shutdownAll(conf);
+    }
+
+    /**
+     * remove the warm JVMs which can't start, create the dirs of the new
+     * ones
+     *
+     * @return the warmIds which should be launched
+     */
+    public List<String> refill() throws IOException {
+        List<String> rtn = new ArrayList<String>();
+
+        String root = StormConfig.worker_warm_root(conf);
+        int num = 0;
+        for (String warmId : PathUtils.read_dir_contents(root)) {
+            File dir = new File(root, warmId);
+            long ageSecs = (System.currentTimeMillis() - dir.lastModified()) / 1000;
+
+            if (new File(dir, WarmWorker.READY).exists() == false
+                    && ageSecs > startTimeoutSecs) {
+                LOG.warn("Warm worker " + warmId + " can't start in "
+                        + startTimeoutSecs + " seconds");
+                kill(conf, warmId);
+                continue;
+            }
+            if (new File(dir, WarmWorker.ASSIGNMENT).exists()) {
+                // it has been handed a worker, it will remove the dir
+                if (ageSecs > startTimeoutSecs) {
+                    kill(conf, warmId);
+                }
+                continue;
+            }
+            num++;
+        }
+
+        for (; num < size; num++) {
+            String warmId = UUID.randomUUID().toString();
+            FileUtils.forceMkdir(new File(StormConfig.worker_warm_path(conf,
+                    warmId), WarmWorker.PIDS));
+            rtn.add(warmId);
+        }
+        return rtn;
+    }
+
+    /**
+     * @return one ready warm JVM, null if there is none
+     */
+    public String take() throws IOException {
+        String root = StormConfig.worker_warm_root(conf);
+        for (String warmId : PathUtils.read_dir_contents(root)) {
+            File dir = new File(root, warmId);
+            if (new File(dir, WarmWorker.READY).exists()
+                    && new File(dir, WarmWorker.ASSIGNMENT).exists() == false) {
+                return warmId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * hand the worker to the warm JVM, the file is renamed into its dir,
+     * so the JVM never reads a partial one
+     */
+    public void handoff(String warmId, String topologyId,
+            String supervisorId, Integer port, String workerId)
+            throws IOException {
+        String dir = StormConfig.worker_warm_path(conf, warmId);
+
+        File tmp = new File(dir, WarmWorker.ASSIGNMENT + ".tmp");
+        FileUtils.writeStringToFile(tmp, topologyId + " " + supervisorId
+                + " " + port + " " + workerId);
+        if (tmp.renameTo(new File(dir, WarmWorker.ASSIGNMENT)) == false) {
+            throw new IOException("Failed to hand worker " + workerId
+                    + " to warm worker " + warmId);
+        }
+    }
+
+    /**
+     * kill the warm JVM and remove its dir
+     */
+    public static void kill(Map conf, String warmId) {
+        try {
+            String dir = StormConfig.worker_warm_path(conf, warmId);
+            String pids = dir + "/" + WarmWorker.PIDS;
+            for (String pid : PathUtils.read_dir_contents(pids)) {
+                JStormUtils.ensure_process_killed(Integer.parseInt(pid));
+            }
+            PathUtils.rmr(dir);
+        } catch (Exception e) {
+            LOG.warn("Failed to kill warm worker " + warmId, e);
+        }
+    }
+
+    public static void shutdownAll(Map conf) {
+        try {
+            String root = StormConfig.worker_warm_root(conf);
+            for (String warmId : PathUtils.read_dir_contents(root)) {
+                kill(conf, warmId);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to shutdown warm workers", e);
+        }
+    }
+}
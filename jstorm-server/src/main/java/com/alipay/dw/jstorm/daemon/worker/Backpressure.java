@@ -0,0 +1,215 @@
+package com.alipay.dw.jstorm.daemon.worker;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.alipay.dw.jstorm.callback.RunnableCallback;
+import com.alipay.dw.jstorm.cluster.StormClusterState;
+
+/**
+ * Throttled tasks of the topology
+ *
+ * A bolt task whose receiving queue is above the high watermark throttles
+ * itself until the queue drains below the low watermark. The spouts of
+ * current worker see it at once, the other workers see it through ZK:
+ * every worker writes its throttled tasks into one ephemeral node
+ * /backpressure/topologyId/supervisorId-port and watches the others, ZK
+ * is only read again when the watch fires. The watch is lost with an
+ * expired session, so everything is synced every RESYNC_MS anyway.
+ *
+ * The spouts pause nextTuple while one of their downstream tasks is
+ * throttled.
+ *
+ * @author longda
+ *
+ */
+public class Backpressure extends RunnableCallback {
+    private static final Logger    LOG         = Logger.getLogger(Backpressure.class);
+
+    private static final long      RESYNC_MS   = 60 * 1000L;
+    private static final long      RETRY_MS    = 1000L;
+
+    private StormClusterState      zkCluster;
+    private String                 topologyId;
+    private String                 supervisorId;
+    private int                    port;
+    private AtomicBoolean          active;
+
+    // the following are guarded by this, dirty is also read without it
+    private final Set<Integer>     localTasks  = new HashSet<Integer>();
+    private Set<Integer>           remoteTasks = new HashSet<Integer>();
+    private volatile boolean       dirty       = false;
+    // the watch has fired, the remote tasks have to be read again
+    private volatile boolean       remoteChanged = true;
+    private long                   lastSyncMs  = 0;
+
+    // local and remote throttled tasks, it is replaced when changed
+    private volatile Set<Integer>  throttled   = Collections.emptySet();
+
+    private final Object           pollLock    = new Object();
+    private boolean                isSetup     = false;
+    private boolean                zkFailed    = false;
+
+    public Backpressure(StormClusterState zkCluster, String topologyId,
+            String supervisorId, int port, AtomicBoolean active) {
+        this.zkCluster = zkCluster;
+        this.topologyId = topologyId;
+        this.supervisorId = supervisorId;
+        this.port = port;
+        this.active = active;
+    }
+
+    public void throttle(int taskId) {
+        synchronized (this) {
+            if (localTasks.add(taskId) == false) {
+                return;
+            }
+            dirty = true;
+            update();
+        }
+        LOG.info("Throttle task " + taskId + " of " + topologyId);
+        wakePoll();
+    }
+
+    public void release(int taskId) {
+        synchronized (this) {
+            if (localTasks.remove(taskId) == false) {
+                return;
+            }
+            dirty = true;
+            update();
+        }
+        LOG.info("Release task " + taskId + " of " + topologyId);
+        wakePoll();
+    }
+
+    private void update() {
+        Set<Integer> all = new HashSet<Integer>(localTasks);
+        all.addAll(remoteTasks);
+        throttled = all;
+        notifyAll();
+    }
+
+    private final RunnableCallback watcher = new RunnableCallback() {
+        @Override
+        public void run() {
+            remoteChanged = true;
+            wakePoll();
+        }
+    };
+
+    private void wakePoll() {
+        synchronized (pollLock) {
+            pollLock.notify();
+        }
+    }
+
+    public boolean isThrottled(Set<Integer> tasks) {
+        Set<Integer> curr = throttled;
+        if (curr.isEmpty()) {
+            return false;
+        }
+        for (Integer task : curr) {
+            if (tasks.contains(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * wait until none of the tasks is throttled, at most timeoutMs
+     */
+    public synchronized void awaitRelease(Set<Integer> tasks, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (isThrottled(tasks)) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return;
+            }
+            wait(left);
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        boolean resync = (now - lastSyncMs >= RESYNC_MS);
+
+        Set<Integer> local = null;
+        synchronized (this) {
+            if (dirty || (resync && localTasks.isEmpty() == false)) {
+                local = new HashSet<Integer>(localTasks);
+                dirty = false;
+            }
+        }
+
+        boolean reread = remoteChanged || resync;
+        try {
+            if (isSetup == false) {
+                zkCluster.setup_backpressure(topologyId);
+                isSetup = true;
+            }
+            if (local != null) {
+                zkCluster.set_backpressure(topologyId, supervisorId, port,
+                        local);
+            }
+
+            if (reread) {
+                // clear it before reading, a change after the read fires
+                // the new watch
+                remoteChanged = false;
+                Set<Integer> remote = zkCluster.backpressure(topologyId,
+                        watcher);
+                synchronized (this) {
+                    if (remote.equals(remoteTasks) == false) {
+                        remoteTasks = remote;
+                        update();
+                    }
+                }
+            }
+            if (resync) {
+                lastSyncMs = now;
+            }
+            zkFailed = false;
+        } catch (Exception e) {
+            synchronized (this) {
+                dirty |= (local != null);
+            }
+            remoteChanged |= reread;
+            // don't flood the log at every retry
+            if (zkFailed == false) {
+                LOG.warn("Failed to sync backpressure of " + topologyId, e);
+                zkFailed = true;
+            }
+        }
+
+        synchronized (pollLock) {
+            try {
+                long waitMs = zkFailed ? RETRY_MS : lastSyncMs + RESYNC_MS
+                        - System.currentTimeMillis();
+                boolean idle = (dirty == false && remoteChanged == false);
+                if ((zkFailed || idle) && waitMs > 0) {
+                    pollLock.wait(waitMs);
+                }
+            } catch (InterruptedException e) {
+                // the async loop quits
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public Object getResult() {
+        if (active.get() == false) {
+            LOG.info("Successfully shutdown backpressure of " + topologyId);
+            return -1;
+        }
+        return 0;
+    }
+}
@@ -2,12 +2,17 @@ package com.alipay.dw.jstorm.daemon.worker;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
+import backtype.storm.utils.ThreadResourceManager;
+
 import com.alipay.dw.jstorm.callback.RunnableCallback;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.common.NodePort;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 import com.alipay.dw.jstorm.utils.RunCounter;
 import com.alipay.dw.jstorm.zeroMq.ISendConnection;
 
@@ -21,15 +26,31 @@ import com.alipay.dw.jstorm.zeroMq.ISendConnection;
 public class DrainerRunable extends RunnableCallback {
     private final static Logger                          LOG = Logger.getLogger(DrainerRunable.class);
     
-    private LinkedBlockingQueue<TransferData>            transferQueue;
+    private DisruptorQueue<TransferData>                 transferQueue;
     private ConcurrentHashMap<NodePort, ISendConnection> nodeportSocket;
     private ConcurrentHashMap<Integer, NodePort>         taskNodeport;
     private RunCounter drainerCounter = new RunCounter("DrainerRunable", DrainerRunable.class);
     
+    private boolean                                      transferBatch;
+    private int                                          flushMs;
+    private LinkedBlockingQueue<TransferBatch>           batchQueue;
+    private ConcurrentHashMap<NodePort, TransferBuffer>  transferBuffers;
+    private ThreadResourceManager<TransferBatch>         batchPool;
+    
+    private AtomicBoolean                                active;
+    
     public DrainerRunable(WorkerData workerData) {
         this.transferQueue = workerData.getTransferQueue();
         this.nodeportSocket = workerData.getNodeportSocket();
         this.taskNodeport = workerData.getTaskNodeport();
+        
+        this.transferBatch = workerData.isTransferBatch();
+        this.flushMs = workerData.getTransferBatchFlushMs();
+        this.batchQueue = workerData.getBatchQueue();
+        this.transferBuffers = workerData.getTransferBuffers();
+        this.batchPool = workerData.getBatchPool();
+        
+        this.active = workerData.getActive();
     }
     
 //    @Override
@@ -73,39 +94,19 @@ public class DrainerRunable extends RunnableCallback {
     @Override
     public void run() {
         try {
+            if (transferBatch == true) {
+                runBatch();
+                return;
+            }
+            
             while(true) {
                 TransferData felem = transferQueue.take();
                 if (felem == null) {
+                    // halted or interrupted
                     return;
                 }
                 
-                long before = System.currentTimeMillis();
-                
-                int taskId = felem.getTaskid();
-                byte[] tuple = felem.getData();
-                
-                NodePort nodePort = taskNodeport.get(taskId);
-                if (nodePort == null) {
-                    String errormsg = "can`t not found IConnection";
-                    LOG.warn("DrainerRunable warn", new Exception(errormsg));
-                    continue;
-                }
-                ISendConnection conn = nodeportSocket.get(nodePort);
-                if (conn == null) {
-                    String errormsg = "can`t not found nodePort";
-                    LOG.warn("DrainerRunable warn", new Exception(errormsg));
-                    continue;
-                }
-                
-                if (conn.isClosed() == true) {
-                    // if connection has been closed, just skip the package 
-                    continue;
-                }
-                
-                conn.send(felem.getData());
-                
-                long after = System.currentTimeMillis();
-                drainerCounter.count(after - before);
+                send(felem);
             }
             
         } catch (Exception e) {
@@ -113,9 +114,118 @@ public class DrainerRunable extends RunnableCallback {
         }
     }
     
+    /**
+     * Batch mode, send the full batches as soon as possible,
+     * and flush the other batches every flushMs
+     */
+    private void runBatch() throws InterruptedException {
+        long lastFlushTime = System.currentTimeMillis();
+        
+        while (active.get()) {
+            TransferBatch batch = batchQueue.poll(flushMs,
+                    TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                sendBatch(batch);
+            }
+            
+            // tuples whose NodePort is unknown when transfer
+            TransferData felem = null;
+            while ((felem = transferQueue.poll()) != null) {
+                send(felem);
+            }
+            
+            long now = System.currentTimeMillis();
+            if (now - lastFlushTime >= flushMs) {
+                for (TransferBuffer buffer : transferBuffers.values()) {
+                    TransferBatch expired = buffer.expire(now, flushMs);
+                    if (expired != null) {
+                        sendBatch(expired);
+                    }
+                }
+                lastFlushTime = now;
+            }
+        }
+    }
+    
+    private void send(TransferData felem) {
+        long before = System.currentTimeMillis();
+        
+        int taskId = felem.getTaskid();
+        
+        NodePort nodePort = taskNodeport.get(taskId);
+        if (nodePort == null) {
+            String errormsg = "can`t not found IConnection";
+            LOG.warn("DrainerRunable warn", new Exception(errormsg));
+            return;
+        }
+        ISendConnection conn = nodeportSocket.get(nodePort);
+        if (conn == null) {
+            String errormsg = "can`t not found nodePort";
+            LOG.warn("DrainerRunable warn", new Exception(errormsg));
+            return;
+        }
+        
+        if (conn.isClosed() == true) {
+            // if connection has been closed, just skip the package 
+            return;
+        }
+        
+        conn.send(felem.getData());
+        
+        long after = System.currentTimeMillis();
+        drainerCounter.count(after - before);
+    }
+    
+    /**
+     * the backing array of the batch is sent without copy, the batch is
+     * returned to the pool once the connection has used it
+     */
+    private void sendBatch(final TransferBatch batch) {
+        long before = System.currentTimeMillis();
+        
+        boolean handed = false;
+        try {
+            NodePort nodePort = batch.getNodePort();
+            ISendConnection conn = nodeportSocket.get(nodePort);
+            if (conn == null) {
+                String errormsg = "can`t not found nodePort " + nodePort;
+                LOG.warn("DrainerRunable warn", new Exception(errormsg));
+                return;
+            }
+            
+            if (conn.isClosed() == true) {
+                // if connection has been closed, just skip the package 
+                return;
+            }
+            
+            handed = true;
+            conn.send(batch.getBuffer(), 0, batch.size(), new Runnable() {
+                @Override
+                public void run() {
+                    releaseBatch(batch);
+                }
+            });
+        } finally {
+            if (handed == false) {
+                releaseBatch(batch);
+            }
+        }
+        
+        long after = System.currentTimeMillis();
+        drainerCounter.count(after - before);
+    }
+    
+    private void releaseBatch(TransferBatch batch) {
+        batch.reset();
+        batchPool.release(batch);
+    }
+    
     @Override
     public Object getResult() {
-        return 0;
+        if (active.get()) {
+            return 0;
+        }
+        return -1;
     }
     
 }
@@ -53,6 +53,8 @@ public class RefreshConnections extends RunnableCallback {
     
     private Integer                                      frequence;
     
+    private Assignment                                   lastAssignment;
+    
     // private ReentrantReadWriteLock endpoint_socket_lock;
     
     @SuppressWarnings("rawtypes")
@@ -97,6 +99,11 @@ public class RefreshConnections extends RunnableCallback {
                 return ;
             }
             
+            if (assignment.equals(lastAssignment)) {
+                // most polls see the same assignment
+                return ;
+            }
+            
             Map<Integer, NodePort> my_assignment = new HashMap<Integer, NodePort>();
             
             Map<Integer, NodePort> taskNodeportAll = assignment
@@ -116,9 +123,9 @@ public class RefreshConnections extends RunnableCallback {
                     }
                 }
             }
-            taskNodeport.putAll(my_assignment);
             
-            // get which connection need to be remove or add
+            // get which connection need to be remove or add,
+            // only the changed NodePorts are touched
             Set<NodePort> current_connections = nodeportSocket.keySet();
             Set<NodePort> new_connections = new HashSet<NodePort>();
             Set<NodePort> remove_connections = new HashSet<NodePort>();
@@ -135,7 +142,7 @@ public class RefreshConnections extends RunnableCallback {
                 }
             }
             
-            // create new connection
+            // create new connection before the moved tasks are sent to it
             for (NodePort nodePort : new_connections) {
                 
                 String host = node.get(nodePort.getNode());
@@ -150,11 +157,21 @@ public class RefreshConnections extends RunnableCallback {
                 LOG.info("Add connection to " + nodePort);
             }
             
+            for (Entry<Integer, NodePort> entry : my_assignment.entrySet()) {
+                NodePort old = taskNodeport.put(entry.getKey(), entry.getValue());
+                if (old != null && old.equals(entry.getValue()) == false) {
+                    LOG.info("Task " + entry.getKey() + " moved from " + old
+                            + " to " + entry.getValue());
+                }
+            }
+            
             // close useless connection
             for (NodePort node_port : remove_connections) {
                 LOG.info("Remove connection to " + node_port);
                 nodeportSocket.remove(node_port).close();
             }
+            
+            lastAssignment = assignment;
         } catch (Exception e) {
             LOG.error("Failed to refresh worker Connection", e);
         }
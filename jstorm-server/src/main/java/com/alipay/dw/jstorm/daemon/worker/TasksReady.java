@@ -0,0 +1,146 @@
+package com.alipay.dw.jstorm.daemon.worker;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.alipay.dw.jstorm.callback.RunnableCallback;
+import com.alipay.dw.jstorm.cluster.StormClusterState;
+import com.alipay.dw.jstorm.task.Assignment;
+import com.alipay.dw.jstorm.task.heartbeat.TaskHeartbeat;
+import com.alipay.dw.jstorm.utils.TimeUtils;
+
+/**
+ * Which tasks of the topology are ready
+ *
+ * A task is ready once it has been prepared and its worker reports its
+ * heartbeat, the spouts wait here for their downstream tasks instead of
+ * sleeping spout.delay.run seconds. The heartbeats are polled every
+ * POLL_SECS until all tasks are ready.
+ *
+ * The heartbeat of the previous incarnation stays in ZK after restart or
+ * reassignment, so only the one whose task started (time - uptime) after
+ * the task's assignment counts, or, if the task has no start time in the
+ * assignment, the one written after this worker started.
+ *
+ * The heartbeat is stamped by the clock of the task's worker, and the
+ * assignment by nimbus's, so they may differ by MAX_CLOCK_SKEW_SECS. A
+ * task whose worker lags more than that is never seen ready, and the
+ * spouts wait the whole spout.delay.run for it. A previous incarnation
+ * which started within MAX_CLOCK_SKEW_SECS before the reassignment is
+ * taken as ready.
+ *
+ * @author longda
+ *
+ */
+public class TasksReady extends RunnableCallback {
+    private static final Logger LOG                 = Logger.getLogger(TasksReady.class);
+
+    private static final int    POLL_SECS           = 1;
+    private static final int    MAX_CLOCK_SKEW_SECS = 60;
+
+    private StormClusterState   zkCluster;
+    private String              topologyId;
+    private AtomicBoolean       active;
+    private int                 startSecs;
+
+    // the tasks whose heartbeat hasn't been seen, guarded by this
+    private final Set<Integer>  waiting;
+
+    public TasksReady(StormClusterState zkCluster, String topologyId,
+            Collection<Integer> tasks, AtomicBoolean active) {
+        this.zkCluster = zkCluster;
+        this.topologyId = topologyId;
+        this.active = active;
+        this.startSecs = TimeUtils.current_time_secs();
+        this.waiting = new HashSet<Integer>(tasks);
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (waiting.isEmpty()) {
+                return;
+            }
+        }
+
+        Map<Integer, TaskHeartbeat> beats;
+        Map<Integer, Integer> assignedSecs = new HashMap<Integer, Integer>();
+        try {
+            Assignment assignment = zkCluster.assignment_info(topologyId,
+                    null);
+            if (assignment != null
+                    && assignment.getTaskStartTimeSecs() != null) {
+                assignedSecs = assignment.getTaskStartTimeSecs();
+            }
+            beats = zkCluster.task_heartbeats(topologyId);
+        } catch (Exception e) {
+            LOG.warn("Failed to get task heartbeats of " + topologyId, e);
+            return;
+        }
+
+        synchronized (this) {
+            for (Entry<Integer, TaskHeartbeat> entry : beats.entrySet()) {
+                if (isFresh(entry.getValue(), assignedSecs.get(entry.getKey()))) {
+                    waiting.remove(entry.getKey());
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private boolean isFresh(TaskHeartbeat hb, Integer assignedSecs) {
+        if (assignedSecs == null) {
+            return hb.getTimeSecs() >= startSecs - MAX_CLOCK_SKEW_SECS;
+        }
+        return hb.getTimeSecs() - hb.getUptimeSecs() >= assignedSecs
+                - MAX_CLOCK_SKEW_SECS;
+    }
+
+    /**
+     * wait until all the tasks are ready
+     *
+     * @return false if some tasks aren't ready after timeoutMs
+     */
+    public synchronized boolean await(Collection<Integer> tasks, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (isWaiting(tasks)) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    private boolean isWaiting(Collection<Integer> tasks) {
+        for (Integer task : tasks) {
+            if (waiting.contains(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getResult() {
+        if (active.get() == false) {
+            return -1;
+        }
+        synchronized (this) {
+            if (waiting.isEmpty()) {
+                LOG.info("All tasks of " + topologyId + " are ready");
+                return -1;
+            }
+        }
+        return POLL_SECS;
+    }
+}
@@ -0,0 +1,106 @@
+package com.alipay.dw.jstorm.daemon.worker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import backtype.storm.serialization.KryoTupleSerializer;
+import backtype.storm.tuple.Tuple;
+
+import com.alipay.dw.jstorm.common.NodePort;
+import com.alipay.dw.jstorm.zeroMq.PacketPair;
+
+/**
+ * Reusable buffer which holds serialized tuples sent to one NodePort
+ *
+ * The tuples are serialized directly into the buffer, the layout is
+ *
+ * int BATCH_PORT | (int length | int targetTaskId | tuple) ...
+ *
+ * so that every element is the same as PacketPair.mk_packet's output
+ *
+ * @author longda
+ *
+ */
+public class TransferBatch extends ByteArrayOutputStream {
+    private static final int       INT_SIZE = Integer.SIZE / 8;
+
+    private final DataOutputStream dataOutput;
+
+    private NodePort               nodePort;
+    private int                    messageNum;
+    private long                   createTime;
+
+    public TransferBatch(int initSize) {
+        super(initSize);
+        this.dataOutput = new DataOutputStream(this);
+        reset();
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        try {
+            dataOutput.writeInt(PacketPair.BATCH_PORT);
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throw IOException
+        }
+
+        messageNum = 0;
+        createTime = 0;
+        nodePort = null;
+    }
+
+    /**
+     * Append one tuple, if serialization fail, the batch is rolled back
+     */
+    public void append(int taskid, Tuple tuple, KryoTupleSerializer serializer) {
+        if (messageNum == 0) {
+            createTime = System.currentTimeMillis();
+        }
+
+        int lengthPos = count;
+        try {
+            dataOutput.writeInt(0);
+            dataOutput.writeInt(taskid);
+            serializer.serializeInto(tuple, dataOutput);
+        } catch (IOException e) {
+            count = lengthPos;
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            count = lengthPos;
+            throw e;
+        }
+
+        PacketPair.write_int(buf, lengthPos, count - lengthPos - INT_SIZE);
+        messageNum++;
+    }
+
+    /**
+     * the backing array, the first size() bytes are the batch
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public boolean isEmpty() {
+        return messageNum == 0;
+    }
+
+    public int getMessageNum() {
+        return messageNum;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public NodePort getNodePort() {
+        return nodePort;
+    }
+
+    public void setNodePort(NodePort nodePort) {
+        this.nodePort = nodePort;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.alipay.dw.jstorm.daemon.worker;
+
+import backtype.storm.serialization.KryoTupleSerializer;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.utils.ThreadResourceManager;
+
+import com.alipay.dw.jstorm.common.NodePort;
+
+/**
+ * Per-NodePort sending buffer
+ *
+ * All tasks of one worker append tuples into the current batch,
+ * when the batch is full or too old, it is handed over to the drainer
+ * and a new batch is taken from the pool
+ *
+ * @author longda
+ *
+ */
+public class TransferBuffer {
+    private final NodePort                             nodePort;
+    private final int                                  batchSize;
+    private final ThreadResourceManager<TransferBatch> batchPool;
+
+    private TransferBatch                              current;
+
+    public TransferBuffer(NodePort nodePort, int batchSize,
+            ThreadResourceManager<TransferBatch> batchPool) {
+        this.nodePort = nodePort;
+        this.batchSize = batchSize;
+        this.batchPool = batchPool;
+    }
+
+    /**
+     * append one tuple
+     *
+     * @return the full batch which should be sent, otherwise null
+     */
+    public synchronized TransferBatch append(int taskid, Tuple tuple,
+            KryoTupleSerializer serializer) {
+        if (current == null) {
+            current = batchPool.acquire();
+            current.setNodePort(nodePort);
+        }
+
+        current.append(taskid, tuple, serializer);
+
+        if (current.size() < batchSize) {
+            return null;
+        }
+
+        TransferBatch full = current;
+        current = null;
+        return full;
+    }
+
+    /**
+     * take the current batch if it has been kept more than flushMs
+     *
+     * @return the batch which should be sent, otherwise null
+     */
+    public synchronized TransferBatch expire(long now, long flushMs) {
+        if (current == null || current.isEmpty()) {
+            return null;
+        }
+
+        if (now - current.getCreateTime() < flushMs) {
+            return null;
+        }
+
+        TransferBatch old = current;
+        current = null;
+        return old;
+    }
+
+    public NodePort getNodePort() {
+        return nodePort;
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.alipay.dw.jstorm.daemon.worker;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+import backtype.storm.utils.Utils;
+
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.cluster.StormConfig;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.utils.PathUtils;
+import com.alipay.dw.jstorm.zeroMq.MQContext;
+
+/**
+ * Entrance of one idle pre-started worker JVM
+ *
+ * It loads the worker's classes and the transport, then waits in
+ * STORM-LOCAL-DIR/workers-warm/warmId until the supervisor hands it a
+ * worker, then it puts the topology's jar into the classpath and runs
+ * the worker just like Worker.main
+ *
+ * @author yannian/Longda
+ *
+ */
+public class WarmWorker {
+
+    private static Logger         LOG            = Logger.getLogger(WarmWorker.class);
+
+    public static final String    PIDS           = "pids";
+    public static final String    READY          = "ready";
+    public static final String    ASSIGNMENT     = "assignment";
+
+    private static final int      POLL_MS        = 100;
+
+    private static final String[] PRELOAD_CLASSES = {
+            "com.alipay.dw.jstorm.daemon.worker.WorkerData",
+            "com.alipay.dw.jstorm.daemon.worker.WorkerTransfer",
+            "com.alipay.dw.jstorm.daemon.worker.DrainerRunable",
+            "com.alipay.dw.jstorm.daemon.worker.RefreshConnections",
+            "com.alipay.dw.jstorm.task.Task",
+            "com.alipay.dw.jstorm.task.execute.BoltExecutors",
+            "com.alipay.dw.jstorm.task.execute.SpoutExecutors",
+            "com.alipay.dw.jstorm.cluster.StormZkClusterState",
+            "com.alipay.dw.jstorm.cluster.DistributedClusterState",
+            "backtype.storm.generated.StormTopology",
+            "backtype.storm.serialization.KryoTupleSerializer",
+            "backtype.storm.serialization.KryoTupleDeserializer",
+            "backtype.storm.task.TopologyContext",
+            "com.esotericsoftware.kryo.Kryo",
+            "com.lmax.disruptor.RingBuffer",
+            "com.netflix.curator.framework.CuratorFrameworkFactory",
+            "org.apache.zookeeper.ZooKeeper"             };
+
+    private static void preload(Map conf) {
+        for (String className : PRELOAD_CLASSES) {
+            try {
+                Class.forName(className);
+            } catch (Throwable e) {
+                LOG.warn("Failed to preload " + className, e);
+            }
+        }
+
+        if (MQContext.TRANSPORT_NIO.equals(conf
+                .get(ConfigExtension.STORM_MESSAGING_TRANSPORT)) == false) {
+            try {
+                // it loads the native library
+                Class.forName("org.zeromq.ZMQ");
+            } catch (Throwable e) {
+                LOG.warn("Failed to preload zeroMQ", e);
+            }
+        }
+    }
+
+    /**
+     * the system class loader of the sun JVM is a URLClassLoader
+     */
+    private static void addClassPath(String jar) throws Exception {
+        URLClassLoader loader = (URLClassLoader) ClassLoader
+                .getSystemClassLoader();
+        Method addURL = URLClassLoader.class.getDeclaredMethod("addURL",
+                URL.class);
+        addURL.setAccessible(true);
+        addURL.invoke(loader, new File(jar).toURI().toURL());
+    }
+
+    /**
+     * switch to the worker's log file
+     */
+    private static void resetLog(String logFileName) {
+        System.setProperty("logfile.name", logFileName);
+
+        String logConf = System.getProperty("log4j.configuration");
+        URL url = (logConf == null) ? null : WarmWorker.class
+                .getClassLoader().getResource(logConf);
+        if (url != null) {
+            LogManager.resetConfiguration();
+            PropertyConfigurator.configure(url);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            LOG.error("the length of args isn't 1");
+            return;
+        }
+        String warm_id = args[0];
+
+        Map conf = Utils.readStormConfig();
+        StormConfig.validate_distributed_mode(conf);
+
+        if ((ClassLoader.getSystemClassLoader() instanceof URLClassLoader) == false) {
+            LOG.error("The topology's jar can't be added to this JVM's classpath");
+            System.exit(1);
+        }
+        
+        String[] assignment = null;
+        try {
+            String dir = StormConfig.worker_warm_path(conf, warm_id);
+            PathUtils.touch(dir + "/" + PIDS + "/"
+                    + JStormUtils.process_pid());
+
+            preload(conf);
+            PathUtils.touch(dir + "/" + READY);
+            LOG.info("Warm worker " + warm_id + " is ready");
+
+            File assignmentFile = new File(dir, ASSIGNMENT);
+            while (true) {
+                if (assignmentFile.exists()) {
+                    assignment = FileUtils.readFileToString(assignmentFile)
+                            .trim().split(" ");
+                    PathUtils.rmr(dir);
+                    break;
+                }
+                if (new File(dir).exists() == false) {
+                    LOG.info("Warm worker " + warm_id + " is removed");
+                    return;
+                }
+                Thread.sleep(POLL_MS);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to start warm worker " + warm_id, e);
+            System.exit(1);
+        }
+
+        String topology_id = assignment[0];
+        String supervisor_id = assignment[1];
+        String port_str = assignment[2];
+        String worker_id = assignment[3];
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("topologyId:" + topology_id + ", ");
+        sb.append("port:" + port_str + ", ");
+        sb.append("workerId:" + worker_id + "\n");
+
+        try {
+            String stormroot = StormConfig.supervisor_stormdist_root(conf,
+                    topology_id);
+            addClassPath(StormConfig.stormjar_path(stormroot));
+
+            resetLog(topology_id + "-worker-" + port_str + ".log");
+            LOG.info("Warm worker " + warm_id + " runs " + sb.toString());
+
+            WorkerShutdown sd = Worker.mk_worker(conf, null, topology_id,
+                    supervisor_id, Integer.parseInt(port_str), worker_id);
+            sd.join();
+
+            LOG.info("Successfully shutdown worker " + sb.toString());
+        } catch (Exception e) {
+            String errMsg = "Failed to create worker, " + sb.toString();
+            LOG.error(errMsg, e);
+        }
+    }
+}
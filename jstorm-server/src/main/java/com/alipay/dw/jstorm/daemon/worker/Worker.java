@@ -101,7 +101,7 @@ public class Worker {
                 workerData.getStormConf(), sysTopologyContext);
         
         // Task sending all tuples through this Object
-        return new WorkerTransfer(serializer, workerData.getTransferQueue());
+        return new WorkerTransfer(serializer, workerData);
     }
     
     private List<TaskShutdownDameon> createTasks(WorkerTransfer workerTransfer)
@@ -148,15 +148,38 @@ public class Worker {
         AsyncLoopThread hb = new AsyncLoopThread(heartbeat_fn, false, null,
                 Thread.NORM_PRIORITY, true);
         
+        // all tasks' heartbeats and stats to ZK
+        AsyncLoopThread taskhb = new AsyncLoopThread(
+                workerData.getTaskHeartbeat(), false, null,
+                Thread.MIN_PRIORITY, true);
+        
+        // poll the heartbeats until all tasks are ready
+        AsyncLoopThread ready = new AsyncLoopThread(
+                workerData.getTasksReady(), false, null,
+                Thread.NORM_PRIORITY, true);
+        
         // transferQueue, nodeportSocket, taskNodeport
         DrainerRunable drainer = new DrainerRunable(workerData);
         AsyncLoopThread dr = new AsyncLoopThread(drainer, false, null,
                 Thread.MAX_PRIORITY, true);
         
-        AsyncLoopThread[] threads = { refreshconn, refreshzk, hb, dr };
+        List<AsyncLoopThread> threads = new ArrayList<AsyncLoopThread>();
+        threads.add(refreshconn);
+        threads.add(refreshzk);
+        threads.add(hb);
+        threads.add(taskhb);
+        threads.add(ready);
+        threads.add(dr);
+        
+        // sync the throttled tasks with the other workers
+        if (workerData.getBackpressure() != null) {
+            threads.add(new AsyncLoopThread(workerData.getBackpressure(),
+                    false, null, Thread.MAX_PRIORITY, true));
+        }
         
         return new WorkerShutdown(workerData, shutdowntasks,
-                virtual_port_shutdown, threads);
+                virtual_port_shutdown,
+                threads.toArray(new AsyncLoopThread[threads.size()]));
         
     }
     
@@ -14,6 +14,7 @@ import org.apache.log4j.Logger;
 
 import backtype.storm.Config;
 import backtype.storm.generated.StormTopology;
+import backtype.storm.utils.ThreadResourceManager;
 
 import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.cluster.Cluster;
@@ -25,6 +26,8 @@ import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.common.NodePort;
 import com.alipay.dw.jstorm.daemon.nimbus.StatusType;
 import com.alipay.dw.jstorm.task.TaskShutdownDameon;
+import com.alipay.dw.jstorm.task.heartbeat.TaskHeartbeatRunable;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 import com.alipay.dw.jstorm.utils.PathUtils;
 import com.alipay.dw.jstorm.zeroMq.ISendConnection;
 import com.alipay.dw.jstorm.zeroMq.MQContext;
@@ -78,10 +81,30 @@ public class WorkerData {
     private final WorkerHaltRunable                      workHalt = new WorkerHaltRunable();
     
     // sending tuple's queue
-    private LinkedBlockingQueue<TransferData>         transferQueue;
+    private DisruptorQueue<TransferData>                 transferQueue;
+    
+    // batch transfer mode, tuples are serialized into per-NodePort buffers
+    private boolean                                      transferBatch;
+    private int                                          transferBatchSize;
+    private int                                          transferBatchFlushMs;
+    // full batches waiting for drainer
+    private LinkedBlockingQueue<TransferBatch>           batchQueue;
+    // <NodePort, TransferBuffer>
+    private ConcurrentHashMap<NodePort, TransferBuffer>  transferBuffers;
+    // reuse sent batches
+    private ThreadResourceManager<TransferBatch>         batchPool;
     
     private List<TaskShutdownDameon>                     shutdownTasks;
     
+    // write all tasks' heartbeats in one znode
+    private TaskHeartbeatRunable                         taskHeartbeat;
+    
+    // the spouts wait here for their downstream tasks
+    private TasksReady                                   tasksReady;
+    
+    // null if backpressure is disabled
+    private Backpressure                                 backpressure;
+    
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public WorkerData(Map conf, MQContext mq_context, String topology_id,
             String supervisor_id, int port, String worker_id) throws Exception {
@@ -132,7 +155,7 @@ public class WorkerData {
             boolean virtportZmq = JStormUtils.parseBoolean(
                     stormConf.get(Config.STORM_LOCAL_MODE_ZMQ), false);
             this.mqContext = MQContext.mk_zmq_context(zmqThreads, linger,
-                    isLocal, virtportZmq, maxQueueMsg);
+                    isLocal, virtportZmq, maxQueueMsg, stormConf);
         }
         
         this.nodeportSocket = new ConcurrentHashMap<NodePort, ISendConnection>();
@@ -158,7 +181,46 @@ public class WorkerData {
         contextMaker = new ContextMaker(stormConf, topology_id, worker_id,
                 tasksToComponent, port, JStormUtils.mk_list(taskids));
         
-        transferQueue = new LinkedBlockingQueue<TransferData>();
+        // all tasks send data to the queue
+        transferQueue = DisruptorQueue.mkInstance(stormConf,
+                ConfigExtension.TOPOLOGY_TRANSFER_BUFFER_SIZE,
+                ConfigExtension.DEFAULT_TRANSFER_BUFFER_SIZE, true);
+        
+        transferBatch = JStormUtils.parseBoolean(
+                stormConf.get(ConfigExtension.TOPOLOGY_TRANSFER_BATCH), false);
+        transferBatchSize = JStormUtils.parseInt(
+                stormConf.get(ConfigExtension.TRANSFER_BATCH_SIZE),
+                ConfigExtension.DEFAULT_TRANSFER_BATCH_SIZE);
+        transferBatchFlushMs = JStormUtils.parseInt(
+                stormConf.get(ConfigExtension.TRANSFER_BATCH_FLUSH_MS),
+                ConfigExtension.DEFAULT_TRANSFER_BATCH_FLUSH_MS);
+        batchQueue = new LinkedBlockingQueue<TransferBatch>(
+                JStormUtils.parseInt(stormConf
+                        .get(ConfigExtension.TOPOLOGY_TRANSFER_BUFFER_SIZE),
+                        ConfigExtension.DEFAULT_TRANSFER_BUFFER_SIZE));
+        transferBuffers = new ConcurrentHashMap<NodePort, TransferBuffer>();
+        batchPool = new ThreadResourceManager<TransferBatch>(
+                new ThreadResourceManager.ResourceFactory<TransferBatch>() {
+                    @Override
+                    public TransferBatch makeResource() {
+                        // reserve some space to avoid growing the last tuple
+                        return new TransferBatch(transferBatchSize * 2);
+                    }
+                });
+        LOG.info("Transfer batch mode:" + transferBatch + ", batch size:"
+                + transferBatchSize + ", flush ms:" + transferBatchFlushMs);
+        
+        taskHeartbeat = new TaskHeartbeatRunable(this);
+        tasksReady = new TasksReady(zkCluster, topologyId,
+                tasksToComponent.keySet(), active);
+        
+        if (JStormUtils.parseBoolean(
+                stormConf.get(ConfigExtension.TOPOLOGY_BACKPRESSURE_ENABLE),
+                false)) {
+            backpressure = new Backpressure(zkCluster, topologyId,
+                    supervisorId, port, active);
+            LOG.info("Backpressure is enabled");
+        }
         
         LOG.info("Successfully create WorkerData");
         
@@ -208,6 +270,18 @@ public class WorkerData {
         return workerId;
     }
     
+    public TaskHeartbeatRunable getTaskHeartbeat() {
+        return taskHeartbeat;
+    }
+    
+    public TasksReady getTasksReady() {
+        return tasksReady;
+    }
+    
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+    
     public ClusterState getZkClusterstate() {
         return zkClusterstate;
     }
@@ -248,10 +322,34 @@ public class WorkerData {
         return workHalt;
     }
     
-    public LinkedBlockingQueue<TransferData> getTransferQueue() {
+    public DisruptorQueue<TransferData> getTransferQueue() {
         return transferQueue;
     }
     
+    public boolean isTransferBatch() {
+        return transferBatch;
+    }
+    
+    public int getTransferBatchSize() {
+        return transferBatchSize;
+    }
+    
+    public int getTransferBatchFlushMs() {
+        return transferBatchFlushMs;
+    }
+    
+    public LinkedBlockingQueue<TransferBatch> getBatchQueue() {
+        return batchQueue;
+    }
+    
+    public ConcurrentHashMap<NodePort, TransferBuffer> getTransferBuffers() {
+        return transferBuffers;
+    }
+    
+    public ThreadResourceManager<TransferBatch> getBatchPool() {
+        return batchPool;
+    }
+    
     
     public List<TaskShutdownDameon> getShutdownTasks() {
         return shutdownTasks;
@@ -14,6 +14,7 @@ import com.alipay.dw.jstorm.cluster.StormClusterState;
 import com.alipay.dw.jstorm.common.NodePort;
 import com.alipay.dw.jstorm.task.ShutdownableDameon;
 import com.alipay.dw.jstorm.task.TaskShutdownDameon;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 import com.alipay.dw.jstorm.zeroMq.ISendConnection;
 import com.alipay.dw.jstorm.zeroMq.MQContext;
 
@@ -34,6 +35,10 @@ public class WorkerShutdown implements ShutdownableDameon {
     private AsyncLoopThread[]                            threads;
     private StormClusterState                            zkCluster;
     private ClusterState                                 cluster_state;
+    private DisruptorQueue<TransferData>                 transferQueue;
+    private String                                       topologyId;
+    private String                                       supervisorId;
+    private int                                          port;
     
     //active nodeportSocket mqContext zkCluster  zkClusterstate
     public WorkerShutdown(WorkerData workerData,
@@ -49,6 +54,10 @@ public class WorkerShutdown implements ShutdownableDameon {
         this.mq_context = workerData.getMqContext();
         this.zkCluster = workerData.getZkCluster();
         this.cluster_state = workerData.getZkClusterstate();
+        this.transferQueue = workerData.getTransferQueue();
+        this.topologyId = workerData.getTopologyId();
+        this.supervisorId = workerData.getSupervisorId();
+        this.port = workerData.getPort();
         
         Runtime.getRuntime().addShutdownHook(new Thread(this));
     }
@@ -71,6 +80,9 @@ public class WorkerShutdown implements ShutdownableDameon {
         virtualPortShutdown.shutdown();
         mq_context.term();
         
+        // wake up drainer
+        transferQueue.haltWithInterrupt();
+        
         // shutdown worker's demon thread
         // refreshconn, refreshzk, hb, drainer 
         for (AsyncLoopThread t : threads) {
@@ -84,6 +96,7 @@ public class WorkerShutdown implements ShutdownableDameon {
         
         // close ZK client
         try {
+            zkCluster.remove_task_heartbeats(topologyId, supervisorId, port);
             zkCluster.disconnect();
             cluster_state.close();
         } catch (Exception e) {
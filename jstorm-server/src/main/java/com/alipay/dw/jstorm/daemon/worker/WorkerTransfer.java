@@ -1,37 +1,171 @@
 package com.alipay.dw.jstorm.daemon.worker;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import org.apache.log4j.Logger;
+
 import backtype.storm.serialization.KryoTupleSerializer;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.utils.ThreadResourceManager;
 
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.common.NodePort;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+import com.alipay.dw.jstorm.zeroMq.MQContext;
 import com.alipay.dw.jstorm.zeroMq.PacketPair;
+import com.alipay.dw.jstorm.zeroMq.QueueConnection;
 
 /**
  * Sending entrance
- * 
+ *
  * Task sending all tuples through this Object
- * 
- * Serialize the Tuple and put the serialized data to the sending queue
- * 
+ *
+ * Serialize the Tuple and put the serialized data to the sending queue,
+ * the sending queue is bounded, so the task will be blocked when it is full
+ *
+ * In batch mode, the tuple is serialized into the target NodePort's
+ * TransferBuffer, only the full batch is put to the sending queue
+ *
+ * The tuple to the task of current worker is put into the target task's
+ * queue directly, without serialization and the sending queue
+ *
  * @author yannian
- * 
+ *
  */
 public class WorkerTransfer {
-    private LinkedBlockingQueue<TransferData> transferQueue;
-    private KryoTupleSerializer               serializer;
+    private static final Logger                         LOG = Logger.getLogger(WorkerTransfer.class);
     
+    private DisruptorQueue<TransferData>                transferQueue;
+    private KryoTupleSerializer                         serializer;
+
+    private boolean                                     transferBatch;
+    private int                                         batchSize;
+    private LinkedBlockingQueue<TransferBatch>          batchQueue;
+    private ConcurrentHashMap<NodePort, TransferBuffer> transferBuffers;
+    private ConcurrentHashMap<Integer, NodePort>        taskNodeport;
+    private ThreadResourceManager<TransferBatch>        batchPool;
+    // <taskId, receiving queue> of current worker's tasks
+    private Map<Integer, QueueConnection>               localQueues;
+
     public WorkerTransfer(KryoTupleSerializer serializer,
-            LinkedBlockingQueue<TransferData> _transfer_queue) {
+            DisruptorQueue<TransferData> _transfer_queue) {
         this.transferQueue = _transfer_queue;
         this.serializer = serializer;
+        this.transferBatch = false;
     }
-    
+
+    public WorkerTransfer(KryoTupleSerializer serializer, WorkerData workerData) {
+        this(serializer, workerData.getTransferQueue());
+
+        this.transferBatch = workerData.isTransferBatch();
+        this.batchSize = workerData.getTransferBatchSize();
+        this.batchQueue = workerData.getBatchQueue();
+        this.transferBuffers = workerData.getTransferBuffers();
+        this.taskNodeport = workerData.getTaskNodeport();
+        this.batchPool = workerData.getBatchPool();
+
+        MQContext mqContext = workerData.getMqContext();
+        boolean localTransfer = JStormUtils.parseBoolean(workerData
+                .getStormConf().get(ConfigExtension.TOPOLOGY_LOCAL_TRANSFER),
+                false);
+        if (localTransfer == true && mqContext.isVirtportZmq() == false) {
+            // the task binds the same queue later
+            localQueues = new HashMap<Integer, QueueConnection>();
+            for (Integer taskid : workerData.getTaskids()) {
+                localQueues.put(taskid, mqContext.queue_connect(taskid));
+            }
+            LOG.info("Transfer tuples to local tasks directly:" + localQueues.keySet());
+        }
+    }
+
     public void transfer(int taskid, Tuple tuple) {
+        if (localQueues != null) {
+            QueueConnection localQueue = localQueues.get(taskid);
+            if (localQueue != null) {
+                // it will be blocked when the queue is full
+                localQueue.sendObject(tuple);
+                return;
+            }
+        }
+
+        if (transferBatch == true) {
+            NodePort nodePort = taskNodeport.get(taskid);
+            if (nodePort != null) {
+                batchTransfer(nodePort, taskid, tuple);
+                return;
+            }
+            // connections haven't been refreshed,
+            // let drainer look up the NodePort later
+        }
+
         byte [] tupleMessage = serializer.serialize(tuple);
         byte [] sendMessage = PacketPair.mk_packet((short)taskid, tupleMessage);
         TransferData tData = new TransferData(taskid, sendMessage);
+        // it will be blocked when the queue is full
         transferQueue.offer(tData);
     }
-    
+
+    /**
+     * transfer without blocking, the tuple to other workers is put into
+     * the sending queue directly, even in batch mode
+     * 
+     * @return false if the target queue is full
+     */
+    public boolean tryTransfer(int taskid, Tuple tuple) {
+        if (localQueues != null) {
+            QueueConnection localQueue = localQueues.get(taskid);
+            if (localQueue != null) {
+                return localQueue.trySendObject(tuple);
+            }
+        }
+
+        byte [] tupleMessage = serializer.serialize(tuple);
+        byte [] sendMessage = PacketPair.mk_packet((short)taskid, tupleMessage);
+        return transferQueue.tryOffer(new TransferData(taskid, sendMessage));
+    }
+
+    /**
+     * the fill ratio of the fullest queue which the tasks send to, 0 to 1
+     */
+    public double occupancy() {
+        double max = (double) transferQueue.size() / transferQueue.capacity();
+        if (batchQueue != null) {
+            int size = batchQueue.size();
+            max = Math.max(max, (double) size
+                    / (size + batchQueue.remainingCapacity()));
+        }
+        if (localQueues != null) {
+            for (QueueConnection localQueue : localQueues.values()) {
+                max = Math.max(max, localQueue.occupancy());
+            }
+        }
+        return max;
+    }
+
+    private void batchTransfer(NodePort nodePort, int taskid, Tuple tuple) {
+        TransferBuffer buffer = transferBuffers.get(nodePort);
+        if (buffer == null) {
+            TransferBuffer newBuffer = new TransferBuffer(nodePort, batchSize,
+                    batchPool);
+            buffer = transferBuffers.putIfAbsent(nodePort, newBuffer);
+            if (buffer == null) {
+                buffer = newBuffer;
+            }
+        }
+
+        TransferBatch full = buffer.append(taskid, tuple, serializer);
+        if (full != null) {
+            try {
+                // it will be blocked when the queue is full
+                batchQueue.put(full);
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted, drop one batch to " + nodePort);
+            }
+        }
+    }
+
 }
@@ -56,6 +56,16 @@ public class WorkerVirtualPort {
         
         RunnableCallback killfn = JStormServerUtils.getDefaultKillfn();
         
+        if (mqContext.isNio()) {
+            // no dispatching thread, the receiver thread
+            // puts the messages into the task queues directly
+            VirtualPortDispatch dispatcher = new VirtualPortDispatch(
+                    mqContext, null, taskIds);
+            dispatcher.setRecvConn(mqContext.nio_bind(port, dispatcher));
+            
+            return new VirtualPortShutdown(mqContext, dispatcher, port);
+        }
+        
         IRecvConnection recvConnection = mqContext.bind(true, port);
         
         RunnableCallback recvDispather = new VirtualPortDispatch(mqContext,
@@ -0,0 +1,511 @@
+package com.alipay.dw.jstorm.schedule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import backtype.storm.generated.Bolt;
+import backtype.storm.generated.ComponentCommon;
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.generated.Grouping;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.utils.ThriftTopologyUtils;
+
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.common.NodePort;
+
+/**
+ * Default task scheduler
+ *
+ * 1. choose slots: the slots of the last assignment first, so its tasks
+ * can stay, then the supervisors with the most free slots, one slot of
+ * every supervisor in turn
+ *
+ * 2. the task whose old slot is chosen stays there if the slot has room
+ *
+ * 3. the other tasks are put component by component, from the spouts
+ * along the grouping graph, into the slot holding the most tasks of the
+ * connected components, same supervisor counts less than same worker
+ *
+ * A slot has room when the cpu and memory weight of its tasks are under
+ * the average, and it has less than its share of the component's tasks,
+ * so the parallel tasks of one component are still spread.
+ *
+ * @author longda
+ *
+ */
+public class DefaultTopologyScheduler implements ITopologyScheduler {
+    private static final Logger LOG                   = Logger.getLogger(DefaultTopologyScheduler.class);
+
+    // tuples inside one worker aren't sent by network at all
+    private static final double WORKER_AFFINITY       = 2.0d;
+    private static final double NODE_AFFINITY         = 1.0d;
+
+    // local_or_shuffle only stays inside the worker when there is a target
+    private static final int    LOCAL_GROUPING_WEIGHT = 2;
+
+    private static final double EPSILON               = 0.000001d;
+
+    private static class WorkerSlot {
+        private final NodePort             nodePort;
+        private double                     cpu;
+        private double                     mem;
+        private int                        taskNum;
+        private final Map<String, Integer> componentNum = new HashMap<String, Integer>();
+
+        public WorkerSlot(NodePort nodePort) {
+            this.nodePort = nodePort;
+        }
+
+        public int getComponentNum(String componentId) {
+            Integer num = componentNum.get(componentId);
+            return num == null ? 0 : num;
+        }
+    }
+
+    @Override
+    public void prepare(Map conf) {
+    }
+
+    @Override
+    public Map<Integer, NodePort> assignTasks(TopologyAssignContext context)
+            throws Exception {
+        String topologyId = context.getTopologyId();
+        Map<Integer, String> taskToComponent = context.getTaskToComponent();
+        Map<Integer, NodePort> oldAssignment = context.getOldAssignment();
+
+        Map<Integer, NodePort> ret = new HashMap<Integer, NodePort>();
+
+        // <componentId, need assigned taskids>
+        Map<String, List<Integer>> componentTasks = new TreeMap<String, List<Integer>>();
+        TreeSet<Integer> needAssigneds = new TreeSet<Integer>(
+                taskToComponent.keySet());
+        needAssigneds.removeAll(context.getKeepAssignment().keySet());
+        if (needAssigneds.isEmpty()) {
+            return ret;
+        }
+        for (Integer taskId : needAssigneds) {
+            String componentId = taskToComponent.get(taskId);
+            List<Integer> tasks = componentTasks.get(componentId);
+            if (tasks == null) {
+                tasks = new ArrayList<Integer>();
+                componentTasks.put(componentId, tasks);
+            }
+            tasks.add(taskId);
+        }
+
+        List<NodePort> slots = selectSlots(context);
+        if (slots.isEmpty()) {
+            throw new IOException("No slot can be used by " + topologyId);
+        }
+        LOG.info("For " + topologyId + " choose slots " + slots);
+
+        Map<String, double[]> weights = componentWeights(context);
+        Map<String, Map<String, Integer>> graph = componentGraph(context
+                .getRawTopology());
+
+        // <componentId, all task number>
+        Map<String, Integer> parallelism = new HashMap<String, Integer>();
+        for (String componentId : taskToComponent.values()) {
+            incr(parallelism, componentId);
+        }
+
+        // <supervisorId, <componentId, task number>>
+        Map<String, Map<String, Integer>> nodeComponents = new HashMap<String, Map<String, Integer>>();
+        for (Entry<Integer, NodePort> entry : context.getKeepAssignment()
+                .entrySet()) {
+            incr(nodeComponents, entry.getValue().getNode(),
+                    taskToComponent.get(entry.getKey()));
+        }
+
+        List<WorkerSlot> workers = new ArrayList<WorkerSlot>();
+        Map<NodePort, WorkerSlot> workerMap = new HashMap<NodePort, WorkerSlot>();
+        for (NodePort np : slots) {
+            WorkerSlot worker = new WorkerSlot(np);
+            workers.add(worker);
+            workerMap.put(np, worker);
+        }
+
+        double totalCpu = 0;
+        double totalMem = 0;
+        Map<String, Integer> shares = new HashMap<String, Integer>();
+        for (Entry<String, List<Integer>> entry : componentTasks.entrySet()) {
+            double[] weight = getWeight(weights, entry.getKey());
+            int num = entry.getValue().size();
+            totalCpu += weight[0] * num;
+            totalMem += weight[1] * num;
+            shares.put(entry.getKey(), (num + workers.size() - 1)
+                    / workers.size());
+        }
+        double cpuCap = totalCpu / workers.size();
+        double memCap = totalMem / workers.size();
+
+        // stay in the old slot
+        for (Integer taskId : needAssigneds) {
+            NodePort old = oldAssignment.get(taskId);
+            WorkerSlot worker = (old == null) ? null : workerMap.get(old);
+            if (worker == null) {
+                continue;
+            }
+
+            String componentId = taskToComponent.get(taskId);
+            double[] weight = getWeight(weights, componentId);
+            if (hasRoom(worker, componentId, weight, shares, cpuCap, memCap)) {
+                place(worker, taskId, componentId, weight, ret, nodeComponents);
+            }
+        }
+
+        // follow the grouping graph
+        for (String componentId : componentOrder(graph, context
+                .getRawTopology(), componentTasks.keySet())) {
+            double[] weight = getWeight(weights, componentId);
+
+            for (Integer taskId : componentTasks.get(componentId)) {
+                if (ret.containsKey(taskId)) {
+                    continue;
+                }
+
+                WorkerSlot best = null;
+                double bestScore = 0;
+                for (WorkerSlot worker : workers) {
+                    if (hasRoom(worker, componentId, weight, shares, cpuCap,
+                            memCap) == false) {
+                        continue;
+                    }
+
+                    double score = affinity(worker, componentId, graph,
+                            parallelism, nodeComponents);
+                    if (best == null
+                            || score > bestScore + EPSILON
+                            || (score > bestScore - EPSILON && load(worker,
+                                    cpuCap, memCap) < load(best, cpuCap,
+                                    memCap))) {
+                        best = worker;
+                        bestScore = score;
+                    }
+                }
+
+                if (best == null) {
+                    // no slot has room, take the least loaded one
+                    best = leastLoaded(workers, componentId, shares, cpuCap,
+                            memCap);
+                }
+
+                place(best, taskId, componentId, weight, ret, nodeComponents);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return at most needSlotNum slots
+     */
+    public static List<NodePort> selectSlots(TopologyAssignContext context) {
+        Set<NodePort> oldSlots = new HashSet<NodePort>(context
+                .getOldAssignment().values());
+
+        Map<String, List<NodePort>> oldNodeMap = new TreeMap<String, List<NodePort>>();
+        Map<String, List<NodePort>> nodeMap = new TreeMap<String, List<NodePort>>();
+        for (NodePort np : new TreeSet<NodePort>(context.getAvailableSlots())) {
+            Map<String, List<NodePort>> map = oldSlots.contains(np) ? oldNodeMap
+                    : nodeMap;
+            List<NodePort> list = map.get(np.getNode());
+            if (list == null) {
+                list = new ArrayList<NodePort>();
+                map.put(np.getNode(), list);
+            }
+            list.add(np);
+        }
+
+        final Map<String, Integer> nodeFreeSlots = context.getNodeFreeSlots();
+        List<String> nodes = new ArrayList<String>(nodeMap.keySet());
+        Collections.sort(nodes, new Comparator<String>() {
+            public int compare(String o1, String o2) {
+                return getNum(nodeFreeSlots, o2) - getNum(nodeFreeSlots, o1);
+            }
+        });
+        List<List<NodePort>> splitup = new ArrayList<List<NodePort>>();
+        for (String node : nodes) {
+            splitup.add(nodeMap.get(node));
+        }
+
+        List<NodePort> ret = new ArrayList<NodePort>();
+        ret.addAll(JStormUtils.interleave_all(new ArrayList<List<NodePort>>(
+                oldNodeMap.values())));
+        ret.addAll(JStormUtils.interleave_all(splitup));
+
+        int needSlotNum = context.getNeedSlotNum();
+        if (ret.size() <= needSlotNum) {
+            return ret;
+        }
+        return ret.subList(0, needSlotNum);
+    }
+
+    /**
+     * @return <componentId, [cpu weight, memory weight]>
+     */
+    private Map<String, double[]> componentWeights(
+            TopologyAssignContext context) {
+        Map<String, double[]> ret = new HashMap<String, double[]>();
+
+        Map stormConf = context.getStormConf();
+        double defaultCpu = JStormUtils.parseDouble(
+                stormConf.get(ConfigExtension.COMPONENT_CPU_WEIGHT),
+                ConfigExtension.DEFAULT_COMPONENT_WEIGHT);
+        double defaultMem = JStormUtils.parseDouble(
+                stormConf.get(ConfigExtension.COMPONENT_MEMORY_WEIGHT),
+                ConfigExtension.DEFAULT_COMPONENT_WEIGHT);
+        ret.put(null, new double[] { defaultCpu, defaultMem });
+
+        StormTopology topology = context.getRawTopology();
+        if (topology == null) {
+            return ret;
+        }
+
+        for (String componentId : ThriftTopologyUtils.getComponentIds(topology)) {
+            ComponentCommon common = ThriftTopologyUtils.getComponentCommon(
+                    topology, componentId);
+            String json = common.get_json_conf();
+            if (json == null) {
+                continue;
+            }
+
+            Map componentConf = (Map) JStormUtils.from_json(json);
+            if (componentConf == null) {
+                continue;
+            }
+            double cpu = JStormUtils.parseDouble(
+                    componentConf.get(ConfigExtension.COMPONENT_CPU_WEIGHT),
+                    defaultCpu);
+            double mem = JStormUtils.parseDouble(
+                    componentConf.get(ConfigExtension.COMPONENT_MEMORY_WEIGHT),
+                    defaultMem);
+            ret.put(componentId, new double[] { cpu, mem });
+        }
+        return ret;
+    }
+
+    private double[] getWeight(Map<String, double[]> weights,
+            String componentId) {
+        double[] weight = weights.get(componentId);
+        if (weight == null) {
+            weight = weights.get(null);
+        }
+        return weight;
+    }
+
+    /**
+     * @return <componentId, <connected componentId, weight>>, undirected
+     */
+    private Map<String, Map<String, Integer>> componentGraph(
+            StormTopology topology) {
+        Map<String, Map<String, Integer>> ret = new HashMap<String, Map<String, Integer>>();
+        if (topology == null) {
+            return ret;
+        }
+
+        for (Entry<String, Bolt> entry : topology.get_bolts().entrySet()) {
+            String target = entry.getKey();
+            Map<GlobalStreamId, Grouping> inputs = entry.getValue()
+                    .get_common().get_inputs();
+            if (inputs == null) {
+                continue;
+            }
+
+            for (Entry<GlobalStreamId, Grouping> input : inputs.entrySet()) {
+                String source = input.getKey().get_componentId();
+                if (source.equals(target)) {
+                    continue;
+                }
+
+                int weight = input.getValue().is_set_local_or_shuffle() ? LOCAL_GROUPING_WEIGHT
+                        : 1;
+                addEdge(ret, source, target, weight);
+                addEdge(ret, target, source, weight);
+            }
+        }
+        return ret;
+    }
+
+    private void addEdge(Map<String, Map<String, Integer>> graph,
+            String from, String to, int weight) {
+        Map<String, Integer> edges = graph.get(from);
+        if (edges == null) {
+            edges = new HashMap<String, Integer>();
+            graph.put(from, edges);
+        }
+        edges.put(to, getNum(edges, to) + weight);
+    }
+
+    /**
+     * breadth first from the spouts, the heavier edge first,
+     * the components which aren't in the graph are the last
+     */
+    private List<String> componentOrder(
+            final Map<String, Map<String, Integer>> graph,
+            StormTopology topology, Set<String> componentIds) {
+        List<String> roots = new ArrayList<String>();
+        if (topology != null) {
+            roots.addAll(new TreeSet<String>(topology.get_spouts().keySet()));
+        }
+        roots.addAll(new TreeSet<String>(graph.keySet()));
+
+        List<String> ret = new ArrayList<String>();
+        Set<String> visited = new HashSet<String>();
+        for (String root : roots) {
+            if (visited.add(root) == false) {
+                continue;
+            }
+
+            LinkedList<String> queue = new LinkedList<String>();
+            queue.add(root);
+            while (queue.isEmpty() == false) {
+                final String componentId = queue.removeFirst();
+                if (componentIds.contains(componentId)) {
+                    ret.add(componentId);
+                }
+
+                Map<String, Integer> edges = graph.get(componentId);
+                if (edges == null) {
+                    continue;
+                }
+                List<String> neighbors = new ArrayList<String>(
+                        new TreeSet<String>(edges.keySet()));
+                Collections.sort(neighbors, new Comparator<String>() {
+                    public int compare(String o1, String o2) {
+                        Map<String, Integer> edges = graph.get(componentId);
+                        return getNum(edges, o2) - getNum(edges, o1);
+                    }
+                });
+                for (String neighbor : neighbors) {
+                    if (visited.add(neighbor)) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        for (String componentId : componentIds) {
+            if (ret.contains(componentId) == false) {
+                ret.add(componentId);
+            }
+        }
+        return ret;
+    }
+
+    private boolean hasRoom(WorkerSlot worker, String componentId,
+            double[] weight, Map<String, Integer> shares, double cpuCap,
+            double memCap) {
+        if (worker.getComponentNum(componentId) >= getNum(shares, componentId)) {
+            return false;
+        }
+        if (worker.taskNum == 0) {
+            return true;
+        }
+        return worker.cpu + weight[0] <= cpuCap + EPSILON
+                && worker.mem + weight[1] <= memCap + EPSILON;
+    }
+
+    private double load(WorkerSlot worker, double cpuCap, double memCap) {
+        double cpu = cpuCap > 0 ? worker.cpu / cpuCap : 0;
+        double mem = memCap > 0 ? worker.mem / memCap : 0;
+        return Math.max(cpu, mem);
+    }
+
+    /**
+     * the part of the connected components' traffic which won't leave
+     * the worker or the supervisor
+     */
+    private double affinity(WorkerSlot worker, String componentId,
+            Map<String, Map<String, Integer>> graph,
+            Map<String, Integer> parallelism,
+            Map<String, Map<String, Integer>> nodeComponents) {
+        Map<String, Integer> edges = graph.get(componentId);
+        if (edges == null) {
+            return 0;
+        }
+
+        Map<String, Integer> onNode = nodeComponents.get(worker.nodePort
+                .getNode());
+        double ret = 0;
+        for (Entry<String, Integer> edge : edges.entrySet()) {
+            String neighbor = edge.getKey();
+            int total = getNum(parallelism, neighbor);
+            if (total == 0) {
+                continue;
+            }
+
+            double local = WORKER_AFFINITY * worker.getComponentNum(neighbor)
+                    + NODE_AFFINITY * getNum(onNode, neighbor);
+            ret += edge.getValue() * local / total;
+        }
+        return ret;
+    }
+
+    private WorkerSlot leastLoaded(List<WorkerSlot> workers,
+            String componentId, Map<String, Integer> shares, double cpuCap,
+            double memCap) {
+        WorkerSlot best = null;
+        boolean bestUnderShare = false;
+        for (WorkerSlot worker : workers) {
+            boolean underShare = worker.getComponentNum(componentId) < getNum(
+                    shares, componentId);
+            if (best == null
+                    || (underShare && bestUnderShare == false)
+                    || (underShare == bestUnderShare && load(worker, cpuCap,
+                            memCap) < load(best, cpuCap, memCap))) {
+                best = worker;
+                bestUnderShare = underShare;
+            }
+        }
+        return best;
+    }
+
+    private void place(WorkerSlot worker, Integer taskId, String componentId,
+            double[] weight, Map<Integer, NodePort> assignment,
+            Map<String, Map<String, Integer>> nodeComponents) {
+        worker.cpu += weight[0];
+        worker.mem += weight[1];
+        worker.taskNum++;
+        incr(worker.componentNum, componentId);
+        incr(nodeComponents, worker.nodePort.getNode(), componentId);
+
+        assignment.put(taskId, worker.nodePort);
+    }
+
+    private static int getNum(Map<String, Integer> map, String key) {
+        if (map == null) {
+            return 0;
+        }
+        Integer num = map.get(key);
+        return num == null ? 0 : num;
+    }
+
+    private static void incr(Map<String, Integer> map, String key) {
+        map.put(key, getNum(map, key) + 1);
+    }
+
+    private static void incr(Map<String, Map<String, Integer>> map,
+            String first, String second) {
+        Map<String, Integer> inner = map.get(first);
+        if (inner == null) {
+            inner = new HashMap<String, Integer>();
+            map.put(first, inner);
+        }
+        incr(inner, second);
+    }
+}
@@ -0,0 +1,29 @@
+package com.alipay.dw.jstorm.schedule;
+
+import java.util.Map;
+
+import com.alipay.dw.jstorm.common.NodePort;
+
+/**
+ * Nimbus's task scheduler
+ *
+ * TopologyAssign decides which slots are kept, the scheduler chooses the
+ * new slots and puts the other tasks into them.
+ *
+ * The implementation is set by nimbus.topology.scheduler
+ *
+ * @author longda
+ *
+ */
+public interface ITopologyScheduler {
+
+    void prepare(Map conf);
+
+    /**
+     * @return <taskid, NodePort> of the tasks which aren't kept
+     * @throws Exception
+     *             no slot can be used
+     */
+    Map<Integer, NodePort> assignTasks(TopologyAssignContext context)
+            throws Exception;
+}
@@ -1,6 +1,7 @@
 package com.alipay.dw.jstorm.schedule;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -8,6 +9,7 @@ import com.alipay.dw.jstorm.cluster.StormClusterState;
 import com.alipay.dw.jstorm.daemon.nimbus.NimbusData;
 import com.alipay.dw.jstorm.daemon.nimbus.NimbusUtils;
 import com.alipay.dw.jstorm.daemon.nimbus.StatusType;
+import com.alipay.dw.jstorm.task.heartbeat.TaskHeartbeat;
 
 /**
  * 
@@ -52,10 +54,14 @@ public class MonitorRunnable implements Runnable {
                     continue;
                 }
                 
+                // one read per worker instead of per task
+                Map<Integer, TaskHeartbeat> zkHeartbeats = NimbusUtils
+                        .readTaskHeartbeats(data, topologyid);
+                
                 boolean needReassign = false;
                 for (Integer task : taskIds) {
                     boolean isTaskDead = NimbusUtils.isTaskDead(data,
-                            topologyid, task);
+                            topologyid, task, zkHeartbeats);
                     if (isTaskDead == true) {
                         LOG.info("Found " + topologyid + ",taskid:" + task + " is dead");
                         needReassign = true;
@@ -0,0 +1,126 @@
+package com.alipay.dw.jstorm.schedule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import backtype.storm.generated.StormTopology;
+
+import com.alipay.dw.jstorm.common.NodePort;
+
+/**
+ * Everything the scheduler needs to assign one topology
+ *
+ * @author longda
+ *
+ */
+public class TopologyAssignContext {
+
+    private String                 topologyId;
+
+    private Map<Object, Object>    stormConf;
+
+    // raw topology, without acker
+    private StormTopology          rawTopology;
+
+    // <taskid, componentId> of all tasks
+    private Map<Integer, String>   taskToComponent;
+
+    // <taskid, NodePort> of last assignment, it is empty for new topology
+    private Map<Integer, NodePort> oldAssignment  = new HashMap<Integer, NodePort>();
+
+    // <taskid, NodePort> of the tasks which won't be moved
+    private Map<Integer, NodePort> keepAssignment = new HashMap<Integer, NodePort>();
+
+    // the slots which can be used by the other tasks
+    private Set<NodePort>          availableSlots = new HashSet<NodePort>();
+
+    // at most so many slots can be used by the other tasks
+    private int                    needSlotNum;
+
+    // <supervisorId, free slot number> of the whole cluster
+    private Map<String, Integer>   nodeFreeSlots  = new HashMap<String, Integer>();
+
+    private boolean                isScratch;
+
+    public String getTopologyId() {
+        return topologyId;
+    }
+
+    public void setTopologyId(String topologyId) {
+        this.topologyId = topologyId;
+    }
+
+    public Map<Object, Object> getStormConf() {
+        return stormConf;
+    }
+
+    public void setStormConf(Map<Object, Object> stormConf) {
+        this.stormConf = stormConf;
+    }
+
+    public StormTopology getRawTopology() {
+        return rawTopology;
+    }
+
+    public void setRawTopology(StormTopology rawTopology) {
+        this.rawTopology = rawTopology;
+    }
+
+    public Map<Integer, String> getTaskToComponent() {
+        return taskToComponent;
+    }
+
+    public void setTaskToComponent(Map<Integer, String> taskToComponent) {
+        this.taskToComponent = taskToComponent;
+    }
+
+    public Map<Integer, NodePort> getOldAssignment() {
+        return oldAssignment;
+    }
+
+    public void setOldAssignment(Map<Integer, NodePort> oldAssignment) {
+        this.oldAssignment = oldAssignment;
+    }
+
+    public Map<Integer, NodePort> getKeepAssignment() {
+        return keepAssignment;
+    }
+
+    public void setKeepAssignment(Map<Integer, NodePort> keepAssignment) {
+        this.keepAssignment = keepAssignment;
+    }
+
+    public Set<NodePort> getAvailableSlots() {
+        return availableSlots;
+    }
+
+    public void setAvailableSlots(Set<NodePort> availableSlots) {
+        this.availableSlots = availableSlots;
+    }
+
+    public int getNeedSlotNum() {
+        return needSlotNum;
+    }
+
+    public void setNeedSlotNum(int needSlotNum) {
+        this.needSlotNum = needSlotNum;
+    }
+
+    public Map<String, Integer> getNodeFreeSlots() {
+        return nodeFreeSlots;
+    }
+
+    public void setNodeFreeSlots(Map<String, Integer> nodeFreeSlots) {
+        this.nodeFreeSlots = nodeFreeSlots;
+    }
+
+    public boolean isScratch() {
+        return isScratch;
+    }
+
+    public void setScratch(boolean isScratch) {
+        this.isScratch = isScratch;
+    }
+}
@@ -2,6 +2,7 @@ package com.alipay.dw.jstorm.stats;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -11,6 +12,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 import backtype.storm.generated.GlobalStreamId;
 import backtype.storm.generated.TaskStats;
 
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
 import com.alipay.dw.jstorm.common.stats.StatBuckets;
 import com.alipay.dw.jstorm.common.stats.StaticsType;
 
@@ -25,7 +27,7 @@ public class CommonStatsData implements Serializable {
     private static final long                        serialVersionUID = -2811225938044543165L;
     
     protected Map<StaticsType, Map<Integer, Object>> staticsMap;
-    protected int                                    rate             = StatFunction.NUM_STAT_BUCKETS;
+    protected int                                    rate             = StatBuckets.NUM_STAT_BUCKETS;
     
     public CommonStatsData() {
         staticsMap = new HashMap<StaticsType, Map<Integer, Object>>();
@@ -37,6 +39,8 @@ public class CommonStatsData implements Serializable {
         HashMap<Integer, Object> acked = new HashMap<Integer, Object>();
         HashMap<Integer, Object> failed = new HashMap<Integer, Object>();
         HashMap<Integer, Object> processLatencies = new HashMap<Integer, Object>();
+        HashMap<Integer, Object> processHistograms = new HashMap<Integer, Object>();
+        HashMap<Integer, Object> executeHistograms = new HashMap<Integer, Object>();
         
         staticsMap.put(StaticsType.emitted, emitted);
         staticsMap.put(StaticsType.send_tps, sendTps);
@@ -44,6 +48,8 @@ public class CommonStatsData implements Serializable {
         staticsMap.put(StaticsType.acked, acked);
         staticsMap.put(StaticsType.failed, failed);
         staticsMap.put(StaticsType.process_latencies, processLatencies);
+        staticsMap.put(StaticsType.process_histograms, processHistograms);
+        staticsMap.put(StaticsType.execute_histograms, executeHistograms);
         
     }
     
@@ -170,6 +176,40 @@ public class CommonStatsData implements Serializable {
         return convertKey(statics, streamIdSample, Double.valueOf(0));
     }
     
+    /**
+     * convert <window, Map<GlobalStreamId, LatencyHistogram>> to
+     * <window, Map<GlobalStreamId, (bucket index, count) pairs>>
+     */
+    public Map<String, Map<GlobalStreamId, List<Long>>> convertHistograms(
+            Map<Integer, Object> statics) {
+        Map<String, Map<GlobalStreamId, List<Long>>> ret = new HashMap<String, Map<GlobalStreamId, List<Long>>>();
+        
+        for (Entry<Integer, Object> times : statics.entrySet()) {
+            Map<GlobalStreamId, LatencyHistogram> histograms = (Map<GlobalStreamId, LatencyHistogram>) times
+                    .getValue();
+            
+            Map<GlobalStreamId, List<Long>> val = new HashMap<GlobalStreamId, List<Long>>();
+            for (Entry<GlobalStreamId, LatencyHistogram> entry : histograms
+                    .entrySet()) {
+                val.put(entry.getKey(), entry.getValue().toList());
+            }
+            
+            ret.put(StatBuckets.parseTimeKey(times.getKey()), val);
+        }
+        
+        return ret;
+    }
+    
+    public Map<String, Map<GlobalStreamId, List<Long>>> get_process_histograms() {
+        return convertHistograms(staticsMap
+                .get(StaticsType.process_histograms));
+    }
+    
+    public Map<String, Map<GlobalStreamId, List<Long>>> get_execute_histograms() {
+        return convertHistograms(staticsMap
+                .get(StaticsType.execute_histograms));
+    }
+    
     public TaskStats getTaskStats() {
         TaskStats taskStats = new TaskStats();
         
@@ -179,6 +219,8 @@ public class CommonStatsData implements Serializable {
         taskStats.set_acked(get_acked());
         taskStats.set_failed(get_failed());
         taskStats.set_process_ms_avg(get_process_latencie());
+        taskStats.set_process_histograms(get_process_histograms());
+        taskStats.set_execute_histograms(get_execute_histograms());
         
         return taskStats;
     }
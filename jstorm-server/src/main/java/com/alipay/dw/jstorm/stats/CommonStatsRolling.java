@@ -1,111 +1,58 @@
 package com.alipay.dw.jstorm.stats;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.HashMap;
-
-import backtype.storm.generated.GlobalStreamId;
-import backtype.storm.tuple.Tuple;
 
 import com.alipay.dw.jstorm.cluster.Common;
-import com.alipay.dw.jstorm.cluster.StormConfig;
-import com.alipay.dw.jstorm.common.stats.StatBuckets;
 import com.alipay.dw.jstorm.common.stats.StaticsType;
-import com.alipay.dw.jstorm.stats.rolling.RollingWindowSet;
-import com.alipay.dw.jstorm.utils.EventSampler;
+import com.alipay.dw.jstorm.stats.rolling.RollingStats;
+import com.alipay.dw.jstorm.stats.rolling.RollingStats.Extractor;
 import com.alipay.dw.jstorm.utils.TimeUtils;
 
 /**
  * both spout and bolt will use base statics
  * 
+ * Every event is counted into a striped RollingCounter, which costs
+ * a few atomic adds, the windows are only computed in render_stats.
+ * 
+ * emitted/send_tps come from the sent counter, acked/process_latencies
+ * come from the acked counter (count and latency sum)
+ * 
+ * The latencies are recorded in microseconds, the acked and executed
+ * counters keep their histograms for the percentiles
+ * 
  * @author Longda/yannian
  * 
  */
 public class CommonStatsRolling implements Serializable {
     
-    private static final long                        serialVersionUID = -2145444660360278001L;
-    
-    protected Map<StaticsType, RollingWindowSet>     staticTypeMap    = new HashMap<StaticsType, RollingWindowSet>();
-    
-    // <StremId, EventSampler>
-    protected Map<String, EventSampler>              emittedSamplers;
-    protected Map<String, EventSampler>              sendTpsSamplers;
+    private static final long serialVersionUID = -2145444660360278001L;
     
-    //<componentId, <streamId, EventSampler>>
-    protected Map<String, Map<String, EventSampler>> recvTpsSamplers;
+    // <StreamId, counter>
+    protected RollingStats    sent;
+    // <GlobalStreamId, counter>
+    protected RollingStats    received;
+    protected RollingStats    acked;
+    protected RollingStats    failed;
+    // bolt's execute time
+    protected RollingStats    executed;
     
-    protected Map<String, Map<String, EventSampler>> processSamplers;
+    protected boolean         enable           = true;
     
-    // in order to improve performance, use two  type of samplers
-    //    protected Map<String, Map<String, EventSampler>>  ackedSamplers;
-    //    protected Map<String, Map<String, EventSampler>>  failedSamplers;
-    protected Map<String, Map<String, EventSampler>> boltAckedSamplers;
-    protected Map<String, Map<String, EventSampler>> boltFailedSamplers;
-    protected Map<String, EventSampler>              spoutAckedSamplers;
-    protected Map<String, EventSampler>              spoutFailedSamplers;
-    
-    protected boolean                                enable           = true;
-    
-    protected Integer                                rate;
+    // all events are counted, the rate is only kept for compatibility
+    protected Integer         rate;
     
     public CommonStatsRolling(Integer rate) {
-        RollingWindowSet emitted = StatFunction
-                .keyed_counter_rolling_window_set(
-                        StatFunction.NUM_STAT_BUCKETS, StatBuckets.STAT_BUCKETS);
-        staticTypeMap.put(StaticsType.emitted, emitted);
-        
-        RollingWindowSet sendTps = StatFunction.keyed_avg_rolling_window_set(
-                StatFunction.NUM_STAT_BUCKETS, StatBuckets.STAT_BUCKETS);
-        staticTypeMap.put(StaticsType.send_tps, sendTps);
-        
-        RollingWindowSet recvTps = StatFunction.keyed_avg_rolling_window_set(
-                StatFunction.NUM_STAT_BUCKETS, StatBuckets.STAT_BUCKETS);
-        staticTypeMap.put(StaticsType.recv_tps, recvTps);
-        
-        RollingWindowSet acked = StatFunction.keyed_counter_rolling_window_set(
-                StatFunction.NUM_STAT_BUCKETS, StatBuckets.STAT_BUCKETS);
-        staticTypeMap.put(StaticsType.acked, acked);
+        int now = TimeUtils.current_time_secs();
         
-        RollingWindowSet failed = StatFunction
-                .keyed_counter_rolling_window_set(
-                        StatFunction.NUM_STAT_BUCKETS, StatBuckets.STAT_BUCKETS);
-        staticTypeMap.put(StaticsType.failed, failed);
-        
-        RollingWindowSet process_latencies = StatFunction
-                .keyed_avg_rolling_window_set(StatFunction.NUM_STAT_BUCKETS,
-                        StatBuckets.STAT_BUCKETS);
-        
-        staticTypeMap.put(StaticsType.process_latencies, process_latencies);
-        
-        emittedSamplers = new HashMap<String, EventSampler>();
-        sendTpsSamplers = new HashMap<String, EventSampler>();
-        recvTpsSamplers = new HashMap<String, Map<String, EventSampler>>();
-        boltAckedSamplers = new HashMap<String, Map<String, EventSampler>>();
-        boltFailedSamplers = new HashMap<String, Map<String, EventSampler>>();
-        spoutAckedSamplers = new HashMap<String, EventSampler>();
-        spoutFailedSamplers = new HashMap<String, EventSampler>();
-        processSamplers = new HashMap<String, Map<String, EventSampler>>();
+        sent = new RollingStats(now);
+        received = new RollingStats(now);
+        acked = new RollingStats(now, true);
+        failed = new RollingStats(now);
+        executed = new RollingStats(now, true);
         
         this.rate = rate;
     }
     
-    /**
-     * update statics
-     * 
-     * @param common
-     * @param path
-     * @param args
-     */
-    public void update_task_stat(StaticsType type, Object... args) {
-        
-        RollingWindowSet statics = staticTypeMap.get(type);
-        if (statics != null) {
-            statics.update_rolling_window_set(args);
-        }
-    }
-    
     public void send_tuple(String stream, int num_out_tasks) {
         if (enable == false) {
             return;
@@ -115,29 +62,7 @@ public class CommonStatsRolling implements Serializable {
             return;
         }
         
-        EventSampler emittedSampler = emittedSamplers.get(stream);
-        if (emittedSampler == null) {
-            emittedSampler = new EventSampler(rate);
-            emittedSamplers.put(stream, emittedSampler);
-        }
-        
-        Integer times = emittedSampler.timesCheck();
-        if (times != null) {
-            update_task_stat(StaticsType.emitted, stream, times * num_out_tasks);
-        }
-        
-        EventSampler sendTpsSampler = sendTpsSamplers.get(stream);
-        if (sendTpsSampler == null) {
-            sendTpsSampler = new EventSampler(rate);
-            sendTpsSamplers.put(stream, sendTpsSampler);
-        }
-        Integer send = sendTpsSampler.tpsCheck();
-        
-        if (send != null) {
-            
-            update_task_stat(StaticsType.send_tps, stream, send * num_out_tasks);
-            
-        }
+        sent.counter(stream).add(num_out_tasks);
     }
     
     public void recv_tuple(String component, String stream) {
@@ -145,86 +70,84 @@ public class CommonStatsRolling implements Serializable {
             return;
         }
         
-        Map<String, EventSampler> componentSamplers = recvTpsSamplers
-                .get(component);
-        if (componentSamplers == null) {
-            componentSamplers = new HashMap<String, EventSampler>();
-            recvTpsSamplers.put(component, componentSamplers);
-        }
-        
-        EventSampler sampler = componentSamplers.get(stream);
-        if (sampler == null) {
-            sampler = new EventSampler(rate);
-            componentSamplers.put(stream, sampler);
+        received.counter(component, stream).incr();
+    }
+    
+    /**
+     * num events in one tuple, such as the acks of acker's batch tuple
+     */
+    public void recv_tuple(String component, String stream, int num) {
+        if (enable == false) {
+            return;
         }
         
-        Integer recv = sampler.tpsCheck();
-        
-        if (recv != null) {
-            GlobalStreamId key = new GlobalStreamId(component, stream);
-            update_task_stat(StaticsType.recv_tps, key, recv);
-        }
+        received.counter(component, stream).incr(num);
     }
     
+    /**
+     * @param latency_us
+     *            from the start of execute to ack
+     */
     public void bolt_acked_tuple(String component, String stream,
-            Long latency_ms) {
+            Long latency_us) {
         
         if (enable == false) {
             return;
         }
         
-        if (latency_ms == null) {
+        if (latency_us == null) {
             return;
         }
         
-        Map<String, EventSampler> componentSamplers = boltAckedSamplers
-                .get(component);
-        if (componentSamplers == null) {
-            componentSamplers = new HashMap<String, EventSampler>();
-            boltAckedSamplers.put(component, componentSamplers);
-        }
+        acked.counter(component, stream).add(latency_us);
+    }
+    
+    public void bolt_acked_tuple(String component, String stream,
+            Long latency_us, int num) {
         
-        EventSampler sampler = componentSamplers.get(stream);
-        if (sampler == null) {
-            sampler = new EventSampler(rate);
-            componentSamplers.put(stream, sampler);
+        if (enable == false) {
+            return;
         }
         
-        Integer times = sampler.timesCheck();
-        if (times == null) {
+        if (latency_us == null) {
             return;
         }
         
-        GlobalStreamId key = new GlobalStreamId(component, stream);
-        update_task_stat(StaticsType.acked, key, times);
-        update_task_stat(StaticsType.process_latencies, key, latency_ms);
+        acked.counter(component, stream).add(latency_us, num);
     }
     
-    public void bolt_failed_tuple(String component, String stream) {
+    /**
+     * @param latency_us
+     *            time spent in bolt's execute
+     */
+    public void bolt_execute_tuple(String component, String stream,
+            long latency_us) {
         if (enable == false) {
             return;
         }
         
-        Map<String, EventSampler> componentSamplers = boltFailedSamplers
-                .get(component);
-        if (componentSamplers == null) {
-            componentSamplers = new HashMap<String, EventSampler>();
-            boltFailedSamplers.put(component, componentSamplers);
-        }
-        
-        EventSampler sampler = componentSamplers.get(stream);
-        if (sampler == null) {
-            sampler = new EventSampler(rate);
-            componentSamplers.put(stream, sampler);
+        executed.counter(component, stream).add(latency_us);
+    }
+    
+    /**
+     * @param latency_us
+     *            time spent in bolt's execute of every event
+     */
+    public void bolt_execute_tuple(String component, String stream,
+            long latency_us, int num) {
+        if (enable == false) {
+            return;
         }
         
-        Integer times = sampler.timesCheck();
-        if (times == null) {
+        executed.counter(component, stream).add(latency_us, num);
+    }
+    
+    public void bolt_failed_tuple(String component, String stream) {
+        if (enable == false) {
             return;
         }
         
-        GlobalStreamId key = new GlobalStreamId(component, stream);
-        update_task_stat(StaticsType.failed, key, times);
+        failed.counter(component, stream).incr();
     }
     
     public void spout_acked_tuple(String stream, long st) {
@@ -237,22 +160,9 @@ public class CommonStatsRolling implements Serializable {
             return;
         }
         
-        EventSampler sampler = spoutAckedSamplers.get(stream);
-        if (sampler == null) {
-            sampler = new EventSampler(rate);
-            spoutAckedSamplers.put(stream, sampler);
-        }
-        
-        Integer times = sampler.timesCheck();
-        if (times == null) {
-            return;
-        }
-        
-        Long latency_ms = TimeUtils.time_delta_ms(st);
-        GlobalStreamId key = new GlobalStreamId(Common.ACKER_COMPONENT_ID,
-                stream);
-        update_task_stat(StaticsType.acked, key, times);
-        update_task_stat(StaticsType.process_latencies, key, latency_ms);
+        long latency_ms = TimeUtils.time_delta_ms(st);
+        acked.counter(Common.ACKER_COMPONENT_ID, stream).add(
+                latency_ms * 1000);
     }
     
     public void spout_failed_tuple(String stream) {
@@ -260,66 +170,35 @@ public class CommonStatsRolling implements Serializable {
             return;
         }
         
-        EventSampler sampler = spoutFailedSamplers.get(stream);
-        if (sampler == null) {
-            sampler = new EventSampler(rate);
-            spoutFailedSamplers.put(stream, sampler);
-        }
-        
-        Integer times = sampler.timesCheck();
-        if (times == null) {
-            return;
-        }
-        
-        GlobalStreamId key = new GlobalStreamId(Common.ACKER_COMPONENT_ID,
-                stream);
-        update_task_stat(StaticsType.failed, key, times);
+        failed.counter(Common.ACKER_COMPONENT_ID, stream).incr();
     }
     
     public CommonStatsData render_stats() {
+        int now = TimeUtils.current_time_secs();
         
-        cleanup_stats(false);
+        sent.roll(now);
+        received.roll(now);
+        acked.roll(now);
+        failed.roll(now);
+        executed.roll(now);
         
         CommonStatsData ret = new CommonStatsData();
         
-        for (Entry<StaticsType, RollingWindowSet> entry : staticTypeMap
-                .entrySet()) {
-            StaticsType type = entry.getKey();
-            RollingWindowSet rws = entry.getValue();
-            
-            Map<Integer, Object> csData = rws.value_rolling_window_set();
-            
-            ret.put(type, csData);
-        }
+        ret.put(StaticsType.emitted, sent.render(Extractor.SUM, now));
+        ret.put(StaticsType.send_tps, sent.render(Extractor.SUM_TPS, now));
+        ret.put(StaticsType.recv_tps,
+                received.render(Extractor.COUNT_TPS, now));
+        ret.put(StaticsType.acked, acked.render(Extractor.COUNT, now));
+        ret.put(StaticsType.failed, failed.render(Extractor.COUNT, now));
+        ret.put(StaticsType.process_latencies,
+                acked.render(Extractor.AVG_MS, now));
+        ret.put(StaticsType.process_histograms, acked.renderHistograms(now));
+        ret.put(StaticsType.execute_histograms,
+                executed.renderHistograms(now));
         
         return ret;
     }
     
-    protected void cleanup_common_stats() {
-        
-        for (Entry<StaticsType, RollingWindowSet> entry : staticTypeMap
-                .entrySet()) {
-            RollingWindowSet rws = entry.getValue();
-            rws.cleanup_rolling_window_set();
-        }
-        
-    }
-    
-    public void cleanup_stats(boolean skipcommon) {
-        if (skipcommon == false) {
-            cleanup_common_stats();
-        }
-        
-    }
-    
-    public RollingWindowSet get(StaticsType type) {
-        return staticTypeMap.get(type);
-    }
-    
-    public void put(StaticsType type, RollingWindowSet statics) {
-        staticTypeMap.put(type, statics);
-    }
-    
     public Integer getRate() {
         return rate;
     }
@@ -0,0 +1,203 @@
+package com.alipay.dw.jstorm.stats.rolling;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
+
+/**
+ * Rolling sum and count of one key
+ *
+ * The hot path only adds to cumulative counters, which are striped by
+ * thread id, one stripe per cache line, so the executor threads don't
+ * contend and nothing is locked or allocated.
+ *
+ * roll() is called by the rendering thread, it merges the stripes and
+ * puts the delta since the last roll into the bucket ring of every
+ * window. A ring slot is reused once its bucket falls out of the window.
+ *
+ * If it is created with histogram, every value of add() is also recorded
+ * as a latency in microseconds.
+ *
+ * @author longda
+ *
+ */
+public class RollingCounter implements Serializable {
+    private static final long     serialVersionUID = 4712390575419203411L;
+
+    // 8 longs, one cache line
+    private static final int      STRIPE_WIDTH = 8;
+    private static final int      SUM          = 0;
+    private static final int      COUNT        = 1;
+
+    private static final int      STRIPE_NUM;
+    static {
+        int num = 1;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        while (num < cpus && num < 16) {
+            num <<= 1;
+        }
+        STRIPE_NUM = num;
+    }
+
+    private final Object          key;
+    private final AtomicLongArray cells;
+    private final RollingHistogram histogram;
+
+    // the following is only accessed by the rendering thread
+    private final int[]           bucketSecs;
+    private final int             numBuckets;
+    // [window * numBuckets + slot]
+    private final long[]          ringEpochs;
+    private final long[]          ringSums;
+    private final long[]          ringCounts;
+    private long                  totalSum;
+    private long                  totalCount;
+
+    public RollingCounter(Object key, int[] bucketSecs, int numBuckets,
+            boolean withHistogram) {
+        this.key = key;
+        this.cells = new AtomicLongArray(STRIPE_NUM * STRIPE_WIDTH);
+        this.histogram = withHistogram ? new RollingHistogram(bucketSecs,
+                numBuckets) : null;
+
+        this.bucketSecs = bucketSecs;
+        this.numBuckets = numBuckets;
+        int slots = bucketSecs.length * numBuckets;
+        this.ringEpochs = new long[slots];
+        this.ringSums = new long[slots];
+        this.ringCounts = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            ringEpochs[i] = -1;
+        }
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    private static int stripe() {
+        return ((int) Thread.currentThread().getId() & (STRIPE_NUM - 1))
+                * STRIPE_WIDTH;
+    }
+
+    /**
+     * one event with value, such as latency
+     */
+    public void add(long value) {
+        int base = stripe();
+        cells.getAndAdd(base + SUM, value);
+        cells.getAndAdd(base + COUNT, 1);
+        if (histogram != null) {
+            histogram.record(value);
+        }
+    }
+
+    /**
+     * num events with the same value
+     */
+    public void add(long value, int num) {
+        int base = stripe();
+        cells.getAndAdd(base + SUM, value * num);
+        cells.getAndAdd(base + COUNT, num);
+        if (histogram != null) {
+            for (int i = 0; i < num; i++) {
+                histogram.record(value);
+            }
+        }
+    }
+
+    /**
+     * one event
+     */
+    public void incr() {
+        cells.getAndAdd(stripe() + COUNT, 1);
+    }
+
+    /**
+     * num events
+     */
+    public void incr(int num) {
+        cells.getAndAdd(stripe() + COUNT, num);
+    }
+
+    /**
+     * merge stripes and roll the delta into the current buckets
+     */
+    public void roll(int nowSecs) {
+        long sum = 0;
+        long count = 0;
+        for (int i = 0; i < STRIPE_NUM; i++) {
+            int base = i * STRIPE_WIDTH;
+            sum += cells.get(base + SUM);
+            count += cells.get(base + COUNT);
+        }
+
+        long deltaSum = sum - totalSum;
+        long deltaCount = count - totalCount;
+        totalSum = sum;
+        totalCount = count;
+
+        for (int w = 0; w < bucketSecs.length; w++) {
+            long epoch = nowSecs / bucketSecs[w];
+            int slot = w * numBuckets + (int) (epoch % numBuckets);
+            if (ringEpochs[slot] != epoch) {
+                ringEpochs[slot] = epoch;
+                ringSums[slot] = 0;
+                ringCounts[slot] = 0;
+            }
+            ringSums[slot] += deltaSum;
+            ringCounts[slot] += deltaCount;
+        }
+
+        if (histogram != null) {
+            histogram.roll(nowSecs);
+        }
+    }
+
+    private long windowValue(long[] ring, int window, int nowSecs) {
+        long epoch = nowSecs / bucketSecs[window];
+        long ret = 0;
+        int base = window * numBuckets;
+        for (int i = 0; i < numBuckets; i++) {
+            if (ringEpochs[base + i] > epoch - numBuckets) {
+                ret += ring[base + i];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param window
+     *            index of the window, -1 means all time
+     */
+    public long sum(int window, int nowSecs) {
+        if (window < 0) {
+            return totalSum;
+        }
+        return windowValue(ringSums, window, nowSecs);
+    }
+
+    /**
+     * @param window
+     *            index of the window, -1 means all time
+     */
+    public long count(int window, int nowSecs) {
+        if (window < 0) {
+            return totalCount;
+        }
+        return windowValue(ringCounts, window, nowSecs);
+    }
+
+    /**
+     * @param window
+     *            index of the window, -1 means all time
+     * @return null if it has no histogram
+     */
+    public LatencyHistogram histogram(int window, int nowSecs) {
+        if (histogram == null) {
+            return null;
+        }
+        return histogram.histogram(window, nowSecs);
+    }
+}
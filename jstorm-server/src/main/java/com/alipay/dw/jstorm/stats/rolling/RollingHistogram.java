@@ -0,0 +1,121 @@
+package com.alipay.dw.jstorm.stats.rolling;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
+
+/**
+ * Rolling latency histogram of one key
+ *
+ * Like RollingCounter, record() only increments one cumulative bucket,
+ * roll() moves the delta since last roll into the bucket ring of every
+ * window. A ring slot is allocated when it gets its first delta and only
+ * as long as its highest non-zero bucket.
+ *
+ * @author longda
+ *
+ */
+public class RollingHistogram implements Serializable {
+    private static final long     serialVersionUID = -1853497315071902286L;
+
+    private final AtomicLongArray cells;
+
+    // the following is only accessed by the rendering thread
+    private final int[]           bucketSecs;
+    private final int             numBuckets;
+    private final long[]          total;
+    private final long[]          ringEpochs;
+    private final long[][]        ringCounts;
+
+    public RollingHistogram(int[] bucketSecs, int numBuckets) {
+        this.cells = new AtomicLongArray(LatencyHistogram.BUCKET_NUM);
+
+        this.bucketSecs = bucketSecs;
+        this.numBuckets = numBuckets;
+        this.total = new long[LatencyHistogram.BUCKET_NUM];
+        int slots = bucketSecs.length * numBuckets;
+        this.ringEpochs = new long[slots];
+        this.ringCounts = new long[slots][];
+        for (int i = 0; i < slots; i++) {
+            ringEpochs[i] = -1;
+        }
+    }
+
+    /**
+     * @param latencyUs
+     *            latency in microseconds
+     */
+    public void record(long latencyUs) {
+        cells.getAndIncrement(LatencyHistogram.index(latencyUs));
+    }
+
+    public void roll(int nowSecs) {
+        long[] delta = null;
+        int highest = -1;
+        for (int i = 0; i < total.length; i++) {
+            long value = cells.get(i);
+            if (value == total[i]) {
+                continue;
+            }
+            if (delta == null) {
+                delta = new long[total.length];
+            }
+            delta[i] = value - total[i];
+            total[i] = value;
+            highest = i;
+        }
+
+        for (int w = 0; w < bucketSecs.length; w++) {
+            long epoch = nowSecs / bucketSecs[w];
+            int slot = w * numBuckets + (int) (epoch % numBuckets);
+            if (ringEpochs[slot] != epoch) {
+                ringEpochs[slot] = epoch;
+                ringCounts[slot] = null;
+            }
+            if (delta == null) {
+                continue;
+            }
+
+            long[] counts = ringCounts[slot];
+            if (counts == null || counts.length <= highest) {
+                long[] tmp = new long[highest + 1];
+                if (counts != null) {
+                    System.arraycopy(counts, 0, tmp, 0, counts.length);
+                }
+                counts = tmp;
+                ringCounts[slot] = counts;
+            }
+            for (int i = 0; i <= highest; i++) {
+                counts[i] += delta[i];
+            }
+        }
+    }
+
+    /**
+     * @param window
+     *            index of the window, -1 means all time
+     */
+    public LatencyHistogram histogram(int window, int nowSecs) {
+        LatencyHistogram ret = new LatencyHistogram();
+        if (window < 0) {
+            for (int i = 0; i < total.length; i++) {
+                ret.add(i, total[i]);
+            }
+            return ret;
+        }
+
+        long epoch = nowSecs / bucketSecs[window];
+        int base = window * numBuckets;
+        for (int s = 0; s < numBuckets; s++) {
+            long[] counts = ringCounts[base + s];
+            if (counts == null || ringEpochs[base + s] <= epoch - numBuckets) {
+                continue;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                ret.add(i, counts[i]);
+            }
+        }
+        return ret;
+    }
+}
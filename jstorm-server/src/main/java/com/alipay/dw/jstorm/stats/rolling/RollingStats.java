@@ -0,0 +1,219 @@
+package com.alipay.dw.jstorm.stats.rolling;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import backtype.storm.generated.GlobalStreamId;
+
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
+import com.alipay.dw.jstorm.common.stats.StatBuckets;
+
+/**
+ * Rolling statics of one kind of event, keyed by stream or by
+ * (component, stream)
+ *
+ * The key -> RollingCounter maps are copy-on-write, a new key is added
+ * under the lock, the lookup in the hot path only reads the current
+ * snapshot.
+ *
+ * Every window has StatBuckets.NUM_STAT_BUCKETS buckets of
+ * StatBuckets.STAT_BUCKETS seconds, the rendered maps are the same as
+ * before: <window seconds, <key, value>>, window 0 is all time.
+ *
+ * @author longda
+ *
+ */
+public class RollingStats implements Serializable {
+    private static final long serialVersionUID = -6203867428801945532L;
+
+    public static enum Extractor {
+        // Long
+        SUM, COUNT,
+        // Double
+        AVG, SUM_TPS, COUNT_TPS,
+        // Double, average of microseconds in milliseconds
+        AVG_MS
+    }
+
+    private static final int[] BUCKET_SECS;
+    static {
+        BUCKET_SECS = new int[StatBuckets.STAT_BUCKETS.length];
+        for (int i = 0; i < BUCKET_SECS.length; i++) {
+            BUCKET_SECS[i] = StatBuckets.STAT_BUCKETS[i];
+        }
+    }
+
+    private final int                                                 startSecs;
+    private final boolean                                             withHistogram;
+
+    private volatile Map<String, RollingCounter>                      streamCounters    = new HashMap<String, RollingCounter>();
+    private volatile Map<String, Map<String, RollingCounter>>         componentCounters = new HashMap<String, Map<String, RollingCounter>>();
+    private volatile RollingCounter[]                                 counters          = new RollingCounter[0];
+
+    public RollingStats(int startSecs) {
+        this(startSecs, false);
+    }
+
+    /**
+     * @param withHistogram
+     *            the values are latencies in microseconds, keep their
+     *            histograms too
+     */
+    public RollingStats(int startSecs, boolean withHistogram) {
+        this.startSecs = startSecs;
+        this.withHistogram = withHistogram;
+    }
+
+    public RollingCounter counter(String stream) {
+        RollingCounter counter = streamCounters.get(stream);
+        if (counter != null) {
+            return counter;
+        }
+
+        synchronized (this) {
+            counter = streamCounters.get(stream);
+            if (counter == null) {
+                counter = newCounter(stream);
+
+                Map<String, RollingCounter> map = new HashMap<String, RollingCounter>(
+                        streamCounters);
+                map.put(stream, counter);
+                streamCounters = map;
+            }
+            return counter;
+        }
+    }
+
+    public RollingCounter counter(String component, String stream) {
+        Map<String, RollingCounter> streams = componentCounters.get(component);
+        if (streams != null) {
+            RollingCounter counter = streams.get(stream);
+            if (counter != null) {
+                return counter;
+            }
+        }
+
+        synchronized (this) {
+            streams = componentCounters.get(component);
+            RollingCounter counter = (streams == null) ? null : streams
+                    .get(stream);
+            if (counter == null) {
+                counter = newCounter(new GlobalStreamId(component, stream));
+
+                Map<String, RollingCounter> newStreams = new HashMap<String, RollingCounter>();
+                if (streams != null) {
+                    newStreams.putAll(streams);
+                }
+                newStreams.put(stream, counter);
+
+                Map<String, Map<String, RollingCounter>> map = new HashMap<String, Map<String, RollingCounter>>(
+                        componentCounters);
+                map.put(component, newStreams);
+                componentCounters = map;
+            }
+            return counter;
+        }
+    }
+
+    // called under lock
+    private RollingCounter newCounter(Object key) {
+        RollingCounter counter = new RollingCounter(key, BUCKET_SECS,
+                StatBuckets.NUM_STAT_BUCKETS, withHistogram);
+
+        RollingCounter[] array = new RollingCounter[counters.length + 1];
+        System.arraycopy(counters, 0, array, 0, counters.length);
+        array[counters.length] = counter;
+        counters = array;
+
+        return counter;
+    }
+
+    /**
+     * move the events since last roll into the windows,
+     * call it once before rendering
+     */
+    public synchronized void roll(int nowSecs) {
+        for (RollingCounter counter : counters) {
+            counter.roll(nowSecs);
+        }
+    }
+
+    /**
+     * @return <window seconds, <key, value>>
+     */
+    public synchronized HashMap<Integer, Object> render(Extractor extractor,
+            int nowSecs) {
+        HashMap<Integer, Object> rtn = new HashMap<Integer, Object>();
+
+        for (int w = 0; w < BUCKET_SECS.length; w++) {
+            int size = BUCKET_SECS[w] * StatBuckets.NUM_STAT_BUCKETS;
+            rtn.put(size, render(extractor, w, size, nowSecs));
+        }
+
+        rtn.put(0, render(extractor, -1, Integer.MAX_VALUE, nowSecs));
+        return rtn;
+    }
+
+    private Map<Object, Object> render(Extractor extractor, int window,
+            int windowSecs, int nowSecs) {
+        Map<Object, Object> ret = new HashMap<Object, Object>();
+
+        // the task may start later than the window
+        double elapsed = Math.max(1, Math.min(windowSecs, nowSecs - startSecs));
+
+        for (RollingCounter counter : counters) {
+            long sum = counter.sum(window, nowSecs);
+            long count = counter.count(window, nowSecs);
+
+            Object value = null;
+            switch (extractor) {
+            case SUM:
+                value = Long.valueOf(sum);
+                break;
+            case COUNT:
+                value = Long.valueOf(count);
+                break;
+            case AVG:
+                value = Double.valueOf(count == 0 ? 0d : ((double) sum)
+                        / count);
+                break;
+            case SUM_TPS:
+                value = Double.valueOf(sum / elapsed);
+                break;
+            case COUNT_TPS:
+                value = Double.valueOf(count / elapsed);
+                break;
+            case AVG_MS:
+                value = Double.valueOf(count == 0 ? 0d : ((double) sum)
+                        / count / 1000);
+                break;
+            }
+            ret.put(counter.getKey(), value);
+        }
+        return ret;
+    }
+
+    /**
+     * @return <window seconds, <key, LatencyHistogram>>
+     */
+    public synchronized HashMap<Integer, Object> renderHistograms(int nowSecs) {
+        HashMap<Integer, Object> rtn = new HashMap<Integer, Object>();
+        if (withHistogram == false) {
+            return rtn;
+        }
+
+        for (int w = -1; w < BUCKET_SECS.length; w++) {
+            Map<Object, LatencyHistogram> histograms = new HashMap<Object, LatencyHistogram>();
+            for (RollingCounter counter : counters) {
+                histograms.put(counter.getKey(),
+                        counter.histogram(w, nowSecs));
+            }
+
+            int size = (w < 0) ? 0 : BUCKET_SECS[w]
+                    * StatBuckets.NUM_STAT_BUCKETS;
+            rtn.put(size, histograms);
+        }
+        return rtn;
+    }
+}
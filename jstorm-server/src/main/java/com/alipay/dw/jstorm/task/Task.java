@@ -18,6 +18,8 @@ import com.alipay.dw.jstorm.cluster.Common;
 import com.alipay.dw.jstorm.cluster.StormClusterState;
 import com.alipay.dw.jstorm.cluster.StormConfig;
 import com.alipay.dw.jstorm.cluster.StormZkClusterState;
+import com.alipay.dw.jstorm.daemon.worker.Backpressure;
+import com.alipay.dw.jstorm.daemon.worker.TasksReady;
 import com.alipay.dw.jstorm.daemon.worker.WorkerData;
 import com.alipay.dw.jstorm.daemon.worker.WorkerHaltRunable;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
@@ -27,6 +29,7 @@ import com.alipay.dw.jstorm.task.comm.UnanchoredSend;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
 import com.alipay.dw.jstorm.task.error.TaskReportError;
 import com.alipay.dw.jstorm.task.error.TaskReportErrorAndDie;
+import com.alipay.dw.jstorm.task.execute.BaseExecutors;
 import com.alipay.dw.jstorm.task.execute.BoltExecutors;
 import com.alipay.dw.jstorm.task.execute.SpoutExecutors;
 import com.alipay.dw.jstorm.task.group.MkGrouper;
@@ -54,6 +57,9 @@ public class Task {
     
     private WorkerTransfer      workerTransfer;
     private WorkerHaltRunable   workHalt;
+    private TaskHeartbeatRunable taskHeartbeat;
+    private TasksReady          tasksReady;
+    private Backpressure        backpressure;
     
     private Integer             taskid;
     private String              componentid;
@@ -76,6 +82,9 @@ public class Task {
         this.topologyid = workerData.getTopologyId();
         this.mqContext = workerData.getMqContext();
         this.workHalt = workerData.getWorkHalt();
+        this.taskHeartbeat = workerData.getTaskHeartbeat();
+        this.tasksReady = workerData.getTasksReady();
+        this.backpressure = workerData.getBackpressure();
         
         this.taskid = topologyContext.getThisTaskId();
         this.componentid = topologyContext.getThisComponentId();
@@ -128,17 +137,19 @@ public class Task {
         return sendTargets;
     }
     
-    public RunnableCallback mk_executors(IRecvConnection _puller,
+    public BaseExecutors mk_executors(IRecvConnection _puller,
             TaskSendTargets sendTargets, ITaskReportErr _report_error) {
         
         if (taskObj instanceof IBolt) {
             return new BoltExecutors((IBolt) taskObj, workerTransfer,
                     stormConf, _puller, sendTargets, taskStatus,
-                    topologyContext, userContext, taskStats, _report_error);
+                    topologyContext, userContext, taskStats, _report_error,
+                    backpressure);
         } else if (taskObj instanceof ISpout) {
             return new SpoutExecutors((ISpout) taskObj, workerTransfer,
                     stormConf, _puller, sendTargets, taskStatus,
-                    topologyContext, userContext, taskStats, _report_error);
+                    topologyContext, userContext, taskStats, _report_error,
+                    tasksReady, backpressure);
         }
         
         return null;
@@ -151,7 +162,7 @@ public class Task {
      * @param sendTargets
      * @return
      */
-    private RunnableCallback mkExecutor(IRecvConnection puller,
+    private BaseExecutors mkExecutor(IRecvConnection puller,
             TaskSendTargets sendTargets) {
         // create report error callback, 
         // in fact it is storm_cluster.report-task-error
@@ -167,36 +178,32 @@ public class Task {
     
     public TaskShutdownDameon execute() throws Exception {
         
-        // create heartbeat
-        TaskHeartbeatRunable hb = new TaskHeartbeatRunable(zkCluster,
-                topologyid, taskid, uptime, taskStats, taskStatus, stormConf);
-        
-        AsyncLoopThread heartbeat_thread = new AsyncLoopThread(hb, false,
-                Thread.MIN_PRIORITY, true);
-        
         IRecvConnection puller = mqContext.bind(false, taskid);
         
         TaskSendTargets sendTargets = echoToSystemBolt();
         
         // create thread to get tuple from zeroMQ,
         // and pass the tuple to bolt/spout 
-        RunnableCallback baseExecutor = mkExecutor(puller, sendTargets);
+        BaseExecutors baseExecutor = mkExecutor(puller, sendTargets);
         AsyncLoopThread executor_threads = new AsyncLoopThread(baseExecutor,
                 false, null, Thread.MAX_PRIORITY, true);
         
-        AsyncLoopThread[] all_threads = { executor_threads, heartbeat_thread };
+        AsyncLoopThread[] all_threads = { executor_threads };
+        
+        // the worker's heartbeat thread will report it
+        taskHeartbeat.register(taskid, uptime, taskStats);
         
         LOG.info("Finished loading task " + componentid + ":" + taskid);
         
-        return getShutdown(all_threads, heartbeat_thread, puller);
+        return getShutdown(all_threads, puller, baseExecutor);
     }
     
     public TaskShutdownDameon getShutdown(AsyncLoopThread[] all_threads,
-            AsyncLoopThread heartbeat_thread, IRecvConnection puller) {
+            IRecvConnection puller, BaseExecutors executor) {
         
         TaskShutdownDameon shutdown = new TaskShutdownDameon(taskStatus,
                 topologyid, taskid, mqContext, all_threads, zkCluster, puller,
-                taskObj, heartbeat_thread);
+                taskObj, taskHeartbeat, executor);
         
         return shutdown;
     }
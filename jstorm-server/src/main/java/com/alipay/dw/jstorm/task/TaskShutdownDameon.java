@@ -7,6 +7,8 @@ import backtype.storm.task.IBolt;
 
 import com.alipay.dw.jstorm.callback.AsyncLoopThread;
 import com.alipay.dw.jstorm.cluster.StormClusterState;
+import com.alipay.dw.jstorm.task.execute.BaseExecutors;
+import com.alipay.dw.jstorm.task.heartbeat.TaskHeartbeatRunable;
 import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
 import com.alipay.dw.jstorm.zeroMq.MQContext;
 
@@ -29,13 +31,14 @@ public class TaskShutdownDameon implements ShutdownableDameon {
     private StormClusterState zkCluster;
     private IRecvConnection   puller;
     private Object            task_obj;
-    private AsyncLoopThread   heartbeat_thread;
+    private TaskHeartbeatRunable taskHeartbeat;
+    private BaseExecutors     executor;
     
     public TaskShutdownDameon(TaskStatus taskStatus, String storm_id,
             Integer task_id, MQContext mq_context,
             AsyncLoopThread[] all_threads, StormClusterState zkCluster,
             IRecvConnection puller, Object task_obj,
-            AsyncLoopThread heartbeat_thread) {
+            TaskHeartbeatRunable taskHeartbeat, BaseExecutors executor) {
         this.taskStatus = taskStatus;
         this.storm_id = storm_id;
         this.task_id = task_id;
@@ -44,7 +47,8 @@ public class TaskShutdownDameon implements ShutdownableDameon {
         this.zkCluster = zkCluster;
         this.puller = puller;
         this.task_obj = task_obj;
-        this.heartbeat_thread = heartbeat_thread;
+        this.taskHeartbeat = taskHeartbeat;
+        this.executor = executor;
         
     }
     
@@ -60,6 +64,12 @@ public class TaskShutdownDameon implements ShutdownableDameon {
         // in fact, no use
         // mq_context.send_local_task_empty(storm_id, task_id);
         
+        // wake up the threads waiting on the executor's queues,
+        // some wait strategies don't respond to interrupt
+        if (executor != null) {
+            executor.shutdown();
+        }
+        
         for (AsyncLoopThread thr : all_threads) {
             thr.interrupt();
             try {
@@ -67,8 +77,9 @@ public class TaskShutdownDameon implements ShutdownableDameon {
             } catch (InterruptedException e) {
             }
         }
+        // the worker removes the heartbeat node when it shuts down
+        taskHeartbeat.unregister(task_id);
         try {
-            zkCluster.remove_task_heartbeat(storm_id, task_id);
             zkCluster.disconnect();
         } catch (Exception e) {
             // TODO Auto-generated catch block
@@ -100,7 +111,12 @@ public class TaskShutdownDameon implements ShutdownableDameon {
     
     @Override
     public boolean waiting() {
-        return heartbeat_thread.isSleeping();
+        for (AsyncLoopThread thr : all_threads) {
+            if (thr.isSleeping()) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public void deactive() {
@@ -0,0 +1,315 @@
+package com.alipay.dw.jstorm.task.acker;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Tuple;
+
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
+import com.alipay.dw.jstorm.task.comm.TaskSendTargets;
+import com.alipay.dw.jstorm.task.group.MkAckerGrouper;
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
+
+/**
+ * Coalesce the acks and fails of one bolt task
+ *
+ * The xor values of the same root id are merged, the acks and fails of
+ * every acker task are sent as one tuple of ACKER_BATCH_STREAM_ID when
+ * - maxSize root ids are pending, or
+ * - the bolt executor is idle, or
+ * - the oldest one has waited windowMs, checked by the bolt executor
+ *   and the TimeoutTicker
+ *
+ * The ticker thread never blocks, the batches which it can't send because
+ * the queue is full are sent at the next tick or flush
+ *
+ * batch : [int ack num][long root, long xor]...[int fail num][long root]...
+ *
+ * @author longda
+ *
+ */
+public class AckBatcher implements TimeoutTicker.Tickable {
+    private static final Logger    LOG     = Logger.getLogger(AckBatcher.class);
+
+    private final TopologyContext  topologyContext;
+    // null if there is no acker
+    private final MkAckerGrouper   ackerGrouper;
+    private final WorkerTransfer   workerTransfer;
+    private final Integer          taskId;
+    private final int              maxSize;
+    private final long             windowMs;
+
+    // acker task -> batch
+    private Map<Integer, Batch>    batches = new HashMap<Integer, Batch>();
+    private int                    size    = 0;
+    private long                   firstMs = 0;
+    // the batches which the ticker couldn't send
+    private List<Ready>            unsent  = null;
+
+    static class Batch {
+        LongTable acks  = new LongTable();
+        LongTable fails = new LongTable();
+    }
+
+    /**
+     * root id -> xor in arrival order, without boxing, the open addressing
+     * index keeps the position + 1 of every root id, 0 means empty
+     */
+    static final class LongTable {
+        private static final int INITIAL_SIZE = 16;
+
+        long[]                   keys         = new long[INITIAL_SIZE];
+        long[]                   vals         = new long[INITIAL_SIZE];
+        int                      size         = 0;
+        private int[]            index        = new int[INITIAL_SIZE * 2];
+
+        /**
+         * xor val into the value of key
+         *
+         * @return true if the key is new
+         */
+        boolean xor(long key, long val) {
+            int mask = index.length - 1;
+            int i = AckPendingMap.hash(key) & mask;
+            while (index[i] != 0) {
+                int pos = index[i] - 1;
+                if (keys[pos] == key) {
+                    vals[pos] ^= val;
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                vals = Arrays.copyOf(vals, size * 2);
+            }
+            keys[size] = key;
+            vals[size] = val;
+            index[i] = ++size;
+            if (size * 2 > index.length) {
+                reindex();
+            }
+            return true;
+        }
+
+        private void reindex() {
+            index = new int[index.length * 2];
+            int mask = index.length - 1;
+            for (int pos = 0; pos < size; pos++) {
+                int i = AckPendingMap.hash(keys[pos]) & mask;
+                while (index[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                index[i] = pos + 1;
+            }
+        }
+    }
+
+    static class Ready {
+        final Integer acker;
+        final Tuple   tuple;
+
+        Ready(Integer acker, Tuple tuple) {
+            this.acker = acker;
+            this.tuple = tuple;
+        }
+    }
+
+    public AckBatcher(TopologyContext topologyContext,
+            TaskSendTargets sendTargets, WorkerTransfer workerTransfer,
+            Integer taskId, int maxSize, long windowMs) {
+        this.topologyContext = topologyContext;
+        this.ackerGrouper = sendTargets.getAckerGrouper();
+        this.workerTransfer = workerTransfer;
+        this.taskId = taskId;
+        this.maxSize = maxSize;
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * the acker task of the root id, the same one the spout inits
+     */
+    private Integer ackerTask(long root) {
+        if (ackerGrouper == null) {
+            return null;
+        }
+        return ackerGrouper.grouper(root).get(0);
+    }
+
+    private Batch batch(Integer acker) {
+        Batch batch = batches.get(acker);
+        if (batch == null) {
+            batch = new Batch();
+            batches.put(acker, batch);
+        }
+        if (size == 0) {
+            firstMs = System.currentTimeMillis();
+        }
+        return batch;
+    }
+
+    public void ack(long root, long xor) {
+        Integer acker = ackerTask(root);
+        if (acker == null) {
+            return;
+        }
+
+        List<Ready> full = null;
+        synchronized (this) {
+            if (batch(acker).acks.xor(root, xor)) {
+                size++;
+            }
+            if (size >= maxSize) {
+                full = drain();
+            }
+        }
+        send(full);
+    }
+
+    public void fail(long root) {
+        Integer acker = ackerTask(root);
+        if (acker == null) {
+            return;
+        }
+
+        List<Ready> full = null;
+        synchronized (this) {
+            if (batch(acker).fails.xor(root, 0)) {
+                size++;
+            }
+            if (size >= maxSize) {
+                full = drain();
+            }
+        }
+        send(full);
+    }
+
+    /**
+     * send the pending acks and fails if the executor is idle or the
+     * oldest one has waited windowMs
+     */
+    public void flush(boolean idle) {
+        List<Ready> ready = null;
+        synchronized (this) {
+            if (size > 0
+                    && (idle || System.currentTimeMillis() - firstMs >= windowMs)) {
+                ready = drain();
+            }
+            ready = takeUnsent(ready);
+        }
+        send(ready);
+    }
+
+    public void flush() {
+        flush(true);
+    }
+
+    /**
+     * called by the TimeoutTicker, it doesn't block
+     */
+    @Override
+    public void tick(long nowMs) {
+        List<Ready> ready = null;
+        synchronized (this) {
+            if (size > 0 && nowMs - firstMs >= windowMs) {
+                ready = drain();
+            }
+            ready = takeUnsent(ready);
+        }
+        if (ready == null) {
+            return;
+        }
+
+        List<Ready> left = null;
+        for (Ready one : ready) {
+            boolean sent = false;
+            try {
+                sent = workerTransfer.tryTransfer(one.acker, one.tuple);
+            } catch (Exception e) {
+                LOG.error("Failed to send ack batch to " + one.acker, e);
+                continue;
+            }
+            if (sent == false) {
+                if (left == null) {
+                    left = new ArrayList<Ready>();
+                }
+                left.add(one);
+            }
+        }
+
+        if (left != null) {
+            synchronized (this) {
+                if (unsent != null) {
+                    left.addAll(unsent);
+                }
+                unsent = left;
+            }
+        }
+    }
+
+    private List<Ready> takeUnsent(List<Ready> ready) {
+        if (unsent == null) {
+            return ready;
+        }
+        List<Ready> ret = unsent;
+        unsent = null;
+        if (ready != null) {
+            ret.addAll(ready);
+        }
+        return ret;
+    }
+
+    private List<Ready> drain() {
+        List<Ready> ret = new ArrayList<Ready>(batches.size());
+        for (Entry<Integer, Batch> entry : batches.entrySet()) {
+            Tuple tuple = new Tuple(topologyContext,
+                    JStormUtils.mk_list((Object) encode(entry.getValue())),
+                    taskId, Acker.ACKER_BATCH_STREAM_ID);
+            ret.add(new Ready(entry.getKey(), tuple));
+        }
+        batches = new HashMap<Integer, Batch>();
+        size = 0;
+        return ret;
+    }
+
+    // transfer out of the lock, it may block when the queue is full
+    private void send(List<Ready> ready) {
+        if (ready == null) {
+            return;
+        }
+        for (Ready one : ready) {
+            try {
+                workerTransfer.transfer(one.acker, one.tuple);
+            } catch (Exception e) {
+                LOG.error("Failed to send ack batch to " + one.acker, e);
+            }
+        }
+    }
+
+    static byte[] encode(Batch batch) {
+        LongTable acks = batch.acks;
+        LongTable fails = batch.fails;
+        ByteBuffer buf = ByteBuffer.allocate(8 + acks.size * 16
+                + fails.size * 8);
+        buf.putInt(acks.size);
+        for (int i = 0; i < acks.size; i++) {
+            buf.putLong(acks.keys[i]);
+            buf.putLong(acks.vals[i]);
+        }
+        buf.putInt(fails.size);
+        for (int i = 0; i < fails.size; i++) {
+            buf.putLong(fails.keys[i]);
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,325 @@
+package com.alipay.dw.jstorm.task.acker;
+
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
+
+/**
+ * Pending table of the acker, root id -> (xor value, spout task, failed)
+ *
+ * The table is split into segments, every segment is a primitive
+ * long-keyed linear probing table guarded by its own lock,
+ * so nothing is allocated for one tuple tree.
+ *
+ * Expiry works like a time wheel: the timeout is divided into WHEEL_SLOTS
+ * ticks, every tick sweeps 1/WHEEL_SLOTS of every segment and drops
+ * the entries whose deadline has passed, so one entry lives between
+ * timeout and twice of timeout
+ *
+ * The result of init/ack/fail is packed into one long,
+ * use status() and spoutTask() to read it
+ *
+ * @author longda
+ *
+ */
+public class AckPendingMap implements TimeoutTicker.Tickable {
+    public static final int STATUS_PENDING  = 0;
+    public static final int STATUS_ACKED    = 1;
+    public static final int STATUS_FAILED   = 2;
+
+    public static final int NO_SPOUT_TASK   = -1;
+
+    private static final int WHEEL_SLOTS    = 8;
+    private static final int INIT_CAPACITY  = 1024;
+
+    private final Segment[]  segments;
+    private final int        segmentMask;
+    private final long       tickMs;
+    private final long       startMs;
+
+    private volatile long    currentTick;
+
+    public AckPendingMap(int timeoutSecs, int segmentNum) {
+        int num = 1;
+        while (num < segmentNum) {
+            num <<= 1;
+        }
+
+        this.segments = new Segment[num];
+        for (int i = 0; i < num; i++) {
+            segments[i] = new Segment(INIT_CAPACITY);
+        }
+        this.segmentMask = num - 1;
+
+        this.tickMs = Math.max(1, timeoutSecs * 1000L / WHEEL_SLOTS);
+        this.startMs = System.currentTimeMillis();
+        this.currentTick = 0;
+    }
+
+    public static int status(long result) {
+        return (int) (result & 0xFFFFFFFFL);
+    }
+
+    public static int spoutTask(long result) {
+        return (int) (result >> 32);
+    }
+
+    private static long result(int status, int spoutTask) {
+        return ((long) spoutTask << 32) | (status & 0xFFFFFFFFL);
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 24) & segmentMask];
+    }
+
+    private long deadline() {
+        return currentTick + WHEEL_SLOTS;
+    }
+
+    /**
+     * spout's init message
+     */
+    public long init(long rootId, long val, int spoutTask) {
+        int hash = hash(rootId);
+        return segmentFor(hash).update(rootId, hash, val, spoutTask, false,
+                true, deadline());
+    }
+
+    /**
+     * bolt's ack message, it may arrive before spout's init message
+     */
+    public long ack(long rootId, long val) {
+        int hash = hash(rootId);
+        return segmentFor(hash).update(rootId, hash, val, NO_SPOUT_TASK,
+                false, true, deadline());
+    }
+
+    /**
+     * bolt's fail message, ignored when the root id has been expired
+     */
+    public long fail(long rootId) {
+        int hash = hash(rootId);
+        return segmentFor(hash).update(rootId, hash, 0, NO_SPOUT_TASK, true,
+                false, deadline());
+    }
+
+    public boolean containsKey(long rootId) {
+        int hash = hash(rootId);
+        return segmentFor(hash).containsKey(rootId, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void tick(long nowMs) {
+        expire(nowMs);
+    }
+
+    /**
+     * Advance the wheel to nowMs, it is cheap when no tick has passed
+     *
+     * @return the number of expired entries
+     */
+    public int expire(long nowMs) {
+        long tick = (nowMs - startMs) / tickMs;
+        if (tick <= currentTick) {
+            return 0;
+        }
+
+        int expired = 0;
+        synchronized (this) {
+            long passed = tick - currentTick;
+            if (passed <= 0) {
+                return 0;
+            }
+            currentTick = tick;
+
+            int sweepTimes = (int) Math.min(passed, WHEEL_SLOTS);
+            for (Segment segment : segments) {
+                expired += segment.sweep(tick, sweepTimes);
+            }
+        }
+        return expired;
+    }
+
+    static class Segment {
+        private long[]    keys;
+        private long[]    vals;
+        private int[]     spoutTasks;
+        private long[]    deadlines;
+        private boolean[] used;
+        private boolean[] failed;
+        private int       size;
+        private int       sweepPos;
+
+        Segment(int capacity) {
+            alloc(capacity);
+        }
+
+        private void alloc(int capacity) {
+            keys = new long[capacity];
+            vals = new long[capacity];
+            spoutTasks = new int[capacity];
+            deadlines = new long[capacity];
+            used = new boolean[capacity];
+            failed = new boolean[capacity];
+            size = 0;
+            sweepPos = 0;
+        }
+
+        private int indexOf(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (used[i]) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -(i + 1);
+        }
+
+        synchronized long update(long key, int hash, long val, int spoutTask,
+                boolean fail, boolean create, long deadline) {
+            int i = indexOf(key, hash);
+            if (i < 0) {
+                if (create == false) {
+                    // already timeout
+                    return result(STATUS_PENDING, NO_SPOUT_TASK);
+                }
+
+                if ((size + 1) * 4 > keys.length * 3) {
+                    rehash();
+                    i = indexOf(key, hash);
+                }
+                i = -i - 1;
+                used[i] = true;
+                keys[i] = key;
+                vals[i] = val;
+                spoutTasks[i] = spoutTask;
+                deadlines[i] = deadline;
+                failed[i] = fail;
+                size++;
+            } else {
+                vals[i] ^= val;
+                if (spoutTask != NO_SPOUT_TASK) {
+                    spoutTasks[i] = spoutTask;
+                }
+                if (fail) {
+                    failed[i] = true;
+                }
+            }
+
+            int task = spoutTasks[i];
+            if (task == NO_SPOUT_TASK) {
+                return result(STATUS_PENDING, task);
+            }
+
+            if (vals[i] == 0) {
+                removeAt(i);
+                return result(STATUS_ACKED, task);
+            } else if (failed[i]) {
+                removeAt(i);
+                return result(STATUS_FAILED, task);
+            }
+            return result(STATUS_PENDING, task);
+        }
+
+        synchronized boolean containsKey(long key, int hash) {
+            return indexOf(key, hash) >= 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * backward shift deletion, keep the probe sequences without tombstone
+         */
+        private void removeAt(int i) {
+            int mask = keys.length - 1;
+            used[i] = false;
+            size--;
+
+            int j = (i + 1) & mask;
+            while (used[j]) {
+                int home = hash(keys[j]) & mask;
+                // move j to i when home isn't in (i, j]
+                boolean move = (i <= j) ? (home <= i || home > j)
+                        : (home <= i && home > j);
+                if (move) {
+                    keys[i] = keys[j];
+                    vals[i] = vals[j];
+                    spoutTasks[i] = spoutTasks[j];
+                    deadlines[i] = deadlines[j];
+                    failed[i] = failed[j];
+                    used[i] = true;
+                    used[j] = false;
+                    i = j;
+                }
+                j = (j + 1) & mask;
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldVals = vals;
+            int[] oldTasks = spoutTasks;
+            long[] oldDeadlines = deadlines;
+            boolean[] oldUsed = used;
+            boolean[] oldFailed = failed;
+
+            alloc(oldKeys.length * 2);
+            int mask = keys.length - 1;
+            for (int k = 0; k < oldKeys.length; k++) {
+                if (oldUsed[k] == false) {
+                    continue;
+                }
+                int i = hash(oldKeys[k]) & mask;
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                used[i] = true;
+                keys[i] = oldKeys[k];
+                vals[i] = oldVals[k];
+                spoutTasks[i] = oldTasks[k];
+                deadlines[i] = oldDeadlines[k];
+                failed[i] = oldFailed[k];
+                size++;
+            }
+        }
+
+        /**
+         * sweep sweepTimes/WHEEL_SLOTS of the table
+         */
+        synchronized int sweep(long tick, int sweepTimes) {
+            int capacity = keys.length;
+            int slots = (capacity / WHEEL_SLOTS) * sweepTimes;
+            if (sweepTimes >= WHEEL_SLOTS) {
+                slots = capacity;
+            }
+
+            int expired = 0;
+            int i = sweepPos;
+            for (int n = 0; n < slots; n++) {
+                // removeAt may shift the next entry into i, check it again
+                while (used[i] && deadlines[i] <= tick) {
+                    removeAt(i);
+                    expired++;
+                }
+                i = (i + 1) & (capacity - 1);
+            }
+            sweepPos = i;
+            return expired;
+        }
+    }
+}
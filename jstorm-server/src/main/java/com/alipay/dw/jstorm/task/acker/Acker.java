@@ -1,5 +1,7 @@
 package com.alipay.dw.jstorm.task.acker;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -10,9 +12,9 @@ import backtype.storm.task.IBolt;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.utils.TimeCacheMap;
 
 import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
 
 /**
  * 
@@ -29,11 +31,28 @@ public class Acker implements IBolt {
     public static final String              ACKER_INIT_STREAM_ID = "__ack_init";
     public static final String              ACKER_ACK_STREAM_ID  = "__ack_ack";
     public static final String              ACKER_FAIL_STREAM_ID = "__ack_fail";
+    // the coalesced acks and fails of one bolt task, see AckBatcher
+    public static final String              ACKER_BATCH_STREAM_ID = "__ack_batch";
     
     public static final int                 TIMEOUT_BUCKET_NUM   = 3;
     
+    public static final int                 PENDING_SEGMENT_NUM  = 16;
+    
     private OutputCollector                 collector            = null;
-    private TimeCacheMap<Object, AckObject> pending              = null;
+    private AckPendingMap                   pending              = null;
+    
+    /**
+     * the number of acks and fails in the tuple, 1 if it isn't a batch,
+     * the stats of acker count them instead of the batch tuples
+     */
+    public static int entryNum(Tuple tuple) {
+        if (ACKER_BATCH_STREAM_ID.equals(tuple.getSourceStreamId()) == false) {
+            return 1;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(tuple.getBinary(0));
+        int ackNum = buf.getInt(0);
+        return Math.max(1, ackNum + buf.getInt(4 + ackNum * 16));
+    }
     
     @Override
     public void prepare(Map stormConf, TopologyContext context,
@@ -41,91 +60,98 @@ public class Acker implements IBolt {
         this.collector = collector;
         String key = Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS;
         int timeoutSec = JStormUtils.parseInt(stormConf.get(key), 30);
-        pending = new TimeCacheMap<Object, AckObject>(timeoutSec,
-                TIMEOUT_BUCKET_NUM);
+        pending = new AckPendingMap(timeoutSec, PENDING_SEGMENT_NUM);
+        TimeoutTicker.getInstance().register(pending);
     }
     
     @Override
     public void execute(Tuple input) {
-        Object id = input.getValue(0);
+        String stream_id = input.getSourceStreamId();
         
-        AckObject curr = pending.get(id);
+        if (Acker.ACKER_BATCH_STREAM_ID.equals(stream_id)) {
+            executeBatch(input.getBinary(0));
+            collector.ack(input);
+            return;
+        }
         
-        String stream_id = input.getSourceStreamId();
+        long id = ((Number) input.getValue(0)).longValue();
         
+        long result;
         if (Acker.ACKER_INIT_STREAM_ID.equals(stream_id)) {
-            if (curr == null) {
-                curr = new AckObject();
-                
-                curr.val = input.getLong(1);
-                curr.spout_task = input.getInteger(2);
-                
-                pending.put(id, curr);
-            } else {
-                // bolt's ack first come
-                curr.update_ack(input.getValue(1));
-                curr.spout_task = input.getInteger(2);
-            }
+            result = pending.init(id, input.getLong(1), input.getInteger(2));
             
         } else if (Acker.ACKER_ACK_STREAM_ID.equals(stream_id)) {
-            if (curr != null) {
-                curr.update_ack(input.getValue(1));
-                
-            } else {
-                // two case
-                // one is timeout
-                // the other is bolt's ack first come
-                curr = new AckObject();
-                
-                curr.val = Long.valueOf(input.getLong(1));
-                
-                pending.put(id, curr);
-                
-            }
-        } else if (Acker.ACKER_FAIL_STREAM_ID.equals(stream_id)) {
-            if (curr == null) {
-                // do nothing
-                // already timeout, should go fail
-                return;
-            }
+            // two case when id isn't pending
+            // one is timeout
+            // the other is bolt's ack first come
+            result = pending.ack(id, ((Number) input.getValue(1)).longValue());
             
-            curr.failed = true;
+        } else if (Acker.ACKER_FAIL_STREAM_ID.equals(stream_id)) {
+            // do nothing if id isn't pending,
+            // already timeout, should go fail
+            result = pending.fail(id);
             
         } else {
             LOG.info("Unknow source stream");
             return;
         }
         
-        Integer task = curr.spout_task;
-        
-        if (task != null) {
-            
-            if (curr.val == 0) {
-                pending.remove(id);
-                List values = JStormUtils.mk_list(id);
-                
-                collector.emitDirect(task, Acker.ACKER_ACK_STREAM_ID, values);
-                
-            } else {
-                
-                if (curr.failed) {
-                    pending.remove(id);
-                    List values = JStormUtils.mk_list(id);
-                    collector.emitDirect(task, Acker.ACKER_FAIL_STREAM_ID,
-                            values);
-                }
-            }
-        } else {
-            
-        }
+        finish(id, result);
         
         // add this operation to update acker's ACK statics
         collector.ack(input);
         
     }
     
+    /**
+     * apply the whole batch in one execute, the failed root ids of the
+     * batch are failed without applying their acks
+     */
+    private void executeBatch(byte[] batch) {
+        ByteBuffer buf = ByteBuffer.wrap(batch);
+        
+        int ackNum = buf.getInt();
+        int failPos = buf.position() + ackNum * 16;
+        buf.position(failPos);
+        int failNum = buf.getInt();
+        
+        long[] fails = new long[failNum];
+        for (int i = 0; i < failNum; i++) {
+            fails[i] = buf.getLong();
+        }
+        Arrays.sort(fails);
+        
+        buf.position(4);
+        for (int i = 0; i < ackNum; i++) {
+            long id = buf.getLong();
+            long val = buf.getLong();
+            if (Arrays.binarySearch(fails, id) < 0) {
+                finish(id, pending.ack(id, val));
+            }
+        }
+        
+        for (long id : fails) {
+            finish(id, pending.fail(id));
+        }
+    }
+    
+    private void finish(long id, long result) {
+        int status = AckPendingMap.status(result);
+        if (status == AckPendingMap.STATUS_ACKED) {
+            List values = JStormUtils.mk_list((Object) id);
+            collector.emitDirect(AckPendingMap.spoutTask(result),
+                    Acker.ACKER_ACK_STREAM_ID, values);
+            
+        } else if (status == AckPendingMap.STATUS_FAILED) {
+            List values = JStormUtils.mk_list((Object) id);
+            collector.emitDirect(AckPendingMap.spoutTask(result),
+                    Acker.ACKER_FAIL_STREAM_ID, values);
+        }
+    }
+    
     @Override
     public void cleanup() {
+        TimeoutTicker.getInstance().unregister(pending);
         LOG.info("Successfully cleanup");
     }
     
@@ -1,6 +1,8 @@
 package com.alipay.dw.jstorm.task.comm;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,7 +17,9 @@ import com.alipay.dw.jstorm.cluster.StormConfig;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.common.stats.StaticsType;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
+import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.task.group.GrouperType;
+import com.alipay.dw.jstorm.task.group.MkAckerGrouper;
 import com.alipay.dw.jstorm.task.group.MkGrouper;
 import com.alipay.dw.jstorm.utils.EventSampler;
 
@@ -36,6 +40,10 @@ public class TaskSendTargets {
     
     // <Stream_id,<component, Grouping>>
     private Map<String, Map<String, MkGrouper>> streamComponentgrouper;
+    // <Stream_id, groupers of all target components>, resolved once
+    private Map<String, MkGrouper[]>            streamGroupers;
+    // <task_id, singleton list> of direct emit
+    private Map<Integer, List<Integer>>         directTargets;
     // SpoutTaskStatsRolling or BoltTaskStatsRolling
     private CommonStatsRolling                  taskStats;
     
@@ -63,6 +71,21 @@ public class TaskSendTargets {
         
         taskId = topologyContext.getThisTaskId();
         debugIdStr = " Emit from " + componentId + ":" + taskId + " ";
+        
+        streamGroupers = new HashMap<String, MkGrouper[]>();
+        for (Entry<String, Map<String, MkGrouper>> entry : streamComponentgrouper
+                .entrySet()) {
+            Collection<MkGrouper> groupers = entry.getValue().values();
+            streamGroupers.put(entry.getKey(),
+                    groupers.toArray(new MkGrouper[groupers.size()]));
+        }
+        
+        directTargets = new HashMap<Integer, List<Integer>>();
+        for (List<Integer> tasks : componentTasks.values()) {
+            for (Integer task : tasks) {
+                directTargets.put(task, Collections.singletonList(task));
+            }
+        }
     }
     
     // direct send tuple to special task
@@ -85,38 +108,21 @@ public class TaskSendTargets {
         
         taskStats.send_tuple(stream, 1);
         
-        java.util.List<Integer> out_tasks = new ArrayList<Integer>();
-        out_tasks.add(out_task_id);
+        List<Integer> out_tasks = directTargets.get(out_task_id);
+        if (out_tasks == null) {
+            out_tasks = Collections.singletonList(out_task_id);
+        }
         return out_tasks;
     }
     
     // send tuple according to grouping
+    // the returned list may be shared by the grouper, don't modify it
     public java.util.List<Integer> get(String stream, List<Object> tuple) {
-        java.util.List<Integer> out_tasks = new ArrayList<Integer>();
-        
-        // get grouper, then get which task should tuple be sent to.
-        Map<String, MkGrouper> componentCrouping = streamComponentgrouper
-                .get(stream);
-        if (componentCrouping == null) {
-            //if the target component's parallelism is 0, don't need send to them
-            LOG.debug("Failed to get Grouper of " + stream + " in "
-                    + debugIdStr);
+        java.util.List<Integer> out_tasks = peek(stream, tuple);
+        if (out_tasks.isEmpty()) {
             return out_tasks;
         }
         
-        for (Entry<String, MkGrouper> ee : componentCrouping.entrySet()) {
-            String targetComponent = ee.getKey();
-            MkGrouper g = ee.getValue();
-            
-            if (GrouperType.direct.equals(g.gettype())) {
-                throw new IllegalArgumentException(
-                        "Cannot do regular emit to direct stream");
-            }
-            
-            out_tasks.addAll(g.grouper(tuple));
-
-        }
-        
         if (isDebuging) {
             
             LOG.info(debugIdStr + stream + " to " + out_tasks + ":" + tuple.toString());
@@ -129,5 +135,54 @@ public class TaskSendTargets {
         return out_tasks;
     }
     
+    // the tasks which the tuple would be sent to, statics isn't updated
+    // the returned list may be shared by the grouper, don't modify it
+    public java.util.List<Integer> peek(String stream, List<Object> tuple) {
+        // get grouper, then get which task should tuple be sent to.
+        MkGrouper[] groupers = streamGroupers.get(stream);
+        if (groupers == null) {
+            //if the target component's parallelism is 0, don't need send to them
+            LOG.debug("Failed to get Grouper of " + stream + " in "
+                    + debugIdStr);
+            return Collections.emptyList();
+        }
+        
+        if (groupers.length == 1) {
+            // the most common case, return grouper's list without copying
+            return grouper(groupers[0], tuple);
+        }
+        
+        java.util.List<Integer> out_tasks = new ArrayList<Integer>();
+        for (MkGrouper g : groupers) {
+            out_tasks.addAll(grouper(g, tuple));
+        }
+        return out_tasks;
+    }
+    
+    /**
+     * the grouper of the acker's init/ack/fail streams, which routes a
+     * root id without building a tuple, null if there is no acker
+     */
+    public MkAckerGrouper getAckerGrouper() {
+        MkGrouper[] groupers = streamGroupers.get(Acker.ACKER_ACK_STREAM_ID);
+        if (groupers == null) {
+            return null;
+        }
+        for (MkGrouper g : groupers) {
+            if (g.getAckerGrouper() != null) {
+                return g.getAckerGrouper();
+            }
+        }
+        return null;
+    }
+    
+    private List<Integer> grouper(MkGrouper g, List<Object> tuple) {
+        if (GrouperType.direct.equals(g.gettype())) {
+            throw new IllegalArgumentException(
+                    "Cannot do regular emit to direct stream");
+        }
+        
+        return g.grouper(tuple);
+    }
     
 }
@@ -1,17 +1,20 @@
 package com.alipay.dw.jstorm.task.comm;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
+import backtype.storm.serialization.KryoTupleDeserializer;
+
 import com.alipay.dw.jstorm.callback.RunnableCallback;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.task.TaskStatus;
 import com.alipay.dw.jstorm.utils.RunCounter;
 import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
+import com.alipay.dw.jstorm.zeroMq.IRecvHandler;
 import com.alipay.dw.jstorm.zeroMq.ISendConnection;
 import com.alipay.dw.jstorm.zeroMq.MQContext;
 import com.alipay.dw.jstorm.zeroMq.PacketPair;
@@ -19,16 +22,22 @@ import com.alipay.dw.jstorm.zeroMq.PacketPair;
 /**
  * Message dispatcher
  * 
+ * With zeroMQ, it runs in its own thread and receives the messages itself. 
+ * With nio, it is the IRecvHandler of the receiver, the receiver thread 
+ * puts the messages into the task queues directly.
+ * 
  * @author yannian/Longda
  * 
  */
-public class VirtualPortDispatch extends RunnableCallback {
+public class VirtualPortDispatch extends RunnableCallback implements
+        IRecvHandler {
     private final static Logger           LOG         = Logger.getLogger(VirtualPortDispatch.class);
     
     private MQContext                     mqContext;
     private IRecvConnection               recvConn;
     private Set<Integer>                  valid_ports = null;
     private Map<Integer, ISendConnection> sendConns;
+    private volatile boolean              shutdown    = false;
     
     private RunCounter                    runCounter = new RunCounter("VirtualPortDispatch", VirtualPortDispatch.class);
     
@@ -38,10 +47,24 @@ public class VirtualPortDispatch extends RunnableCallback {
         this.recvConn = recvConn;
         this.valid_ports = valid_ports;
         
-        sendConns = new HashMap<Integer, ISendConnection>();
+        // cleanup may be called by another thread
+        sendConns = new ConcurrentHashMap<Integer, ISendConnection>();
+    }
+    
+    /**
+     * set the receiving connection, when it is created after the dispatcher
+     */
+    public void setRecvConn(IRecvConnection recvConn) {
+        this.recvConn = recvConn;
     }
     
     public void cleanup() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
         LOG.info("Virtual port  received shutdown notice");
         byte shutdownCmd[] = {TaskStatus.SHUTDOWN};
         for (Entry<Integer, ISendConnection> entry : sendConns.entrySet()) {
@@ -50,9 +73,9 @@ public class VirtualPortDispatch extends RunnableCallback {
             sendConn.close();
         }
         
-        recvConn.close();
-        
-        recvConn = null;
+        if (recvConn != null) {
+            recvConn.close();
+        }
     }
     
     @Override
@@ -69,40 +92,93 @@ public class VirtualPortDispatch extends RunnableCallback {
             }
             hasTuple = true;
             
-            long before = System.currentTimeMillis();
+            handle(data);
+            if (shutdown) {
+                return;
+            }
+        }
+        
+    }
+    
+    @Override
+    public void handle(byte[] data) {
+        if (shutdown) {
+            return;
+        }
+        
+        long before = System.currentTimeMillis();
+        
+        int port = PacketPair.parse_port(data);
+        if (port == -1) {
+            // shutdown message
+            cleanup();
             
+            return;
+        }
+        
+        if (port == PacketPair.BATCH_PORT) {
+            dispatchBatch(data);
+        } else {
+            dispatch(port, PacketPair.parse_message(data));
+        }
+        
+        long after = System.currentTimeMillis();
+        runCounter.count(after - before);
+    }
+    
+    private void dispatch(int port, byte[] message) {
+        //LOG.info("Get message to port " + port);
+        if (valid_ports == null || valid_ports.contains(port)) {
+            ISendConnection sendConn = sendConns.get(port);
+            if (sendConn == null) {
+                sendConn = mqContext.connect(false, "localhost", port);
+                sendConns.put(port, sendConn);
+            }
+            sendConn.send(message);
             
-            PacketPair packet = PacketPair.parse_packet(data);
-            if (packet.getPort() == -1) {
-                // shutdown message
-                cleanup();
-                
+        } else {
+            LOG.warn("Received invalid message directed at port "
+                    + port + ". Dropping...");
+        }
+    }
+    
+    /**
+     * split batch packet, which is generated by TransferBatch
+     * 
+     * int BATCH_PORT | (int length | int port | message) ...
+     */
+    private void dispatchBatch(byte[] data) {
+        final int intSize = Integer.SIZE / 8;
+        
+        int offset = intSize;
+        while (offset + intSize <= data.length) {
+            int length = PacketPair.read_int(data, offset);
+            offset += intSize;
+            if (length < intSize || offset + length > data.length) {
+                LOG.warn("Received invalid batch packet, length:" + length
+                        + ", offset:" + offset + ", total:" + data.length);
                 return;
             }
             
-            Integer port = (int)packet.getPort();
-            //LOG.info("Get message to port " + port);
-            if (valid_ports == null || valid_ports.contains(port)) {
-                ISendConnection sendConn = sendConns.get(port);
-                if (sendConn == null) {
-                    sendConn = mqContext.connect(false, "localhost", port);
-                    sendConns.put(port, sendConn);
-                }
-                sendConn.send(packet.getMessage());
-                
+            int port = PacketPair.read_int(data, offset);
+            
+            byte[] message = null;
+            if (KryoTupleDeserializer.USE_RAW_PACKET == true) {
+                message = new byte[length];
+                System.arraycopy(data, offset, message, 0, length);
             } else {
-                LOG.warn("Received invalid message directed at port "
-                        + packet.getPort() + ". Dropping...");
-            }   
+                message = new byte[length - intSize];
+                System.arraycopy(data, offset + intSize, message, 0,
+                        length - intSize);
+            }
+            offset += length;
             
-            long after = System.currentTimeMillis();
-            runCounter.count(after - before);
+            dispatch(port, message);
         }
-        
     }
     
     @Override
     public Object getResult() {
-        return recvConn == null ? -1 : 0;
+        return shutdown ? -1 : 0;
     }
 }
@@ -23,6 +23,8 @@ public class VirtualPortShutdown implements Shutdownable {
     protected Socket            kill_socket;
     protected AsyncLoopThread   vthread;
     protected int               port;
+    // used when there is no dispatching thread
+    protected VirtualPortDispatch dispatcher;
     
     public VirtualPortShutdown(MQContext mqContext, AsyncLoopThread vthread,
             int port) {
@@ -31,8 +33,21 @@ public class VirtualPortShutdown implements Shutdownable {
         this.port = port;
     }
     
+    public VirtualPortShutdown(MQContext mqContext,
+            VirtualPortDispatch dispatcher, int port) {
+        this.mqContext = mqContext;
+        this.dispatcher = dispatcher;
+        this.port = port;
+    }
+    
     @Override
     public void shutdown() {
+        if (dispatcher != null) {
+            // the receiver thread dispatches messages by itself
+            dispatcher.cleanup();
+            LOG.info("Shutdown virtual port at url: " + port);
+            return;
+        }
         
         ISendConnection sendConn = mqContext.connect(true, "localhost", port);
         sendConn.send(PacketPair.mk_packet((short)-1, new byte[0]));
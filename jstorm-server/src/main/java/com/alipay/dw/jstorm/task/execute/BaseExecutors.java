@@ -15,9 +15,11 @@ import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
 import com.alipay.dw.jstorm.task.TaskStatus;
+import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
 import com.alipay.dw.jstorm.utils.RunCounter;
 import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
+import com.alipay.dw.jstorm.zeroMq.QueueConnection;
 
 /**
  * Base executor share between spout and bolt
@@ -30,6 +32,8 @@ public class BaseExecutors extends RunnableCallback {
     private static Logger           LOG                  = Logger.getLogger(BaseExecutors.class);
     
     protected final String          component_id;
+    // the acker's stats count the entries of the batch tuples
+    protected final boolean         isAcker;
     protected final int             taskId;
     protected final boolean         isDebugRecv;
     protected final boolean         isDebug;
@@ -38,6 +42,8 @@ public class BaseExecutors extends RunnableCallback {
     protected Map                   storm_conf;
     // ZMQConnection puller
     protected IRecvConnection       puller;
+    // not null when the puller can receive Tuple objects from local tasks
+    protected QueueConnection       localPuller;
     
     protected TopologyContext       userTopologyCtx;
     protected CommonStatsRolling    task_stats;
@@ -62,11 +68,15 @@ public class BaseExecutors extends RunnableCallback {
         
         this.storm_conf = _storm_conf;
         this.puller = _puller;
+        if (_puller instanceof QueueConnection) {
+            this.localPuller = (QueueConnection) _puller;
+        }
         
         this.userTopologyCtx = _user_context;
         this.task_stats = _task_stats;
         this.taskId = topology_context.getThisTaskId();
         this.component_id = topology_context.getThisComponentId();
+        this.isAcker = Acker.ACKER_COMPONENT_ID.equals(component_id);
         this.idStr = "ComponentId:" + component_id + ",taskId:" + taskId + " ";
         
         this.taskStatus = taskStatus;
@@ -90,28 +100,28 @@ public class BaseExecutors extends RunnableCallback {
     protected Tuple recv() {
         
         try {
-            byte[] ser_msg = puller.recv();
+            Object msg = null;
+            if (localPuller != null) {
+                msg = localPuller.recvObject();
+            } else {
+                msg = puller.recv();
+            }
             
-            if (ser_msg == null) {
+            if (msg == null) {
                 return null;
             }
             
-            if (ser_msg.length == 0) {
-                return null;
-            } else if (ser_msg.length == 1) {
-                byte newStatus = ser_msg[0];
-                LOG.info("Change task status as " + newStatus);
-                taskStatus.setStatus(newStatus);
-                
-                if (newStatus == TaskStatus.SHUTDOWN) {
-                    puller.close();
+            Tuple tuple = null;
+            if (msg instanceof Tuple) {
+                // sent by the task of current worker
+                tuple = (Tuple) msg;
+            } else {
+                tuple = deserialize((byte[]) msg);
+                if (tuple == null) {
+                    return null;
                 }
-                return null;
             }
             
-            // ser_msg.length > 1
-            Tuple tuple = deserializer.deserialize(ser_msg);
-            
             if (isDebugRecv) {
                 
                 LOG.info(idStr + " receive " + tuple.toString());
@@ -119,8 +129,13 @@ public class BaseExecutors extends RunnableCallback {
             
             //recv_tuple_queue.offer(tuple);
             
-            task_stats.recv_tuple(tuple.getSourceComponent(),
-                    tuple.getSourceStreamId());
+            if (isAcker) {
+                task_stats.recv_tuple(tuple.getSourceComponent(),
+                        tuple.getSourceStreamId(), Acker.entryNum(tuple));
+            } else {
+                task_stats.recv_tuple(tuple.getSourceComponent(),
+                        tuple.getSourceStreamId());
+            }
             
             
             return tuple;
@@ -132,12 +147,41 @@ public class BaseExecutors extends RunnableCallback {
         return null;
     }
     
+    /**
+     * @return null if it is a status message
+     */
+    private Tuple deserialize(byte[] ser_msg) {
+        if (ser_msg.length == 0) {
+            return null;
+        } else if (ser_msg.length == 1) {
+            byte newStatus = ser_msg[0];
+            LOG.info("Change task status as " + newStatus);
+            taskStatus.setStatus(newStatus);
+            
+            if (newStatus == TaskStatus.SHUTDOWN) {
+                puller.close();
+            }
+            return null;
+        }
+        
+        // ser_msg.length > 1
+        return deserializer.deserialize(ser_msg);
+    }
+    
     @Override
     public void run() {
         // this function will be override by SpoutExecutor or BoltExecutor
         LOG.info("BaseExector run");
     }
     
+    /**
+     * Wake up the threads waiting on the executor's queues, 
+     * it is called when the task is shut down
+     */
+    public void shutdown() {
+        
+    }
+    
     @Override
     public Object getResult() {
         if (taskStatus.isRun()) {
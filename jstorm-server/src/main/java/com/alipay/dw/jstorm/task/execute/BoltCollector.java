@@ -2,10 +2,8 @@ package com.alipay.dw.jstorm.task.execute;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.log4j.Logger;
 
@@ -14,17 +12,19 @@ import backtype.storm.task.IOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.MessageId;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.utils.TimeCacheMap;
 
+import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
+import com.alipay.dw.jstorm.task.acker.AckBatcher;
 import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.task.comm.TaskSendTargets;
 import com.alipay.dw.jstorm.task.comm.UnanchoredSend;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
 import com.alipay.dw.jstorm.utils.EventSampler;
-import com.alipay.dw.jstorm.utils.TimeUtils;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
 
 /**
  * bolt output interface, do emit/ack/fail
@@ -40,20 +40,26 @@ public class BoltCollector implements IOutputCollector {
     private WorkerTransfer            workerTransfer;
     private TopologyContext           topologyContext;
     private Integer                   task_id;
-    private TimeCacheMap<Tuple, Long> tuple_start_times;
+    private TimeoutMap<Tuple, Long>   tuple_start_times;
     private CommonStatsRolling        task_stats;
-    private TimeCacheMap<Tuple, Long> pending_acks;
+    private TimeoutMap<Tuple, Long>   pending_acks;
     private Map                       storm_conf;
     private Integer                   ackerNum;
+    // the acker's stats count the entries of the batch tuples
+    private boolean                   isAcker;
     
+    // <stream, values> of the acks and fails of the executing batch,
+    // it is null when no batch is executing
+    private List<Object[]>            batchAckMsgs;
     
+    // it is null if the acks and fails aren't coalesced
+    private AckBatcher                ackBatcher;
     
-    
-    
-    public BoltCollector(int message_timeout_secs, ITaskReportErr report_error,
+    public BoltCollector(TimeoutMap<Tuple, Long> pending_acks,
+            ITaskReportErr report_error,
             TaskSendTargets _send_fn, Map _storm_conf,
             WorkerTransfer _transfer_fn, TopologyContext _topology_context,
-            Integer task_id, TimeCacheMap<Tuple, Long> tuple_start_times,
+            Integer task_id, TimeoutMap<Tuple, Long> tuple_start_times,
             CommonStatsRolling _task_stats) {
         
         this.reportError = report_error;
@@ -64,13 +70,25 @@ public class BoltCollector implements IOutputCollector {
         this.task_id = task_id;
         this.task_stats = _task_stats;
         
-        this.pending_acks = new TimeCacheMap<Tuple, Long>(message_timeout_secs, 
-                Acker.TIMEOUT_BUCKET_NUM);
+        this.pending_acks = pending_acks;
         this.tuple_start_times = tuple_start_times;
         
         this.ackerNum = JStormUtils.parseInt(storm_conf
                 .get(Config.TOPOLOGY_ACKERS));
+        this.isAcker = Acker.ACKER_COMPONENT_ID.equals(_topology_context
+                .getThisComponentId());
         
+        int ackBatchSize = JStormUtils.parseInt(
+                storm_conf.get(ConfigExtension.TOPOLOGY_ACKER_BATCH_SIZE),
+                ConfigExtension.DEFAULT_TOPOLOGY_ACKER_BATCH_SIZE);
+        if (ackerNum > 0 && ackBatchSize > 1) {
+            int windowMs = JStormUtils.parseInt(
+                    storm_conf.get(ConfigExtension.TOPOLOGY_ACKER_BATCH_WINDOW_MS),
+                    ConfigExtension.DEFAULT_TOPOLOGY_ACKER_BATCH_WINDOW_MS);
+            ackBatcher = new AckBatcher(_topology_context, _send_fn,
+                    _transfer_fn, task_id, ackBatchSize, windowMs);
+            TimeoutTicker.getInstance().register(ackBatcher);
+        }
     }
     
     @Override
@@ -95,19 +113,22 @@ public class BoltCollector implements IOutputCollector {
                 out_tasks = sendTargets.get(out_stream_id, values);
             }
             
+            MessageId.Builder anchors_to_ids = null;
+            if (anchors != null && anchors.isEmpty() == false) {
+                anchors_to_ids = new MessageId.Builder();
+            }
+            
             for (Integer t : out_tasks) {
-                Map<Long, Long> anchors_to_ids = new HashMap<Long, Long>();
-                if (anchors != null) {
+                MessageId msgid = MessageId.makeUnanchored();
+                if (anchors_to_ids != null) {
+                    anchors_to_ids.clear();
                     for (Tuple a : anchors) {
-                        Long edge_id = MessageId.generateId();
+                        long edge_id = MessageId.generateId();
                         put_xor(pending_acks, a, edge_id);
-                        for (Long root_id : a.getMessageId().getAnchorsToIds()
-                                .keySet()) {
-                            put_xor(anchors_to_ids, root_id, edge_id);
-                        }
+                        anchors_to_ids.xorAll(a.getMessageId(), edge_id);
                     }
+                    msgid = anchors_to_ids.build();
                 }
-                MessageId msgid = MessageId.makeId(anchors_to_ids);
                 workerTransfer.transfer(t, new Tuple(topologyContext, values,
                         task_id, out_stream_id, msgid));
                 
@@ -124,27 +145,29 @@ public class BoltCollector implements IOutputCollector {
         
         if (ackerNum > 0) {
             
-            Long ack_val = Long.valueOf(0);
+            long ack_val = 0;
             Object pend_val = pending_acks.remove(input);
             if (pend_val != null) {
                 ack_val = (Long)(pend_val);
             }
             
-            for (Entry<Long, Long> e : input.getMessageId().getAnchorsToIds()
-                    .entrySet()) {
+            MessageId msgid = input.getMessageId();
+            for (int i = 0; i < msgid.size(); i++) {
+                if (ackBatcher != null) {
+                    ackBatcher.ack(msgid.getAnchor(i), msgid.getId(i) ^ ack_val);
+                    continue;
+                }
                 
-                UnanchoredSend.send(
-                        topologyContext,
-                        sendTargets,
-                        workerTransfer,
-                        Acker.ACKER_ACK_STREAM_ID,
-                        JStormUtils.mk_list((Object) e.getKey(),
-                                JStormUtils.bit_xor(e.getValue(), ack_val)));
+                sendAckMsg(Acker.ACKER_ACK_STREAM_ID, JStormUtils.mk_list(
+                        (Object) msgid.getAnchor(i), msgid.getId(i) ^ ack_val));
             }
         }
         
         Long delta = tuple_time_delta(tuple_start_times, input);
-        if (delta != null) {
+        if (delta != null && isAcker) {
+            task_stats.bolt_acked_tuple(input.getSourceComponent(),
+                    input.getSourceStreamId(), delta, Acker.entryNum(input));
+        } else if (delta != null) {
             task_stats.bolt_acked_tuple(input.getSourceComponent(),
                     input.getSourceStreamId(), delta);
         }
@@ -155,11 +178,14 @@ public class BoltCollector implements IOutputCollector {
         // if ackerNum == 0, we can just return
         if (ackerNum > 0) {
             pending_acks.remove(input);
-            for (Entry<Long, Long> e : input.getMessageId().getAnchorsToIds()
-                    .entrySet()) {
-                UnanchoredSend.send(topologyContext, sendTargets, workerTransfer,
-                        Acker.ACKER_FAIL_STREAM_ID,
-                        JStormUtils.mk_list((Object) e.getKey()));
+            MessageId msgid = input.getMessageId();
+            for (int i = 0; i < msgid.size(); i++) {
+                if (ackBatcher != null) {
+                    ackBatcher.fail(msgid.getAnchor(i));
+                    continue;
+                }
+                sendAckMsg(Acker.ACKER_FAIL_STREAM_ID,
+                        JStormUtils.mk_list((Object) msgid.getAnchor(i)));
             }
         }
         
@@ -169,22 +195,74 @@ public class BoltCollector implements IOutputCollector {
  
     }
     
+    private void sendAckMsg(String stream, List<Object> values) {
+        if (batchAckMsgs != null) {
+            batchAckMsgs.add(new Object[] { stream, values });
+        } else {
+            UnanchoredSend.send(topologyContext, sendTargets, workerTransfer,
+                    stream, values);
+        }
+    }
+    
+    /**
+     * keep the acks and fails until endBatch
+     */
+    public void beginBatch() {
+        batchAckMsgs = new ArrayList<Object[]>();
+    }
+    
+    /**
+     * send the acks and fails of the batch
+     */
+    @SuppressWarnings("unchecked")
+    public void endBatch() {
+        List<Object[]> msgs = batchAckMsgs;
+        batchAckMsgs = null;
+        if (msgs != null) {
+            for (Object[] msg : msgs) {
+                UnanchoredSend.send(topologyContext, sendTargets,
+                        workerTransfer, (String) msg[0], (List<Object>) msg[1]);
+            }
+        }
+        flushAcks(true);
+    }
+    
+    /**
+     * send the coalesced acks and fails
+     * 
+     * @param idle no tuple is waiting, send them now, otherwise send them
+     *            only if they have waited long enough
+     */
+    public void flushAcks(boolean idle) {
+        if (ackBatcher != null) {
+            ackBatcher.flush(idle);
+        }
+    }
+    
+    public void close() {
+        if (ackBatcher != null) {
+            TimeoutTicker.getInstance().unregister(ackBatcher);
+            ackBatcher.flush();
+        }
+    }
+    
     @Override
     public void reportError(Throwable error) {
         reportError.report(error);
     }
     
     // Utility functions, just used here
-    public static Long tuple_time_delta(TimeCacheMap<Tuple, Long> start_times,
+    // the start time is System.nanoTime(), return microseconds
+    public static Long tuple_time_delta(TimeoutMap<Tuple, Long> start_times,
             Tuple tuple) {
         Long start_time = (Long) start_times.remove(tuple);
         if (start_time != null) {
-            return TimeUtils.time_delta_ms(start_time);
+            return (System.nanoTime() - start_time) / 1000;
         }
         return null;
     }
     
-    public static void put_xor(TimeCacheMap<Tuple, Long> pending, Tuple key,
+    public static void put_xor(TimeoutMap<Tuple, Long> pending, Tuple key,
             Long id) {
         // synchronized (pending) {
         Long curr = pending.get(key);
@@ -1,28 +1,32 @@
 package com.alipay.dw.jstorm.task.execute;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.Logger;
 
 import backtype.storm.Config;
 import backtype.storm.task.IBolt;
-import backtype.storm.task.IOutputCollector;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.utils.TimeCacheMap;
 
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.client.bolt.IBatchExecuteBolt;
 import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.daemon.worker.Backpressure;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
 import com.alipay.dw.jstorm.task.TaskStatus;
 import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.task.comm.TaskSendTargets;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 import com.alipay.dw.jstorm.utils.RunCounter;
 import com.alipay.dw.jstorm.utils.TimeCacheQueue;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
 import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
 
 /**
@@ -35,42 +39,77 @@ import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
 public class BoltExecutors extends BaseExecutors {
     private static Logger                LOG            = Logger.getLogger(BoltExecutors.class);
     
+    private static final long            BATCH_PARK_NS  = 50 * 1000L;
+    
     protected IBolt                      bolt;
     
-    protected TimeCacheMap<Tuple, Long>  tuple_start_times;
+    protected TimeoutMap<Tuple, Long>    tuple_start_times;
+    
+    protected TimeoutMap<Tuple, Long>    pending_acks;
     
     // internal outputCollector is BoltCollector
     private OutputCollector              outputCollector;
     
+    private BoltCollector                boltCollector;
+    
+    // it is null if the bolt isn't IBatchExecuteBolt
+    private IBatchExecuteBolt            batchBolt;
+    private int                          batchSize;
+    private long                         batchTimeoutNs;
+    
     // don't use TimeoutQueue for recv_tuple_queue, 
     // then other place should check the queue size
     //protected Thread                       recvThread;
     //protected TimeCacheQueue<Tuple> recv_tuple_queue;
     // don't take care of competition, one thread offer/one thread poll
-    protected LinkedBlockingQueue<Tuple> recv_tuple_queue;
+    // it is bounded, recv thread will be blocked when it is full
+    protected DisruptorQueue<Tuple>      recv_tuple_queue;
+    
+    // it is null if backpressure is disabled
+    private Backpressure                 backpressure;
+    private long                         highWatermark;
+    private long                         lowWatermark;
+    // the flag and the Backpressure call are changed together under
+    // throttleLock, so the last change always reaches Backpressure
+    private final Object                 throttleLock   = new Object();
+    private volatile boolean             throttled      = false;
     
     
     public BoltExecutors(IBolt _bolt, WorkerTransfer _transfer_fn,
             Map storm_conf, IRecvConnection _puller, TaskSendTargets _send_fn,
             TaskStatus taskStatus, TopologyContext sysTopologyCxt,
             TopologyContext userTopologyCxt, CommonStatsRolling _task_stats,
-            ITaskReportErr _report_error) {
+            ITaskReportErr _report_error, Backpressure backpressure) {
         
         super(_transfer_fn, storm_conf, _puller, sysTopologyCxt,
                 userTopologyCxt, _task_stats, taskStatus, _report_error);
         
         this.bolt = _bolt;
         
-        // create TimeCacheMap
+        // create TimeoutMap, they are expired by the worker's TimeoutTicker
         
-        this.tuple_start_times = new TimeCacheMap<Tuple, Long>(
-                message_timeout_secs, Acker.TIMEOUT_BUCKET_NUM);
+        this.tuple_start_times = new TimeoutMap<Tuple, Long>(
+                message_timeout_secs);
+        this.pending_acks = new TimeoutMap<Tuple, Long>(message_timeout_secs);
         
         TimeCacheQueue.DefaultExpiredCallback<Tuple> logExpireCb = new TimeCacheQueue.DefaultExpiredCallback<Tuple>(
                 idStr);
         //      this.recv_tuple_queue = new TimeCacheQueue<Tuple>(message_timeout_secs,
         //      TimeCacheQueue.DEFAULT_NUM_BUCKETS, logExpireCb);
-        this.recv_tuple_queue = new LinkedBlockingQueue<Tuple>();
+        this.recv_tuple_queue = DisruptorQueue.mkInstance(storm_conf,
+                ConfigExtension.TOPOLOGY_RECEIVE_BUFFER_SIZE,
+                ConfigExtension.DEFAULT_RECEIVE_BUFFER_SIZE, false);
+        
+        this.backpressure = backpressure;
+        if (backpressure != null) {
+            int capacity = recv_tuple_queue.capacity();
+            highWatermark = (long) (capacity * JStormUtils.parseDouble(
+                    storm_conf.get(ConfigExtension.TOPOLOGY_BACKPRESSURE_HIGH_WATERMARK),
+                    ConfigExtension.DEFAULT_TOPOLOGY_BACKPRESSURE_HIGH_WATERMARK));
+            lowWatermark = (long) (capacity * JStormUtils.parseDouble(
+                    storm_conf.get(ConfigExtension.TOPOLOGY_BACKPRESSURE_LOW_WATERMARK),
+                    ConfigExtension.DEFAULT_TOPOLOGY_BACKPRESSURE_LOW_WATERMARK));
+        }
         
         Thread recvThread = new Thread(new RecvRunnable());
         recvThread.setName("BoltRecvThread");
@@ -79,12 +118,23 @@ public class BoltExecutors extends BaseExecutors {
         recvThread.start();
 
         // create BoltCollector
-        IOutputCollector output_collector = new BoltCollector(
-                message_timeout_secs, _report_error, _send_fn, storm_conf,
-                _transfer_fn, sysTopologyCxt, taskId, tuple_start_times,
-                _task_stats);
+        boltCollector = new BoltCollector(pending_acks, _report_error,
+                _send_fn, storm_conf, _transfer_fn, sysTopologyCxt, taskId,
+                tuple_start_times, _task_stats);
         
-        outputCollector = new OutputCollector(output_collector);
+        outputCollector = new OutputCollector(boltCollector);
+        
+        if (bolt instanceof IBatchExecuteBolt) {
+            batchBolt = (IBatchExecuteBolt) bolt;
+            batchSize = JStormUtils.parseInt(
+                    storm_conf.get(ConfigExtension.TOPOLOGY_BOLT_BATCH_SIZE),
+                    ConfigExtension.DEFAULT_TOPOLOGY_BOLT_BATCH_SIZE);
+            batchTimeoutNs = 1000L * JStormUtils.parseInt(
+                    storm_conf.get(ConfigExtension.TOPOLOGY_BOLT_BATCH_TIMEOUT_US),
+                    ConfigExtension.DEFAULT_TOPOLOGY_BOLT_BATCH_TIMEOUT_US);
+            LOG.info(idStr + " executes at most " + batchSize
+                    + " tuples in one batch");
+        }
         
         try {
             //do prepare
@@ -101,21 +151,22 @@ public class BoltExecutors extends BaseExecutors {
     
     @Override
     public void run() {
+        if (batchBolt != null) {
+            runBatch();
+            return;
+        }
         
         while (true) {
             
-            Tuple tuple = null;
-            try {
-                tuple = recv_tuple_queue.take();
-            } catch (InterruptedException e1) {
-                // TODO Auto-generated catch block
-                return;
-            }
+            Tuple tuple = recv_tuple_queue.take();
             if (tuple == null) {
+                // halted or interrupted
                 return;
             }
+            checkRelease();
             
-            tuple_start_times.put(tuple, System.currentTimeMillis());
+            long start = System.nanoTime();
+            tuple_start_times.put(tuple, start);
             
             try {
                 bolt.execute(tuple);
@@ -124,10 +175,131 @@ public class BoltExecutors extends BaseExecutors {
                 LOG.error("bolt execute error ", e);
                 report_error.report(e);
             }
+            
+            long delta = (System.nanoTime() - start) / 1000;
+            if (isAcker) {
+                int num = Acker.entryNum(tuple);
+                task_stats.bolt_execute_tuple(tuple.getSourceComponent(),
+                        tuple.getSourceStreamId(), delta / num, num);
+            } else {
+                task_stats.bolt_execute_tuple(tuple.getSourceComponent(),
+                        tuple.getSourceStreamId(), delta);
+            }
+            
+            boltCollector.flushAcks(recv_tuple_queue.size() == 0);
         }
         
     }
     
+    /**
+     * the bolt gets a new list every batch, it may keep it after execute,
+     * the executor only uses its own array
+     */
+    private void runBatch() {
+        Tuple[] received = new Tuple[batchSize];
+        
+        while (true) {
+            Tuple tuple = recv_tuple_queue.take();
+            if (tuple == null) {
+                // halted or interrupted
+                return;
+            }
+            
+            int num = 0;
+            received[num++] = tuple;
+            
+            // wait for the other tuples until the deadline
+            long deadline = System.nanoTime() + batchTimeoutNs;
+            while (num < batchSize) {
+                tuple = recv_tuple_queue.poll();
+                if (tuple != null) {
+                    received[num++] = tuple;
+                    continue;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(Math.min(left, BATCH_PARK_NS));
+            }
+            
+            checkRelease();
+            
+            long start = System.nanoTime();
+            List<Tuple> batch = new ArrayList<Tuple>(num);
+            for (int i = 0; i < num; i++) {
+                batch.add(received[i]);
+                tuple_start_times.put(received[i], start);
+            }
+            
+            boltCollector.beginBatch();
+            try {
+                batchBolt.execute(batch);
+            } catch (Exception e) {
+                error = e;
+                LOG.error("bolt execute error ", e);
+                report_error.report(e);
+            } finally {
+                boltCollector.endBatch();
+            }
+            
+            long delta = (System.nanoTime() - start) / 1000 / num;
+            for (int i = 0; i < num; i++) {
+                Tuple t = received[i];
+                received[i] = null;
+                task_stats.bolt_execute_tuple(t.getSourceComponent(),
+                        t.getSourceStreamId(), delta);
+            }
+        }
+    }
+    
+    /**
+     * called by the recv thread after offering one tuple
+     */
+    private void checkThrottle() {
+        if (backpressure == null || throttled
+                || recv_tuple_queue.size() < highWatermark) {
+            return;
+        }
+        synchronized (throttleLock) {
+            if (throttled == false
+                    && recv_tuple_queue.size() >= highWatermark) {
+                throttled = true;
+                backpressure.throttle(taskId);
+            }
+        }
+    }
+    
+    /**
+     * called by the executor thread after taking tuples
+     */
+    private void checkRelease() {
+        if (backpressure == null || throttled == false
+                || recv_tuple_queue.size() > lowWatermark) {
+            return;
+        }
+        synchronized (throttleLock) {
+            if (throttled && recv_tuple_queue.size() <= lowWatermark) {
+                throttled = false;
+                backpressure.release(taskId);
+            }
+        }
+    }
+    
+    @Override
+    public void shutdown() {
+        if (backpressure != null) {
+            synchronized (throttleLock) {
+                throttled = false;
+                backpressure.release(taskId);
+            }
+        }
+        recv_tuple_queue.haltWithInterrupt();
+        tuple_start_times.close();
+        pending_acks.close();
+        boltCollector.close();
+    }
+    
     class RecvRunnable implements Runnable {
         
         @Override
@@ -139,6 +311,7 @@ public class BoltExecutors extends BaseExecutors {
                     continue;
                 }
                 recv_tuple_queue.offer(tuple);
+                checkThrottle();
             }
             
             LOG.info("Successfully shutdown recv thread of " + idStr);
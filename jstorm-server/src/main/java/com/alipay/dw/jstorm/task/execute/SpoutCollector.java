@@ -2,7 +2,6 @@ package com.alipay.dw.jstorm.task.execute;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.log4j.Logger;
 
@@ -11,7 +10,6 @@ import backtype.storm.spout.ISpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.MessageId;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.utils.TimeCacheMap;
 
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
@@ -21,6 +19,8 @@ import com.alipay.dw.jstorm.task.comm.TaskSendTargets;
 import com.alipay.dw.jstorm.task.comm.TupleInfo;
 import com.alipay.dw.jstorm.task.comm.UnanchoredSend;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
 
 /**
  * spout collector, sending tuple through this Object
@@ -34,11 +34,11 @@ public class SpoutCollector implements ISpoutOutputCollector {
     private TaskSendTargets                 sendTargets;
     private Map                             storm_conf;
     private WorkerTransfer                  transfer_fn;
-    private TimeCacheMap                    pending;
+    private TimeoutMap<Long, TupleInfo>     pending;
     // topology_context is system topology context
     private TopologyContext                 topology_context;
     
-    private LinkedBlockingQueue<Runnable> ackerQueue;
+    private DisruptorQueue<Runnable>        ackerQueue;
     private CommonStatsRolling              task_stats;
     private backtype.storm.spout.ISpout     spout;
     private ITaskReportErr                  report_error;
@@ -49,9 +49,10 @@ public class SpoutCollector implements ISpoutOutputCollector {
     
     public SpoutCollector(Integer task_id, backtype.storm.spout.ISpout spout,
             CommonStatsRolling task_stats, TaskSendTargets sendTargets,
-            Map _storm_conf, WorkerTransfer _transfer_fn, TimeCacheMap pending,
+            Map _storm_conf, WorkerTransfer _transfer_fn,
+            TimeoutMap<Long, TupleInfo> pending,
             TopologyContext topology_context,
-            LinkedBlockingQueue<Runnable> ackerQueue,
+            DisruptorQueue<Runnable> ackerQueue,
             ITaskReportErr _report_error) {
         this.sendTargets = sendTargets;
         this.storm_conf = _storm_conf;
@@ -130,8 +131,13 @@ public class SpoutCollector implements ISpoutOutputCollector {
                     Acker.ACKER_INIT_STREAM_ID, ackerTuple);
             
         } else if (message_id != null) {
-            ackerQueue.offer(new AckSpoutMsg(spout, message_id, isDebug, 
-                    out_stream_id, 0, task_stats));
+            AckSpoutMsg ackMsg = new AckSpoutMsg(spout, message_id, isDebug, 
+                    out_stream_id, 0, task_stats);
+            if (ackerQueue.tryOffer(ackMsg) == false) {
+                // the queue may be consumed by current thread, 
+                // so don't block here
+                ackMsg.run();
+            }
         }
         
         return out_tasks;
@@ -1,19 +1,23 @@
 package com.alipay.dw.jstorm.task.execute;
 
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import backtype.storm.Config;
+import backtype.storm.generated.Grouping;
 import backtype.storm.spout.ISpoutOutputCollector;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.utils.TimeCacheMap;
 
 import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.daemon.worker.Backpressure;
+import com.alipay.dw.jstorm.daemon.worker.TasksReady;
 import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
 import com.alipay.dw.jstorm.task.TaskStatus;
@@ -21,7 +25,10 @@ import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.task.comm.TaskSendTargets;
 import com.alipay.dw.jstorm.task.comm.TupleInfo;
 import com.alipay.dw.jstorm.task.error.ITaskReportErr;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 import com.alipay.dw.jstorm.utils.RunCounter;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
 import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
 
 /**
@@ -35,37 +42,90 @@ import com.alipay.dw.jstorm.zeroMq.IRecvConnection;
 public class SpoutExecutors extends BaseExecutors {
     private static Logger                   LOG            = Logger.getLogger(SpoutExecutors.class);
     
+    // the spout thread is woken by acks, it doesn't know pause/resume
+    private static final long               PAUSE_WAIT_MS  = 10;
+    private static final long               FULL_WAIT_MS   = 10;
+    private static final long               THROTTLE_WAIT_MS = 100;
+    
     protected final Integer                 max_spout_pending;
     protected final boolean                 supportRecvThread;
     
     protected backtype.storm.spout.ISpout   spout;
-    protected TimeCacheMap                  pending;
+    protected TimeoutMap<Long, TupleInfo>   pending;
+    protected SpoutTimeCallBack<Long, TupleInfo> timeCallBack;
     protected ISpoutOutputCollector         output_collector;
     
-    protected LinkedBlockingQueue<Runnable> ackerQueue;
+    // recv thread, timeout thread and spout thread offer, one thread poll
+    protected DisruptorQueue<Runnable>      ackerQueue;
     
     private boolean                         firstTime      = true;
     
+    protected SpoutFlowControl              flowControl;
+    protected TasksReady                    tasksReady;
+    // the tasks which this spout sends to, including the ackers
+    protected Set<Integer>                  targetTasks;
+    
+    // it is null if backpressure is disabled
+    protected Backpressure                  backpressure;
+    // all tasks which the tuples of this spout may reach
+    protected Set<Integer>                  downstreamTasks;
+    
     public SpoutExecutors(backtype.storm.spout.ISpout _spout,
             WorkerTransfer _transfer_fn, Map _storm_conf,
             IRecvConnection _puller, TaskSendTargets sendTargets,
             TaskStatus taskStatus, TopologyContext topology_context,
             TopologyContext _user_context, CommonStatsRolling _task_stats,
-            ITaskReportErr _report_error) {
+            ITaskReportErr _report_error, TasksReady tasksReady,
+            Backpressure backpressure) {
         super(_transfer_fn, _storm_conf, _puller, topology_context,
                 _user_context, _task_stats, taskStatus, _report_error);
         
         this.spout = _spout;
+        this.tasksReady = tasksReady;
+        this.backpressure = backpressure;
+        
+        this.targetTasks = new HashSet<Integer>();
+        for (Map<String, Grouping> e : topology_context.getThisTargets()
+                .values()) {
+            for (String componentId : e.keySet()) {
+                targetTasks.addAll(topology_context
+                        .getComponentTasks(componentId));
+            }
+        }
         
-        ackerQueue = new LinkedBlockingQueue<Runnable>();
-        // sending Tuple's TimeCacheMap
-        this.pending = new TimeCacheMap(message_timeout_secs,
-                Acker.TIMEOUT_BUCKET_NUM,
-                new SpoutTimeCallBack<Object, Object>(ackerQueue, spout,
-                        storm_conf, task_stats));
+        if (backpressure != null) {
+            this.downstreamTasks = downstreamTasks(topology_context);
+        }
         
         this.max_spout_pending = JStormUtils.parseInt(storm_conf
                 .get(Config.TOPOLOGY_MAX_SPOUT_PENDING));
+        
+        boolean adaptive = JStormUtils.parseBoolean(
+                storm_conf.get(ConfigExtension.TOPOLOGY_SPOUT_ADAPTIVE_PENDING),
+                false);
+        int ackerNum = JStormUtils.parseInt(
+                storm_conf.get(Config.TOPOLOGY_ACKERS), 0);
+        if (adaptive && ackerNum == 0) {
+            LOG.warn(idStr + " no acker, the adaptive pending is disabled");
+            adaptive = false;
+        }
+        int targetLatencyMs = JStormUtils.parseInt(
+                storm_conf.get(ConfigExtension.TOPOLOGY_SPOUT_TARGET_LATENCY_MS),
+                ConfigExtension.DEFAULT_TOPOLOGY_SPOUT_TARGET_LATENCY_MS);
+        this.flowControl = new SpoutFlowControl(idStr, max_spout_pending,
+                adaptive, targetLatencyMs, _transfer_fn);
+        
+        ackerQueue = DisruptorQueue.mkInstance(storm_conf,
+                ConfigExtension.TOPOLOGY_RECEIVE_BUFFER_SIZE,
+                ConfigExtension.DEFAULT_RECEIVE_BUFFER_SIZE, true);
+        // sending Tuple's TimeoutMap
+        this.timeCallBack = new SpoutTimeCallBack<Long, TupleInfo>(
+                ackerQueue, spout, storm_conf, task_stats, flowControl);
+        this.pending = new TimeoutMap<Long, TupleInfo>(message_timeout_secs,
+                timeCallBack);
+        // retry the fail events which the full ackerQueue didn't accept
+        TimeoutTicker.getInstance().register(timeCallBack);
+        
         if (max_spout_pending != null && max_spout_pending.intValue() == 1) {
             LOG.info("Do recv/ack in execute thread");
             supportRecvThread = false;
@@ -108,15 +168,9 @@ public class SpoutExecutors extends BaseExecutors {
     @Override
     public void run() {
         if (firstTime == true) {
-            int delayRun = JStormUtils.parseInt(
-                    storm_conf.get(ConfigExtension.SPOUT_DELAY_RUN), 60);
-            
-            // wait other bolt is ready
-            JStormUtils.sleepMs(delayRun * 1000);
+            waitTargetTasks();
             
             firstTime = false;
-            
-            LOG.info(idStr + " is ready ");
         }
         
         if (supportRecvThread == false) {
@@ -124,16 +178,22 @@ public class SpoutExecutors extends BaseExecutors {
         }
         
         if (taskStatus.isRun() == false) {
-            if (supportRecvThread == true) {
-                JStormUtils.sleepMs(10);
-            }else {
-                JStormUtils.sleepMs(1);
+            flowControl.await(PAUSE_WAIT_MS);
+            return;
+        }
+        
+        if (backpressure != null && backpressure.isThrottled(downstreamTasks)) {
+            // without recv thread the acks are executed after it
+            try {
+                backpressure.awaitRelease(downstreamTasks, THROTTLE_WAIT_MS);
+            } catch (InterruptedException e) {
+                LOG.info(idStr + " is interrupted when throttled");
             }
             return;
         }
         
         // if don't need ack, pending map will be always empty
-        if (max_spout_pending == null || pending.size() < max_spout_pending) {
+        if (flowControl.canEmit(pending.size())) {
             
             try {
                 
@@ -146,15 +206,59 @@ public class SpoutExecutors extends BaseExecutors {
             
             return;
         } else {
-            if (supportRecvThread == true) {
-                JStormUtils.sleepMs(1);
-            }else {
-                // if here do sleep, the tps will slow down much
-                //JStormUtils.sleepNs(100);
-                
+            // woken as soon as one pending tuple finishes, without recv
+            // thread the acks are executed after it
+            flowControl.awaitRoom(pending, FULL_WAIT_MS);
+        }
+        
+    }
+    
+    /**
+     * the tasks of all components which are reachable from this spout
+     */
+    private static Set<Integer> downstreamTasks(TopologyContext context) {
+        Set<String> components = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add(context.getThisComponentId());
+        while (queue.isEmpty() == false) {
+            String componentId = queue.poll();
+            for (Map<String, Grouping> e : context.getTargets(componentId)
+                    .values()) {
+                for (String target : e.keySet()) {
+                    if (components.add(target)) {
+                        queue.add(target);
+                    }
+                }
             }
         }
         
+        Set<Integer> tasks = new HashSet<Integer>();
+        for (String componentId : components) {
+            tasks.addAll(context.getComponentTasks(componentId));
+        }
+        return tasks;
+    }
+    
+    /**
+     * wait until all target tasks are ready, at most spout.delay.run
+     */
+    private void waitTargetTasks() {
+        int delayRun = JStormUtils.parseInt(
+                storm_conf.get(ConfigExtension.SPOUT_DELAY_RUN), 60);
+        
+        boolean ready = false;
+        try {
+            ready = tasksReady.await(targetTasks, delayRun * 1000L);
+        } catch (InterruptedException e) {
+            LOG.info(idStr + " is interrupted when waiting target tasks");
+        }
+        
+        if (ready) {
+            LOG.info(idStr + " is ready, all target tasks are ready");
+        } else {
+            LOG.warn(idStr + " some target tasks aren't ready after "
+                    + delayRun + " seconds, start anyway");
+        }
     }
     
     private void executeEvent() {
@@ -165,10 +269,7 @@ public class SpoutExecutors extends BaseExecutors {
                 Runnable event = null;
                 if (supportRecvThread == true) {
                     // it is blocking
-                    try {
-                        event = ackerQueue.take();
-                    } catch (InterruptedException e) {
-                    }
+                    event = ackerQueue.take();
                 } else {
                     // it is non-blocking
                     event = ackerQueue.poll();
@@ -192,24 +293,24 @@ public class SpoutExecutors extends BaseExecutors {
             return;
         }
         
-        Object id = tuple.getValue(0);
-        Object obj = pending.remove(id);
+        Long id = (Long) tuple.getValue(0);
+        TupleInfo tupleInfo = pending.remove(id);
         
-        if (obj == null) {
+        if (tupleInfo == null) {
             LOG.warn("Pending map no entry:" + id + ", pending size:" + pending.size());
             return;
         }
         
-        TupleInfo tupleInfo = (TupleInfo) obj;
-        
         String stream_id = tuple.getSourceStreamId();
         if (stream_id.equals(Acker.ACKER_ACK_STREAM_ID)) {
+            flowControl.acked(System.currentTimeMillis()
+                    - tupleInfo.getTimestamp());
             
             ackerQueue.offer(new AckSpoutMsg(spout, tupleInfo.getMessageId(),
                     isDebug, tupleInfo.getStream(), tupleInfo.getTimestamp(),
                     task_stats));
         } else if (stream_id.equals(Acker.ACKER_FAIL_STREAM_ID)) {
-            Long time_delta = null;
+            flowControl.failed();
             
             ackerQueue.offer(new FailSpoutMsg(spout, tupleInfo, task_stats,
                     isDebug));
@@ -218,6 +319,13 @@ public class SpoutExecutors extends BaseExecutors {
         
     }
     
+    @Override
+    public void shutdown() {
+        ackerQueue.haltWithInterrupt();
+        pending.close();
+        TimeoutTicker.getInstance().unregister(timeCallBack);
+    }
+    
     class AckerRunnable implements Runnable {
         
         @Override
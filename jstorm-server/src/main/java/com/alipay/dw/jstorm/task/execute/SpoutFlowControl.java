@@ -0,0 +1,171 @@
+package com.alipay.dw.jstorm.task.execute;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.alipay.dw.jstorm.daemon.worker.WorkerTransfer;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
+
+/**
+ * Flow control of one spout task
+ *
+ * The spout thread waits on a condition when the pending map is full,
+ * it is signaled as soon as one pending tuple is acked, failed or
+ * expired.
+ *
+ * In adaptive mode, the effective max pending (window) is tuned by AIMD
+ * once per round, a round is window acked tuples:
+ * - the window is halved if the average complete latency is above the
+ *   target, or the fullest sending queue of the worker is half full, or
+ *   at the first failed tuple of the round
+ * - otherwise it is doubled until the first decrease, then increased by 1
+ * the window is never bigger than topology.max.spout.pending.
+ *
+ * @author longda
+ *
+ */
+public class SpoutFlowControl {
+    private static final Logger LOG                 = Logger.getLogger(SpoutFlowControl.class);
+
+    private static final int    INITIAL_WINDOW      = 16;
+    private static final double CONGESTED_OCCUPANCY = 0.5;
+    // the auto target is twice the min latency, but not less than this
+    private static final long   MIN_TARGET_MS       = 20;
+
+    private final ReentrantLock lock                = new ReentrantLock();
+    private final Condition     room                = lock.newCondition();
+
+    private final String        idStr;
+    private final int           maxPending;
+    private final boolean       adaptive;
+    private final long          targetLatencyMs;
+    private final WorkerTransfer workerTransfer;
+
+    private volatile int        window;
+
+    // the following are guarded by lock
+    private int                 threshold;
+    private int                 roundAcks           = 0;
+    private boolean             roundFailed         = false;
+    private double              avgLatencyMs        = 0;
+    private long                minLatencyMs        = Long.MAX_VALUE;
+
+    /**
+     * @param maxPending null means no limit
+     * @param targetLatencyMs 0 means twice the min latency
+     */
+    public SpoutFlowControl(String idStr, Integer maxPending,
+            boolean adaptive, long targetLatencyMs,
+            WorkerTransfer workerTransfer) {
+        this.idStr = idStr;
+        this.maxPending = (maxPending == null) ? Integer.MAX_VALUE
+                : maxPending;
+        this.adaptive = adaptive;
+        this.targetLatencyMs = targetLatencyMs;
+        this.workerTransfer = workerTransfer;
+
+        this.threshold = this.maxPending;
+        this.window = adaptive ? Math.min(this.maxPending, INITIAL_WINDOW)
+                : this.maxPending;
+    }
+
+    public boolean canEmit(int pendingNum) {
+        return pendingNum < window;
+    }
+
+    /**
+     * wait until the pending map has room, at most timeoutMs
+     */
+    public void awaitRoom(TimeoutMap<?, ?> pending, long timeoutMs) {
+        long left = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (pending.size() >= window && left > 0) {
+                left = room.awaitNanos(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * wait until one pending tuple finishes, at most timeoutMs
+     */
+    public void await(long timeoutMs) {
+        lock.lock();
+        try {
+            room.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void acked(long latencyMs) {
+        lock.lock();
+        try {
+            if (adaptive) {
+                avgLatencyMs = (roundAcks == 0) ? latencyMs : avgLatencyMs
+                        + (latencyMs - avgLatencyMs) / (roundAcks + 1);
+                minLatencyMs = Math.min(minLatencyMs, latencyMs);
+                if (++roundAcks >= window) {
+                    endRound();
+                }
+            }
+            room.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void failed() {
+        lock.lock();
+        try {
+            // decrease once per round, the other fails may be caused by
+            // the same congestion
+            if (adaptive && roundFailed == false) {
+                roundFailed = true;
+                decrease();
+            }
+            room.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void endRound() {
+        long target = targetLatencyMs;
+        if (target <= 0) {
+            target = Math.max(2 * minLatencyMs, MIN_TARGET_MS);
+        }
+
+        if (roundFailed) {
+            // already decreased
+        } else if (avgLatencyMs > target
+                || workerTransfer.occupancy() >= CONGESTED_OCCUPANCY) {
+            decrease();
+        } else if (window < threshold) {
+            window = (int) Math.min((long) window * 2, threshold);
+        } else if (window < maxPending) {
+            window++;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(idStr + " window:" + window + ", latency ms:"
+                    + avgLatencyMs + ", failed:" + roundFailed);
+        }
+        roundAcks = 0;
+        roundFailed = false;
+    }
+
+    private void decrease() {
+        threshold = Math.max(1, window / 2);
+        window = threshold;
+    }
+}
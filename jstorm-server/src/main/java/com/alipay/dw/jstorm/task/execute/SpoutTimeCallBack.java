@@ -1,42 +1,53 @@
 package com.alipay.dw.jstorm.task.execute;
 
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.log4j.Logger;
 
 import backtype.storm.Config;
-import backtype.storm.utils.TimeCacheMap;
 
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
 import com.alipay.dw.jstorm.task.comm.TupleInfo;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+import com.alipay.dw.jstorm.utils.TimeoutMap;
+import com.alipay.dw.jstorm.utils.TimeoutTicker;
 
 /**
  * Spout tuple Timeout callback in the Spout Executor's TimeoutCache
  * 
+ * It runs in the worker's TimeoutTicker thread, so it never blocks: when
+ * the event queue is full, the fail events are kept and offered again at
+ * the next tick
+ * 
  * @author yannian
  * 
  * @param <K>
  * @param <V>
  */
 public class SpoutTimeCallBack<K, V> implements
-        TimeCacheMap.ExpiredCallback<K, V> {
+        TimeoutMap.ExpiredCallback<K, V>, TimeoutTicker.Tickable {
     private static Logger                   LOG = Logger.getLogger(SpoutTimeCallBack.class);
     
-    private LinkedBlockingQueue<Runnable> event_queue;
+    private DisruptorQueue<Runnable>        event_queue;
     private backtype.storm.spout.ISpout     spout;
     private Map                             storm_conf;
     private CommonStatsRolling              task_stats;
     private boolean                         isDebug;
+    private SpoutFlowControl                flowControl;
+    
+    // fail events which the full event queue didn't accept
+    private ConcurrentLinkedQueue<Runnable> unsent = new ConcurrentLinkedQueue<Runnable>();
     
-    public SpoutTimeCallBack(LinkedBlockingQueue<Runnable> _event_queue,
+    public SpoutTimeCallBack(DisruptorQueue<Runnable> _event_queue,
             backtype.storm.spout.ISpout _spout, Map _storm_conf,
-            CommonStatsRolling stat) {
+            CommonStatsRolling stat, SpoutFlowControl flowControl) {
         this.event_queue = _event_queue;
         this.spout = _spout;
         this.storm_conf = _storm_conf;
         this.task_stats = stat;
+        this.flowControl = flowControl;
         this.isDebug  = JStormUtils.parseBoolean(
                 storm_conf.get(Config.TOPOLOGY_DEBUG), false);
     }
@@ -52,10 +63,33 @@ public class SpoutTimeCallBack<K, V> implements
         try {
             TupleInfo  tupleInfo = (TupleInfo)val;
             
-            event_queue.offer(new FailSpoutMsg(spout, (TupleInfo) tupleInfo, 
-                    task_stats, isDebug));
+            Runnable event = new FailSpoutMsg(spout, (TupleInfo) tupleInfo, 
+                    task_stats, isDebug);
+            if (offerUnsent() == false || event_queue.tryOffer(event) == false) {
+                unsent.offer(event);
+            }
+            flowControl.failed();
         } catch (Exception e) {
             LOG.error("expire error", e);
         }
     }
+    
+    @Override
+    public void tick(long nowMs) {
+        offerUnsent();
+    }
+    
+    /**
+     * @return false if some unsent events are still left
+     */
+    private boolean offerUnsent() {
+        Runnable event;
+        while ((event = unsent.peek()) != null) {
+            if (event_queue.tryOffer(event) == false) {
+                return false;
+            }
+            unsent.poll();
+        }
+        return true;
+    }
 }
@@ -8,5 +8,5 @@ package com.alipay.dw.jstorm.task.group;
  */
 public enum GrouperType {
     global, fields, all, shuffle, none, custom_obj,
-    custom_serialized, direct, local_or_shuffle
+    custom_serialized, direct, local_or_shuffle, acker
 }
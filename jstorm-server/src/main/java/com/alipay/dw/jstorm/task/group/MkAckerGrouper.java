@@ -0,0 +1,53 @@
+package com.alipay.dw.jstorm.task.group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Route the init/ack/fail message of one root id to one acker task
+ * 
+ * The root id (the first field) is mapped to an acker by jump consistent
+ * hash over the sorted acker task list. Every task computes the same
+ * target for one root id, the ids are spread evenly over the ackers,
+ * and no list is built or hashed per message as fields grouping does.
+ * 
+ * @author longda
+ * 
+ */
+public class MkAckerGrouper {
+    private final List<Integer>[] targets;
+    
+    public MkAckerGrouper(List<Integer> _out_tasks) {
+        List<Integer> outTasks = new ArrayList<Integer>(_out_tasks);
+        Collections.sort(outTasks);
+        
+        targets = new List[outTasks.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = Collections.singletonList(outTasks.get(i));
+        }
+    }
+    
+    /**
+     * "A Fast, Minimal Memory, Consistent Hash Algorithm", Lamping & Veach
+     */
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+    
+    public List<Integer> grouper(List<Object> values) {
+        long rootId = ((Number) values.get(0)).longValue();
+        return grouper(rootId);
+    }
+    
+    public List<Integer> grouper(long rootId) {
+        return targets[jumpConsistentHash(rootId, targets.length)];
+    }
+}
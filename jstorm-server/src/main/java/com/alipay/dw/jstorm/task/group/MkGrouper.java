@@ -13,7 +13,7 @@ import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Fields;
 import backtype.storm.utils.Utils;
 
-import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.task.acker.Acker;
 import com.alipay.dw.jstorm.utils.RandomRange;
 import com.alipay.dw.jstorm.utils.Thrift;
 
@@ -32,6 +32,9 @@ public class MkGrouper {
     private GrouperType      grouptype;
     private List<Integer>    out_tasks;
     private List<Integer>    local_tasks;
+    // immutable target list of every out task, returned without allocation
+    private List<Integer>[]  targets;
+    private List<Integer>    all_targets;
     
     
     // grouping method
@@ -40,10 +43,18 @@ public class MkGrouper {
     private MkCustomGrouper  custom_grouper;
     private MkFieldsGrouper  fields_grouper;
     private MkLocalShuffer   local_shuffer_grouper;
+    private MkAckerGrouper   acker_grouper;
     
     public MkGrouper(TopologyContext _topology_context, 
             Fields _out_fields, Grouping _thrift_grouping,
             List<Integer> _outTasks) {
+        this(_topology_context, _out_fields, _thrift_grouping, null,
+                _outTasks);
+    }
+    
+    public MkGrouper(TopologyContext _topology_context, 
+            Fields _out_fields, Grouping _thrift_grouping,
+            String _target_component, List<Integer> _outTasks) {
         this.topology_context = _topology_context;
         this.out_fields = _out_fields;
         this.thrift_grouping = _thrift_grouping;
@@ -51,19 +62,47 @@ public class MkGrouper {
         this.out_tasks = new ArrayList<Integer>();
         this.out_tasks.addAll(_outTasks);
         Collections.sort(this.out_tasks);
+        this.targets = singletonTargets(this.out_tasks);
+        this.all_targets = Collections.unmodifiableList(this.out_tasks);
         
         this.local_tasks = _topology_context.getThisWorkerTasks();
         this.fields = Thrift.groupingType(thrift_grouping);
-        this.grouptype = this.parseGroupType();
+        if (Acker.ACKER_COMPONENT_ID.equals(_target_component)
+                && Grouping._Fields.FIELDS.equals(fields)) {
+            // acker's init/ack/fail streams, route by root id
+            this.acker_grouper = new MkAckerGrouper(out_tasks);
+            this.grouptype = GrouperType.acker;
+        } else {
+            this.grouptype = this.parseGroupType();
+        }
         
         
         
     }
     
+    /**
+     * one immutable singleton list per task, shared by every tuple
+     */
+    @SuppressWarnings("unchecked")
+    static List<Integer>[] singletonTargets(List<Integer> tasks) {
+        List<Integer>[] ret = new List[tasks.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = Collections.singletonList(tasks.get(i));
+        }
+        return ret;
+    }
+    
     public GrouperType gettype() {
         return grouptype;
     }
     
+    /**
+     * null if it isn't the grouper of the acker's streams
+     */
+    public MkAckerGrouper getAckerGrouper() {
+        return acker_grouper;
+    }
+    
     private GrouperType parseGroupType() {
         
         GrouperType grouperType = null;
@@ -125,34 +164,40 @@ public class MkGrouper {
      * get which task should tuple be sent to
      * 
      * @param values
-     * @return
+     * @return the cached target list, it is shared and mustn't be modified
      */
     public List<Integer> grouper(List<Object> values) {
-        if (GrouperType.global.equals(grouptype)) {
+        if (grouptype == null) {
+            return Collections.emptyList();
+        }
+        
+        switch (grouptype) {
+        case global:
             // send to task which taskId is 0
-            return JStormUtils.mk_list(out_tasks.get(0));
-        } else if (GrouperType.fields.equals(grouptype)) {
+            return targets[0];
+        case fields:
             // field grouping
             return fields_grouper.grouper(values);
-        } else if (GrouperType.all.equals(grouptype)) {
+        case all:
             // send to every task
-            return out_tasks;
-        } else if (GrouperType.shuffle.equals(grouptype)) {
+            return all_targets;
+        case shuffle:
             // random, but the random is different from none
-            int rnd = randomrange.nextInt();
-            return JStormUtils.mk_list(out_tasks.get(rnd));
-        } else if (GrouperType.none.equals(grouptype)) {
-            int rnd = Math.abs(random.nextInt()) % out_tasks.size();
-            return JStormUtils.mk_list(out_tasks.get(rnd));
-        } else if (GrouperType.custom_obj.equals(grouptype)) {
+            return targets[randomrange.nextInt()];
+        case none:
+            return targets[random.nextInt(targets.length)];
+        case custom_obj:
+        case custom_serialized:
             return custom_grouper.grouper(values);
-        } else if (GrouperType.custom_serialized.equals(grouptype)) {
-            return custom_grouper.grouper(values);
-        }else if (GrouperType.local_or_shuffle.equals(grouptype)) {
+        case local_or_shuffle:
             return local_shuffer_grouper.grouper(values);
+        case acker:
+            return acker_grouper.grouper(values);
+        default:
+            break;
         }
-         
-        return new ArrayList<Integer>();
+        
+        return Collections.emptyList();
     }
     
 }
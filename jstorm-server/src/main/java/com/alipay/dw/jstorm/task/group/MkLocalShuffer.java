@@ -3,12 +3,18 @@ package com.alipay.dw.jstorm.task.group;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.utils.RandomRange;
 
+/**
+ * local or shuffle grouping, shuffle among the target tasks in
+ * current worker, or among all target tasks when none is local
+ * 
+ * @author yannian
+ * 
+ */
 public class MkLocalShuffer {
     
-    private List<Integer>    outTasks;
+    private List<Integer>[]  targets;
     private RandomRange      randomrange;
     private boolean          isLocal;
     
@@ -23,28 +29,24 @@ public class MkLocalShuffer {
         }
         
         if (localOutTasks.size() != 0) {
-            this.outTasks = localOutTasks;
+            this.targets = MkGrouper.singletonTargets(localOutTasks);
             isLocal = true;
         }else {
-            this.outTasks.addAll(allOutTasks);
+            this.targets = MkGrouper.singletonTargets(allOutTasks);
             isLocal = false;
         }
         
-        randomrange = new RandomRange(outTasks.size());
+        randomrange = new RandomRange(targets.length);
     }
     
     public List<Integer> grouper(List<Object> values) {
         int index = randomrange.nextInt();
         
-        return JStormUtils.mk_list(index);
+        return targets[index];
     }
     
-    /**
-     * @param args
-     */
-    public static void main(String[] args) {
-        // TODO Auto-generated method stub
-        
+    public boolean isLocal() {
+        return isLocal;
     }
     
 }
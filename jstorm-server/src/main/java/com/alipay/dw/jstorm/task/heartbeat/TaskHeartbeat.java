@@ -1,30 +1,44 @@
 package com.alipay.dw.jstorm.task.heartbeat;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
-import com.alipay.dw.jstorm.stats.CommonStatsData;
+import com.alipay.dw.jstorm.cluster.Cluster;
 
 /**
  * Task heartbeat, this Object will be updated to ZK timely
  * 
+ * It only tells nimbus the task is alive, the stats are written to
+ * another znode in lower frequency, see TaskHeartbeatRunable
+ * 
+ * The worker writes the heartbeats of all its tasks into one znode,
+ * 12 bytes per task. Old version wrote one znode per task, in 9 bytes
+ * (VERSION, timeSecs, uptimeSecs) or java serialized.
+ * 
  * @author yannian
  * 
  */
 public class TaskHeartbeat implements Serializable {
     
     private static final long serialVersionUID = -6369195955255963810L;
+    
+    public static final byte  VERSION          = 1;
+    private static final int  ENCODED_SIZE     = 9;
+    public static final byte  BATCH_VERSION    = 2;
+    private static final int  BATCH_ENTRY_SIZE = 12;
+    
     private Integer           timeSecs;
     private Integer           uptimeSecs;
-    private CommonStatsData   stats;                                   // BoltTaskStats or
-                                                                        // SpoutTaskStats
-                                                                        
-    public TaskHeartbeat(int timeSecs, int uptimeSecs, CommonStatsData stats) {
+    
+    public TaskHeartbeat(int timeSecs, int uptimeSecs) {
         this.timeSecs = timeSecs;
         this.uptimeSecs = uptimeSecs;
-        this.stats = stats;
     }
     
     public int getTimeSecs() {
@@ -50,20 +64,75 @@ public class TaskHeartbeat implements Serializable {
         this.uptimeSecs = uptimeSecs;
     }
     
-    public CommonStatsData getStats() {
-        return stats;
+    /**
+     * all task heartbeats of one worker are written in one znode,
+     * BATCH_VERSION, task number, then taskId, timeSecs, uptimeSecs of
+     * every task
+     */
+    public static byte[] serialize(Map<Integer, TaskHeartbeat> beats) {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + beats.size()
+                * BATCH_ENTRY_SIZE);
+        buffer.put(BATCH_VERSION);
+        buffer.putInt(beats.size());
+        for (Entry<Integer, TaskHeartbeat> entry : beats.entrySet()) {
+            buffer.putInt(entry.getKey());
+            buffer.putInt(entry.getValue().getTimeSecs());
+            buffer.putInt(entry.getValue().getUptimeSecs());
+        }
+        return buffer.array();
+    }
+    
+    /**
+     * @return <taskId, heartbeat>, empty if data is empty or invalid
+     */
+    public static Map<Integer, TaskHeartbeat> deserializeBatch(byte[] data) {
+        Map<Integer, TaskHeartbeat> ret = new HashMap<Integer, TaskHeartbeat>();
+        if (data == null || data.length < 5 || data[0] != BATCH_VERSION) {
+            return ret;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.get();
+        int num = buffer.getInt();
+        for (int i = 0; i < num && buffer.remaining() >= BATCH_ENTRY_SIZE; i++) {
+            int taskId = buffer.getInt();
+            int timeSecs = buffer.getInt();
+            int uptimeSecs = buffer.getInt();
+            ret.put(taskId, new TaskHeartbeat(timeSecs, uptimeSecs));
+        }
+        return ret;
     }
     
-    public void setStats(CommonStatsData stats) {
-        this.stats = stats;
+    /**
+     * read the heartbeat of one task written by old version
+     * 
+     * @return null if data is empty
+     */
+    public static TaskHeartbeat deserialize(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        
+        if (data[0] != VERSION || data.length != ENCODED_SIZE) {
+            Object old = Cluster.maybe_deserialize(data);
+            if (old instanceof TaskHeartbeat) {
+                return (TaskHeartbeat) old;
+            }
+            return null;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.get();
+        int timeSecs = buffer.getInt();
+        int uptimeSecs = buffer.getInt();
+        return new TaskHeartbeat(timeSecs, uptimeSecs);
     }
     
     @Override
     public boolean equals(Object hb) {
         if (hb instanceof TaskHeartbeat
                 && ((TaskHeartbeat) hb).timeSecs.equals(timeSecs)
-                && ((TaskHeartbeat) hb).uptimeSecs.equals(uptimeSecs)
-                && ((TaskHeartbeat) hb).stats.equals(stats)) {
+                && ((TaskHeartbeat) hb).uptimeSecs.equals(uptimeSecs)) {
             return true;
         }
         return false;
@@ -71,6 +140,6 @@ public class TaskHeartbeat implements Serializable {
     
     @Override
     public int hashCode() {
-        return timeSecs.hashCode() + uptimeSecs.hashCode() + stats.hashCode();
+        return timeSecs.hashCode() + uptimeSecs.hashCode();
     }
 }
@@ -1,65 +1,108 @@
 package com.alipay.dw.jstorm.task.heartbeat;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
 import backtype.storm.Config;
+import backtype.storm.generated.TaskStats;
 
 import com.alipay.dw.jstorm.callback.RunnableCallback;
+import com.alipay.dw.jstorm.client.ConfigExtension;
 import com.alipay.dw.jstorm.cluster.StormClusterState;
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.daemon.worker.WorkerData;
 import com.alipay.dw.jstorm.stats.CommonStatsRolling;
-import com.alipay.dw.jstorm.task.TaskStatus;
 import com.alipay.dw.jstorm.task.UptimeComputer;
-import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.utils.TimeUtils;
 
 /**
  * Task hearbeat
  * 
+ * One thread per worker, every task registers itself when it starts,
+ * the heartbeats of all tasks are written into one znode, and so are
+ * their stats
+ * 
  * @author yannian
  * 
  */
 public class TaskHeartbeatRunable extends RunnableCallback {
-    private static final Logger LOG = Logger.getLogger(TaskHeartbeatRunable.class);
+    private static final Logger                     LOG   = Logger.getLogger(TaskHeartbeatRunable.class);
+    
+    private StormClusterState                       zkCluster;
+    private String                                  storm_id;
+    private String                                  supervisor_id;
+    private int                                     port;
+    private String                                  idStr;
+    private AtomicBoolean                           active;
+    private Integer                                 frequence;
+    private int                                     statsFrequence;
+    private int                                     lastStatsTime;
+    private Map<Integer, TaskStats>                 lastStats;
     
-    private StormClusterState   zkCluster;
-    private String              storm_id;
-    private int                 task_id;
-    private String              idStr;
-    private UptimeComputer      uptime;
-    private CommonStatsRolling  task_stats;
-    private TaskStatus          taskStatus;
-    private Map                 storm_conf;
-    private Integer             frequence;
+    private ConcurrentHashMap<Integer, TaskHbEntry> tasks = new ConcurrentHashMap<Integer, TaskHbEntry>();
+    
+    private static class TaskHbEntry {
+        private UptimeComputer     uptime;
+        private CommonStatsRolling task_stats;
+        
+        public TaskHbEntry(UptimeComputer uptime, CommonStatsRolling task_stats) {
+            this.uptime = uptime;
+            this.task_stats = task_stats;
+        }
+    }
     
-    public TaskHeartbeatRunable(StormClusterState zkCluster, String _storm_id,
-            int _task_id, UptimeComputer _uptime,
-            CommonStatsRolling _task_stats, TaskStatus _taskStatus,
-            Map _storm_conf) {
-        this.zkCluster = zkCluster;
-        this.storm_id = _storm_id;
-        this.task_id = _task_id;
-        this.uptime = _uptime;
-        this.task_stats = _task_stats;
-        this.taskStatus = _taskStatus;
-        this.storm_conf = _storm_conf;
+    public TaskHeartbeatRunable(WorkerData workerData) {
+        this.zkCluster = workerData.getZkCluster();
+        this.storm_id = workerData.getTopologyId();
+        this.supervisor_id = workerData.getSupervisorId();
+        this.port = workerData.getPort();
+        this.active = workerData.getActive();
+        
+        Map storm_conf = workerData.getStormConf();
         
         String key = Config.TASK_HEARTBEAT_FREQUENCY_SECS;
         Object time = storm_conf.get(key);
         frequence = JStormUtils.parseInt(time, 10);
         
-        idStr = " " + storm_id + ":" + task_id + " ";
+        statsFrequence = JStormUtils.parseInt(
+                storm_conf.get(ConfigExtension.TASK_STATS_FREQUENCY_SECS),
+                ConfigExtension.DEFAULT_TASK_STATS_FREQUENCY_SECS);
+        
+        idStr = " " + storm_id + ":" + supervisor_id + ":" + port + " ";
+    }
+    
+    public void register(int task_id, UptimeComputer uptime,
+            CommonStatsRolling task_stats) {
+        tasks.put(task_id, new TaskHbEntry(uptime, task_stats));
+    }
+    
+    /**
+     * the task won't be in the next heartbeat
+     */
+    public void unregister(int task_id) {
+        tasks.remove(task_id);
     }
     
     @Override
     public void run() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        
         Integer currtime = TimeUtils.current_time_secs();
-        TaskHeartbeat hb = new TaskHeartbeat(currtime, uptime.uptime(),
-                task_stats.render_stats());
+        Map<Integer, TaskHeartbeat> beats = new HashMap<Integer, TaskHeartbeat>();
+        for (Entry<Integer, TaskHbEntry> entry : tasks.entrySet()) {
+            beats.put(entry.getKey(), new TaskHeartbeat(currtime, entry
+                    .getValue().uptime.uptime()));
+        }
         
         try {
-            zkCluster.task_heartbeat(storm_id, task_id, hb);
+            zkCluster.task_heartbeats(storm_id, supervisor_id, port, beats);
         } catch (Exception e) {
             // TODO Auto-generated catch block
             String errMsg = "Failed to update heartbeat to ZK " + idStr + "\n";
@@ -67,12 +110,43 @@ public class TaskHeartbeatRunable extends RunnableCallback {
             return;
         }
         
-        LOG.debug("task hearbeat task_id=" + idStr + "=>" + hb.toString());
+        LOG.debug("task hearbeat " + idStr + "=>" + beats);
+        
+        if (currtime - lastStatsTime >= statsFrequence) {
+            updateStats(currtime);
+        }
+    }
+    
+    /**
+     * write the stats only when they have changed since last write,
+     * an idle worker doesn't write them again
+     */
+    private void updateStats(int currtime) {
+        Map<Integer, TaskStats> stats = new HashMap<Integer, TaskStats>();
+        for (Entry<Integer, TaskHbEntry> entry : tasks.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().task_stats
+                    .render_stats().getTaskStats());
+        }
+        if (stats.equals(lastStats)) {
+            lastStatsTime = currtime;
+            return;
+        }
+        
+        try {
+            zkCluster.task_stats(storm_id, supervisor_id, port, stats);
+        } catch (Exception e) {
+            String errMsg = "Failed to update stats to ZK " + idStr + "\n";
+            LOG.error(errMsg, e);
+            return;
+        }
+        
+        lastStats = stats;
+        lastStatsTime = currtime;
     }
     
     @Override
     public Object getResult() {
-        if (taskStatus.isShutdown() == false) {
+        if (active.get()) {
             return frequence;
             
         } else {
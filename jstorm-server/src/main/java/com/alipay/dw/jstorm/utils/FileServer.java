@@ -0,0 +1,334 @@
+package com.alipay.dw.jstorm.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import backtype.storm.utils.FileClient;
+import backtype.storm.utils.Utils;
+
+/**
+ * Serve the files under one dir to the other daemons and the clients,
+ * the protocol is described in FileClient
+ *
+ * The name is relative to the root dir, or an absolute path under it,
+ * the bytes are sent with FileChannel.transferTo and received with
+ * FileChannel.transferFrom, every connection is served by one thread of
+ * a pool of MAX_HANDLERS and may send several requests. A connection is
+ * refused when the pool and its queue are full, and closed when it makes
+ * no progress in TIMEOUT_MS, so an idle or slow client can't hold a
+ * thread forever.
+ *
+ * The written files are put into writeRoot, one is renamed to its name
+ * only after its md5 is checked.
+ *
+ * @author longda
+ *
+ */
+public class FileServer implements SmartThread, Runnable,
+        TimeoutTicker.Tickable {
+    private static final Logger       LOG           = Logger.getLogger(FileServer.class);
+
+    private static final int          MAX_HANDLERS  = 16;
+    private static final int          MAX_QUEUED    = 64;
+    private static final int          TIMEOUT_MS    = 60 * 1000;
+    // bytes of one transfer call, the progress is marked after each one
+    private static final long         TRANSFER_SIZE = 1024 * 1024;
+
+    private final String              root;
+    private final String              writeRoot;
+    private final int                 maxChunkSize;
+    private final int                 port;
+    private final ServerSocketChannel serverChannel;
+    private final Thread              thread;
+    private final ThreadPoolExecutor  handlers;
+
+    // serving channel -> the last time it made progress
+    private final ConcurrentHashMap<SocketChannel, Long> lastActiveMs = new ConcurrentHashMap<SocketChannel, Long>();
+
+    private volatile boolean          closed        = false;
+
+    /**
+     * only serve reading
+     */
+    public FileServer(String root, int port) throws IOException {
+        this(root, null, 0, port);
+    }
+
+    /**
+     * @param writeRoot the dir of the written files, null means reject
+     *            writing
+     * @param maxChunkSize max bytes received by one transferFrom
+     */
+    public FileServer(String root, String writeRoot, int maxChunkSize,
+            int port) throws IOException {
+        this.root = new File(root).getCanonicalPath();
+        this.writeRoot = writeRoot;
+        this.maxChunkSize = maxChunkSize;
+        this.port = port;
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+
+        thread = new Thread(this);
+        thread.setName("FileServer-" + port);
+        thread.setDaemon(true);
+
+        handlers = new ThreadPoolExecutor(MAX_HANDLERS, MAX_HANDLERS, 60,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED),
+                new ThreadFactory() {
+                    private final AtomicInteger num = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("FileServer-" + FileServer.this.port + "-"
+                                + num.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        handlers.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void run() {
+        LOG.info("File server of " + root + " listens on port " + port);
+        while (closed == false) {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                channel.socket().setSoTimeout(TIMEOUT_MS);
+                touch(channel);
+                try {
+                    handlers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(channel);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    LOG.warn("Too many connections, refuse "
+                            + channel.socket().getRemoteSocketAddress());
+                    close(channel);
+                }
+            } catch (IOException e) {
+                if (closed == false) {
+                    LOG.error("File server of port " + port + " quit", e);
+                }
+                break;
+            }
+        }
+        LOG.info("Successfully shutdown file server of port " + port);
+    }
+
+    private void serve(SocketChannel channel) {
+        try {
+            DataInputStream in = new DataInputStream(channel.socket()
+                    .getInputStream());
+            DataOutputStream out = new DataOutputStream(channel.socket()
+                    .getOutputStream());
+            while (true) {
+                byte op = in.readByte();
+                touch(channel);
+                if (op == FileClient.OP_READ) {
+                    read(channel, in, out);
+                } else if (op == FileClient.OP_WRITE) {
+                    write(channel, in, out);
+                } else {
+                    LOG.warn("Unknown operation " + op + " from "
+                            + channel.socket().getRemoteSocketAddress());
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // the peer closed the connection, or it timed out
+        } finally {
+            close(channel);
+        }
+    }
+
+    private void touch(SocketChannel channel) {
+        lastActiveMs.put(channel, System.currentTimeMillis());
+    }
+
+    private void close(SocketChannel channel) {
+        lastActiveMs.remove(channel);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close channel", e);
+        }
+    }
+
+    /**
+     * close the connections which haven't made progress in TIMEOUT_MS,
+     * the blocked transferTo/transferFrom then fails, SO_TIMEOUT only
+     * covers the reads of the requests
+     */
+    @Override
+    public void tick(long nowMs) {
+        for (Entry<SocketChannel, Long> entry : lastActiveMs.entrySet()) {
+            if (nowMs - entry.getValue() < TIMEOUT_MS) {
+                continue;
+            }
+            SocketChannel channel = entry.getKey();
+            LOG.warn("Close idle connection "
+                    + channel.socket().getRemoteSocketAddress());
+            close(channel);
+        }
+    }
+
+    private void read(SocketChannel channel, DataInputStream in,
+            DataOutputStream out) throws IOException {
+        String name = in.readUTF();
+        long offset = in.readLong();
+        long length = in.readLong();
+
+        File file = resolve(name);
+        if (file == null || file.isFile() == false) {
+            out.writeLong(-1);
+            out.flush();
+            return;
+        }
+
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel fc = fis.getChannel();
+            long size = fc.size();
+            out.writeLong(size);
+            out.flush();
+
+            long end = (length < size - offset) ? offset + length : size;
+            while (offset < end) {
+                offset += fc.transferTo(offset,
+                        Math.min(end - offset, TRANSFER_SIZE), channel);
+                touch(channel);
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    private void write(SocketChannel channel, DataInputStream in,
+            DataOutputStream out) throws IOException {
+        String name = in.readUTF();
+        long size = in.readLong();
+        int chunkSize = Math.min(in.readInt(), maxChunkSize);
+
+        if (writeRoot == null || name.contains("/") || name.contains("\\")
+                || name.startsWith(".")) {
+            LOG.warn("Reject to write " + name);
+            out.writeInt(0);
+            out.flush();
+            return;
+        }
+        out.writeInt(chunkSize);
+        out.flush();
+
+        long start = System.currentTimeMillis();
+        File tmp = new File(writeRoot, name + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            FileChannel fc = fos.getChannel();
+            long offset = 0;
+            while (offset < size) {
+                long n = fc.transferFrom(channel, offset, Math.min(
+                        Math.min(chunkSize, TRANSFER_SIZE), size - offset));
+                if (n <= 0) {
+                    throw new IOException("Connection is closed at " + offset
+                            + " of " + name);
+                }
+                offset += n;
+                touch(channel);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            fos.close();
+        }
+
+        String md5 = in.readUTF();
+        File file = new File(writeRoot, name);
+        if (md5.equals(Utils.md5Hex(tmp.getPath())) == false) {
+            tmp.delete();
+            LOG.warn("md5 of " + file + " isn't " + md5);
+            out.writeBoolean(false);
+            out.writeUTF("md5 of the received file isn't " + md5);
+        } else if (tmp.renameTo(file) == false) {
+            tmp.delete();
+            out.writeBoolean(false);
+            out.writeUTF("Failed to rename " + tmp);
+        } else {
+            LOG.info("Received " + file + ", " + size + " bytes in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            out.writeBoolean(true);
+            out.writeUTF(file.getPath());
+        }
+        out.flush();
+    }
+
+    /**
+     * only the files under root can be read
+     */
+    private File resolve(String name) throws IOException {
+        File file = new File(name);
+        if (file.isAbsolute() == false) {
+            file = new File(root, name);
+        }
+        if (file.getCanonicalPath().startsWith(root + File.separator) == false) {
+            LOG.warn("Reject to serve " + name);
+            return null;
+        }
+        return file;
+    }
+
+    @Override
+    public void start() {
+        TimeoutTicker.getInstance().register(this);
+        thread.start();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    @Override
+    public void interrupt() {
+        closed = true;
+        TimeoutTicker.getInstance().unregister(this);
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close file server of port " + port, e);
+        }
+        handlers.shutdownNow();
+        for (SocketChannel channel : lastActiveMs.keySet()) {
+            close(channel);
+        }
+    }
+
+    @Override
+    public Boolean isSleeping() {
+        return true;
+    }
+}
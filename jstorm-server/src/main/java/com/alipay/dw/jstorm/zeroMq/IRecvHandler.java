@@ -0,0 +1,13 @@
+package com.alipay.dw.jstorm.zeroMq;
+
+/**
+ * Receiving callback, the receiver thread hands every message 
+ * to it instead of putting the message into its own queue
+ * 
+ * @author longda
+ *
+ */
+public interface IRecvHandler {
+    
+    public void handle(byte[] message);
+}
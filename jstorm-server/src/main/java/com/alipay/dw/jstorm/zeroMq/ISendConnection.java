@@ -9,6 +9,13 @@ public interface ISendConnection {
     
     public void send(byte[] message);
     
+    /**
+     * send length bytes of message from offset without copying them
+     * first, done is run once the connection doesn't use message any
+     * more, then the caller can reuse it
+     */
+    public void send(byte[] message, int offset, int length, Runnable done);
+    
     public void close();
     
     public boolean isClosed();
@@ -1,5 +1,6 @@
 package com.alipay.dw.jstorm.zeroMq;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -7,22 +8,38 @@ import org.apache.log4j.Logger;
 import org.zeromq.ZMQ.Context;
 import org.zeromq.ZMQ.Socket;
 
+import backtype.storm.utils.ThreadResourceManager;
+
+import com.alipay.dw.jstorm.client.ConfigExtension;
+import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.task.TaskStatus;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 
 /**
  * zeroMQ context
  * 
+ * the transport between workers is zeroMQ or pure java nio, 
+ * it is selected by storm.messaging.transport
+ * 
  * @author yannian/Longda
  * 
  */
 public class MQContext {
     private final static Logger           LOG         = Logger.getLogger(MQContext.class);
+    
+    public static final String            TRANSPORT_ZMQ    = "zmq";
+    public static final String            TRANSPORT_NIO    = "nio";
+    
     private org.zeromq.ZMQ.Context        context;
     private int                           linger_ms;
     private boolean                       ipc;
     private boolean                       virtportZmq      = false;
     private int                           maxQueueMsg;
     private Map<Integer, QueueConnection> queueConnections = new HashMap<Integer, QueueConnection>();
+    // configuration of QueueConnection's bounded queue
+    private Map                           queueConf        = new HashMap();
+    private boolean                       nio              = false;
+    private ThreadResourceManager<ByteBuffer> nioBuffers;
     
     public static MQContext mk_zmq_context(int num_threads, int linger,
             boolean local, boolean virtportZmq, int maxQueueMsg) {
@@ -30,6 +47,38 @@ public class MQContext {
         return new MQContext(context, linger, local, virtportZmq, maxQueueMsg);
     }
     
+    public static MQContext mk_zmq_context(int num_threads, int linger,
+            boolean local, boolean virtportZmq, int maxQueueMsg, Map queueConf) {
+        String transport = (String) queueConf
+                .get(ConfigExtension.STORM_MESSAGING_TRANSPORT);
+        boolean nio = TRANSPORT_NIO.equals(transport);
+        
+        // nio worker doesn't need zeroMQ unless inproc zeroMQ is used
+        Context context = null;
+        if (nio == false || virtportZmq) {
+            context = ZeroMq.context(num_threads);
+        }
+        
+        MQContext mqContext = new MQContext(context, linger, local,
+                virtportZmq, maxQueueMsg);
+        mqContext.queueConf = queueConf;
+        if (nio) {
+            final int batchSize = JStormUtils.parseInt(
+                    queueConf.get(ConfigExtension.NIO_BATCH_SIZE),
+                    ConfigExtension.DEFAULT_NIO_BATCH_SIZE);
+            mqContext.nio = true;
+            mqContext.nioBuffers = new ThreadResourceManager<ByteBuffer>(
+                    new ThreadResourceManager.ResourceFactory<ByteBuffer>() {
+                        @Override
+                        public ByteBuffer makeResource() {
+                            return ByteBuffer.allocateDirect(batchSize);
+                        }
+                    });
+            LOG.info("Use nio transport between workers");
+        }
+        return mqContext;
+    }
+    
     public MQContext(org.zeromq.ZMQ.Context _context, int _linger_ms,
             boolean _ipc, boolean virtportZmq, int maxQueueMsg) {
         context = _context;
@@ -50,7 +99,9 @@ public class MQContext {
      * @return
      */
     public IRecvConnection bind(boolean distributeZmq, int port) {
-        if (distributeZmq || virtportZmq) {
+        if (distributeZmq && nio) {
+            return nio_bind(port);
+        } else if (distributeZmq || virtportZmq) {
             return zmq_bind(distributeZmq, port);
         } else {
             return queue_bind(port);
@@ -80,6 +131,30 @@ public class MQContext {
         return new ZMQRecvConnection(socket);
     }
     
+    public IRecvConnection nio_bind(int port) {
+        return nio_bind(port, null);
+    }
+    
+    /**
+     * @param handler
+     *            if it isn't null, the receiving thread passes messages 
+     *            to handler directly, recv() can't be used
+     */
+    public IRecvConnection nio_bind(int port, IRecvHandler handler) {
+        DisruptorQueue<byte[]> queue = null;
+        if (handler == null) {
+            queue = DisruptorQueue.mkInstance(queueConf,
+                    ConfigExtension.ZMQ_MAX_QUEUE_MSG, maxQueueMsg, false);
+        }
+        
+        LOG.info("Create nio receiver " + port);
+        int maxFrameSize = JStormUtils.parseInt(
+                queueConf.get(ConfigExtension.NIO_MAX_FRAME_SIZE),
+                ConfigExtension.DEFAULT_NIO_MAX_FRAME_SIZE);
+        return new NioRecvConnection(port, queue, handler, nioBuffers,
+                getNioSocketBufferSize(), maxFrameSize);
+    }
+    
     public IRecvConnection queue_bind(int port) {
         //        String url = "inproc://" + port;
         //        Socket socket = ZeroMq.socket(context, ZeroMq.pull);
@@ -94,7 +169,9 @@ public class MQContext {
      */
     public ISendConnection connect(boolean distributeZmq, String host, int port) {
         
-        if (distributeZmq || virtportZmq) {
+        if (distributeZmq && nio) {
+            return nio_connect(host, port);
+        } else if (distributeZmq || virtportZmq) {
             return zmq_connect(distributeZmq, host, port);
         } else {
             return queue_connect(port);
@@ -126,12 +203,32 @@ public class MQContext {
         return new ZMQSendConnection(socket);
     }
     
+    public ISendConnection nio_connect(String host, int port) {
+        // the high-water mark of the connection
+        DisruptorQueue<Object> queue = DisruptorQueue.mkInstance(queueConf,
+                ConfigExtension.ZMQ_MAX_QUEUE_MSG, maxQueueMsg, true);
+        
+        LOG.info("Create nio sender " + host + ":" + port);
+        return new NioSendConnection(host, port, queue, nioBuffers,
+                getNioSocketBufferSize(), linger_ms);
+    }
+    
+    private int getNioSocketBufferSize() {
+        return JStormUtils.parseInt(
+                queueConf.get(ConfigExtension.NIO_SOCKET_BUFFER_SIZE),
+                ConfigExtension.DEFAULT_NIO_SOCKET_BUFFER_SIZE);
+    }
+    
     public QueueConnection queue_connect(int port) {
         QueueConnection queueConnection = null;
         synchronized (this) {
             queueConnection = queueConnections.get(port);
             if (queueConnection == null) {
-                queueConnection = new QueueConnection();
+                // VirtualPortDispatch and shutdown command may send at the same time
+                DisruptorQueue<Object> queue = DisruptorQueue.mkInstance(
+                        queueConf, ConfigExtension.TOPOLOGY_RECEIVE_BUFFER_SIZE,
+                        ConfigExtension.DEFAULT_RECEIVE_BUFFER_SIZE, true);
+                queueConnection = new QueueConnection(queue);
                 
                 queueConnections.put(port, queueConnection);
                 
@@ -143,11 +240,21 @@ public class MQContext {
     }
     
     public void term() {
-        context.term();
+        if (context != null) {
+            context.term();
+        }
     }
     
     public Context getContext() {
         return context;
     }
     
+    public boolean isNio() {
+        return nio;
+    }
+    
+    public boolean isVirtportZmq() {
+        return virtportZmq;
+    }
+    
 }
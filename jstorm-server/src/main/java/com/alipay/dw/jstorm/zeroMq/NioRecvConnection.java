@@ -0,0 +1,263 @@
+package com.alipay.dw.jstorm.zeroMq;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import org.apache.log4j.Logger;
+
+import backtype.storm.utils.ThreadResourceManager;
+
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+
+/**
+ * Pure java receiving connection
+ *
+ * One selector thread accepts the other workers' connections and reads
+ * them into pooled direct buffers, every complete [int length][message]
+ * frame is copied out and put into the receiving queue. A connection
+ * which sends a negative or too big frame length is closed.
+ *
+ * When the receiving queue is full, the selector thread is blocked, so the
+ * socket buffers fill up and the senders are blocked at their high-water
+ * mark.
+ *
+ * If an IRecvHandler is given, the frames are passed to it directly
+ * without the receiving queue.
+ *
+ * @author longda
+ *
+ */
+public class NioRecvConnection implements IRecvConnection, Runnable {
+    private static final Logger                     LOG    = Logger.getLogger(NioRecvConnection.class);
+
+    private static final int                        INT_SIZE = Integer.SIZE / 8;
+
+    private final int                               port;
+    private final DisruptorQueue<byte[]>            recvQueue;
+    private final IRecvHandler                      handler;
+    private final ThreadResourceManager<ByteBuffer> bufferPool;
+    private final int                               socketBufferSize;
+    private final int                               maxFrameSize;
+    private final ServerSocketChannel               serverChannel;
+    private final Selector                          selector;
+    private final Thread                            thread;
+
+    private volatile boolean                        closed = false;
+
+    public NioRecvConnection(int port, DisruptorQueue<byte[]> recvQueue,
+            IRecvHandler handler, ThreadResourceManager<ByteBuffer> bufferPool,
+            int socketBufferSize, int maxFrameSize) {
+        this.port = port;
+        this.recvQueue = recvQueue;
+        this.handler = handler;
+        this.bufferPool = bufferPool;
+        this.socketBufferSize = socketBufferSize;
+        this.maxFrameSize = maxFrameSize;
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().setReceiveBufferSize(socketBufferSize);
+            serverChannel.socket().bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+
+            selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to bind port " + port, e);
+        }
+
+        thread = new Thread(this);
+        thread.setName("NioReceiver-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public byte[] recv() {
+        if (recvQueue == null) {
+            throw new UnsupportedOperationException(
+                    "Messages are passed to the handler");
+        }
+        return recvQueue.take();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (closed == false) {
+                selector.select();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    if (key.isValid() == false) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // closed
+        } catch (Throwable e) {
+            if (closed == false) {
+                LOG.error("Receiver of port " + port + " quit", e);
+            }
+        } finally {
+            closeAll();
+        }
+
+        LOG.info("Successfully shutdown receiver of port " + port);
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setReceiveBufferSize(socketBufferSize);
+        channel.register(selector, SelectionKey.OP_READ, new FrameDecoder());
+
+        LOG.info("Receiver of port " + port + " accepted "
+                + channel.socket().getRemoteSocketAddress());
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        FrameDecoder decoder = (FrameDecoder) key.attachment();
+
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n < 0) {
+                closeChannel(key, "peer closed");
+                return;
+            }
+            buffer.flip();
+            decoder.decode(buffer);
+        } catch (IOException e) {
+            closeChannel(key, e.getMessage());
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void closeChannel(SelectionKey key, String reason) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        LOG.info("Receiver of port " + port + " close "
+                + channel.socket().getRemoteSocketAddress() + ", " + reason);
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close channel", e);
+        }
+    }
+
+    /**
+     * Decode [int length][message] frames, one frame may be split
+     * into several reads
+     */
+    private class FrameDecoder {
+        private final ByteBuffer header = ByteBuffer.allocate(INT_SIZE);
+        private byte[]           message;
+        private int              offset;
+
+        void decode(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (message == null) {
+                    if (header.position() == 0 && buffer.remaining() >= INT_SIZE) {
+                        message = new byte[checkLength(buffer.getInt())];
+                    } else {
+                        while (header.hasRemaining() && buffer.hasRemaining()) {
+                            header.put(buffer.get());
+                        }
+                        if (header.hasRemaining()) {
+                            return;
+                        }
+                        header.flip();
+                        message = new byte[checkLength(header.getInt())];
+                        header.clear();
+                    }
+                    offset = 0;
+                }
+
+                int len = Math.min(message.length - offset, buffer.remaining());
+                buffer.get(message, offset, len);
+                offset += len;
+
+                if (offset == message.length && handler != null) {
+                    try {
+                        handler.handle(message);
+                    } catch (Exception e) {
+                        LOG.error("Failed to handle message of port " + port, e);
+                    }
+                    message = null;
+                } else if (offset == message.length) {
+                    // stop reading when the receiving queue is full
+                    while (recvQueue.tryOffer(message) == false) {
+                        if (closed) {
+                            return;
+                        }
+                        JStormUtils.sleepMs(1);
+                    }
+                    message = null;
+                }
+            }
+        }
+
+        private int checkLength(int length) throws IOException {
+            if (length < 0 || length > maxFrameSize) {
+                throw new IOException("invalid frame length " + length
+                        + ", max " + maxFrameSize);
+            }
+            return length;
+        }
+    }
+
+    /**
+     * only called by the selector thread
+     */
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close selector of port " + port, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        if (recvQueue != null) {
+            recvQueue.haltWithInterrupt();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
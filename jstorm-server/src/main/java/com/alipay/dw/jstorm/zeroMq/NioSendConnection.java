@@ -0,0 +1,277 @@
+package com.alipay.dw.jstorm.zeroMq;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.apache.log4j.Logger;
+
+import backtype.storm.utils.ThreadResourceManager;
+
+import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
+
+/**
+ * Pure java sending connection
+ *
+ * send() only puts the message into the bounded sending queue, it will be
+ * blocked when the queue reach the high-water mark. One sender thread
+ * drains the queue, packs as many messages as one pooled direct buffer
+ * can hold, every message is prefixed by its int length, and writes them
+ * in one system call. A message sent as part of an array is queued
+ * without copy, the caller is told once it has been copied or written.
+ *
+ * Like zeroMQ, the connection is built in background and rebuilt after
+ * the peer is restarted, the messages in the failed write are dropped.
+ *
+ * @author longda
+ *
+ */
+public class NioSendConnection implements ISendConnection, Runnable {
+    private static final Logger                     LOG             = Logger.getLogger(NioSendConnection.class);
+
+    private static final int                        INT_SIZE        = Integer.SIZE / 8;
+    private static final long                       MAX_RETRY_MS    = 1000;
+
+    private final InetSocketAddress                 address;
+    // byte[] or Slice
+    private final DisruptorQueue<Object>            sendQueue;
+    private final ThreadResourceManager<ByteBuffer> bufferPool;
+    private final int                               socketBufferSize;
+    private final int                               lingerMs;
+    private final Thread                            thread;
+
+    private SocketChannel                           channel;
+    private volatile boolean                        closed          = false;
+
+    public NioSendConnection(String host, int port,
+            DisruptorQueue<Object> sendQueue,
+            ThreadResourceManager<ByteBuffer> bufferPool,
+            int socketBufferSize, int lingerMs) {
+        this.address = new InetSocketAddress(host, port);
+        this.sendQueue = sendQueue;
+        this.bufferPool = bufferPool;
+        this.socketBufferSize = socketBufferSize;
+        this.lingerMs = Math.max(lingerMs, 1);
+
+        thread = new Thread(this);
+        thread.setName("NioSender-" + host + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void send(byte[] message) {
+        if (closed) {
+            LOG.warn("Connection to " + address + " has been closed");
+            return;
+        }
+        // it will be blocked when reaching high-water mark
+        sendQueue.offer(message);
+    }
+
+    @Override
+    public void send(byte[] message, int offset, int length, Runnable done) {
+        if (closed) {
+            LOG.warn("Connection to " + address + " has been closed");
+            done.run();
+            return;
+        }
+        sendQueue.offer(new Slice(message, offset, length, done));
+    }
+
+    /**
+     * part of an array, done is run after it is copied or written
+     */
+    private static final class Slice {
+        final byte[]   data;
+        final int      offset;
+        final int      length;
+        final Runnable done;
+
+        Slice(byte[] data, int offset, int length, Runnable done) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.done = done;
+        }
+    }
+
+    private static ByteBuffer wrap(Object message) {
+        if (message instanceof Slice) {
+            Slice slice = (Slice) message;
+            return ByteBuffer.wrap(slice.data, slice.offset, slice.length);
+        }
+        return ByteBuffer.wrap((byte[]) message);
+    }
+
+    private static int length(Object message) {
+        if (message instanceof Slice) {
+            return ((Slice) message).length;
+        }
+        return ((byte[]) message).length;
+    }
+
+    private static void release(Object message) {
+        if (message instanceof Slice) {
+            try {
+                ((Slice) message).done.run();
+            } catch (Exception e) {
+                LOG.warn("Failed to release sent message", e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        ByteBuffer buffer = bufferPool.acquire();
+        Object pending = null;
+        try {
+            while (true) {
+                Object message = pending;
+                pending = null;
+                if (message == null) {
+                    message = closed ? sendQueue.poll() : sendQueue.take();
+                }
+                if (message == null) {
+                    if (closed) {
+                        // all messages have been flushed
+                        break;
+                    }
+                    continue;
+                }
+
+                buffer.clear();
+                if (INT_SIZE + length(message) > buffer.capacity()) {
+                    // too big to batch, write it directly
+                    ByteBuffer header = ByteBuffer.allocate(INT_SIZE);
+                    header.putInt(length(message));
+                    header.flip();
+                    try {
+                        write(new ByteBuffer[] { header, wrap(message) });
+                    } finally {
+                        release(message);
+                    }
+                    continue;
+                }
+
+                // batch all messages which have been queued
+                while (message != null) {
+                    if (INT_SIZE + length(message) > buffer.remaining()) {
+                        pending = message;
+                        break;
+                    }
+                    buffer.putInt(length(message));
+                    buffer.put(wrap(message));
+                    release(message);
+                    message = sendQueue.poll();
+                }
+
+                buffer.flip();
+                write(new ByteBuffer[] { buffer });
+            }
+        } finally {
+            bufferPool.release(buffer);
+            closeChannel();
+            // give back what is dropped
+            Object left = (pending != null) ? pending : sendQueue.poll();
+            for (; left != null; left = sendQueue.poll()) {
+                release(left);
+            }
+        }
+
+        LOG.info("Successfully shutdown sender to " + address);
+    }
+
+    private void write(ByteBuffer[] buffers) {
+        if (connect() == false) {
+            return;
+        }
+
+        try {
+            ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) {
+                channel.write(buffers);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write to " + address + ", drop one batch", e);
+            closeChannel();
+        }
+    }
+
+    private boolean connect() {
+        long retryMs = 10;
+        long deadline = Long.MAX_VALUE;
+        while (channel == null) {
+            if (closed) {
+                // don't retry forever after closing
+                long now = System.currentTimeMillis();
+                if (deadline == Long.MAX_VALUE) {
+                    deadline = now + lingerMs;
+                }
+                if (now >= deadline) {
+                    LOG.warn("Drop messages, failed to connect " + address);
+                    return false;
+                }
+            }
+
+            SocketChannel ch = null;
+            try {
+                ch = SocketChannel.open();
+                ch.socket().setTcpNoDelay(true);
+                ch.socket().setSendBufferSize(socketBufferSize);
+                ch.socket().setKeepAlive(true);
+                ch.connect(address);
+                channel = ch;
+                LOG.info("Connected to " + address);
+            } catch (IOException e) {
+                if (ch != null) {
+                    try {
+                        ch.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                LOG.debug("Failed to connect " + address + ", retry after "
+                        + retryMs + " ms");
+                JStormUtils.sleepMs(retryMs);
+                retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+            }
+        }
+        return true;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close connection to " + address, e);
+        }
+        channel = null;
+    }
+
+    /**
+     * flush the queued messages at most lingerMs
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sendQueue.haltWithInterrupt();
+        try {
+            thread.join(lingerMs);
+        } catch (InterruptedException e) {
+        }
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
@@ -1,7 +1,5 @@
 package com.alipay.dw.jstorm.zeroMq;
 
-import java.nio.ByteBuffer;
-
 import backtype.storm.serialization.KryoTupleDeserializer;
 
 /**
@@ -11,6 +9,12 @@ import backtype.storm.serialization.KryoTupleDeserializer;
  * 
  */
 public class PacketPair {
+    /**
+     * virtual port of the batch packet, 
+     * whose content is several packets, every packet is prefixed by its length
+     */
+    public static final int BATCH_PORT = -2;
+    
     private int  port;
     private byte[] message;
     
@@ -36,39 +40,61 @@ public class PacketPair {
     }
     
     public static byte[] mk_packet(int virtual_port, byte[] message) {
-        ByteBuffer buff = ByteBuffer.allocate((Integer.SIZE / 8)
-                + message.length);
-        buff.putInt(virtual_port);
-        buff.put(message);
-        byte[] rtn = buff.array();
+        byte[] rtn = new byte[(Integer.SIZE / 8) + message.length];
+        write_int(rtn, 0, virtual_port);
+        System.arraycopy(message, 0, rtn, (Integer.SIZE / 8), message.length);
         return rtn;
     }
     
-    public static PacketPair parse_packet(byte[] packet) {
-        ByteBuffer buff = ByteBuffer.wrap(packet);
-        int port = buff.getInt();
-        
-        /**
-         * @@@ Attention please, in order to reduce memory copy
-         * 
-         * Here directly PacketPair.message use the packet buffer
-         * 
-         * so need get rid of the target target taskid in 
-         *  KryoTupleDeserializer.deserialize
-         *  
-         *  
-         *  The better design should tuple includes targetTaskId
-         */
-        byte[] message = null;
+    /**
+     * write one big-endian int into the packet, same as ByteBuffer.putInt
+     */
+    public static void write_int(byte[] packet, int offset, int value) {
+        packet[offset] = (byte) (value >>> 24);
+        packet[offset + 1] = (byte) (value >>> 16);
+        packet[offset + 2] = (byte) (value >>> 8);
+        packet[offset + 3] = (byte) value;
+    }
+    
+    /**
+     * read one big-endian int from the packet, same as ByteBuffer.getInt
+     */
+    public static int read_int(byte[] packet, int offset) {
+        return ((packet[offset] & 0xFF) << 24)
+                | ((packet[offset + 1] & 0xFF) << 16)
+                | ((packet[offset + 2] & 0xFF) << 8)
+                | (packet[offset + 3] & 0xFF);
+    }
+    
+    /**
+     * read the virtual port of the packet without any allocation
+     */
+    public static int parse_port(byte[] packet) {
+        return read_int(packet, 0);
+    }
+    
+    /**
+     * @@@ Attention please, in order to reduce memory copy
+     * 
+     * Here directly use the packet buffer as message
+     * 
+     * so need get rid of the target target taskid in 
+     *  KryoTupleDeserializer.deserialize
+     *  
+     *  
+     *  The better design should tuple includes targetTaskId
+     */
+    public static byte[] parse_message(byte[] packet) {
         if (KryoTupleDeserializer.USE_RAW_PACKET == true) {
-            message = packet;
-        }else {
-            message = new byte[buff.array().length - (Integer.SIZE / 8)];
-            buff.get(message);
+            return packet;
         }
-        PacketPair pair = new PacketPair(port, message);
         
-        
-        return pair;
+        byte[] message = new byte[packet.length - (Integer.SIZE / 8)];
+        System.arraycopy(packet, (Integer.SIZE / 8), message, 0, message.length);
+        return message;
+    }
+    
+    public static PacketPair parse_packet(byte[] packet) {
+        return new PacketPair(parse_port(packet), parse_message(packet));
     }
 }
@@ -1,45 +1,98 @@
 package com.alipay.dw.jstorm.zeroMq;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Arrays;
+
+import com.alipay.dw.jstorm.utils.DisruptorQueue;
 
 //import org.zeromq.ZMQ.Socket;
 
 /**
+ * Task's receiving queue
+ * 
+ * Besides the serialized messages, the tasks of the same worker put 
+ * Tuple objects into it directly, use recvObject to get both of them
  * 
  * @author longda
  *
  */
 public class QueueConnection implements IRecvConnection, ISendConnection {
-    private LinkedBlockingQueue<byte[]> queue;
-    private boolean                     closed = false;
+    private DisruptorQueue<Object> queue;
+    private boolean                closed = false;
     
-    public QueueConnection() {
-        queue = new LinkedBlockingQueue<byte[]>();
+    public QueueConnection(DisruptorQueue<Object> queue) {
+        this.queue = queue;
     }
     
     /**
      * QueueConnection 's recv is blocked type
+     * 
+     * it can't be used when objects are sent by sendObject
      */
     @Override
     public byte[] recv() {
        
-        try {
-            return queue.take();
-        } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            return null;
-        }
+        return (byte[]) queue.take();
+    }
+    
+    /**
+     * blocked type, return byte[] or the object sent by sendObject
+     */
+    public Object recvObject() {
+        return queue.take();
+    }
+    
+    /**
+     * Put the object without serialization, 
+     * it will be blocked when the queue is full
+     */
+    public void sendObject(Object message) {
+        queue.offer(message);
+    }
+    
+    /**
+     * Put the object without serialization and without blocking
+     * 
+     * @return false if the queue is full
+     */
+    public boolean trySendObject(Object message) {
+        return queue.tryOffer(message);
     }
     
+    /**
+     * QueueConnection 's send will be blocked when the queue is full
+     */
     @Override
     public void send(byte[] message) {
         
         queue.offer(message);
     }
     
+    /**
+     * the receiver takes the whole array, so part of an array is copied
+     */
+    @Override
+    public void send(byte[] message, int offset, int length, Runnable done) {
+        try {
+            if (offset != 0 || length != message.length) {
+                message = Arrays.copyOfRange(message, offset, offset + length);
+            }
+            queue.offer(message);
+        } finally {
+            done.run();
+        }
+    }
+    
+    /**
+     * the fill ratio of the queue, 0 to 1
+     */
+    public double occupancy() {
+        return (double) queue.size() / queue.capacity();
+    }
+    
     @Override
     public void close() {
         closed = true;
+        queue.haltWithInterrupt();
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.alipay.dw.jstorm.zeroMq;
 
+import java.util.Arrays;
+
 import org.zeromq.ZMQ.Socket;
 
 /**
@@ -21,6 +23,19 @@ public class ZMQSendConnection implements ISendConnection {
         ZeroMq.send(socket, message);
     }
     
+    @Override
+    public void send(byte[] message, int offset, int length, Runnable done) {
+        try {
+            // jzmq 2.1 can't send part of an array
+            if (offset != 0 || length != message.length) {
+                message = Arrays.copyOfRange(message, offset, offset + length);
+            }
+            ZeroMq.send(socket, message);
+        } finally {
+            done.run();
+        }
+    }
+    
     @Override
     public void close() {
         socket.close();
@@ -26,6 +26,7 @@ import backtype.storm.Config;
 import backtype.storm.generated.Bolt;
 import backtype.storm.generated.ClusterSummary;
 import backtype.storm.generated.ErrorInfo;
+import backtype.storm.generated.GlobalStreamId;
 import backtype.storm.generated.Nimbus.Client;
 import backtype.storm.generated.SpoutSpec;
 import backtype.storm.generated.StormTopology;
@@ -39,6 +40,7 @@ import backtype.storm.utils.Utils;
 import com.alipay.dw.jstorm.common.JStormUtils;
 import com.alipay.dw.jstorm.common.NodePort;
 import com.alipay.dw.jstorm.common.stats.StatBuckets;
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
 import com.alipay.dw.jstorm.common.stats.StaticsType;
 import com.alipay.dw.jstorm.ui.model.ClusterSumm;
 import com.alipay.dw.jstorm.ui.model.Components;
@@ -209,9 +211,45 @@ public class UIUtils {
         
     }
     
+    /**
+     * Merge the latency histograms of all streams in the window
+     * 
+     * @param rawMap  <window, <stream, (bucket index, count) pairs>>, may be null
+     * @return the merged histogram, empty if there is none
+     */
+    public static LatencyHistogram mergeHistogram(
+            Map<String, Map<GlobalStreamId, List<Long>>> rawMap, String window) {
+        LatencyHistogram ret = new LatencyHistogram();
+        if (rawMap == null || rawMap.get(window) == null) {
+            return ret;
+        }
+        
+        for (List<Long> pairs : rawMap.get(window).values()) {
+            ret.merge(LatencyHistogram.fromList(pairs));
+        }
+        return ret;
+    }
+    
     public static Map<StaticsType, Object> mergeTasks(List<TaskSummary> taskSummaries, String window) {
         Map<StaticsType, Object> ret = new HashMap<StaticsType, Object>();
         
+        // histograms are merged by buckets, not by value
+        LatencyHistogram processHistogram = new LatencyHistogram();
+        LatencyHistogram executeHistogram = new LatencyHistogram();
+        for (TaskSummary taskSummary : taskSummaries) {
+            TaskStats taskStats = taskSummary.get_stats();
+            if (taskStats == null) {
+                continue;
+            }
+            
+            processHistogram.merge(mergeHistogram(
+                    taskStats.get_process_histograms(), window));
+            executeHistogram.merge(mergeHistogram(
+                    taskStats.get_execute_histograms(), window));
+        }
+        ret.put(StaticsType.process_histograms, processHistogram);
+        ret.put(StaticsType.execute_histograms, executeHistogram);
+        
         Map<StaticsType, List<Object>> mergedStreamTasks = mergeStream(taskSummaries, window);
         for (Entry<StaticsType, List<Object>> entry : mergedStreamTasks.entrySet()) {
             StaticsType type = entry.getKey();
@@ -10,6 +10,7 @@ import java.io.Serializable;
 import java.util.Map;
 
 import com.alipay.dw.jstorm.common.JStormUtils;
+import com.alipay.dw.jstorm.common.stats.LatencyHistogram;
 import com.alipay.dw.jstorm.common.stats.StaticsType;
 
 public class ComponentStats implements Serializable {
@@ -21,6 +22,10 @@ public class ComponentStats implements Serializable {
     private String acked;
     private String failed;
     private String process;
+    // percentiles of the latency histograms, in ms
+    private String processP99;
+    private String processP999;
+    private String executeP99;
     
     public String getEmitted() {
         return emitted;
@@ -60,6 +65,39 @@ public class ComponentStats implements Serializable {
         this.process = process;
     }
     
+    public String getProcessP99() {
+        return processP99;
+    }
+    public void setProcessP99(String processP99) {
+        this.processP99 = processP99;
+    }
+    public String getProcessP999() {
+        return processP999;
+    }
+    public void setProcessP999(String processP999) {
+        this.processP999 = processP999;
+    }
+    public String getExecuteP99() {
+        return executeP99;
+    }
+    public void setExecuteP99(String executeP99) {
+        this.executeP99 = executeP99;
+    }
+    
+    public void setPercentiles(LatencyHistogram processHistogram,
+            LatencyHistogram executeHistogram) {
+        if (processHistogram != null) {
+            processP99 = JStormUtils.formatValue(processHistogram
+                    .percentileMs(99));
+            processP999 = JStormUtils.formatValue(processHistogram
+                    .percentileMs(99.9));
+        }
+        if (executeHistogram != null) {
+            executeP99 = JStormUtils.formatValue(executeHistogram
+                    .percentileMs(99));
+        }
+    }
+    
     public void setValues(Map<StaticsType, Object> staticsType) {
         emitted = JStormUtils.formatValue(staticsType.get(StaticsType.emitted));
         sendTps = JStormUtils.formatValue(staticsType.get(StaticsType.send_tps));
@@ -68,6 +106,11 @@ public class ComponentStats implements Serializable {
         failed = JStormUtils.formatValue(staticsType.get(StaticsType.failed));
         process = JStormUtils.formatValue(staticsType
                 .get(StaticsType.process_latencies));
+        setPercentiles(
+                (LatencyHistogram) staticsType
+                        .get(StaticsType.process_histograms),
+                (LatencyHistogram) staticsType
+                        .get(StaticsType.execute_histograms));
     }
     
 }
@@ -125,6 +125,9 @@ public class BoltPage implements Serializable {
             componentTask.setAcked(JStormUtils.formatValue(acked.get(window)));
             componentTask.setFailed(JStormUtils.formatValue(failed.get(window)));
             componentTask.setProcess(JStormUtils.formatValue(process.get(window)));
+            componentTask.setPercentiles(UIUtils.mergeHistogram(
+                    taskStats.get_process_histograms(), window), UIUtils
+                    .mergeHistogram(taskStats.get_execute_histograms(), window));
             
             
             ret.add(componentTask);
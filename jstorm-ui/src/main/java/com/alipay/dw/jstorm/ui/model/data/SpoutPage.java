@@ -139,6 +139,9 @@ public class SpoutPage implements Serializable {
                     .setFailed(JStormUtils.formatValue(failed.get(window)));
             componentTask.setProcess(JStormUtils.formatValue(process
                     .get(window)));
+            componentTask.setPercentiles(UIUtils.mergeHistogram(
+                    taskStats.get_process_histograms(), window), UIUtils
+                    .mergeHistogram(taskStats.get_execute_histograms(), window));
             
             ret.add(componentTask);
         }
@@ -144,6 +144,9 @@ struct TaskStats {
   4: required map<string, map<GlobalStreamId, i64>> acked;  
   5: required map<string, map<GlobalStreamId, i64>> failed;  
   6: required map<string, map<GlobalStreamId, double>> process_ms_avg;
+  // latency histograms in microseconds, the list is (bucket index, count) pairs
+  7: optional map<string, map<GlobalStreamId, list<i64>>> process_histograms;
+  8: optional map<string, map<GlobalStreamId, list<i64>>> execute_histograms;
 }
 
 struct TaskSummary {